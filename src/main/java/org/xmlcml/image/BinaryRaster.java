@@ -0,0 +1,420 @@
+package org.xmlcml.image;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/** packed binary image (1 bit per pixel).
+ *
+ * Pixels are stored 64 to a long. Each row starts on a new word so that rows can be
+ * processed a word at a time; pixel x of row y is bit (x & 63) of word
+ * (y * wordsPerRow + (x >> 6)).
+ *
+ * 1 is black (foreground), 0 is white (background). Reads outside the raster return 0,
+ * which is what the thinning and floodfill neighbourhood tests expect at the edges.
+ *
+ * Shared by FloodFill, Thinning and XSlice so that a page is held once at 1 bit per pixel
+ * rather than as boolean[][] or int[][] copies.
+ *
+ * Subclasses can keep the bits somewhere other than a long[] (see TiledBinaryRaster);
+ * they override the pixel and word accessors and createBlank(). getWords() is only
+ * available for the in-memory raster.
+ *
+ * @author pm286
+ *
+ */
+public class BinaryRaster {
+
+	public static final int WORD_SIZE = 64;
+	private static final int WORD_SHIFT = 6;
+	private static final int WORD_MASK = WORD_SIZE - 1;
+
+	private int width;
+	private int height;
+	private int wordsPerRow;
+	private long[] words;
+
+	/** creates white raster.
+	 *
+	 * @param width
+	 * @param height
+	 */
+	public BinaryRaster(int width, int height) {
+		this(width, height, true);
+	}
+
+	/** deep copy.
+	 *
+	 * the copy is always held in memory.
+	 *
+	 * @param raster
+	 */
+	public BinaryRaster(BinaryRaster raster) {
+		this.width = raster.width;
+		this.height = raster.height;
+		this.wordsPerRow = raster.wordsPerRow;
+		if (raster.words != null) {
+			this.words = Arrays.copyOf(raster.words, raster.words.length);
+		} else {
+			this.words = new long[wordsPerRow * height];
+			for (int y = 0; y < height; y++) {
+				for (int w = 0; w < wordsPerRow; w++) {
+					words[y * wordsPerRow + w] = raster.getWord(y, w);
+				}
+			}
+		}
+	}
+
+	/** for subclasses which hold the bits themselves.
+	 *
+	 * no long[] is allocated; the subclass must override every method that uses it.
+	 *
+	 * @param width
+	 * @param height
+	 * @param allocate false to skip the in-memory words
+	 */
+	protected BinaryRaster(int width, int height, boolean allocate) {
+		if (width < 0 || height < 0) {
+			throw new RuntimeException("bad raster size: "+width+" x "+height);
+		}
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + WORD_MASK) >> WORD_SHIFT;
+		if (allocate) {
+			this.words = new long[wordsPerRow * height];
+		}
+	}
+
+	/** creates white raster of the same size and storage.
+	 *
+	 * used for work rasters (e.g. the painted mask in FloodFill) so that they are
+	 * no larger in memory than the raster they shadow.
+	 *
+	 * @return
+	 */
+	public BinaryRaster createBlank() {
+		return new BinaryRaster(width, height);
+	}
+
+	/** creates raster from int[y][x] array.
+	 *
+	 * @param binary 1 is black, anything else white
+	 * @return null if binary is null or empty
+	 */
+	public static BinaryRaster createFromBinary(int[][] binary) {
+		if (binary == null || binary.length == 0 || binary[0] == null) {
+			return null;
+		}
+		BinaryRaster raster = new BinaryRaster(binary[0].length, binary.length);
+		for (int y = 0; y < raster.height; y++) {
+			for (int x = 0; x < raster.width; x++) {
+				if (binary[y][x] == 1) {
+					raster.set(x, y);
+				}
+			}
+		}
+		return raster;
+	}
+
+	/** creates raster with 1 for every pixel which is exactly black (0xff000000).
+	 *
+	 * this is the convention used by the thinning routines on binarized images.
+	 *
+	 * @param image
+	 * @return
+	 */
+	public static BinaryRaster createFromBlackPixels(BufferedImage image) {
+		return createFromPixels(image, Color.BLACK.getRGB());
+	}
+
+	/** creates raster with 1 for every pixel which is exactly rgb.
+	 *
+	 * @param image
+	 * @param rgb including alpha (e.g. 0xffffffff for white)
+	 * @return
+	 */
+	public static BinaryRaster createFromPixels(BufferedImage image, int rgb) {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		BinaryRaster raster = new BinaryRaster(w, h);
+		ImagePixelAccessor accessor = new ImagePixelAccessor(image);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				if (accessor.getRGB(x, y) == rgb) {
+					raster.set(x, y);
+				}
+			}
+		}
+		return raster;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** number of longs per row.
+	 *
+	 * @return
+	 */
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/** backing array.
+	 *
+	 * row y starts at getRowOffset(y). Not a copy.
+	 *
+	 * @return
+	 * @throws RuntimeException if the raster is not held in memory
+	 */
+	public long[] getWords() {
+		if (words == null) {
+			throw new RuntimeException("raster has no in-memory words: "+getClass().getSimpleName());
+		}
+		return words;
+	}
+
+	/** index of first word of row y in getWords().
+	 *
+	 * @param y
+	 * @return
+	 */
+	public int getRowOffset(int y) {
+		return y * wordsPerRow;
+	}
+
+	public boolean isInside(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/** is pixel black?
+	 *
+	 * @param x
+	 * @param y
+	 * @return false if outside raster
+	 */
+	public boolean get(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return false;
+		}
+		return (words[y * wordsPerRow + (x >> WORD_SHIFT)] & (1L << (x & WORD_MASK))) != 0;
+	}
+
+	/** pixel as 0 or 1.
+	 *
+	 * @param x
+	 * @param y
+	 * @return 0 if outside raster
+	 */
+	public int getBit(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return 0;
+		}
+		return (int) (words[y * wordsPerRow + (x >> WORD_SHIFT)] >>> (x & WORD_MASK)) & 1;
+	}
+
+	/** sets pixel black.
+	 *
+	 * @param x must be inside raster
+	 * @param y must be inside raster
+	 */
+	public void set(int x, int y) {
+		words[y * wordsPerRow + (x >> WORD_SHIFT)] |= 1L << (x & WORD_MASK);
+	}
+
+	/** sets pixel white.
+	 *
+	 * @param x must be inside raster
+	 * @param y must be inside raster
+	 */
+	public void clear(int x, int y) {
+		words[y * wordsPerRow + (x >> WORD_SHIFT)] &= ~(1L << (x & WORD_MASK));
+	}
+
+	public void set(int x, int y, boolean black) {
+		if (black) {
+			set(x, y);
+		} else {
+			clear(x, y);
+		}
+	}
+
+	/** gets word of 64 pixels.
+	 *
+	 * bit 0 is pixel (wordIndex * 64). Bits beyond the width are always 0.
+	 *
+	 * @param y row
+	 * @param wordIndex index within row
+	 * @return 0 if outside raster
+	 */
+	public long getWord(int y, int wordIndex) {
+		if (y < 0 || y >= height || wordIndex < 0 || wordIndex >= wordsPerRow) {
+			return 0L;
+		}
+		return words[y * wordsPerRow + wordIndex];
+	}
+
+	/** sets word of 64 pixels.
+	 *
+	 * bits beyond the width are cleared.
+	 *
+	 * @param y row
+	 * @param wordIndex index within row
+	 * @param word
+	 */
+	public void setWord(int y, int wordIndex, long word) {
+		if (wordIndex == wordsPerRow - 1) {
+			word &= getLastWordMask();
+		}
+		words[y * wordsPerRow + wordIndex] = word;
+	}
+
+	/** mask of valid bits in last word of each row.
+	 *
+	 * @return
+	 */
+	public long getLastWordMask() {
+		int rem = width & WORD_MASK;
+		return rem == 0 ? -1L : (1L << rem) - 1;
+	}
+
+	/** does row contain any black pixels?
+	 *
+	 * @param y
+	 * @return
+	 */
+	public boolean isRowEmpty(int y) {
+		int offset = y * wordsPerRow;
+		for (int w = 0; w < wordsPerRow; w++) {
+			if (words[offset + w] != 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** next black pixel in row at or after x.
+	 *
+	 * @param x start
+	 * @param y row
+	 * @return x coordinate or -1 if none
+	 */
+	public int nextSetBit(int x, int y) {
+		if (x < 0) {
+			x = 0;
+		}
+		if (x >= width || y < 0 || y >= height) {
+			return -1;
+		}
+		int offset = y * wordsPerRow;
+		int w = x >> WORD_SHIFT;
+		long word = words[offset + w] & (-1L << (x & WORD_MASK));
+		while (true) {
+			if (word != 0L) {
+				return (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+			}
+			if (++w >= wordsPerRow) {
+				return -1;
+			}
+			word = words[offset + w];
+		}
+	}
+
+	/** number of black pixels.
+	 *
+	 * @return
+	 */
+	public int cardinality() {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	public void clearAll() {
+		Arrays.fill(words, 0L);
+	}
+
+	/** creates int[y][x] array of 0/1.
+	 *
+	 * mainly for debugging and legacy code; costs 32 bits per pixel.
+	 *
+	 * @return
+	 */
+	public int[][] createBinary() {
+		int[][] binary = new int[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				binary[y][x] = getBit(x, y);
+			}
+		}
+		return binary;
+	}
+
+	/** writes black and white pixels into image.
+	 *
+	 * image must be at least as large as raster.
+	 *
+	 * @param image
+	 */
+	public void writeToImage(BufferedImage image) {
+		ImagePixelAccessor accessor = new ImagePixelAccessor(image);
+		int black = Color.BLACK.getRGB();
+		int white = Color.WHITE.getRGB();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				accessor.setRGB(x, y, get(x, y) ? black : white);
+			}
+		}
+	}
+
+	/** same for any two rasters with the same pixels, whatever their storage.
+	 *
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 31 * width + height;
+		for (int y = 0; y < height; y++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				long word = getWord(y, w);
+				hash = 31 * hash + (int) (word ^ (word >>> 32));
+			}
+		}
+		return hash;
+	}
+
+	/** equal if same size and same pixels; storage is ignored.
+	 *
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof BinaryRaster))
+			return false;
+		BinaryRaster other = (BinaryRaster) obj;
+		if (width != other.width || height != other.height) {
+			return false;
+		}
+		if (words != null && other.words != null) {
+			return Arrays.equals(words, other.words);
+		}
+		for (int y = 0; y < height; y++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				if (getWord(y, w) != other.getWord(y, w)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public String toString() {
+		return "raster " + width + " x " + height + "; black: " + cardinality();
+	}
+}
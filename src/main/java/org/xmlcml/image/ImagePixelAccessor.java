@@ -0,0 +1,217 @@
+package org.xmlcml.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/** reads and writes ARGB values of a BufferedImage through its DataBuffer.
+ *
+ * BufferedImage.getRGB() and setRGB() go through the ColorModel for every pixel.
+ * For TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_BYTE_GRAY and TYPE_BYTE_BINARY this class
+ * works on the backing arrays instead and gives exactly the same values
+ * (gray and indexed values are converted through tables built from the image's own
+ * ColorModel). Any other type falls back to getRGB()/setRGB().
+ *
+ * Getting the backing arrays stops Java2D accelerating the image; that is not
+ * important for the images we process.
+ *
+ * @author pm286
+ *
+ */
+public class ImagePixelAccessor {
+
+	private static final int FALLBACK = 0;
+	private static final int INT_RGB = 1;
+	private static final int INT_ARGB = 2;
+	private static final int BYTE_GRAY = 3;
+	private static final int BYTE_PACKED = 4;
+
+	private static final int CACHE_SIZE = 16;
+
+	private BufferedImage image;
+	private int width;
+	private int height;
+	private int kind;
+	private int[] intData;
+	private byte[] byteData;
+	private int offset;
+	private int scanlineStride;
+	// packed pixels
+	private int bitsPerPixel;
+	private int pixelMask;
+	private int bitOffset;
+	// ARGB for each gray/index value
+	private int[] rgbByValue;
+	// rgb -> gray/index value, filled on demand
+	private int[] cachedRgb;
+	private int[] cachedValue;
+
+	public ImagePixelAccessor(BufferedImage image) {
+		this.image = image;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		setUp();
+	}
+
+	private void setUp() {
+		kind = FALLBACK;
+		WritableRaster raster = image.getRaster();
+		SampleModel sampleModel = raster.getSampleModel();
+		int tx = raster.getSampleModelTranslateX();
+		int ty = raster.getSampleModelTranslateY();
+		int type = image.getType();
+		if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) &&
+				sampleModel instanceof SinglePixelPackedSampleModel &&
+				raster.getDataBuffer() instanceof DataBufferInt) {
+			SinglePixelPackedSampleModel sppsm = (SinglePixelPackedSampleModel) sampleModel;
+			DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+			intData = buffer.getData();
+			scanlineStride = sppsm.getScanlineStride();
+			offset = buffer.getOffset() - ty * scanlineStride - tx;
+			kind = (type == BufferedImage.TYPE_INT_RGB) ? INT_RGB : INT_ARGB;
+		} else if (type == BufferedImage.TYPE_BYTE_GRAY &&
+				sampleModel instanceof PixelInterleavedSampleModel &&
+				((PixelInterleavedSampleModel) sampleModel).getPixelStride() == 1 &&
+				raster.getDataBuffer() instanceof DataBufferByte) {
+			PixelInterleavedSampleModel pism = (PixelInterleavedSampleModel) sampleModel;
+			DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+			byteData = buffer.getData();
+			scanlineStride = pism.getScanlineStride();
+			offset = buffer.getOffset() + pism.getBandOffsets()[0] - ty * scanlineStride - tx;
+			createValueTables(256);
+			kind = BYTE_GRAY;
+		} else if (type == BufferedImage.TYPE_BYTE_BINARY &&
+				sampleModel instanceof MultiPixelPackedSampleModel &&
+				raster.getDataBuffer() instanceof DataBufferByte) {
+			MultiPixelPackedSampleModel mppsm = (MultiPixelPackedSampleModel) sampleModel;
+			DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+			byteData = buffer.getData();
+			scanlineStride = mppsm.getScanlineStride();
+			bitsPerPixel = mppsm.getPixelBitStride();
+			pixelMask = (1 << bitsPerPixel) - 1;
+			bitOffset = mppsm.getDataBitOffset() - tx * bitsPerPixel;
+			offset = buffer.getOffset() - ty * scanlineStride;
+			createValueTables(1 << bitsPerPixel);
+			kind = BYTE_PACKED;
+		}
+	}
+
+	private void createValueTables(int nvalues) {
+		ColorModel colorModel = image.getColorModel();
+		rgbByValue = new int[nvalues];
+		for (int i = 0; i < nvalues; i++) {
+			rgbByValue[i] = colorModel.getRGB(new byte[]{(byte) i});
+		}
+		cachedRgb = new int[CACHE_SIZE];
+		cachedValue = new int[CACHE_SIZE];
+		// -1 cannot be a valid value
+		Arrays.fill(cachedValue, -1);
+	}
+
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** does this use the backing arrays?
+	 *
+	 * @return false if getRGB() and setRGB() are used
+	 */
+	public boolean isFast() {
+		return kind != FALLBACK;
+	}
+
+	/** same as image.getRGB(x, y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return ARGB
+	 */
+	public int getRGB(int x, int y) {
+		switch (kind) {
+		case INT_RGB:
+			return 0xff000000 | intData[offset + y * scanlineStride + x];
+		case INT_ARGB:
+			return intData[offset + y * scanlineStride + x];
+		case BYTE_GRAY:
+			return rgbByValue[byteData[offset + y * scanlineStride + x] & 0xff];
+		case BYTE_PACKED:
+			return rgbByValue[getPackedValue(x, y)];
+		default:
+			return image.getRGB(x, y);
+		}
+	}
+
+	/** same as image.setRGB(x, y, rgb).
+	 *
+	 * @param x
+	 * @param y
+	 * @param rgb ARGB
+	 */
+	public void setRGB(int x, int y, int rgb) {
+		switch (kind) {
+		case INT_RGB:
+			intData[offset + y * scanlineStride + x] = rgb & 0x00ffffff;
+			break;
+		case INT_ARGB:
+			intData[offset + y * scanlineStride + x] = rgb;
+			break;
+		case BYTE_GRAY:
+			byteData[offset + y * scanlineStride + x] = (byte) getValue(rgb);
+			break;
+		case BYTE_PACKED:
+			setPackedValue(x, y, getValue(rgb));
+			break;
+		default:
+			image.setRGB(x, y, rgb);
+		}
+	}
+
+	private int getPackedValue(int x, int y) {
+		int bit = bitOffset + x * bitsPerPixel;
+		int b = byteData[offset + y * scanlineStride + (bit >> 3)] & 0xff;
+		int shift = 8 - (bit & 7) - bitsPerPixel;
+		return (b >> shift) & pixelMask;
+	}
+
+	private void setPackedValue(int x, int y, int value) {
+		int bit = bitOffset + x * bitsPerPixel;
+		int index = offset + y * scanlineStride + (bit >> 3);
+		int shift = 8 - (bit & 7) - bitsPerPixel;
+		int b = byteData[index] & ~(pixelMask << shift);
+		byteData[index] = (byte) (b | ((value & pixelMask) << shift));
+	}
+
+	/** gray level or colour index that setRGB() would store for rgb.
+	 *
+	 * uses the ColorModel once per distinct rgb (within a small cache).
+	 *
+	 * @param rgb
+	 * @return
+	 */
+	private int getValue(int rgb) {
+		int slot = (rgb ^ (rgb >>> 8) ^ (rgb >>> 16)) & (CACHE_SIZE - 1);
+		if (cachedValue[slot] >= 0 && cachedRgb[slot] == rgb) {
+			return cachedValue[slot];
+		}
+		Object data = image.getColorModel().getDataElements(rgb, null);
+		int value = ((byte[]) data)[0] & 0xff;
+		cachedRgb[slot] = rgb;
+		cachedValue[slot] = value;
+		return value;
+	}
+}
@@ -13,9 +13,11 @@ import org.xmlcml.graphics.svg.SVGG;
 import org.xmlcml.graphics.svg.SVGSVG;
 import org.xmlcml.image.colour.ColorAnalyzer;
 import org.xmlcml.image.colour.ColorUtilities;
+import org.xmlcml.image.pixel.IslandThinning;
 import org.xmlcml.image.pixel.MainPixelProcessor;
 import org.xmlcml.image.pixel.PixelIsland;
 import org.xmlcml.image.pixel.PixelIslandList;
+import org.xmlcml.image.processing.BitParallelThinning;
 import org.xmlcml.image.processing.Thinning;
 import org.xmlcml.image.processing.ZhangSuenThinning;
 import org.xmlcml.image.slice.XSlice;
@@ -78,6 +80,8 @@ public class ImageProcessor {
 
 	private BufferedImage thinnedImage;
 
+	private BinaryRaster binaryRaster;
+
 	public ImageProcessor() {
 		setDefaults();
 		clearVariables();
@@ -157,7 +161,18 @@ public class ImageProcessor {
 	}
 
 	public BufferedImage processImageFile(File file) {
-		
+		checkImageFile(file);
+		try {
+			inputFile = file;
+			image = ImageIO.read(file);
+			processImage(image);
+			return image;
+		} catch (Exception e) {
+			throw new RuntimeException("Bad image: " + file, e);
+		}
+	}
+
+	private void checkImageFile(File file) {
 		if (file == null) {
 			throw new RuntimeException("Image file is null: "
 					+ file);
@@ -169,14 +184,44 @@ public class ImageProcessor {
 				throw new RuntimeException("Image file is directory: "
 						+ file);
 		}
-		try {
-			inputFile = file;
-			image = ImageIO.read(file);
-			processImage(image);
-			return image;
-		} catch (Exception e) {
-			throw new RuntimeException("Bad image: " + file, e);
+	}
+
+	/** binarizes and thins an image file too large to read as a BufferedImage.
+	 * 
+	 * the file is read in strips into a TiledBinaryRaster (see TiledBinaryRaster.readImageFile())
+	 * which is then thinned in place. No image is created and no debug images are written;
+	 * getOrCreatePixelIslandList() flood-fills the raster.
+	 * 
+	 * the caller should close() the raster when finished with it.
+	 * 
+	 * @param file
+	 * @return binarized (and thinned if thinning is set) raster
+	 */
+	public BinaryRaster processLargeImageFile(File file) {
+		checkImageFile(file);
+		inputFile = file;
+		islandList = null;
+		mainProcessor.clearVariables();
+		image = null;
+		binarizedImage = null;
+		thinnedImage = null;
+		binaryRaster = TiledBinaryRaster.readImageFile(file, binarize, threshold);
+		if (thinning != null) {
+			thinning.setBinary(binaryRaster);
+			thinning.doThinning();
+			binaryRaster = thinning.getBinary();
+			setThinnedIslands();
 		}
+		mainProcessor.setBinaryRaster(binaryRaster);
+		return binaryRaster;
+	}
+
+	/** raster created by processLargeImageFile().
+	 * 
+	 * @return null if not used
+	 */
+	public BinaryRaster getBinaryRaster() {
+		return binaryRaster;
 	}
 
 	public File getInputFile() {
@@ -188,6 +233,7 @@ public class ImageProcessor {
 		mainProcessor.clearVariables();
 		binarizedImage = null;
 		thinnedImage = null;
+		binaryRaster = null;
 		this.setImage(img);
 		if (debug) {
 			String filename = TARGET + "/" + base + "/" + RAW_IMAGE_PNG;
@@ -205,6 +251,7 @@ public class ImageProcessor {
 		if (thinning != null) {
 			image = ImageUtil.thin(this.image, thinning);
 			this.thinnedImage = this.image;
+			setThinnedIslands();
 			if (debug) {
 				String filename = TARGET + "/" + base + "/" + THINNED_PNG;
 				ImageIOUtil.writeImageQuietly(this.image, filename);
@@ -213,6 +260,15 @@ public class ImageProcessor {
 		return this.image;
 	}
 
+	/** passes islands made by IslandThinning to the pixel processor.
+	 * 
+	 */
+	private void setThinnedIslands() {
+		if (thinning instanceof IslandThinning) {
+			mainProcessor.setThinnedIslands(((IslandThinning) thinning).getIslandList());
+		}
+	}
+
 	public Thinning getThinning() {
 		return thinning;
 	}
@@ -416,7 +472,7 @@ public class ImageProcessor {
 		System.err.println("       " + THRESH + " " + THRESH1
 				+ "    threshold (default: " + getDefaultThreshold() + ")");
 		System.err.println("       " + THINNING + " " + THINNING1
-				+ "    thinning ('none', 'z' (ZhangSuen))");
+				+ "    thinning ('none', 'z' (ZhangSuen), 'w' (ZhangSuen, 64 pixels at a time), 'i' (ZhangSuen, island by island))");
 	}
 
 	protected void parseArgs(ArgIterator argIterator) {
@@ -505,6 +561,10 @@ public class ImageProcessor {
 			setThinning(null);
 		} else if (thinningS.equalsIgnoreCase("z")) {
 			setThinning(new ZhangSuenThinning());
+		} else if (thinningS.equalsIgnoreCase("w")) {
+			setThinning(new BitParallelThinning());
+		} else if (thinningS.equalsIgnoreCase("i")) {
+			setThinning(new IslandThinning());
 		} else {
 			LOG.error("unknown thinning argument: " + thinningS);
 		}
@@ -578,9 +638,11 @@ public class ImageProcessor {
 		if (xSliceList == null) {
 			SVGG g = new SVGG();
 			xSliceList = new XSliceList();
-			int width = image.getWidth();
+			BinaryRaster black = BinaryRaster.createFromBlackPixels(image);
+			BinaryRaster white = BinaryRaster.createFromPixels(image, 0xffffffff);
+			int width = black.getWidth();
 			for (int x = 0; x < width; x++) {
-				XSlice xSlice = XSlice.getBinarySlice(image, x);
+				XSlice xSlice = XSlice.getBinarySlice(black, white, x);
 				if (xSlice.size() > 0) {
 					xSliceList.add(xSlice);
 					SVGG gg = xSlice.getSVGG();
@@ -97,12 +97,14 @@ public class ImageUtil {
 		clipHeight = Math.min(clipHeight, imageHeight - yMin);
 		if (clipWidth > 0 && clipHeight > 0) {
 			subImage = new BufferedImage(clipWidth, clipHeight, image.getType());
-			for (int i = 0; i < clipWidth; i++) {
-				int xx = i + xMin;
-				for (int j = 0; j < clipHeight; j++) {
-					int yy = j + yMin;
-					int rgb = image.getRGB(xx, yy);
-					subImage.setRGB(i, j,  rgb);
+			ImagePixelAccessor from = new ImagePixelAccessor(image);
+			ImagePixelAccessor to = new ImagePixelAccessor(subImage);
+			for (int j = 0; j < clipHeight; j++) {
+				int yy = j + yMin;
+				for (int i = 0; i < clipWidth; i++) {
+					int xx = i + xMin;
+					int rgb = from.getRGB(xx, yy);
+					to.setRGB(i, j,  rgb);
 				}
 			}
 		}
@@ -336,16 +338,18 @@ public class ImageUtil {
 			return null;
 		}
 		BufferedImage image = new BufferedImage(image0.getWidth() + 2*xmargin,  image0.getHeight()+2*ymargin, image0.getType());
+		ImagePixelAccessor from = new ImagePixelAccessor(image0);
+		ImagePixelAccessor to = new ImagePixelAccessor(image);
 		// set to colour
-		for (int i = 0; i < image0.getWidth() + 2 * xmargin; i++) {
-			for (int j = 0; j < image0.getHeight() + 2 * ymargin; j++) {
-				image.setRGB(i, j, color);
+		for (int j = 0; j < image0.getHeight() + 2 * ymargin; j++) {
+			for (int i = 0; i < image0.getWidth() + 2 * xmargin; i++) {
+				to.setRGB(i, j, color);
 			}
 		}
 		// copy
-		for (int i = 0; i < image0.getWidth(); i++) {
-			for (int j = 0; j < image0.getHeight(); j++) {
-				image.setRGB(i + xmargin, j + ymargin, image0.getRGB(i, j));
+		for (int j = 0; j < image0.getHeight(); j++) {
+			for (int i = 0; i < image0.getWidth(); i++) {
+				to.setRGB(i + xmargin, j + ymargin, from.getRGB(i, j));
 			}
 		}
 		return image;
@@ -363,47 +367,45 @@ public class ImageUtil {
 		int width = image.getWidth();
 		int height = image.getHeight();
 		BufferedImage image1 = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-		for (int i = 1; i < width - 1; i++) {
-			for (int j = 1; j < height - 1; j++) {
-				int rgbij = image.getRGB(i, j);
-				if (!isWhite(ImageUtil.getRGBChannels(rgbij), 200)) {
-					int[] rgbx =  averageOverNeighbours(image, i, j);
-					rgbij = ImageUtil.setRgb(rgbx[0], rgbx[1], rgbx[2]);
+		ImagePixelAccessor from = new ImagePixelAccessor(image);
+		ImagePixelAccessor to = new ImagePixelAccessor(image1);
+		for (int j = 1; j < height - 1; j++) {
+			for (int i = 1; i < width - 1; i++) {
+				int rgbij = from.getRGB(i, j);
+				if (!isWhite(rgbij, 200)) {
+					rgbij = averageOverNeighbours(from, i, j);
 				}
-				image1.setRGB(i, j, rgbij); 
+				to.setRGB(i, j, rgbij); 
 			}
 		}
 		return image1;
 	}
 
-	private static int[] averageOverNeighbours(BufferedImage image, int i, int j) {
+	private static int averageOverNeighbours(ImagePixelAccessor image, int i, int j) {
 		int count = 0;
-		int[] rgbs = new int[3];
+		int red = 0;
+		int green = 0;
+		int blue = 0;
 		for (int k = -1; k <= 1; k++) {
 			for (int l = -1; l <= 1; l++) {
 				int rgb = image.getRGB(i + k, j + l);
-				int[] rgbx = ImageUtil.getRGBChannels(rgb);
-				if (!isWhite(rgbx, 250)) {
-					for (int m = 0; m < 3; m++) {
-						rgbs[m] += rgbx[m];
-					}
+				if (!isWhite(rgb, 250)) {
+					red += getRed(rgb);
+					green += getGreen(rgb);
+					blue += getBlue(rgb);
 					count++;
 				}
 			}
 		}
-		if (count != 0) {
-			for (int m = 0; m < 3; m++) {
-				rgbs[m] /= count;
-			}
-		} else {
-			rgbs = ImageUtil.getRGBChannels(image.getRGB(i, j));
+		if (count == 0) {
+			int rgb = image.getRGB(i, j);
+			return ImageUtil.setRgb(getRed(rgb), getGreen(rgb), getBlue(rgb));
 		}
-		return rgbs;
+		return ImageUtil.setRgb(red / count, green / count, blue / count);
 	}
 
-
-	private static boolean isWhite(int[] rgbx, int thresh) {
-		return rgbx[0] > thresh && rgbx[1] > thresh && rgbx[2] > thresh;
+	private static boolean isWhite(int rgb, int thresh) {
+		return getRed(rgb) > thresh && getGreen(rgb) > thresh && getBlue(rgb) > thresh;
 	}
 
 	/** flatten colours in image.
@@ -427,10 +429,11 @@ public class ImageUtil {
 		int width = image.getWidth();
 		int height = image.getHeight();
 		BufferedImage image1 = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-		for (int i = 0; i < width; i++) {
-			for (int j = 0; j < height; j++) {
-				image1.setRGB(i, j, 0);
-				flattenPixel(image, i, j, delta, image1);
+		ImagePixelAccessor from = new ImagePixelAccessor(image);
+		ImagePixelAccessor to = new ImagePixelAccessor(image1);
+		for (int j = 0; j < height; j++) {
+			for (int i = 0; i < width; i++) {
+				to.setRGB(i, j, flattenRGB(from.getRGB(i, j), delta));
 			}
 		}
 		return image1;
@@ -444,7 +447,10 @@ public class ImageUtil {
 	 * @param delta distance between values (power of 2)
 	 */
 	public static void flattenPixel(BufferedImage image, int i, int j, int delta, BufferedImage image1) {
-		int rgb = image.getRGB(i, j);
+		image1.setRGB(i, j, flattenRGB(image.getRGB(i, j), delta));
+	}
+
+	private static int flattenRGB(int rgb, int delta) {
 		int r = getRed(rgb);
 		int g = getGreen(rgb);
 		int b = getBlue(rgb);
@@ -453,8 +459,7 @@ public class ImageUtil {
 		g = flattenChannel(g, delta);
 		b = flattenChannel(b, delta);
 		
-		int col = (r << 16) | (g << 8) | b;
-		image1.setRGB(i, j, col);
+		return (r << 16) | (g << 8) | b;
 	}
 
 	/**
@@ -0,0 +1,464 @@
+package org.xmlcml.image;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.image.colour.ColorUtilities;
+
+/** BinaryRaster held in a memory-mapped scratch file.
+ *
+ * For scans too large to hold as a BufferedImage (e.g. 20000 x 30000). The raster is
+ * cut into square tiles of tileSize x tileSize pixels (tileSize a power of 2, at least 64),
+ * each stored as tileSize rows of tileSize/64 longs. A row of tiles (a band) is contiguous
+ * in the file and is mapped through FileChannel only when a pixel in it is first touched;
+ * at most maxMappedBands bands are mapped at once and the least recently used is dropped
+ * (the operating system writes it back and the buffer is unmapped when collected).
+ *
+ * Pixels and words are read and written through the same methods as BinaryRaster so
+ * FloodFill, Thinning and XSlice work unchanged. getWords() is not available.
+ *
+ * At 1 bit per pixel a 20000 x 30000 page needs about 75 Mb of file. Not thread-safe.
+ *
+ * Call close() (or delete the scratch file) when finished; temporary scratch files are
+ * also deleted on exit.
+ *
+ * @author pm286
+ *
+ */
+public class TiledBinaryRaster extends BinaryRaster implements Closeable {
+
+	private final static Logger LOG = Logger.getLogger(TiledBinaryRaster.class);
+
+	public static final int DEFAULT_TILE_SIZE = 256;
+	public static final int DEFAULT_MAX_MAPPED_BANDS = 32;
+	/** pixels read from the image file at once (rounded to whole bands) */
+	public static final int DEFAULT_STRIP_PIXELS = 1 << 24;
+
+	private static final int LONG_BYTES = 8;
+
+	private int tileSize;
+	private int tileShift;
+	private int tileMask;
+	private int wordsPerTileRow;
+	private int longsPerTile;
+	private int tilesAcross;
+	private int tilesDown;
+	private long bandBytes;
+	private int maxMappedBands;
+
+	private File scratchFile;
+	private boolean temporary;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private Map<Integer, LongBuffer> bandByIndex;
+	private int lastBandIndex = -1;
+	private LongBuffer lastBand;
+
+	/** creates white raster in a temporary scratch file.
+	 *
+	 * @param width
+	 * @param height
+	 */
+	public TiledBinaryRaster(int width, int height) {
+		this(width, height, DEFAULT_TILE_SIZE, null);
+	}
+
+	/** creates white raster.
+	 *
+	 * @param width
+	 * @param height
+	 * @param tileSize power of 2, at least 64
+	 * @param scratchFile file for the tiles (overwritten); if null a temporary file is used
+	 */
+	public TiledBinaryRaster(int width, int height, int tileSize, File scratchFile) {
+		super(width, height, false);
+		if (tileSize < WORD_SIZE || Integer.bitCount(tileSize) != 1) {
+			throw new RuntimeException("tileSize must be a power of 2 and at least "+WORD_SIZE+": "+tileSize);
+		}
+		this.tileSize = tileSize;
+		this.tileShift = Integer.numberOfTrailingZeros(tileSize);
+		this.tileMask = tileSize - 1;
+		this.wordsPerTileRow = tileSize / WORD_SIZE;
+		this.longsPerTile = tileSize * wordsPerTileRow;
+		this.tilesAcross = (width + tileMask) >> tileShift;
+		this.tilesDown = (height + tileMask) >> tileShift;
+		this.bandBytes = (long) tilesAcross * longsPerTile * LONG_BYTES;
+		if (bandBytes > Integer.MAX_VALUE) {
+			throw new RuntimeException("raster too wide for tileSize "+tileSize+": "+width);
+		}
+		this.maxMappedBands = DEFAULT_MAX_MAPPED_BANDS;
+		openScratchFile(scratchFile);
+	}
+
+	private void openScratchFile(File file) {
+		try {
+			if (file == null) {
+				file = File.createTempFile("raster", ".tiles");
+				file.deleteOnExit();
+				temporary = true;
+			}
+			this.scratchFile = file;
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			// new length reads as zeros, i.e. white
+			randomAccessFile.setLength(0L);
+			randomAccessFile.setLength(bandBytes * tilesDown);
+			channel = randomAccessFile.getChannel();
+		} catch (IOException e) {
+			throw new RuntimeException("cannot create raster file: "+file, e);
+		}
+		bandByIndex = new LinkedHashMap<Integer, LongBuffer>(16, 0.75f, true);
+	}
+
+	/** reads an image file a strip at a time into a tiled raster.
+	 *
+	 * the whole image is never in memory. If binarize is true each strip is treated
+	 * as ImageProcessor.processImage() treats a whole image (transparent to white, then
+	 * ImageUtil.boofCVBinarization()); both are per-pixel so the result is the same as
+	 * for the whole image. Pixels which are then exactly black are set.
+	 *
+	 * Readers for sequential formats (e.g. PNG) decode the file again for each strip,
+	 * so this trades time for memory.
+	 *
+	 * @param imageFile
+	 * @param binarize
+	 * @param threshold used if binarize is true
+	 * @return
+	 */
+	public static TiledBinaryRaster readImageFile(File imageFile, boolean binarize, int threshold) {
+		return readImageFile(imageFile, binarize, threshold, DEFAULT_TILE_SIZE, DEFAULT_STRIP_PIXELS);
+	}
+
+	/** reads an image file a strip at a time into a tiled raster.
+	 *
+	 * @param imageFile
+	 * @param binarize
+	 * @param threshold used if binarize is true
+	 * @param tileSize
+	 * @param stripPixels approximate pixels per strip; strips are whole bands of tiles
+	 * @return
+	 */
+	public static TiledBinaryRaster readImageFile(File imageFile, boolean binarize, int threshold,
+			int tileSize, int stripPixels) {
+		ImageInputStream stream = null;
+		ImageReader reader = null;
+		try {
+			stream = ImageIO.createImageInputStream(imageFile);
+			if (stream == null) {
+				throw new RuntimeException("cannot read image file: "+imageFile);
+			}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {
+				throw new RuntimeException("no image reader for: "+imageFile);
+			}
+			reader = readers.next();
+			reader.setInput(stream);
+			int width = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			TiledBinaryRaster raster = new TiledBinaryRaster(width, height, tileSize, null);
+			int stripHeight = raster.getStripHeight(stripPixels);
+			LOG.trace("reading "+imageFile+" ("+width+" x "+height+") in strips of "+stripHeight);
+			for (int y0 = 0; y0 < height; y0 += stripHeight) {
+				int h = Math.min(stripHeight, height - y0);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(new Rectangle(0, y0, width, h));
+				BufferedImage strip = reader.read(0, param);
+				if (binarize) {
+					ColorUtilities.convertTransparentToWhite(strip);
+					strip = ImageUtil.boofCVBinarization(strip, threshold);
+				}
+				raster.setBlackPixels(strip, y0);
+			}
+			return raster;
+		} catch (IOException e) {
+			throw new RuntimeException("cannot read image file: "+imageFile, e);
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+			closeQuietly(stream);
+		}
+	}
+
+	/** rows per strip holding about stripPixels pixels, a multiple of tileSize.
+	 *
+	 * @param stripPixels
+	 * @return
+	 */
+	int getStripHeight(int stripPixels) {
+		int bands = Math.max(1, stripPixels / Math.max(1, getWidth()) / tileSize);
+		return bands * tileSize;
+	}
+
+	/** sets every exactly black pixel of image, offset by y0 rows.
+	 *
+	 * @param image
+	 * @param y0 raster row of first image row
+	 */
+	public void setBlackPixels(BufferedImage image, int y0) {
+		ImagePixelAccessor accessor = new ImagePixelAccessor(image);
+		int black = Color.BLACK.getRGB();
+		int w = Math.min(image.getWidth(), getWidth());
+		int h = Math.min(image.getHeight(), getHeight() - y0);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				if (accessor.getRGB(x, y) == black) {
+					set(x, y + y0);
+				}
+			}
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				LOG.warn("cannot close: "+e);
+			}
+		}
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public File getScratchFile() {
+		return scratchFile;
+	}
+
+	/** maximum number of bands of tiles mapped at once.
+	 *
+	 * @param maxMappedBands at least 1
+	 */
+	public void setMaxMappedBands(int maxMappedBands) {
+		this.maxMappedBands = Math.max(1, maxMappedBands);
+	}
+
+	public int getMaxMappedBands() {
+		return maxMappedBands;
+	}
+
+	/** number of bands currently mapped.
+	 *
+	 * @return
+	 */
+	public int getMappedBandCount() {
+		return bandByIndex == null ? 0 : bandByIndex.size();
+	}
+
+	/** mapped band containing row y.
+	 *
+	 * @param y must be inside raster
+	 * @return
+	 */
+	private LongBuffer getBand(int y) {
+		int index = y >> tileShift;
+		if (index == lastBandIndex) {
+			return lastBand;
+		}
+		LongBuffer band = bandByIndex.get(index);
+		if (band == null) {
+			band = mapBand(index);
+			bandByIndex.put(index, band);
+			if (bandByIndex.size() > maxMappedBands) {
+				Iterator<Integer> iterator = bandByIndex.keySet().iterator();
+				iterator.next();
+				iterator.remove();
+			}
+		}
+		lastBandIndex = index;
+		lastBand = band;
+		return band;
+	}
+
+	private LongBuffer mapBand(int index) {
+		if (channel == null) {
+			throw new RuntimeException("raster is closed: "+scratchFile);
+		}
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, index * bandBytes, bandBytes);
+			buffer.order(ByteOrder.nativeOrder());
+			return buffer.asLongBuffer();
+		} catch (IOException e) {
+			throw new RuntimeException("cannot map band "+index+" of "+scratchFile, e);
+		}
+	}
+
+	/** index of word in its band.
+	 *
+	 * @param y row
+	 * @param wordIndex word in row
+	 * @return
+	 */
+	private int getBandOffset(int y, int wordIndex) {
+		int wordsShift = tileShift - 6;
+		return ((wordIndex >> wordsShift) * longsPerTile) +
+				((y & tileMask) * wordsPerTileRow) +
+				(wordIndex & (wordsPerTileRow - 1));
+	}
+
+	@Override
+	public BinaryRaster createBlank() {
+		File dir = temporary ? null : scratchFile.getParentFile();
+		File file = null;
+		if (dir != null) {
+			try {
+				file = File.createTempFile("raster", ".tiles", dir);
+				file.deleteOnExit();
+			} catch (IOException e) {
+				throw new RuntimeException("cannot create raster file in: "+dir, e);
+			}
+		}
+		TiledBinaryRaster raster = new TiledBinaryRaster(getWidth(), getHeight(), tileSize, file);
+		raster.temporary = true;
+		raster.setMaxMappedBands(maxMappedBands);
+		return raster;
+	}
+
+	@Override
+	public boolean get(int x, int y) {
+		if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) {
+			return false;
+		}
+		return (getBand(y).get(getBandOffset(y, x >> 6)) & (1L << x)) != 0;
+	}
+
+	@Override
+	public int getBit(int x, int y) {
+		if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) {
+			return 0;
+		}
+		return (int) (getBand(y).get(getBandOffset(y, x >> 6)) >>> x) & 1;
+	}
+
+	@Override
+	public void set(int x, int y) {
+		LongBuffer band = getBand(y);
+		int offset = getBandOffset(y, x >> 6);
+		band.put(offset, band.get(offset) | (1L << x));
+	}
+
+	@Override
+	public void clear(int x, int y) {
+		LongBuffer band = getBand(y);
+		int offset = getBandOffset(y, x >> 6);
+		band.put(offset, band.get(offset) & ~(1L << x));
+	}
+
+	@Override
+	public long getWord(int y, int wordIndex) {
+		if (y < 0 || y >= getHeight() || wordIndex < 0 || wordIndex >= getWordsPerRow()) {
+			return 0L;
+		}
+		return getBand(y).get(getBandOffset(y, wordIndex));
+	}
+
+	@Override
+	public void setWord(int y, int wordIndex, long word) {
+		if (wordIndex == getWordsPerRow() - 1) {
+			word &= getLastWordMask();
+		}
+		getBand(y).put(getBandOffset(y, wordIndex), word);
+	}
+
+	@Override
+	public int getRowOffset(int y) {
+		throw new RuntimeException("tiled raster has no in-memory words");
+	}
+
+	@Override
+	public boolean isRowEmpty(int y) {
+		int wordsPerRow = getWordsPerRow();
+		for (int w = 0; w < wordsPerRow; w++) {
+			if (getWord(y, w) != 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int nextSetBit(int x, int y) {
+		if (x < 0) {
+			x = 0;
+		}
+		if (x >= getWidth() || y < 0 || y >= getHeight()) {
+			return -1;
+		}
+		int wordsPerRow = getWordsPerRow();
+		int w = x >> 6;
+		long word = getWord(y, w) & (-1L << x);
+		while (true) {
+			if (word != 0L) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++w >= wordsPerRow) {
+				return -1;
+			}
+			word = getWord(y, w);
+		}
+	}
+
+	@Override
+	public int cardinality() {
+		int count = 0;
+		int wordsPerRow = getWordsPerRow();
+		for (int y = 0; y < getHeight(); y++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				count += Long.bitCount(getWord(y, w));
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void clearAll() {
+		int wordsPerRow = getWordsPerRow();
+		for (int y = 0; y < getHeight(); y++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				setWord(y, w, 0L);
+			}
+		}
+	}
+
+	/** unmaps tiles and closes the scratch file.
+	 *
+	 * a temporary scratch file is deleted (or, if the platform refuses while it is
+	 * still mapped, deleted on exit). The raster cannot be used afterwards.
+	 */
+	@Override
+	public void close() {
+		bandByIndex.clear();
+		lastBandIndex = -1;
+		lastBand = null;
+		closeQuietly(channel);
+		closeQuietly(randomAccessFile);
+		channel = null;
+		randomAccessFile = null;
+		if (temporary && scratchFile.exists() && !scratchFile.delete()) {
+			LOG.debug("cannot delete (yet): "+scratchFile);
+		}
+	}
+
+	public String toString() {
+		return "tiled " + super.toString() + "; tiles: " + tilesAcross + " x " + tilesDown + " of " + tileSize;
+	}
+}
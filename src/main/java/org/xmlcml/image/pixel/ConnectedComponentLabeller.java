@@ -0,0 +1,419 @@
+package org.xmlcml.image.pixel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.TiledBinaryRaster;
+
+/** two-pass connected component labelling with union-find.
+ *
+ * The first pass scans the raster in row order giving each black pixel the label of an
+ * already labelled neighbour (west and the row above) or a new provisional label, and
+ * records where two provisional labels meet in a union-find table (path halving; the
+ * smaller label is always the root). The second pass replaces provisional labels by
+ * final ones.
+ *
+ * Final labels run from 1 in the raster order of each component's first pixel, which is
+ * the order in which FloodFill finds islands. White runs are skipped a word at a time
+ * with BinaryRaster.nextSetBit().
+ *
+ * The first pass also accumulates PixelIslandStats (area, bounding box, moments,
+ * perimeter) for each provisional label; these are summed into the final labels and
+ * returned with the labels.
+ *
+ * With a ForkJoinPool the image is cut into horizontal bands which are labelled
+ * independently; labels that meet across the seams between bands are then joined in a
+ * lock-free union-find, again always keeping the smaller label as root, so the labels
+ * are exactly those of the sequential scan.
+ *
+ * A labeller holds state while labelling and must not label two rasters at once.
+ *
+ * @author pm286
+ *
+ */
+public class ConnectedComponentLabeller {
+
+	private final static Logger LOG = Logger.getLogger(ConnectedComponentLabeller.class);
+
+	/** bands are not made thinner than this. */
+	public static final int MIN_BAND_HEIGHT = 32;
+	/** bands per pool thread, so that uneven bands still keep all threads busy. */
+	public static final int BANDS_PER_THREAD = 4;
+
+	private boolean diagonal;
+	private BinaryRaster raster;
+	private int width;
+	private int height;
+	private int[] labels;
+	private Band[] bands;
+
+	/** labeller with 8-connectivity if diagonal else 4-connectivity.
+	 *
+	 * @param diagonal
+	 */
+	public ConnectedComponentLabeller(boolean diagonal) {
+		this.diagonal = diagonal;
+	}
+
+	public boolean getDiagonal() {
+		return diagonal;
+	}
+
+	/** labels the black pixels of raster on the calling thread.
+	 *
+	 * @param raster
+	 * @return labels (not yet indexed)
+	 */
+	public PixelLabelRaster label(BinaryRaster raster) {
+		return label(raster, null);
+	}
+
+	/** labels the black pixels of raster in bands on pool.
+	 *
+	 * @param raster
+	 * @param pool if null (or raster is a TiledBinaryRaster, which is not safe for
+	 *     concurrent reads) label on the calling thread
+	 * @return labels (not yet indexed); the same as label(raster)
+	 */
+	public PixelLabelRaster label(BinaryRaster raster, ForkJoinPool pool) {
+		if (raster instanceof TiledBinaryRaster) {
+			pool = null;
+		}
+		this.raster = raster;
+		this.width = raster.getWidth();
+		this.height = raster.getHeight();
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new RuntimeException("image too large for label raster: "+width+" x "+height);
+		}
+		labels = new int[width * height];
+		createBands(height, pool == null ? 1 : pool.getParallelism() * BANDS_PER_THREAD);
+		int labelCount;
+		PixelIslandStats stats;
+		try {
+			invokeAll(pool, new BandTask() {
+				public void run(Band band) {
+					band.label();
+				}
+			});
+			final int[] finalLabels = joinBands(pool);
+			labelCount = finalLabels[0];
+			stats = new PixelIslandStats(labelCount);
+			for (Band band : bands) {
+				band.addStats(stats, finalLabels);
+			}
+			invokeAll(pool, new BandTask() {
+				public void run(Band band) {
+					band.relabel(finalLabels);
+				}
+			});
+		} finally {
+			this.raster = null;
+			bands = null;
+		}
+		LOG.trace("labels: "+labelCount);
+		PixelLabelRaster labelRaster = new PixelLabelRaster(width, height, labels, labelCount);
+		labelRaster.setStats(stats);
+		labels = null;
+		return labelRaster;
+	}
+
+	private void createBands(int height, int maxBands) {
+		int bandCount = Math.max(1, Math.min(maxBands, height / MIN_BAND_HEIGHT));
+		bands = new Band[bandCount];
+		for (int i = 0; i < bandCount; i++) {
+			bands[i] = new Band(i, (int) ((long) height * i / bandCount), (int) ((long) height * (i + 1) / bandCount));
+		}
+	}
+
+	/** numbers the band labels globally and joins them across the seams.
+	 *
+	 * @param pool
+	 * @return final label for each global band label; element 0 is the number of final labels
+	 */
+	private int[] joinBands(ForkJoinPool pool) {
+		int total = 0;
+		for (Band band : bands) {
+			band.offset = total;
+			total += band.count;
+		}
+		final AtomicIntegerArray parent = new AtomicIntegerArray(total + 1);
+		for (int label = 1; label <= total; label++) {
+			parent.set(label, label);
+		}
+		if (bands.length > 1) {
+			invokeAll(pool, new BandTask() {
+				public void run(Band band) {
+					band.joinAbove(parent);
+				}
+			});
+		}
+		int[] finalLabels = new int[total + 1];
+		int count = 0;
+		for (int label = 1; label <= total; label++) {
+			int root = find(parent, label);
+			finalLabels[label] = (root == label) ? ++count : finalLabels[root];
+		}
+		finalLabels[0] = count;
+		return finalLabels;
+	}
+
+	private static int find(AtomicIntegerArray parent, int label) {
+		int next = parent.get(label);
+		while (next != label) {
+			int nextNext = parent.get(next);
+			parent.compareAndSet(label, next, nextNext);
+			label = next;
+			next = parent.get(label);
+		}
+		return label;
+	}
+
+	/** joins the sets of label and label1; the smaller root becomes the root.
+	 *
+	 * a root is only ever changed from itself to a smaller root, so concurrent unions
+	 * end with the smallest label of each set as its root whatever the order.
+	 */
+	private static void union(AtomicIntegerArray parent, int label, int label1) {
+		while (true) {
+			label = find(parent, label);
+			label1 = find(parent, label1);
+			if (label == label1) {
+				return;
+			}
+			if (label < label1) {
+				int temp = label;
+				label = label1;
+				label1 = temp;
+			}
+			if (parent.compareAndSet(label, label, label1)) {
+				return;
+			}
+		}
+	}
+
+	private abstract class BandTask {
+		abstract void run(Band band);
+	}
+
+	private void invokeAll(ForkJoinPool pool, final BandTask task) {
+		if (pool == null) {
+			for (Band band : bands) {
+				task.run(band);
+			}
+			return;
+		}
+		List<Callable<Object>> callables = new ArrayList<Callable<Object>>();
+		for (final Band band : bands) {
+			callables.add(new Callable<Object>() {
+				public Object call() {
+					task.run(band);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> future : pool.invokeAll(callables)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("labelling interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("cannot label band", e.getCause());
+		}
+	}
+
+	/** rows top ... bottom - 1 with their own provisional labels.
+	 *
+	 * after label() the labels in the band are provisional; bandLabels maps them to
+	 * band labels 1 ... count in the raster order of their first pixel in the band, and
+	 * band label k is global label offset + k.
+	 */
+	private class Band {
+
+		private int index;
+		private int top;
+		private int bottom;
+		// union-find table of provisional labels; parent[0] unused
+		private int[] parent;
+		private int provisionalCount;
+		// by provisional label
+		private PixelIslandStats stats;
+		private int[] bandLabels;
+		private int count;
+		private int offset;
+
+		private Band(int index, int top, int bottom) {
+			this.index = index;
+			this.top = top;
+			this.bottom = bottom;
+		}
+
+		private void label() {
+			parent = new int[64];
+			provisionalCount = 0;
+			stats = new PixelIslandStats(0);
+			for (int y = top; y < bottom; y++) {
+				labelRow(y);
+			}
+			resolve();
+			parent = null;
+		}
+
+		private void labelRow(int y) {
+			int row = y * width;
+			int above = row - width;
+			for (int x = raster.nextSetBit(0, y); x >= 0; x = raster.nextSetBit(x + 1, y)) {
+				int label = 0;
+				if (x > 0) {
+					label = labels[row + x - 1];
+				}
+				if (y > top) {
+					label = merge(label, labels[above + x]);
+					if (diagonal) {
+						if (x > 0) {
+							label = merge(label, labels[above + x - 1]);
+						}
+						if (x < width - 1) {
+							label = merge(label, labels[above + x + 1]);
+						}
+					}
+				}
+				label = label == 0 ? newLabel() : label;
+				labels[row + x] = label;
+				stats.addPixel(label, x, y, countEdges(x, y));
+			}
+		}
+
+		/** sides of (x,y) that are white or outside the image.
+		 */
+		private int countEdges(int x, int y) {
+			int edges = 4;
+			if (x > 0 && labels[y * width + x - 1] != 0) {
+				edges--;
+			}
+			if (raster.get(x + 1, y)) {
+				edges--;
+			}
+			if (raster.get(x, y - 1)) {
+				edges--;
+			}
+			if (raster.get(x, y + 1)) {
+				edges--;
+			}
+			return edges;
+		}
+
+		private int newLabel() {
+			provisionalCount++;
+			if (provisionalCount == parent.length) {
+				parent = Arrays.copyOf(parent, parent.length * 2);
+			}
+			parent[provisionalCount] = provisionalCount;
+			stats.ensureLabel(provisionalCount);
+			return provisionalCount;
+		}
+
+		/** label for pixel touching provisional labels label and neighbour.
+		 *
+		 * @param label 0 if none yet
+		 * @param neighbour 0 if white
+		 * @return root of the union
+		 */
+		private int merge(int label, int neighbour) {
+			if (neighbour == 0) {
+				return label;
+			}
+			if (label == 0 || label == neighbour) {
+				return neighbour;
+			}
+			int root = find(label);
+			int root1 = find(neighbour);
+			if (root < root1) {
+				parent[root1] = root;
+				return root;
+			}
+			parent[root] = root1;
+			return root1;
+		}
+
+		private int find(int label) {
+			while (parent[label] != label) {
+				parent[label] = parent[parent[label]];
+				label = parent[label];
+			}
+			return label;
+		}
+
+		/** maps provisional labels to band labels.
+		 *
+		 * a root is always smaller than the other labels in its set so one pass in
+		 * increasing order numbers the sets by first pixel.
+		 */
+		private void resolve() {
+			bandLabels = new int[provisionalCount + 1];
+			count = 0;
+			for (int label = 1; label <= provisionalCount; label++) {
+				int root = find(label);
+				bandLabels[label] = (root == label) ? ++count : bandLabels[root];
+			}
+		}
+
+		private int getGlobalLabel(int i) {
+			int label = labels[i];
+			return label == 0 ? 0 : offset + bandLabels[label];
+		}
+
+		/** unions the labels of the top row with those touching it in the band above.
+		 *
+		 * @param globalParent
+		 */
+		private void joinAbove(AtomicIntegerArray globalParent) {
+			if (index == 0) {
+				return;
+			}
+			Band bandAbove = bands[index - 1];
+			int row = top * width;
+			int above = row - width;
+			for (int x = raster.nextSetBit(0, top); x >= 0; x = raster.nextSetBit(x + 1, top)) {
+				int label = getGlobalLabel(row + x);
+				int xmin = (diagonal && x > 0) ? x - 1 : x;
+				int xmax = (diagonal && x < width - 1) ? x + 1 : x;
+				for (int xx = xmin; xx <= xmax; xx++) {
+					int labelAbove = bandAbove.getGlobalLabel(above + xx);
+					if (labelAbove != 0) {
+						union(globalParent, label, labelAbove);
+					}
+				}
+			}
+		}
+
+		/** adds the statistics of the provisional labels to their final labels.
+		 *
+		 * @param finalStats
+		 * @param finalLabels
+		 */
+		private void addStats(PixelIslandStats finalStats, int[] finalLabels) {
+			for (int label = 1; label <= provisionalCount; label++) {
+				finalStats.add(finalLabels[offset + bandLabels[label]], stats, label);
+			}
+			stats = null;
+		}
+
+		private void relabel(int[] finalLabels) {
+			for (int i = top * width; i < bottom * width; i++) {
+				if (labels[i] != 0) {
+					labels[i] = finalLabels[offset + bandLabels[labels[i]]];
+				}
+			}
+		}
+	}
+}
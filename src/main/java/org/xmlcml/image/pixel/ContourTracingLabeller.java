@@ -0,0 +1,237 @@
+package org.xmlcml.image.pixel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.image.BinaryRaster;
+
+/** labels islands by tracing their contours (Chang, Chen and Lu 2004).
+ *
+ * One raster scan visits the black pixels. A pixel which is unlabelled with white above
+ * starts the outer contour of a new island, which is traced (and labelled) at once; a
+ * pixel with unvisited white below starts an inner contour (round a hole) of its island.
+ * Any other unlabelled pixel takes the label of its west neighbour. White pixels next to
+ * a traced contour are marked as visited so each contour is traced once.
+ *
+ * Islands are 8-connected and labelled from 1 in raster order of their first pixel,
+ * as by ConnectedComponentLabeller(true), with the same PixelIslandStats. The contours
+ * are kept as PixelContour chain codes and are read with getOuterContour() and
+ * getInnerContours() after label().
+ *
+ * A labeller holds state while labelling and must not label two rasters at once.
+ *
+ * @author pm286
+ *
+ */
+public class ContourTracingLabeller {
+
+	private final static Logger LOG = Logger.getLogger(ContourTracingLabeller.class);
+
+	// white pixels next to a traced contour
+	private static final int VISITED = -1;
+	// start of search from the first pixel of outer and inner contours
+	private static final int OUTER_START = 7;
+	private static final int INNER_START = 3;
+
+	private BinaryRaster raster;
+	private int width;
+	private int height;
+	private int[] labels;
+	private int labelCount;
+	private PixelIslandStats stats;
+	// by label - 1
+	private List<PixelContour> outerContours;
+	private List<List<PixelContour>> innerContours;
+	private byte[] chain;
+	private int chainLength;
+
+	public ContourTracingLabeller() {
+	}
+
+	/** labels the black pixels of raster and traces their contours.
+	 *
+	 * @param raster
+	 * @return labels (not yet indexed)
+	 */
+	public PixelLabelRaster label(BinaryRaster raster) {
+		this.raster = raster;
+		this.width = raster.getWidth();
+		this.height = raster.getHeight();
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new RuntimeException("image too large for label raster: "+width+" x "+height);
+		}
+		labels = new int[width * height];
+		labelCount = 0;
+		stats = new PixelIslandStats(0);
+		outerContours = new ArrayList<PixelContour>();
+		innerContours = new ArrayList<List<PixelContour>>();
+		chain = new byte[256];
+		try {
+			for (int y = 0; y < height; y++) {
+				for (int x = raster.nextSetBit(0, y); x >= 0; x = raster.nextSetBit(x + 1, y)) {
+					labelPixel(x, y);
+				}
+			}
+			for (int i = 0; i < labels.length; i++) {
+				if (labels[i] == VISITED) {
+					labels[i] = 0;
+				}
+			}
+		} finally {
+			this.raster = null;
+			chain = null;
+		}
+		LOG.trace("labels: "+labelCount);
+		PixelLabelRaster labelRaster = new PixelLabelRaster(width, height, labels, labelCount);
+		labelRaster.setStats(stats);
+		labels = null;
+		stats = null;
+		return labelRaster;
+	}
+
+	public int getLabelCount() {
+		return labelCount;
+	}
+
+	/** outer contour of label from the last label().
+	 *
+	 * @param label
+	 * @return
+	 */
+	public PixelContour getOuterContour(int label) {
+		return outerContours.get(label - 1);
+	}
+
+	/** contours round the holes of label from the last label().
+	 *
+	 * @param label
+	 * @return in the order found; empty if no holes
+	 */
+	public List<PixelContour> getInnerContours(int label) {
+		return innerContours.get(label - 1);
+	}
+
+	private void labelPixel(int x, int y) {
+		int offset = y * width + x;
+		int label = labels[offset];
+		if (label == 0 && !raster.get(x, y - 1)) {
+			label = ++labelCount;
+			labels[offset] = label;
+			stats.ensureLabel(label);
+			outerContours.add(trace(x, y, label, OUTER_START, true));
+			innerContours.add(new ArrayList<PixelContour>());
+		}
+		if (y < height - 1 && labels[offset + width] == 0 && !raster.get(x, y + 1)) {
+			if (label == 0) {
+				label = getWestLabel(x, y);
+				labels[offset] = label;
+			}
+			innerContours.get(label - 1).add(trace(x, y, label, INNER_START, false));
+		}
+		if (label == 0) {
+			label = getWestLabel(x, y);
+			labels[offset] = label;
+		}
+		stats.addPixel(label, x, y, countEdges(x, y));
+	}
+
+	/** label of the west neighbour, which is always labelled when a pixel is not on a
+	 * contour already traced.
+	 */
+	private int getWestLabel(int x, int y) {
+		int label = x > 0 ? labels[y * width + x - 1] : 0;
+		if (label <= 0) {
+			throw new RuntimeException("no label west of ("+x+","+y+")");
+		}
+		return label;
+	}
+
+	/** sides of (x,y) that are white or outside the image.
+	 */
+	private int countEdges(int x, int y) {
+		int edges = 4;
+		if (raster.get(x - 1, y)) {
+			edges--;
+		}
+		if (raster.get(x + 1, y)) {
+			edges--;
+		}
+		if (raster.get(x, y - 1)) {
+			edges--;
+		}
+		if (raster.get(x, y + 1)) {
+			edges--;
+		}
+		return edges;
+	}
+
+	/** traces the contour through (startX, startY) and labels its pixels.
+	 *
+	 * ends when the contour returns to the start and would go on to the second point.
+	 *
+	 * @param startX
+	 * @param startY
+	 * @param label
+	 * @param direction where the search for the second point starts
+	 * @param outer
+	 * @return
+	 */
+	private PixelContour trace(int startX, int startY, int label, int direction, boolean outer) {
+		chainLength = 0;
+		int first = findNext(startX, startY, direction);
+		if (first < 0) {
+			// isolated pixel
+			return new PixelContour(startX, startY, new byte[0], outer);
+		}
+		int secondX = startX + PixelContour.DX[first];
+		int secondY = startY + PixelContour.DY[first];
+		addCode(first);
+		labels[secondY * width + secondX] = label;
+		int x = secondX;
+		int y = secondY;
+		int last = first;
+		while (true) {
+			// the previous point is at last + 4; start 2 further on
+			int next = findNext(x, y, (last + 6) % 8);
+			int nextX = x + PixelContour.DX[next];
+			int nextY = y + PixelContour.DY[next];
+			if (x == startX && y == startY && nextX == secondX && nextY == secondY) {
+				break;
+			}
+			addCode(next);
+			labels[nextY * width + nextX] = label;
+			x = nextX;
+			y = nextY;
+			last = next;
+		}
+		return new PixelContour(startX, startY, Arrays.copyOf(chain, chainLength), outer);
+	}
+
+	/** first black neighbour of (x,y) clockwise from direction; marks the white ones passed.
+	 *
+	 * @return direction of the neighbour; -1 if none
+	 */
+	private int findNext(int x, int y, int direction) {
+		for (int i = 0; i < 8; i++) {
+			int xx = x + PixelContour.DX[direction];
+			int yy = y + PixelContour.DY[direction];
+			if (raster.get(xx, yy)) {
+				return direction;
+			}
+			if (xx >= 0 && yy >= 0 && xx < width && yy < height) {
+				labels[yy * width + xx] = VISITED;
+			}
+			direction = (direction + 1) % 8;
+		}
+		return -1;
+	}
+
+	private void addCode(int code) {
+		if (chainLength == chain.length) {
+			chain = Arrays.copyOf(chain, chain.length * 2);
+		}
+		chain[chainLength++] = (byte) code;
+	}
+}
@@ -1,19 +1,57 @@
 package org.xmlcml.image.pixel;
 
 import java.awt.Point;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.image.BinaryRaster;
 
 public abstract class FloodFill {
 
 	// informed by
 	// http://stackoverflow.com/questions/2783204/flood-fill-using-a-stack
 
-	protected boolean[][] painted;
+	/** larger images are labelled a row at a time by StreamingIslandLabeller unless
+	 * parallelism is set. Labelling the whole image costs a label raster (4 bytes a pixel)
+	 * and an offset for each black pixel, so this keeps it to about 16 MB + 16 MB; the
+	 * row labeller holds two rows of labels and the runs of the open islands. */
+	public static final long MAX_LABELLED_PIXELS = 1L << 22;
+	/** larger images are labelled a row at a time even if parallelism is set. */
+	public static final long MAX_PARALLEL_LABELLED_PIXELS = 1L << 26;
+	/** islands are created in about this many tasks per thread. */
+	public static final int ISLAND_TASKS_PER_THREAD = 8;
+
+	// order in which neighbours are filled; diagonals last
+	static final int[] FILL_DX = {1, -1, 0,  0, 1, -1, -1,  1};
+	static final int[] FILL_DY = {0,  0, 1, -1, 1,  1, -1, -1};
+
+	protected BinaryRaster painted;
 	protected boolean diagonal = false;
+	protected boolean runLength = false;
+	protected boolean labelled = false;
+	protected int parallelism = 1;
+	protected boolean retainLabels = false;
+	protected boolean topology = false;
+	protected boolean contours = false;
+	protected PixelIslandTree islandTree;
+	protected IslandSizeFilter islandFilter;
+	// label of each island created from labelRaster
+	private int[] islandLabels;
+	protected PixelLabelRaster labelRaster;
 	protected PixelIslandList islandList;
 	protected int width;
 	protected int height;
+	// (y << 32 | xStart) for each run of the last island filled, in raster order
+	private long[] runStarts;
+	private int runCount;
 
 	protected FloodFill(int width, int height) {
 		this.width = width;
@@ -22,42 +60,436 @@ public abstract class FloodFill {
 	
 	protected abstract boolean isBlack(int posX, int posY);
 	
+	/** finds all islands.
+	 * 
+	 * unless run-length islands are wanted, all pixels are first labelled and the islands
+	 * are created from the labels: by ConnectedComponentLabeller, or for large images (see
+	 * MAX_LABELLED_PIXELS and setParallelism()) a row at a time by StreamingIslandLabeller.
+	 * Any islandFilter is applied to the label statistics (or to the runs of each island)
+	 * so that rejected islands are never created. Run-length islands are filled island by
+	 * island and filtered once created.
+	 */
 	public void fill() {
-		painted = new boolean[height][width];
+		if (labelled || topology || contours || (!runLength && isLabelledFill())) {
+			fillFromLabels();
+			return;
+		}
+		if (!runLength) {
+			fillFromRows();
+			return;
+		}
+		painted = createPaintedRaster();
+		try {
+			for (int i = 0; i < height; i++) {
+				for (int j = 0; j < width; j++) {
+					addNextUnpaintedRuns(i, j);
+				}
+			}
+		} finally {
+			closePainted();
+		}
+		if (islandFilter != null && islandList != null) {
+			islandFilter.filter(islandList);
+		}
+	}
+
+	/** labels the raster a row at a time; no label raster is kept.
+	 * 
+	 * memory for labelling depends on the width and the open islands, not the height.
+	 */
+	private void fillFromRows() {
+		StreamingIslandLabeller labeller = new StreamingIslandLabeller(diagonal) {
+			@Override
+			protected Pixel createPixel(int x, int y) {
+				return getPixelFromPoint(new Point(x, y));
+			}
+		};
+		labeller.setIslandFilter(islandFilter);
+		final List<PixelIsland> islands = new ArrayList<PixelIsland>();
+		labeller.label(getBinaryRaster(), new PixelIslandConsumer() {
+			public void accept(PixelIsland island) {
+				islands.add(island);
+			}
+		});
+		addInRasterOrder(islands);
+	}
+
+	/** adds islands emitted by a StreamingIslandLabeller in the order of the other fills.
+	 * 
+	 * islands are emitted as they close; other fills give them in raster order of their
+	 * first pixel. They have passed any islandFilter except its maximumCount, which is
+	 * applied here.
+	 * 
+	 * @param islands
+	 */
+	void addInRasterOrder(List<PixelIsland> islands) {
+		Collections.sort(islands, new Comparator<PixelIsland>() {
+			public int compare(PixelIsland island0, PixelIsland island1) {
+				Pixel pixel0 = island0.getPixelList().get(0);
+				Pixel pixel1 = island1.getPixelList().get(0);
+				return pixel0.getY() != pixel1.getY() ? Integer.compare(pixel0.getY(), pixel1.getY()) :
+					Integer.compare(pixel0.getX(), pixel1.getX());
+			}
+		});
+		for (PixelIsland island : islands) {
+			add(island);
+		}
+		if (islandFilter != null && islandList != null) {
+			islandFilter.keepLargest(islandList);
+		}
+	}
+
+	private void fillFromLabels() {
+		ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		ContourTracingLabeller contourLabeller = null;
+		try {
+			if (topology) {
+				if (!diagonal) {
+					throw new RuntimeException("island topology needs diagonal (8-connected) islands");
+				}
+				islandTree = new IslandTopologyLabeller().label(getBinaryRaster());
+				labelRaster = islandTree.getIslandLabelRaster();
+			} else if (contours) {
+				if (!diagonal) {
+					throw new RuntimeException("contour tracing needs diagonal (8-connected) islands");
+				}
+				contourLabeller = new ContourTracingLabeller();
+				labelRaster = contourLabeller.label(getBinaryRaster());
+			} else {
+				labelRaster = new ConnectedComponentLabeller(diagonal).label(getBinaryRaster(), pool);
+			}
+			labelRaster.index();
+			islandLabels = createIslandLabels();
+			PixelIsland[] islands = new PixelIsland[islandLabels.length];
+			if (labelled) {
+				for (int i = 0; i < islands.length; i++) {
+					islands[i] = new LabelledPixelIsland(labelRaster, islandLabels[i]);
+				}
+			} else {
+				createIslandsInFillOrder(islands, pool);
+			}
+			if (contourLabeller != null) {
+				for (int i = 0; i < islands.length; i++) {
+					islands[i].setContours(contourLabeller.getOuterContour(islandLabels[i]),
+							contourLabeller.getInnerContours(islandLabels[i]));
+				}
+			}
+			for (PixelIsland island : islands) {
+				add(island);
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/** is the image small enough to label?
+	 * 
+	 */
+	private boolean isLabelledFill() {
+		long pixels = (long) width * height;
+		return pixels <= MAX_LABELLED_PIXELS ||
+				(parallelism > 1 && !isTiled() && pixels <= MAX_PARALLEL_LABELLED_PIXELS);
+	}
+
+	/** is the image held in a TiledBinaryRaster (which is labelled on one thread)?
+	 * 
+	 * @return false unless overridden
+	 */
+	protected boolean isTiled() {
+		return false;
+	}
+
+	/** releases the painted mask (e.g. the scratch file of a tiled mask).
+	 * 
+	 */
+	private void closePainted() {
+		try {
+			if (painted instanceof Closeable) {
+				((Closeable) painted).close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("cannot close painted raster", e);
+		} finally {
+			painted = null;
+		}
+	}
+
+	/** labels which pass islandFilter.
+	 * 
+	 * @return all labels if no filter
+	 */
+	private int[] createIslandLabels() {
+		if (islandFilter != null) {
+			return islandFilter.select(labelRaster.getStats());
+		}
+		int[] labels = new int[labelRaster.getLabelCount()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = i + 1;
+		}
+		return labels;
+	}
+
+	/** creates islands[i] for islandLabels[i].
+	 * 
+	 * with a pool, runs of labels with about the same number of pixels are created in
+	 * parallel; islands only read their own label so the result does not depend on the pool.
+	 * 
+	 * @param islands
+	 * @param pool may be null
+	 */
+	private void createIslandsInFillOrder(final PixelIsland[] islands, ForkJoinPool pool) {
+		if (pool == null) {
+			createIslandsInFillOrder(islands, 0, islands.length);
+			return;
+		}
+		int[] sizes = new int[islands.length];
+		for (int i = 0; i < islands.length; i++) {
+			sizes[i] = labelRaster.getSize(islandLabels[i]);
+		}
+		IslandTasks.invokeAll(pool, sizes, new IslandTasks.Range() {
+			public void run(int start, int end) {
+				createIslandsInFillOrder(islands, start, end);
+			}
+		}, "create islands");
+	}
+
+	private void createIslandsInFillOrder(PixelIsland[] islands, int start, int end) {
+		for (int i = start; i < end; i++) {
+			islands[i] = createIslandInFillOrder(islandLabels[i]);
+		}
+	}
 
-		for (int i = 0; i < height; i++) {
-			for (int j = 0; j < width; j++) {
-				addNextUnpaintedBlack(i, j);
+	/** black pixels as a BinaryRaster for labelling.
+	 * 
+	 * this default calls isBlack() for every pixel; subclasses holding a raster return it.
+	 * 
+	 * @return
+	 */
+	protected BinaryRaster getBinaryRaster() {
+		BinaryRaster raster = new BinaryRaster(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (isBlack(x, y)) {
+					raster.set(x, y);
+				}
 			}
 		}
+		return raster;
+	}
+
+	/** island with the pixels of label in the order addNextUnpaintedBlack() finds them.
+	 * 
+	 * later steps (e.g. superthinning) depend on this order. Queued pixels are marked in
+	 * labelRaster and restored at the end.
+	 * 
+	 * @param label
+	 * @return
+	 */
+	private PixelIsland createIslandInFillOrder(int label) {
+		int size = labelRaster.getSize(label);
+		// y * width + x of each pixel in fill order; labels only exist for images below 2^31 pixels
+		int[] queue = new int[size];
+		int seed = labelRaster.getOffset(label, 0);
+		queue[0] = seed;
+		labelRaster.mark(seed % width, seed / width, label);
+		int tail = 1;
+		int directions = diagonal ? 8 : 4;
+		PixelIsland island = new PixelIsland();
+		for (int head = 0; head < tail; head++) {
+			int x = queue[head] % width;
+			int y = queue[head] / width;
+			Pixel pixel = getPixelFromPoint(new Point(x, y));
+			pixel.setIsland(island);
+			island.addPixelWithoutComputingNeighbours(pixel);
+			for (int k = 0; k < directions; k++) {
+				int xx = x + FILL_DX[k];
+				int yy = y + FILL_DY[k];
+				if (labelRaster.mark(xx, yy, label)) {
+					queue[tail++] = yy * width + xx;
+				}
+			}
+		}
+		for (int offset : queue) {
+			labelRaster.unmark(offset);
+		}
+		island.setDiagonal(true);
+		return island;
+	}
+	
+	/** white raster recording which pixels have been filled.
+	 * 
+	 * @return
+	 */
+	protected BinaryRaster createPaintedRaster() {
+		return new BinaryRaster(width, height);
 	}
 	
+	/** breadth-first fill of the island containing (j, i).
+	 * 
+	 * not used by fill(), which labels images of every size; kept for subclasses and as
+	 * the reference order of islands and their pixels. Pixels are painted when queued,
+	 * so each is queued once; the order is the same as queuing every neighbour and
+	 * painting on removal. The size and bounding box are known when the queue is done,
+	 * so an island rejected by the islandFilter is only painted; no Pixels are created
+	 * for it.
+	 * 
+	 * @param i row
+	 * @param j column
+	 */
 	protected void addNextUnpaintedBlack(int i, int j) {
-		if (isBlack(j, i) && !painted[i][j]) {
-
-			Queue<Point> queue = new LinkedList<Point>();
-			queue.add(new Point(j, i));
-
-			PixelList pixelList = new PixelList();
-			while (!queue.isEmpty()) {
-				Point p = queue.remove();
-				if (isInsideImage(p)) {
-					if (!painted[p.y][p.x] && isBlack(p.x, p.y)) {
-						painted[p.y][p.x] = true;
-						pixelList.add(getPixelFromPoint(p));
-						addNewPoints(queue, p);
+		if (isBlack(j, i) && !painted.get(j, i)) {
+			// (y << 32 | x)
+			long[] queue = new long[16];
+			painted.set(j, i);
+			queue[0] = ((long) i << 32) | j;
+			int tail = 1;
+			int directions = diagonal ? 8 : 4;
+			// the seed is the first pixel in raster order so it has the smallest y
+			int xMin = j;
+			int xMax = j;
+			int yMax = i;
+			for (int head = 0; head < tail; head++) {
+				int x = (int) queue[head];
+				int y = (int) (queue[head] >> 32);
+				xMin = Math.min(xMin, x);
+				xMax = Math.max(xMax, x);
+				yMax = Math.max(yMax, y);
+				for (int k = 0; k < directions; k++) {
+					int xx = x + FILL_DX[k];
+					int yy = y + FILL_DY[k];
+					if (xx >= 0 && xx < width && yy >= 0 && yy < height &&
+							!painted.get(xx, yy) && isBlack(xx, yy)) {
+						painted.set(xx, yy);
+						if (tail == queue.length) {
+							queue = Arrays.copyOf(queue, tail * 2);
+						}
+						queue[tail++] = ((long) yy << 32) | xx;
+					}
+				}
+			}
+			if (islandFilter != null &&
+					!islandFilter.accept(tail, new Real2Range(new RealRange(xMin, xMax), new RealRange(i, yMax)))) {
+				return;
+			}
+			PixelIsland island = new PixelIsland();
+			for (int head = 0; head < tail; head++) {
+				Pixel pixel = getPixelFromPoint(new Point((int) queue[head], (int) (queue[head] >> 32)));
+				pixel.setIsland(island);
+				island.addPixelWithoutComputingNeighbours(pixel);
+			}
+			island.setDiagonal(true);
+			add(island);
+		}
+	}
+
+	/** scanline fill creating a RunLengthPixelIsland.
+	 * 
+	 * each maximal horizontal run of black pixels is painted at once and the rows above
+	 * and below it are searched for new runs. Islands are found in the same order and
+	 * contain the same pixels as with addNextUnpaintedBlack().
+	 * 
+	 * @param i row
+	 * @param j column
+	 */
+	protected void addNextUnpaintedRuns(int i, int j) {
+		if (fillRuns(i, j)) {
+			RunLengthPixelIsland island = new RunLengthPixelIsland();
+			for (int r = 0; r < runCount; r++) {
+				int y = (int) (runStarts[r] >> 32);
+				int xStart = (int) runStarts[r];
+				island.addRun(y, xStart, getRunEnd(xStart, y));
+			}
+			add(island);
+		}
+	}
+
+	/** paints the island containing (j, i) run by run.
+	 * 
+	 * @param i row
+	 * @param j column
+	 * @return false if (j, i) is white or already painted; else runStarts holds the
+	 * runCount runs of the island in raster order
+	 */
+	private boolean fillRuns(int i, int j) {
+		if (!isBlack(j, i) || painted.get(j, i)) {
+			return false;
+		}
+		int[] seeds = new int[16];
+		int nseeds = 0;
+		if (runStarts == null) {
+			runStarts = new long[16];
+		}
+		int nruns = 0;
+		seeds[nseeds++] = j;
+		seeds[nseeds++] = i;
+		while (nseeds > 0) {
+			int y = seeds[--nseeds];
+			int x = seeds[--nseeds];
+			if (painted.get(x, y)) {
+				continue;
+			}
+			int xStart = x;
+			while (xStart > 0 && isBlack(xStart - 1, y)) {
+				xStart--;
+			}
+			int xEnd = x;
+			while (xEnd < width - 1 && isBlack(xEnd + 1, y)) {
+				xEnd++;
+			}
+			for (int xx = xStart; xx <= xEnd; xx++) {
+				painted.set(xx, y);
+			}
+			if (nruns == runStarts.length) {
+				runStarts = Arrays.copyOf(runStarts, nruns * 2);
+			}
+			runStarts[nruns++] = ((long) y << 32) | xStart;
+			int xLow = Math.max(0, diagonal ? xStart - 1 : xStart);
+			int xHigh = Math.min(width - 1, diagonal ? xEnd + 1 : xEnd);
+			for (int yy = y - 1; yy <= y + 1; yy += 2) {
+				if (yy < 0 || yy >= height) {
+					continue;
+				}
+				for (int xx = xLow; xx <= xHigh; xx++) {
+					if (isBlack(xx, yy) && !painted.get(xx, yy)) {
+						if (nseeds + 2 > seeds.length) {
+							seeds = Arrays.copyOf(seeds, seeds.length * 2);
+						}
+						seeds[nseeds++] = xx;
+						seeds[nseeds++] = yy;
+						// rest of this run is reached from the seed
+						while (xx < xHigh && isBlack(xx + 1, yy)) {
+							xx++;
+						}
 					}
 				}
 			}
-			add(PixelIsland.createSeparateIslandWithClonedPixels(pixelList, true));
 		}
+		Arrays.sort(runStarts, 0, nruns);
+		runCount = nruns;
+		return true;
+	}
+
+	/** runs are maximal so the end is the last black pixel.
+	 * 
+	 * @param xStart
+	 * @param y
+	 * @return
+	 */
+	private int getRunEnd(int xStart, int y) {
+		int xEnd = xStart;
+		while (xEnd < width - 1 && isBlack(xEnd + 1, y)) {
+			xEnd++;
+		}
+		return xEnd;
 	}
 
 	protected Pixel getPixelFromPoint(Point p) {
 		return new Pixel(p);
 	}
 
-	private void add(PixelIsland island) {
+	protected void add(PixelIsland island) {
 		ensureIslandList();
 		islandList.add(island);
 	}
@@ -76,28 +508,138 @@ public abstract class FloodFill {
 			island.setIslandList(islandList); // each island knows who made it
 		}
 		islandList.setDiagonal(diagonal);
+		if (labelRaster != null && islandLabels != null && islandList.size() == islandLabels.length) {
+			islandList.setIslandLabels(islandLabels, labelRaster.getLabelCount());
+			if (labelRaster.getStats() != null) {
+				islandList.setStats(labelRaster.getStats());
+			}
+			if (retainLabels || labelled) {
+				islandList.setLabelRaster(labelRaster);
+			}
+			if (islandTree != null) {
+				islandTree.setIslandList(islandList);
+			}
+		}
 		return islandList;
 	}
 
-	private boolean isInsideImage(Point p) {
-		return (p.x >= 0) && (p.x < width && (p.y >= 0) && (p.y < height));
+	public void setDiagonal(boolean b) {
+		this.diagonal = b;
+	}
+
+	/** create RunLengthPixelIsland instead of PixelIsland.
+	 * 
+	 * for images with thick islands (bars, bands, filled symbols) where one Pixel
+	 * per pixel is too expensive.
+	 * 
+	 * @param b
+	 */
+	public void setRunLength(boolean b) {
+		this.runLength = b;
 	}
 
-	private void addNewPoints(Queue<Point> queue, Point p) {
-		queue.add(new Point(p.x + 1, p.y));
-		queue.add(new Point(p.x - 1, p.y));
-		queue.add(new Point(p.x, p.y + 1));
-		queue.add(new Point(p.x, p.y - 1));
-		if (diagonal) {
-			queue.add(new Point(p.x + 1, p.y + 1));
-			queue.add(new Point(p.x - 1, p.y + 1));
-			queue.add(new Point(p.x - 1, p.y - 1));
-			queue.add(new Point(p.x + 1, p.y - 1));
+	/** create LabelledPixelIslands sharing one PixelLabelRaster.
+	 * 
+	 * no Pixels are created until islands are asked for them. Takes precedence
+	 * over setRunLength() and MAX_LABELLED_PIXELS.
+	 * 
+	 * @param b
+	 */
+	public void setLabelled(boolean b) {
+		this.labelled = b;
+	}
+
+	/** only create islands which pass filter.
+	 * 
+	 * when labelling the filter is applied to PixelIslandStats, and when filling island
+	 * by island to the size and bounding box found by the fill, so no Pixels or
+	 * PixelIslands are created for rejected components.
+	 * 
+	 * @param filter null for all islands
+	 */
+	public void setIslandFilter(IslandSizeFilter filter) {
+		this.islandFilter = filter;
+	}
+
+	public IslandSizeFilter getIslandFilter() {
+		return islandFilter;
+	}
+
+	/** keep the label raster in the island list from getIslandList().
+	 * 
+	 * gives O(1) PixelIslandList.getIslandIndexAt(), getIslandByPixel() and
+	 * getPixelByCoord() at 4 bytes a pixel of the image. Labelled islands always keep it.
+	 * 
+	 * @param b
+	 */
+	public void setRetainLabels(boolean b) {
+		this.retainLabels = b;
+	}
+
+	public boolean isRetainLabels() {
+		return retainLabels;
+	}
+
+	/** threads used to label the image and create the islands.
+	 * 
+	 * islands are the same, in the same order, whatever the parallelism. Above 1
+	 * images of up to MAX_PARALLEL_LABELLED_PIXELS are labelled in parallel; larger ones,
+	 * and any TiledBinaryRaster (which is not safe for concurrent reads), are labelled a
+	 * row at a time on the calling thread unless a label raster is asked for.
+	 * 
+	 * @param parallelism default 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new RuntimeException("parallelism must be at least 1: "+parallelism);
 		}
+		this.parallelism = parallelism;
 	}
 
-	public void setDiagonal(boolean b) {
-		this.diagonal = b;
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/** raster of island labels from the last fill.
+	 * 
+	 * label k is island k - 1 in getIslandList() unless an islandFilter was set.
+	 * 
+	 * @return null if the islands were not created from labels
+	 */
+	public PixelLabelRaster getLabelRaster() {
+		return labelRaster;
+	}
+
+	/** label holes as well as islands and build their containment tree.
+	 * 
+	 * the white pixels are labelled (4-connected) in the same pass as the islands
+	 * (which must be diagonal) by IslandTopologyLabeller; the islands are the same. The
+	 * image is labelled on the calling thread.
+	 * 
+	 * @param b
+	 */
+	public void setTopology(boolean b) {
+		this.topology = b;
+	}
+
+	/** trace the outer and inner contours of the islands while labelling.
+	 * 
+	 * the image is labelled by ContourTracingLabeller (the islands, which must be
+	 * diagonal, are the same) and each island gets its contours as chain codes; see
+	 * PixelIsland.getOuterContour(). The image is labelled on the calling thread.
+	 * 
+	 * @param b
+	 */
+	public void setContours(boolean b) {
+		this.contours = b;
+	}
+
+	/** islands and holes of the last fill, linked to getIslandList().
+	 * 
+	 * @return null unless setTopology(true)
+	 */
+	public PixelIslandTree getIslandTree() {
+		return islandTree;
 	}
 
 }
\ No newline at end of file
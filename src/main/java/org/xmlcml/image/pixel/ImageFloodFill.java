@@ -1,14 +1,29 @@
 package org.xmlcml.image.pixel;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.ImagePixelAccessor;
+import org.xmlcml.image.TiledBinaryRaster;
 
 public class ImageFloodFill extends FloodFill {
 
 	private BufferedImage image;
 	private int threshold;
+	private BinaryRaster raster;
+	private File imageFile;
 	
 	public ImageFloodFill(BufferedImage image, int threshold) {
 		super(image.getWidth(), image.getHeight());
@@ -22,6 +37,153 @@ public class ImageFloodFill extends FloodFill {
 		this.threshold = 128;
 	}
 
+	/** fill from an already binarized raster (1 = black).
+	 * 
+	 * @param raster
+	 */
+	public ImageFloodFill(BinaryRaster raster) {
+		super(raster.getWidth(), raster.getHeight());
+		this.raster = raster;
+		this.threshold = 128;
+	}
+
+	/** fill streaming the image file a strip at a time.
+	 * 
+	 * the image is never held in memory; see StreamingIslandLabeller. The islands are the
+	 * same as for ImageFloodFill(ImageIO.read(imageFile), threshold) but no raster or label
+	 * raster is kept. The islands themselves are Pixels (about 100 bytes a pixel), so
+	 * set an island filter to drop specks as they are found; for less memory use
+	 * StreamingIslandLabeller with a consumer of its own.
+	 * 
+	 * labelled, run-length, topology and contour fills are not supported and parallelism
+	 * is not used.
+	 * 
+	 * @param imageFile
+	 * @param threshold
+	 */
+	public ImageFloodFill(File imageFile, int threshold) {
+		this(readImageSize(imageFile));
+		this.imageFile = imageFile;
+		this.threshold = threshold;
+	}
+
+	private ImageFloodFill(Dimension size) {
+		super(size.width, size.height);
+	}
+
+	private static Dimension readImageSize(File imageFile) {
+		ImageInputStream stream = null;
+		try {
+			stream = ImageIO.createImageInputStream(imageFile);
+			Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+			if (readers == null || !readers.hasNext()) {
+				throw new RuntimeException("cannot read image file: "+imageFile);
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream);
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("cannot read image file: "+imageFile, e);
+		} finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/** creates raster with 1 wherever the brightness is below threshold.
+	 * 
+	 * uses the same brightness as isBlack() always has.
+	 * 
+	 * @param image
+	 * @param threshold
+	 * @return
+	 */
+	public static BinaryRaster createBinaryRaster(BufferedImage image, int threshold) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		BinaryRaster raster = new BinaryRaster(width, height);
+		ImagePixelAccessor accessor = new ImagePixelAccessor(image);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int color = accessor.getRGB(x, y);
+				int brightness = (color & 0xFF) + ((color >> 2) & 0xFF) + ((color >> 4) & 0xFF);
+				brightness /= 3;
+				if (brightness < threshold) {
+					raster.set(x, y);
+				}
+			}
+		}
+		return raster;
+	}
+
+	/** the thresholded image; created on first fill().
+	 * 
+	 * @return
+	 */
+	public BinaryRaster getRaster() {
+		return raster;
+	}
+
+	private void ensureRaster() {
+		if (raster == null && image != null) {
+			raster = createBinaryRaster(image, threshold);
+		}
+	}
+
+	@Override
+	public void fill() {
+		if (imageFile != null) {
+			fillFromImageFile();
+			return;
+		}
+		ensureRaster();
+		super.fill();
+	}
+
+	private void fillFromImageFile() {
+		if (labelled || runLength || topology || contours) {
+			throw new RuntimeException("only plain fills are supported from an image file: "+imageFile);
+		}
+		final List<PixelIsland> islands = new ArrayList<PixelIsland>();
+		StreamingIslandLabeller labeller = new StreamingIslandLabeller(diagonal);
+		// rejected islands are dropped before their Pixels are created
+		labeller.setIslandFilter(islandFilter);
+		labeller.label(imageFile, threshold, new PixelIslandConsumer() {
+			public void accept(PixelIsland island) {
+				islands.add(island);
+			}
+		});
+		addInRasterOrder(islands);
+	}
+
+	@Override
+	protected BinaryRaster getBinaryRaster() {
+		ensureRaster();
+		return raster;
+	}
+
+	@Override
+	protected boolean isTiled() {
+		return raster instanceof TiledBinaryRaster;
+	}
+
+	/** painted mask uses the same storage as the raster (e.g. tiled).
+	 * 
+	 */
+	@Override
+	protected BinaryRaster createPaintedRaster() {
+		return raster == null ? super.createPaintedRaster() : raster.createBlank();
+	}
+
 	public static void main(String[] args) throws Exception {
 		if (args.length != 1) {
 			System.err.println("ERROR: Pass filename as argument.");
@@ -35,14 +197,7 @@ public class ImageFloodFill extends FloodFill {
 	
 	@Override
 	protected boolean isBlack(int posX, int posY) {
-		if (image != null) {
-			int color = image.getRGB(posX, posY);
-			int brightness = (color & 0xFF) + ((color >> 2) & 0xFF) + ((color >> 4) & 0xFF);
-			brightness /= 3;
-			return brightness < threshold;
-		} else {
-			return false;
-		}
+		return raster != null && raster.get(posX, posY);
 	}
 	
 }
\ No newline at end of file
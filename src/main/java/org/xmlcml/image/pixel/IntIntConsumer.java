@@ -0,0 +1,13 @@
+package org.xmlcml.image.pixel;
+
+/** receives (x, y) coordinates without creating Int2 or Pixel.
+ *
+ * used by PixelIsland.forEachNeighbour().
+ *
+ * @author pm286
+ *
+ */
+public interface IntIntConsumer {
+
+	void accept(int x, int y);
+}
@@ -0,0 +1,217 @@
+package org.xmlcml.image.pixel;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2Range;
+
+/** selects islands by size before they are created.
+ *
+ * An island is accepted if its area (pixels) is between minimumSize and maximumSize,
+ * its bounding box is not less than minimumBoundingBox (as in
+ * PixelIslandList.removeIslandsLessThan()) and is less than maximumBoundingBox. Of the
+ * accepted islands only the maximumCount largest are kept (ties go to the earlier
+ * island); the kept islands stay in their original order.
+ *
+ * FloodFill.setIslandFilter() applies it to the PixelIslandStats of the labels so that
+ * no Pixels or PixelIslands are created for rejected components.
+ *
+ * @author pm286
+ *
+ */
+public class IslandSizeFilter {
+
+	private final static Logger LOG = Logger.getLogger(IslandSizeFilter.class);
+
+	private int minimumSize = 0;
+	private int maximumSize = Integer.MAX_VALUE;
+	private Real2Range minimumBoundingBox;
+	private Real2Range maximumBoundingBox;
+	private int maximumCount = Integer.MAX_VALUE;
+
+	public IslandSizeFilter() {
+	}
+
+	public IslandSizeFilter setMinimumSize(int minimumSize) {
+		this.minimumSize = minimumSize;
+		return this;
+	}
+
+	public int getMinimumSize() {
+		return minimumSize;
+	}
+
+	public IslandSizeFilter setMaximumSize(int maximumSize) {
+		this.maximumSize = maximumSize;
+		return this;
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/** reject islands whose bounding box isLessThan() this.
+	 *
+	 * @param minimumBoundingBox null for no limit (e.g. ImageParameters.getMinimumIslandSize())
+	 * @return
+	 */
+	public IslandSizeFilter setMinimumBoundingBox(Real2Range minimumBoundingBox) {
+		this.minimumBoundingBox = minimumBoundingBox;
+		return this;
+	}
+
+	public Real2Range getMinimumBoundingBox() {
+		return minimumBoundingBox;
+	}
+
+	/** reject islands whose bounding box is not isLessThan() this.
+	 *
+	 * @param maximumBoundingBox null for no limit
+	 * @return
+	 */
+	public IslandSizeFilter setMaximumBoundingBox(Real2Range maximumBoundingBox) {
+		this.maximumBoundingBox = maximumBoundingBox;
+		return this;
+	}
+
+	public Real2Range getMaximumBoundingBox() {
+		return maximumBoundingBox;
+	}
+
+	/** keep only the largest islands.
+	 *
+	 * @param maximumCount
+	 * @return
+	 */
+	public IslandSizeFilter setMaximumCount(int maximumCount) {
+		this.maximumCount = maximumCount;
+		return this;
+	}
+
+	public int getMaximumCount() {
+		return maximumCount;
+	}
+
+	/** does an island of area pixels with bounding box bbox pass the size limits?
+	 *
+	 * maximumCount is not applied.
+	 *
+	 * @param area
+	 * @param bbox
+	 * @return
+	 */
+	public boolean accept(int area, Real2Range bbox) {
+		if (area < minimumSize || area > maximumSize) {
+			return false;
+		}
+		if (minimumBoundingBox != null && bbox.isLessThan(minimumBoundingBox)) {
+			return false;
+		}
+		if (maximumBoundingBox != null && !bbox.isLessThan(maximumBoundingBox)) {
+			return false;
+		}
+		return true;
+	}
+
+	/** labels to create.
+	 *
+	 * @param stats
+	 * @return accepted labels in increasing order
+	 */
+	public int[] select(PixelIslandStats stats) {
+		int[] labels = new int[stats.getLabelCount()];
+		int count = 0;
+		for (int label = 1; label <= stats.getLabelCount(); label++) {
+			int area = stats.getArea(label);
+			if (area < minimumSize || area > maximumSize) {
+				continue;
+			}
+			// most labels are rejected on area without creating a box
+			if ((minimumBoundingBox != null || maximumBoundingBox != null) &&
+					!accept(area, stats.getBoundingBox(label))) {
+				continue;
+			}
+			labels[count++] = label;
+		}
+		int[] areas = new int[count];
+		for (int i = 0; i < count; i++) {
+			areas[i] = stats.getArea(labels[i]);
+		}
+		labels = keepLargest(Arrays.copyOf(labels, count), areas);
+		LOG.trace("selected "+labels.length+" of "+stats.getLabelCount()+" labels");
+		return labels;
+	}
+
+	/** removes the islands of islandList which fail the filter.
+	 *
+	 * used where islands were created without applying the filter (e.g. by a run-length
+	 * fill or IslandThinning); any labels of the kept islands remain valid.
+	 *
+	 * @param islandList
+	 */
+	public void filter(PixelIslandList islandList) {
+		int size = islandList.size();
+		int[] indexes = new int[size];
+		int[] areas = new int[size];
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			PixelIsland island = islandList.get(i);
+			if (accept(island.size(), island.getBoundingBox())) {
+				areas[count] = island.size();
+				indexes[count++] = i;
+			}
+		}
+		indexes = keepLargest(Arrays.copyOf(indexes, count), Arrays.copyOf(areas, count));
+		islandList.keepIslands(indexes);
+	}
+
+	/** keeps the maximumCount largest islands of islandList.
+	 *
+	 * for islands which have already passed accept() as they were created; any labels
+	 * of the kept islands remain valid.
+	 *
+	 * @param islandList
+	 */
+	void keepLargest(PixelIslandList islandList) {
+		int size = islandList.size();
+		if (size <= maximumCount) {
+			return;
+		}
+		int[] indexes = new int[size];
+		int[] areas = new int[size];
+		for (int i = 0; i < size; i++) {
+			indexes[i] = i;
+			areas[i] = islandList.get(i).size();
+		}
+		islandList.keepIslands(keepLargest(indexes, areas));
+	}
+
+	/** the maximumCount items with the largest areas.
+	 *
+	 * @param items increasing
+	 * @param areas area of each item
+	 * @return kept items, increasing
+	 */
+	private int[] keepLargest(int[] items, int[] areas) {
+		if (items.length <= maximumCount) {
+			return items;
+		}
+		// largest area first, then earliest item
+		long[] keys = new long[items.length];
+		for (int i = 0; i < items.length; i++) {
+			keys[i] = ((long) (Integer.MAX_VALUE - areas[i]) << 32) | i;
+		}
+		Arrays.sort(keys);
+		int[] kept = new int[Math.max(0, maximumCount)];
+		for (int i = 0; i < kept.length; i++) {
+			kept[i] = items[(int) keys[i]];
+		}
+		Arrays.sort(kept);
+		return kept;
+	}
+
+	public String toString() {
+		return "size: " + minimumSize + "-" + maximumSize + "; bbox: " + minimumBoundingBox + "-" +
+			maximumBoundingBox + "; count: " + maximumCount;
+	}
+}
@@ -0,0 +1,74 @@
+package org.xmlcml.image.pixel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** runs work on a sequence of islands in tasks of about equal size on a ForkJoinPool.
+ *
+ * used by FloodFill (creating islands) and IslandThinning (thinning them).
+ *
+ * @author pm286
+ *
+ */
+final class IslandTasks {
+
+	/** work on islands start ... end - 1 of the sequence.
+	 */
+	interface Range {
+		void run(int start, int end);
+	}
+
+	private IslandTasks() {
+	}
+
+	/** splits the islands into consecutive tasks and waits for them all.
+	 *
+	 * there are about FloodFill.ISLAND_TASKS_PER_THREAD tasks a thread with similar
+	 * numbers of pixels. Tasks are submitted in sequence order, so the first islands
+	 * start first.
+	 *
+	 * @param pool
+	 * @param sizes pixels of each island
+	 * @param range
+	 * @param work what is done, for messages (e.g. "create islands")
+	 */
+	static void invokeAll(ForkJoinPool pool, int[] sizes, final Range range, String work) {
+		long pixels = 0;
+		for (int size : sizes) {
+			pixels += size;
+		}
+		long pixelsPerTask = Math.max(1, pixels / ((long) pool.getParallelism() * FloodFill.ISLAND_TASKS_PER_THREAD));
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		int first = 0;
+		long taskPixels = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			taskPixels += sizes[i];
+			if (taskPixels >= pixelsPerTask || i == sizes.length - 1) {
+				final int start = first;
+				final int end = i + 1;
+				tasks.add(new Callable<Object>() {
+					public Object call() {
+						range.run(start, end);
+						return null;
+					}
+				});
+				first = end;
+				taskPixels = 0;
+			}
+		}
+		try {
+			for (Future<Object> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted: "+work, e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("cannot "+work, e.getCause());
+		}
+	}
+}
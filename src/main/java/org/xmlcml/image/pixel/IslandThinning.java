@@ -0,0 +1,250 @@
+package org.xmlcml.image.pixel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.TiledBinaryRaster;
+import org.xmlcml.image.processing.Thinning;
+import org.xmlcml.image.processing.ZhangSuenThinning;
+
+/** Zhang-Suen thinning of each island separately.
+ *
+ * The raster is labelled (8-connected) and each island is copied into its own raster
+ * (its bounding box with a 1 pixel margin) and thinned there. Every pixel a Zhang-Suen
+ * step reads is in the same island as the pixel tested, so the thinned raster is the same
+ * as from ZhangSuenThinning of the whole raster.
+ *
+ * With parallelism &gt; 1 the islands are thinned on a ForkJoinPool, largest first so that
+ * a large diagram does not start last. The thinned islands are kept: getIslandList()
+ * returns them as FloodFill (diagonal) of the thinned raster would, so the page need not
+ * be filled again (see MainPixelProcessor.setThinnedIslands()).
+ *
+ * Islands rejected by the thinning filter (e.g. characters) are kept as they are.
+ *
+ * A TiledBinaryRaster is thinned whole by ZhangSuenThinning and no islands are kept.
+ *
+ * @author pm286
+ *
+ */
+public class IslandThinning extends Thinning {
+
+	private final static Logger LOG = Logger.getLogger(IslandThinning.class);
+
+	private int parallelism = 1;
+	private IslandSizeFilter thinningFilter;
+	private boolean retainLabels;
+	private PixelIslandList islandList;
+
+	public IslandThinning() {
+	}
+
+	/** threads used to label and thin islands.
+	 *
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new RuntimeException("parallelism must be positive: "+parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/** only islands accepted by filter are thinned; the rest are kept unthinned.
+	 *
+	 * maximumCount is not applied.
+	 *
+	 * @param filter if null all islands are thinned
+	 */
+	public void setThinningFilter(IslandSizeFilter filter) {
+		this.thinningFilter = filter;
+	}
+
+	public IslandSizeFilter getThinningFilter() {
+		return thinningFilter;
+	}
+
+	/** keep a label raster of the thinned islands in the island list.
+	 * 
+	 * as FloodFill.setRetainLabels(): O(1) PixelIslandList.getIslandAt() at 4 bytes a
+	 * pixel of the image.
+	 * 
+	 * @param retainLabels
+	 */
+	public void setRetainLabels(boolean retainLabels) {
+		this.retainLabels = retainLabels;
+	}
+
+	public boolean isRetainLabels() {
+		return retainLabels;
+	}
+
+	/** islands of the last doThinning().
+	 *
+	 * diagonal islands in raster order of their first pixel; the pixels of each are in
+	 * flood-fill order. Island k - 1 has label k and the list has the PixelIslandStats
+	 * of the thinned islands (and their label raster if isRetainLabels()), as from
+	 * FloodFill.
+	 *
+	 * @return null if not thinned by island
+	 */
+	public PixelIslandList getIslandList() {
+		return islandList;
+	}
+
+	/** thins binary in place.
+	 *
+	 */
+	@Override
+	public void doThinning() {
+		islandList = null;
+		if (binary instanceof TiledBinaryRaster) {
+			ZhangSuenThinning thinning = new ZhangSuenThinning();
+			thinning.setBinary(binary);
+			thinning.doThinning();
+			return;
+		}
+		ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		try {
+			PixelLabelRaster labels = new ConnectedComponentLabeller(true).label(binary, pool);
+			labels.index();
+			List<List<PixelIsland>> piecesByLabel = thinIslands(labels, pool);
+			List<PixelIsland> islands = new ArrayList<PixelIsland>();
+			for (int label = 1; label <= labels.getLabelCount(); label++) {
+				islands.addAll(piecesByLabel.get(label));
+			}
+			Collections.sort(islands, new Comparator<PixelIsland>() {
+				public int compare(PixelIsland island0, PixelIsland island1) {
+					Pixel pixel0 = island0.getPixelList().get(0);
+					Pixel pixel1 = island1.getPixelList().get(0);
+					return pixel0.getY() != pixel1.getY() ? Integer.compare(pixel0.getY(), pixel1.getY()) :
+						Integer.compare(pixel0.getX(), pixel1.getX());
+				}
+			});
+			binary.clearAll();
+			islandList = new PixelIslandList(islands);
+			for (PixelIsland island : islandList) {
+				island.setIslandList(islandList);
+				for (Pixel pixel : island.getPixelList()) {
+					binary.set(pixel.getX(), pixel.getY());
+				}
+			}
+			islandList.setDiagonal(true);
+			labelIslands();
+			LOG.trace("thinned "+labels.getLabelCount()+" islands to "+islandList.size());
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/** statistics (and labels) of the thinned islands, as the fill of the thinned raster
+	 * would give them.
+	 */
+	private void labelIslands() {
+		PixelIslandStats stats = new PixelIslandStats(islandList.size());
+		PixelLabelRaster labelRaster = retainLabels ? new PixelLabelRaster(binary.getWidth(), binary.getHeight()) : null;
+		for (int i = 0; i < islandList.size(); i++) {
+			for (Pixel pixel : islandList.get(i).getPixelList()) {
+				int x = pixel.getX();
+				int y = pixel.getY();
+				int edges = 4 - binary.getBit(x - 1, y) - binary.getBit(x + 1, y) - binary.getBit(x, y - 1) - binary.getBit(x, y + 1);
+				stats.addPixel(i + 1, x, y, edges);
+				if (labelRaster != null) {
+					labelRaster.setLabel(x, y, i + 1);
+				}
+			}
+		}
+		islandList.setStats(stats);
+		if (labelRaster != null) {
+			labelRaster.index();
+			islandList.setLabelRaster(labelRaster);
+		}
+	}
+
+	/** thinned pieces of each label.
+	 *
+	 * @param labels
+	 * @param pool may be null
+	 * @return by label (0 unused)
+	 */
+	private List<List<PixelIsland>> thinIslands(final PixelLabelRaster labels, ForkJoinPool pool) {
+		final List<List<PixelIsland>> piecesByLabel =
+			new ArrayList<List<PixelIsland>>(Collections.<List<PixelIsland>>nCopies(labels.getLabelCount() + 1, null));
+		if (pool == null) {
+			for (int label = 1; label <= labels.getLabelCount(); label++) {
+				piecesByLabel.set(label, thinIsland(labels, label));
+			}
+			return piecesByLabel;
+		}
+		// largest first: (MAX_VALUE - size) << 32 | label
+		long[] keys = new long[labels.getLabelCount()];
+		for (int label = 1; label <= keys.length; label++) {
+			keys[label - 1] = ((long) (Integer.MAX_VALUE - labels.getSize(label)) << 32) | label;
+		}
+		Arrays.sort(keys);
+		final int[] sortedLabels = new int[keys.length];
+		int[] sizes = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			sortedLabels[i] = (int) keys[i];
+			sizes[i] = labels.getSize(sortedLabels[i]);
+		}
+		IslandTasks.invokeAll(pool, sizes, new IslandTasks.Range() {
+			public void run(int start, int end) {
+				for (int i = start; i < end; i++) {
+					piecesByLabel.set(sortedLabels[i], thinIsland(labels, sortedLabels[i]));
+				}
+			}
+		}, "thin islands");
+		return piecesByLabel;
+	}
+
+	/** copies label into its own raster, thins it and fills the result.
+	 *
+	 * @param labels
+	 * @param label
+	 * @return pieces in raster order at page coordinates
+	 */
+	private List<PixelIsland> thinIsland(PixelLabelRaster labels, int label) {
+		Int2Range bbox = labels.getIntBoundingBox(label);
+		int x0 = bbox.getXRange().getMin() - 1;
+		int y0 = bbox.getYRange().getMin() - 1;
+		BinaryRaster crop = new BinaryRaster(bbox.getXRange().getRange() + 3, bbox.getYRange().getRange() + 3);
+		int width = labels.getWidth();
+		int size = labels.getSize(label);
+		for (int i = 0; i < size; i++) {
+			int offset = labels.getOffset(label, i);
+			crop.set(offset % width - x0, offset / width - y0);
+		}
+		if (thinningFilter == null || thinningFilter.accept(size, labels.getStats().getBoundingBox(label))) {
+			ZhangSuenThinning thinning = new ZhangSuenThinning();
+			thinning.setBinary(crop);
+			thinning.doThinning();
+		}
+		FloodFill floodFill = new ImageFloodFill(crop);
+		floodFill.setDiagonal(true);
+		List<PixelIsland> pieces = new ArrayList<PixelIsland>();
+		for (PixelIsland cropIsland : floodFill.getIslandList()) {
+			PixelIsland island = new PixelIsland();
+			for (Pixel cropPixel : cropIsland.getPixelList()) {
+				Pixel pixel = new Pixel(cropPixel.getX() + x0, cropPixel.getY() + y0);
+				pixel.setIsland(island);
+				island.addPixelWithoutComputingNeighbours(pixel);
+			}
+			island.setDiagonal(true);
+			pieces.add(island);
+		}
+		return pieces;
+	}
+}
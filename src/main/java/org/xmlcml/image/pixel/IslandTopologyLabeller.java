@@ -0,0 +1,270 @@
+package org.xmlcml.image.pixel;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.image.BinaryRaster;
+
+/** labels islands and holes together and builds their containment tree.
+ *
+ * Black pixels are labelled with 8-connectivity and white pixels with 4-connectivity
+ * (so that every black curve separates what it encloses) in one raster scan, each with
+ * its own union-find table as in ConnectedComponentLabeller. White pixels on the edge of
+ * the image belong to the outer background, which is always white label 1.
+ *
+ * The first pixel (in raster order) of an island has white to its west, which is in the
+ * region enclosing the island; the first pixel of a hole has black above it, which is in
+ * the island enclosing the hole. These are recorded when each provisional label is
+ * created; the root of a set is its first label so after resolving the sets each island
+ * and hole knows its parent.
+ *
+ * Island labels are those of ConnectedComponentLabeller(true) (raster order of first
+ * pixel), with the same PixelIslandStats; holes are numbered from 1 in the same way
+ * and the outer background is hole 0.
+ *
+ * @author pm286
+ *
+ */
+public class IslandTopologyLabeller {
+
+	private final static Logger LOG = Logger.getLogger(IslandTopologyLabeller.class);
+
+	private static final int OUTER = 1;
+
+	private BinaryRaster raster;
+	private int width;
+	private int height;
+	// black: provisional island label; white: minus provisional hole label
+	private int[] labels;
+	private int[] islandParent;
+	private int[] holeParent;
+	// provisional hole enclosing each provisional island, and vice versa
+	private int[] islandEnclosure;
+	private int[] holeEnclosure;
+	private int islandCount;
+	private int holeCount;
+	private PixelIslandStats stats;
+
+	public IslandTopologyLabeller() {
+	}
+
+	/** labels raster and builds the tree.
+	 *
+	 * @param raster
+	 * @return
+	 */
+	public PixelIslandTree label(BinaryRaster raster) {
+		this.raster = raster;
+		this.width = raster.getWidth();
+		this.height = raster.getHeight();
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new RuntimeException("image too large for label raster: "+width+" x "+height);
+		}
+		labels = new int[width * height];
+		islandParent = new int[64];
+		islandEnclosure = new int[64];
+		holeParent = new int[64];
+		holeEnclosure = new int[64];
+		islandCount = 0;
+		holeCount = 0;
+		stats = new PixelIslandStats(0);
+		newHole(0);
+		try {
+			for (int y = 0; y < height; y++) {
+				labelRow(y);
+			}
+			return createTree();
+		} finally {
+			this.raster = null;
+			labels = null;
+			islandParent = null;
+			holeParent = null;
+			islandEnclosure = null;
+			holeEnclosure = null;
+			stats = null;
+		}
+	}
+
+	private void labelRow(int y) {
+		int row = y * width;
+		int above = row - width;
+		boolean edgeRow = y == 0 || y == height - 1;
+		for (int x = 0; x < width; x++) {
+			int label = 0;
+			if (raster.get(x, y)) {
+				if (x > 0) {
+					label = mergeIsland(label, labels[row + x - 1]);
+				}
+				if (y > 0) {
+					label = mergeIsland(label, labels[above + x]);
+					if (x > 0) {
+						label = mergeIsland(label, labels[above + x - 1]);
+					}
+					if (x < width - 1) {
+						label = mergeIsland(label, labels[above + x + 1]);
+					}
+				}
+				if (label == 0) {
+					// west is white (or outside) and encloses the island
+					label = newIsland(x > 0 ? -labels[row + x - 1] : OUTER);
+				}
+				labels[row + x] = label;
+				stats.addPixel(label, x, y, countEdges(x, y));
+			} else {
+				if (edgeRow || x == 0 || x == width - 1) {
+					label = OUTER;
+				}
+				if (x > 0) {
+					label = mergeHole(label, -labels[row + x - 1]);
+				}
+				if (y > 0) {
+					label = mergeHole(label, -labels[above + x]);
+				}
+				if (label == 0) {
+					// not on the edge, so north is black and encloses the hole
+					label = newHole(labels[above + x]);
+				}
+				labels[row + x] = -label;
+			}
+		}
+	}
+
+	/** sides of black (x,y) that are white or outside the image.
+	 */
+	private int countEdges(int x, int y) {
+		int edges = 4;
+		if (raster.get(x - 1, y)) {
+			edges--;
+		}
+		if (raster.get(x + 1, y)) {
+			edges--;
+		}
+		if (raster.get(x, y - 1)) {
+			edges--;
+		}
+		if (raster.get(x, y + 1)) {
+			edges--;
+		}
+		return edges;
+	}
+
+	private int newIsland(int enclosingHole) {
+		islandCount++;
+		if (islandCount == islandParent.length) {
+			islandParent = Arrays.copyOf(islandParent, islandParent.length * 2);
+			islandEnclosure = Arrays.copyOf(islandEnclosure, islandEnclosure.length * 2);
+		}
+		islandParent[islandCount] = islandCount;
+		islandEnclosure[islandCount] = enclosingHole;
+		stats.ensureLabel(islandCount);
+		return islandCount;
+	}
+
+	private int newHole(int enclosingIsland) {
+		holeCount++;
+		if (holeCount == holeParent.length) {
+			holeParent = Arrays.copyOf(holeParent, holeParent.length * 2);
+			holeEnclosure = Arrays.copyOf(holeEnclosure, holeEnclosure.length * 2);
+		}
+		holeParent[holeCount] = holeCount;
+		holeEnclosure[holeCount] = enclosingIsland;
+		return holeCount;
+	}
+
+	/** label for black pixel touching label and neighbour (ignored unless black).
+	 */
+	private int mergeIsland(int label, int neighbour) {
+		if (neighbour <= 0) {
+			return label;
+		}
+		return (label == 0 || label == neighbour) ? neighbour : union(islandParent, label, neighbour);
+	}
+
+	/** label for white pixel touching label and neighbour (ignored unless white).
+	 */
+	private int mergeHole(int label, int neighbour) {
+		if (neighbour <= 0) {
+			return label;
+		}
+		return (label == 0 || label == neighbour) ? neighbour : union(holeParent, label, neighbour);
+	}
+
+	/** joins the sets of label and label1; the smaller root is kept.
+	 */
+	private static int union(int[] parent, int label, int label1) {
+		int root = find(parent, label);
+		int root1 = find(parent, label1);
+		if (root < root1) {
+			parent[root1] = root;
+			return root;
+		}
+		parent[root] = root1;
+		return root1;
+	}
+
+	private static int find(int[] parent, int label) {
+		while (parent[label] != label) {
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		return label;
+	}
+
+	/** final labels numbered by first pixel.
+	 *
+	 * @param parent
+	 * @param count
+	 * @param first final label of the set of label 1
+	 * @return final label of each provisional label; element 0 is the number of final labels
+	 */
+	private static int[] resolve(int[] parent, int count, int first) {
+		int[] finalLabels = new int[count + 1];
+		int finalCount = first - 1;
+		for (int label = 1; label <= count; label++) {
+			int root = find(parent, label);
+			finalLabels[label] = (root == label) ? ++finalCount : finalLabels[root];
+		}
+		finalLabels[0] = finalCount;
+		return finalLabels;
+	}
+
+	private PixelIslandTree createTree() {
+		int[] finalIslands = resolve(islandParent, islandCount, 1);
+		// the outer background (provisional 1) becomes hole 0
+		int[] finalHoles = resolve(holeParent, holeCount, 0);
+		int finalIslandCount = finalIslands[0];
+		int finalHoleCount = finalHoles[0];
+		PixelIslandStats finalStats = new PixelIslandStats(finalIslandCount);
+		int[] islandHole = new int[finalIslandCount + 1];
+		for (int label = 1; label <= islandCount; label++) {
+			finalStats.add(finalIslands[label], stats, label);
+			if (islandParent[label] == label) {
+				islandHole[finalIslands[label]] = finalHoles[islandEnclosure[label]];
+			}
+		}
+		int[] holeIsland = new int[finalHoleCount + 1];
+		int[] holeArea = new int[finalHoleCount + 1];
+		for (int label = OUTER + 1; label <= holeCount; label++) {
+			if (holeParent[label] == label && finalHoles[label] > 0) {
+				holeIsland[finalHoles[label]] = finalIslands[holeEnclosure[label]];
+			}
+		}
+		int[] holes = new int[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			int label = labels[i];
+			if (label > 0) {
+				labels[i] = finalIslands[label];
+			} else {
+				int hole = finalHoles[-label];
+				holes[i] = hole;
+				holeArea[hole]++;
+				labels[i] = 0;
+			}
+		}
+		PixelLabelRaster islandRaster = new PixelLabelRaster(width, height, labels, finalIslandCount);
+		islandRaster.setStats(finalStats);
+		PixelLabelRaster holeRaster = new PixelLabelRaster(width, height, holes, finalHoleCount);
+		LOG.trace("islands: "+finalIslandCount+"; holes: "+finalHoleCount);
+		return new PixelIslandTree(islandRaster, holeRaster, islandHole, holeIsland, holeArea);
+	}
+}
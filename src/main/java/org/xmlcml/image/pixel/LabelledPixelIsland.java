@@ -0,0 +1,200 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.image.ImagePixelAccessor;
+
+/** PixelIsland held as one label in a PixelLabelRaster.
+ *
+ * All islands from one flood fill share the raster, so an island is its label and a
+ * slice of the raster's offset array. size(), getIntBoundingBox(), contains(x, y) and
+ * createImage() need no Pixels; get(x, y) and getPixelsWithNeighbourCount() create only
+ * the Pixels they return and give the same Pixel for the same coordinates each time.
+ *
+ * Any other use of the pixels (getPixelList(), iterator(), remove(), ...) creates all of
+ * them once, in raster order, reusing those already given out, and the island then
+ * behaves exactly as a PixelIsland. The raster is not changed by later edits to the
+ * island.
+ *
+ * FloodFill.setLabelled(true) creates islands this way.
+ *
+ * @author pm286
+ *
+ */
+public class LabelledPixelIsland extends PixelIsland {
+
+	private final static Logger LOG = Logger.getLogger(LabelledPixelIsland.class);
+
+	private PixelLabelRaster labelRaster;
+	private int label;
+	// pixels given out before the whole list was materialized
+	private PixelCoordMap createdPixels;
+
+	/** island for label in an indexed raster.
+	 *
+	 * @param labelRaster
+	 * @param label
+	 */
+	public LabelledPixelIsland(PixelLabelRaster labelRaster, int label) {
+		super(false);
+		if (label < 1 || label > labelRaster.getLabelCount()) {
+			throw new RuntimeException("bad label "+label+" for "+labelRaster);
+		}
+		this.labelRaster = labelRaster;
+		this.label = label;
+	}
+
+	public PixelLabelRaster getLabelRaster() {
+		return labelRaster;
+	}
+
+	public int getLabel() {
+		return label;
+	}
+
+	/** have all the Pixels been created?
+	 *
+	 * @return
+	 */
+	public boolean isMaterialized() {
+		return pixelList != null;
+	}
+
+	/** creates a Pixel for every pixel of the label.
+	 *
+	 */
+	@Override
+	void ensurePixelList() {
+		if (pixelList == null) {
+			int size = labelRaster.getSize(label);
+			LOG.trace("materializing "+size+" pixels of label "+label);
+			int width = labelRaster.getWidth();
+			PixelList list = new PixelList();
+			for (int i = 0; i < size; i++) {
+				int offset = labelRaster.getOffset(label, i);
+				list.add(getOrCreatePixel(offset % width, offset / width));
+			}
+			createdPixels = null;
+			pixelList = list;
+		}
+	}
+
+	private Pixel getOrCreatePixel(int x, int y) {
+		Pixel pixel = createdPixels == null ? null : createdPixels.get(x, y);
+		if (pixel == null) {
+			pixel = new Pixel(x, y);
+			pixel.setIsland(this);
+			if (createdPixels == null) {
+				createdPixels = new PixelCoordMap();
+			}
+			createdPixels.put(pixel);
+		}
+		return pixel;
+	}
+
+	@Override
+	public int size() {
+		return isMaterialized() ? super.size() : labelRaster.getSize(label);
+	}
+
+	@Override
+	public Int2Range getIntBoundingBox() {
+		return isMaterialized() ? super.getIntBoundingBox() : labelRaster.getIntBoundingBox(label);
+	}
+
+	@Override
+	public Real2Range getBoundingBox() {
+		if (isMaterialized()) {
+			return super.getBoundingBox();
+		}
+		Int2Range box = labelRaster.getIntBoundingBox(label);
+		return new Real2Range(
+				new RealRange(box.getXRange().getMin(), box.getXRange().getMax()),
+				new RealRange(box.getYRange().getMin(), box.getYRange().getMax()));
+	}
+
+	@Override
+	public boolean contains(int x, int y) {
+		return isMaterialized() ? super.contains(x, y) : labelRaster.getLabel(x, y) == label;
+	}
+
+	/** pixel at (x,y).
+	 *
+	 * if not materialized creates (once) only this pixel.
+	 */
+	@Override
+	public Pixel get(int x, int y) {
+		if (isMaterialized()) {
+			return super.get(x, y);
+		}
+		return labelRaster.getLabel(x, y) == label ? getOrCreatePixel(x, y) : null;
+	}
+
+	/** pixels with the given number of neighbours (respecting getDiagonal()).
+	 *
+	 * if not materialized only the returned pixels are created.
+	 *
+	 * @param neighbourCount
+	 * @return
+	 */
+	@Override
+	public PixelList getPixelsWithNeighbourCount(int neighbourCount) {
+		if (isMaterialized()) {
+			return super.getPixelsWithNeighbourCount(neighbourCount);
+		}
+		PixelList pixels = new PixelList();
+		int filter = getNeighbourFilter();
+		int width = labelRaster.getWidth();
+		int size = labelRaster.getSize(label);
+		for (int i = 0; i < size; i++) {
+			int offset = labelRaster.getOffset(label, i);
+			int x = offset % width;
+			int y = offset / width;
+			int mask = 0;
+			for (int k = 0; k < 8; k++) {
+				if (labelRaster.getLabel(x + NEIGHBOUR_DX[k], y + NEIGHBOUR_DY[k]) == label) {
+					mask |= 1 << k;
+				}
+			}
+			if (Integer.bitCount(mask & filter) == neighbourCount) {
+				pixels.add(getOrCreatePixel(x, y));
+			}
+		}
+		return pixels;
+	}
+
+	/** image of bounding box with island pixels black (0) and others white.
+	 *
+	 * same as PixelIsland.createImage().
+	 */
+	@Override
+	public BufferedImage createImage(int imageType) {
+		if (isMaterialized()) {
+			return super.createImage(imageType);
+		}
+		Int2Range box = labelRaster.getIntBoundingBox(label);
+		int xMin = box.getXRange().getMin();
+		int yMin = box.getYRange().getMin();
+		int w = box.getXRange().getRange() + 1;
+		int h = box.getYRange().getRange() + 1;
+		BufferedImage image = new BufferedImage(w, h, imageType);
+		ImagePixelAccessor accessor = new ImagePixelAccessor(image);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				accessor.setRGB(x, y, labelRaster.getLabel(x + xMin, y + yMin) == label ? 0 : 0xffffff);
+			}
+		}
+		return image;
+	}
+
+	public String toString() {
+		if (isMaterialized()) {
+			return super.toString();
+		}
+		return "pixels " + size() + "; label " + label;
+	}
+}
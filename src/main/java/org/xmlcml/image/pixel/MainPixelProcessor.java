@@ -7,6 +7,7 @@ import java.io.IOException;
 
 import org.apache.log4j.Logger;
 import org.xmlcml.image.ArgIterator;
+import org.xmlcml.image.BinaryRaster;
 import org.xmlcml.image.ImageParameters;
 import org.xmlcml.image.ImageProcessor;
 import org.xmlcml.image.processing.Thinning;
@@ -37,6 +38,12 @@ public class MainPixelProcessor {
 	private boolean debug;
 	private ImageProcessor imageProcessor;
 	private BufferedImage image;
+	private BinaryRaster binaryRaster;
+	private boolean labelledIslands;
+	private int parallelism = 1;
+	private boolean retainLabels;
+	private IslandSizeFilter islandFilter;
+	private PixelIslandList thinnedIslands;
 	private File outputDir;
 	private int selectedIslandIndex;
 	private ImageParameters parameters;
@@ -61,6 +68,8 @@ public class MainPixelProcessor {
 	public void clearVariables() {
 		pixelIslandList = null;
 		image = null;
+		binaryRaster = null;
+		thinnedIslands = null;
 	}
 
 	private int getDefaultMaxIsland() {
@@ -75,6 +84,87 @@ public class MainPixelProcessor {
 		}
 		return image;
 	}
+
+	/** binarized (and usually thinned) raster to use instead of the image.
+	 * 
+	 * used for images too large to hold as BufferedImage (see ImageProcessor.processLargeImageFile()).
+	 * 
+	 * @param binaryRaster
+	 */
+	public void setBinaryRaster(BinaryRaster binaryRaster) {
+		this.binaryRaster = binaryRaster;
+	}
+
+	public BinaryRaster getBinaryRaster() {
+		return binaryRaster;
+	}
+
+	/** flood fill to LabelledPixelIslands (see FloodFill.setLabelled()).
+	 * 
+	 * Pixels are only created for islands which are used after removing small ones;
+	 * pixels within each island are then in raster order rather than flood order.
+	 * 
+	 * @param labelledIslands
+	 */
+	public void setLabelledIslands(boolean labelledIslands) {
+		this.labelledIslands = labelledIslands;
+	}
+
+	public boolean isLabelledIslands() {
+		return labelledIslands;
+	}
+
+	/** threads used to find islands; see FloodFill.setParallelism().
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/** keep island labels in the island list; see FloodFill.setRetainLabels().
+	 * 
+	 * @param retainLabels
+	 */
+	public void setRetainLabels(boolean retainLabels) {
+		this.retainLabels = retainLabels;
+	}
+
+	public boolean isRetainLabels() {
+		return retainLabels;
+	}
+
+	/** only create islands which pass filter (see FloodFill.setIslandFilter()).
+	 * 
+	 * if null, islands smaller than getParameters().getMinimumIslandSize() are not created.
+	 * 
+	 * @param islandFilter
+	 */
+	public void setIslandFilter(IslandSizeFilter islandFilter) {
+		this.islandFilter = islandFilter;
+	}
+
+	public IslandSizeFilter getIslandFilter() {
+		return islandFilter;
+	}
+
+	/** islands made while thinning (see IslandThinning) to use instead of flood-filling.
+	 * 
+	 * the island filter and later steps are applied to them as to filled islands. No
+	 * fill is made, so labelledIslands, retainLabels and parallelism do not apply: the
+	 * islands have the labels, statistics and label raster which IslandThinning gives
+	 * them (see IslandThinning.setRetainLabels() and setParallelism()).
+	 * 
+	 * @param thinnedIslands
+	 */
+	public void setThinnedIslands(PixelIslandList thinnedIslands) {
+		this.thinnedIslands = thinnedIslands;
+	}
+
 	/** messy.
 	 * If we have set thinning to null, then we don't use superthinning
 	 * @param thinning
@@ -108,11 +198,26 @@ public class MainPixelProcessor {
 	 * @return
 	 */
 	public PixelIslandList getOrCreatePixelIslandList(boolean superThinning) {
-		if (pixelIslandList == null && getImage() != null) {
-			FloodFill floodFill = new ImageFloodFill(image);
-			floodFill.setDiagonal(true);
-			pixelIslandList = floodFill.getIslandList();
+		if (pixelIslandList == null && (thinnedIslands != null || binaryRaster != null || getImage() != null)) {
 			ImageParameters parameters = getParameters();
+			IslandSizeFilter filter = islandFilter;
+			if (filter == null && parameters != null && parameters.getMinimumIslandSize() != null) {
+				filter = new IslandSizeFilter().setMinimumBoundingBox(parameters.getMinimumIslandSize());
+			}
+			if (thinnedIslands != null) {
+				pixelIslandList = thinnedIslands;
+				if (filter != null) {
+					filter.filter(pixelIslandList);
+				}
+			} else {
+				FloodFill floodFill = (binaryRaster != null) ? new ImageFloodFill(binaryRaster) : new ImageFloodFill(image);
+				floodFill.setDiagonal(true);
+				floodFill.setLabelled(labelledIslands);
+				floodFill.setParallelism(parallelism);
+				floodFill.setRetainLabels(retainLabels);
+				floodFill.setIslandFilter(filter);
+				pixelIslandList = floodFill.getIslandList();
+			}
 			if (parameters != null) {
 				pixelIslandList.removeIslandsLessThan(parameters.getMinimumIslandSize());
 				LOG.trace("after remove islands: " + pixelIslandList.size());
@@ -139,6 +244,31 @@ public class MainPixelProcessor {
 		return pixelIslandList;
 	}
 
+	/** writes the current pixelIslandList (see PixelIslandListFile).
+	 * 
+	 * @param file
+	 */
+	public void writePixelIslandList(File file) {
+		if (pixelIslandList == null) {
+			throw new RuntimeException("no pixelIslandList to write");
+		}
+		PixelIslandListFile.write(pixelIslandList, file);
+	}
+
+	/** reads pixelIslandList written by writePixelIslandList().
+	 * 
+	 * replaces any existing list; avoids repeating floodfill and superthinning.
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public PixelIslandList readPixelIslandList(File file) {
+		pixelIslandList = PixelIslandListFile.read(file);
+		pixelIslandList.setMainProcessor(this);
+		pixelIslandList.setParentIslandList(this);
+		return pixelIslandList;
+	}
+
 	public MainPixelProcessor setMaxIsland(int maxIsland) {
 		this.maxIsland = maxIsland;
 		return this;
@@ -26,7 +26,6 @@ public class Pixel {
 	};
 	
 	Point point;
-	private PixelList neighbourList;
 	PixelIsland island;
 	int value = 0;
 
@@ -44,7 +43,7 @@ public class Pixel {
 
 	/** creates deep copy of Pixel without island.
 	 * 
-	 * neighbourList is null;
+	 * neighbours are not copied;
 	 * 
 	 * @param pixel
 	 */
@@ -55,34 +54,70 @@ public class Pixel {
 	public Int2 getInt2() {
 		return point == null ? null : new Int2(point.x, point.y);
 	}
+
+	/** x coordinate without creating Int2.
+	 * 
+	 * @return
+	 */
+	public int getX() {
+		return point.x;
+	}
+
+	/** y coordinate without creating Int2.
+	 * 
+	 * @return
+	 */
+	public int getY() {
+		return point.y;
+	}
 	
 	public PixelIsland getIsland() {
 		return island;
 	}
 
+	/** neighbours in island.
+	 * 
+	 * created from the island's cached neighbour mask (see PixelIsland.getOrCreateNeighbourMask());
+	 * the list is new each time so editing it does not change the island's neighbours.
+	 * 
+	 * Order is that of calculateNeighbourCoordList().
+	 * 
+	 * @param island
+	 * @return
+	 */
 	public PixelList getOrCreateNeighbours(PixelIsland island) {
-		island.ensurePopulatedMapAndRanges();
-		this.island = island;
-		getOrCreateNeighbourList(island);
-		return neighbourList;
+		int mask = getNeighbourMask(island);
+		return island.createNeighbourList(this, mask & island.getNeighbourFilter());
 	}
 
-	private void getOrCreateNeighbourList(PixelIsland island) {
-		if (neighbourList == null) {
-			createNeighbourList(island);
-		}
+	private int getNeighbourMask(PixelIsland island) {
+		this.island = island;
+		return island.getOrCreateNeighbourMask(this);
 	}
 
+	/** recomputes neighbours from the current pixels in island.
+	 * 
+	 * @param island
+	 * @return
+	 */
 	public PixelList createNeighbourList(PixelIsland island) {
-		neighbourList = new PixelList();
-		List<Int2> coordList = calculateNeighbourCoordList(island);
-		for (Int2 coord : coordList) {
-			Pixel pixel = island.getPixelByCoordMap().get(coord);
-			if (pixel != null) {
-				neighbourList.add(pixel);
-			}
-		}
-		return neighbourList;
+		int mask = island.recomputeNeighbourMask(this);
+		return island.createNeighbourList(this, mask & island.getNeighbourFilter());
+	}
+
+	public int getNeighbourCount(PixelIsland island) {
+		getNeighbourMask(island);
+		return island.getNeighbourCount(this);
+	}
+
+	public int getOrthogonalNeighbourCount(PixelIsland island) {
+		getNeighbourMask(island);
+		return island.getOrthogonalNeighbourCount(this);
+	}
+
+	public int getDiagonalNeighbourCount(PixelIsland island) {
+		getNeighbourMask(island);
+		return island.getDiagonalNeighbourCount(this);
 	}
 	
 	/** creates neighbourList for neighbours of neighbours.
@@ -148,10 +183,10 @@ public class Pixel {
 	public String neighboursString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("; neighbours: ");
-		if (neighbourList == null) {
+		if (island == null) {
 			sb.append("null");
 		} else {
-			for (Pixel neighbour : neighbourList) {
+			for (Pixel neighbour : getOrCreateNeighbours(island)) {
 				sb.append(" "+neighbour.getInt2());
 			}
 		}
@@ -192,7 +227,9 @@ public class Pixel {
 	}
 
 	public void clearNeighbours() {
-		this.neighbourList = null;
+		if (island != null) {
+			island.clearNeighbourMask(this);
+		}
 	}
 
 	public SVGRect getSVGRect() {
@@ -241,25 +278,27 @@ public class Pixel {
 	}
 
 	public boolean isOrthogonalNeighbour(Pixel pixel) {
-		if (pixel == null || pixel.getInt2() == null || this.getInt2() == null) {
+		if (pixel == null || pixel.point == null || this.point == null) {
 			return false;
 		}
-		Int2 vector = this.getInt2().subtract(pixel.getInt2());
-		return Math.abs(vector.getX()) + Math.abs(vector.getY()) == 1;
+		int dx = Math.abs(point.x - pixel.point.x);
+		int dy = Math.abs(point.y - pixel.point.y);
+		return dx + dy == 1;
 	}
 
 	public boolean isDiagonalNeighbour(Pixel pixel) {
-		if (pixel == null || pixel.getInt2() == null || this.getInt2() == null) {
+		if (pixel == null || pixel.point == null || this.point == null) {
 			return false;
 		}
-		Int2 vector = this.getInt2().subtract(pixel.getInt2());
-		return Math.abs(vector.getX()) == 1 && Math.abs(vector.getY()) == 1;
+		int dx = Math.abs(point.x - pixel.point.x);
+		int dy = Math.abs(point.y - pixel.point.y);
+		return dx == 1 && dy == 1;
 	}
 
 	public boolean isKnightsMove(Pixel pixel) {
-		Int2 vector = this.getInt2().subtract(pixel.getInt2());
-		return Math.abs(vector.getX()) + Math.abs(vector.getY()) == 3 &&
-				Math.abs(Math.abs(vector.getX()) - Math.abs(vector.getY())) == 1;
+		int dx = Math.abs(point.x - pixel.point.x);
+		int dy = Math.abs(point.y - pixel.point.y);
+		return dx + dy == 3 && Math.abs(dx - dy) == 1;
 	}
 
 	public boolean isKnightsMove(Pixel centre, Pixel target) {
@@ -286,43 +325,25 @@ public class Pixel {
 	}
 	
 	PixelList getDiagonalNeighbours(PixelIsland island) {
-		PixelList neighbours = getOrCreateNeighbours(island);
-		PixelList pixelList = new PixelList();
-		for (Pixel neighbour : neighbours) {
-			if (isDiagonalNeighbour(neighbour)) {
-				pixelList.add(neighbour);
-			}
-		}
-		return pixelList;
+		int mask = getNeighbourMask(island);
+		return island.createNeighbourList(this, mask & island.getNeighbourFilter() & PixelIsland.DIAGONAL_MASK);
 	}
 
 	public PixelList getOrthogonalNeighbours(PixelIsland island) {
-		PixelList neighbours = getOrCreateNeighbours(island);
-		PixelList pixelList = new PixelList();
-		for (Pixel neighbour : neighbours) {
-			if (isOrthogonalNeighbour(neighbour)) {
-				pixelList.add(neighbour);
-			}
-		}
-		return pixelList;
+		int mask = getNeighbourMask(island);
+		return island.createNeighbourList(this, mask & PixelIsland.ORTHOGONAL_MASK);
 	}
 
 	boolean isConnectedAny(PixelIsland island, int neighbourCount) {
-		PixelList neighbours = getOrCreateNeighbours(island);
-		boolean connected = (neighbours.size() != neighbourCount) ? false : true;
-		return connected;
+		return getNeighbourCount(island) == neighbourCount;
 	}
 
 	boolean is1ConnectedAny(PixelIsland island) {
-		PixelList neighbours = getOrCreateNeighbours(island);
-		boolean connected = (neighbours.size() != 1) ? false : true;
-		return connected;
+		return getNeighbourCount(island) == 1;
 	}
 
 	boolean is2ConnectedAny(PixelIsland island) {
-		PixelList neighbours = getOrCreateNeighbours(island);
-		boolean connected = (neighbours.size() != 2) ? false : true;
-		return connected;
+		return getNeighbourCount(island) == 2;
 	}
 
 	/** get mass centre of pixels with units weights.
@@ -368,8 +389,8 @@ public class Pixel {
 	}
 
 	public boolean isTjunctionCentre(PixelIsland island) {
-		return this.getOrthogonalNeighbours(island).size() == 3 && 
-				this.getDiagonalNeighbours(island).size() == 0;
+		return this.getOrthogonalNeighbourCount(island) == 3 && 
+				this.getDiagonalNeighbourCount(island) == 0;
 	}
 
 	/** do 3 pixels form a right angle of neighbours.
@@ -386,7 +407,7 @@ public class Pixel {
 	}
 
 	public void computeNeighbours(PixelIsland pixelIsland) {
-		this.neighbourList = null;
+		pixelIsland.clearNeighbourMask(this);
 		getOrCreateNeighbours(pixelIsland);
 	}
 
@@ -399,11 +420,7 @@ public class Pixel {
 	}
 
 	void removeFromNeighbourNeighbourList(PixelIsland pixelIsland) {
-		PixelList neighbours = getOrCreateNeighbours(pixelIsland);
-		for (Pixel neighbour : neighbours) {
-			PixelList neighbourList = neighbour.getOrCreateNeighbours(pixelIsland);
-			boolean removed = neighbourList.remove(this);
-		}
+		pixelIsland.removeFromNeighbourMasks(this);
 	}
 
 	/**
@@ -0,0 +1,148 @@
+package org.xmlcml.image.pixel;
+
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.graphics.svg.SVGPolygon;
+
+/** closed boundary of an island as a Freeman chain code.
+ *
+ * The contour starts at (startX, startY) and each code moves to the next boundary pixel
+ * (8-connected); the last code returns to the start. Codes are 0 east, 1 south-east,
+ * 2 south, 3 south-west, 4 west, 5 north-west, 6 north, 7 north-east (y down), so the
+ * outer contour runs clockwise on the screen and inner contours (round holes)
+ * anticlockwise. A pixel may occur more than once where the boundary is 1 pixel thick.
+ *
+ * Made by ContourTracingLabeller; see PixelIsland.getOuterContour().
+ *
+ * @author pm286
+ *
+ */
+public class PixelContour {
+
+	/** x offsets of chain codes 0-7. */
+	public static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+	/** y offsets of chain codes 0-7. */
+	public static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+	private int startX;
+	private int startY;
+	private byte[] codes;
+	private boolean outer;
+
+	/** contour from its chain code.
+	 *
+	 * @param startX
+	 * @param startY
+	 * @param codes empty for an isolated pixel; not copied
+	 * @param outer false if round a hole
+	 */
+	public PixelContour(int startX, int startY, byte[] codes, boolean outer) {
+		this.startX = startX;
+		this.startY = startY;
+		this.codes = codes;
+		this.outer = outer;
+	}
+
+	public int getStartX() {
+		return startX;
+	}
+
+	public int getStartY() {
+		return startY;
+	}
+
+	/** chain code (not copied).
+	 *
+	 * @return
+	 */
+	public byte[] getChainCode() {
+		return codes;
+	}
+
+	public boolean isOuter() {
+		return outer;
+	}
+
+	/** number of points (boundary pixels in order; repeated pixels counted again).
+	 *
+	 * @return
+	 */
+	public int size() {
+		return Math.max(1, codes.length);
+	}
+
+	/** x coordinates of the points.
+	 *
+	 * @return
+	 */
+	public int[] getXArray() {
+		int[] xs = new int[size()];
+		int x = startX;
+		xs[0] = x;
+		for (int i = 0; i < xs.length - 1; i++) {
+			x += DX[codes[i]];
+			xs[i + 1] = x;
+		}
+		return xs;
+	}
+
+	/** y coordinates of the points.
+	 *
+	 * @return
+	 */
+	public int[] getYArray() {
+		int[] ys = new int[size()];
+		int y = startY;
+		ys[0] = y;
+		for (int i = 0; i < ys.length - 1; i++) {
+			y += DY[codes[i]];
+			ys[i + 1] = y;
+		}
+		return ys;
+	}
+
+	/** points as pixels of island.
+	 *
+	 * @param island pixels are taken from it where present (else created)
+	 * @return
+	 */
+	public PixelList createPixelList(PixelIsland island) {
+		int[] xs = getXArray();
+		int[] ys = getYArray();
+		PixelList islandPixels = island == null ? null : island.getPixelList();
+		PixelList pixelList = new PixelList();
+		for (int i = 0; i < xs.length; i++) {
+			Pixel pixel = islandPixels == null ? null : islandPixels.get(xs[i], ys[i]);
+			pixelList.add(pixel != null ? pixel : new Pixel(xs[i], ys[i]));
+		}
+		return pixelList;
+	}
+
+	/** polygon through the centres of the points.
+	 *
+	 * pixel (x,y) covers x to x + 1 and y to y + 1, as in PixelOutliner.
+	 *
+	 * @return
+	 */
+	public SVGPolygon createPolygon() {
+		int[] xs = getXArray();
+		int[] ys = getYArray();
+		Real2Array r2a = new Real2Array();
+		for (int i = 0; i < xs.length; i++) {
+			r2a.add(new Real2(xs[i] + 0.5, ys[i] + 0.5));
+		}
+		SVGPolygon polygon = new SVGPolygon(r2a);
+		polygon.setStrokeWidth(0.1);
+		polygon.setFill("none");
+		return polygon;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(outer ? "outer" : "inner");
+		sb.append("(" + startX + "," + startY + ")");
+		for (byte code : codes) {
+			sb.append(code);
+		}
+		return sb.toString();
+	}
+}
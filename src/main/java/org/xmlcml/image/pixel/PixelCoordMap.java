@@ -0,0 +1,356 @@
+package org.xmlcml.image.pixel;
+
+import java.util.Arrays;
+
+import org.xmlcml.euclid.Int2;
+
+/** map from (x,y) to Pixel without Int2 keys.
+ *
+ * Open addressing with linear probing. Coordinates are packed into a single long
+ * (x << 32 | y) so that neither put() nor get() allocates. A null value marks an
+ * empty slot, so null pixels cannot be stored. Removal shifts following entries
+ * back so no tombstones are left.
+ *
+ * Each slot can also hold an 8-neighbour mask for its pixel (see PixelIsland); the
+ * mask moves with the pixel and is lost when the pixel is removed.
+ *
+ * Slots can likewise hold an int list index (see PixelList, which uses it to find the
+ * position of a pixel in its list without searching); -1 means none.
+ *
+ * Replaces HashMap&lt;Int2, Pixel&gt; in PixelIsland and PixelList.
+ *
+ * @author pm286
+ *
+ */
+public class PixelCoordMap {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final double MAX_LOAD = 0.6;
+
+	private long[] keys;
+	private Pixel[] values;
+	private byte[] masks;
+	private long[] hasMask;
+	// allocated on first setListIndex()
+	private int[] listIndexes;
+	private int mask;
+	private int size;
+	private int resizeAt;
+
+	public PixelCoordMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** creates map able to hold expectedSize pixels without resizing.
+	 *
+	 * @param expectedSize
+	 */
+	public PixelCoordMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+
+	public static int unpackX(long key) {
+		return (int) (key >> 32);
+	}
+
+	public static int unpackY(long key) {
+		return (int) key;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity * MAX_LOAD <= expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Pixel[capacity];
+		masks = new byte[capacity];
+		hasMask = new long[(capacity + 63) >> 6];
+		mask = capacity - 1;
+		resizeAt = (int) (capacity * MAX_LOAD);
+	}
+
+	private static int hash(long key) {
+		// murmur3 finalizer
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private int indexOf(long key) {
+		int i = hash(key) & mask;
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public Pixel get(int x, int y) {
+		int i = indexOf(pack(x, y));
+		return i < 0 ? null : values[i];
+	}
+
+	public Pixel get(Int2 coord) {
+		return coord == null ? null : get(coord.getX(), coord.getY());
+	}
+
+	public boolean containsKey(int x, int y) {
+		return indexOf(pack(x, y)) >= 0;
+	}
+
+	/** adds pixel under its own coordinates.
+	 *
+	 * @param pixel
+	 * @return pixel previously at the coordinates or null
+	 */
+	public Pixel put(Pixel pixel) {
+		return put(pixel.getX(), pixel.getY(), pixel);
+	}
+
+	/** adds pixel at (x,y), replacing any existing one.
+	 *
+	 * @param x
+	 * @param y
+	 * @param pixel must not be null
+	 * @return previous pixel or null
+	 */
+	public Pixel put(int x, int y, Pixel pixel) {
+		if (pixel == null) {
+			throw new RuntimeException("cannot add null pixel");
+		}
+		long key = pack(x, y);
+		int i = hash(key) & mask;
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				Pixel old = values[i];
+				values[i] = pixel;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = pixel;
+		setHasMask(i, false);
+		if (listIndexes != null) {
+			listIndexes[i] = -1;
+		}
+		if (++size > resizeAt) {
+			rehash(keys.length << 1);
+		}
+		return null;
+	}
+
+	public Pixel remove(int x, int y) {
+		int i = indexOf(pack(x, y));
+		if (i < 0) {
+			return null;
+		}
+		Pixel old = values[i];
+		shiftBack(i);
+		size--;
+		return old;
+	}
+
+	public Pixel remove(Int2 coord) {
+		return coord == null ? null : remove(coord.getX(), coord.getY());
+	}
+
+	/** closes the gap at i by moving back any entry whose probe sequence passed through it.
+	 *
+	 * @param gap
+	 */
+	private void shiftBack(int gap) {
+		int i = gap;
+		while (true) {
+			i = (i + 1) & mask;
+			if (values[i] == null) {
+				break;
+			}
+			int home = hash(keys[i]) & mask;
+			// entry at i can move to gap if its home is not cyclically in (gap, i]
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				masks[gap] = masks[i];
+				setHasMask(gap, hasMask(i));
+				if (listIndexes != null) {
+					listIndexes[gap] = listIndexes[i];
+				}
+				gap = i;
+			}
+		}
+		values[gap] = null;
+		keys[gap] = 0L;
+		setHasMask(gap, false);
+		if (listIndexes != null) {
+			listIndexes[gap] = -1;
+		}
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Pixel[] oldValues = values;
+		byte[] oldMasks = masks;
+		long[] oldHasMask = hasMask;
+		int[] oldListIndexes = listIndexes;
+		allocate(capacity);
+		if (oldListIndexes != null) {
+			listIndexes = createListIndexes(capacity);
+		}
+		for (int j = 0; j < oldValues.length; j++) {
+			Pixel pixel = oldValues[j];
+			if (pixel != null) {
+				int i = hash(oldKeys[j]) & mask;
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = pixel;
+				masks[i] = oldMasks[j];
+				setHasMask(i, (oldHasMask[j >> 6] & (1L << j)) != 0);
+				if (oldListIndexes != null) {
+					listIndexes[i] = oldListIndexes[j];
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		clearMasks();
+		clearListIndexes();
+		size = 0;
+	}
+
+	/** neighbour mask stored for pixel at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return mask (0-255) or -1 if no pixel or no mask stored
+	 */
+	public int getMask(int x, int y) {
+		int i = indexOf(pack(x, y));
+		return (i < 0 || !hasMask(i)) ? -1 : masks[i] & 0xff;
+	}
+
+	/** stores neighbour mask for pixel at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @param neighbourMask
+	 * @return false if there is no pixel at (x,y)
+	 */
+	public boolean setMask(int x, int y, int neighbourMask) {
+		int i = indexOf(pack(x, y));
+		if (i < 0) {
+			return false;
+		}
+		masks[i] = (byte) neighbourMask;
+		setHasMask(i, true);
+		return true;
+	}
+
+	/** clears bits in stored mask (if any).
+	 *
+	 * @param x
+	 * @param y
+	 * @param bits
+	 */
+	public void clearMaskBits(int x, int y, int bits) {
+		int i = indexOf(pack(x, y));
+		if (i >= 0 && hasMask(i)) {
+			masks[i] &= ~bits;
+		}
+	}
+
+	public void removeMask(int x, int y) {
+		int i = indexOf(pack(x, y));
+		if (i >= 0) {
+			setHasMask(i, false);
+		}
+	}
+
+	public void clearMasks() {
+		Arrays.fill(hasMask, 0L);
+	}
+
+	private boolean hasMask(int i) {
+		return (hasMask[i >> 6] & (1L << i)) != 0;
+	}
+
+	private void setHasMask(int i, boolean b) {
+		if (b) {
+			hasMask[i >> 6] |= 1L << i;
+		} else {
+			hasMask[i >> 6] &= ~(1L << i);
+		}
+	}
+
+	/** list index stored for pixel at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return index or -1 if no pixel or no index stored
+	 */
+	public int getListIndex(int x, int y) {
+		int i = indexOf(pack(x, y));
+		return (i < 0 || listIndexes == null) ? -1 : listIndexes[i];
+	}
+
+	/** stores list index for pixel at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @param index
+	 * @return false if there is no pixel at (x,y)
+	 */
+	public boolean setListIndex(int x, int y, int index) {
+		int i = indexOf(pack(x, y));
+		if (i < 0) {
+			return false;
+		}
+		if (listIndexes == null) {
+			listIndexes = createListIndexes(keys.length);
+		}
+		listIndexes[i] = index;
+		return true;
+	}
+
+	public void clearListIndexes() {
+		if (listIndexes != null) {
+			Arrays.fill(listIndexes, -1);
+		}
+	}
+
+	private static int[] createListIndexes(int capacity) {
+		int[] indexes = new int[capacity];
+		Arrays.fill(indexes, -1);
+		return indexes;
+	}
+
+	public String toString() {
+		return "pixelMap: " + size;
+	}
+}
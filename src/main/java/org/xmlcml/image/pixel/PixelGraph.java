@@ -122,11 +122,18 @@ public class PixelGraph {
 	static Pixel getNextUnusedInEdge(Pixel current, Pixel last,
 			PixelIsland island) {
 		Pixel next = null;
-		PixelList neighbours = current.getOrCreateNeighbours(island);
-		neighbours.remove(last);
-		next = neighbours.size() == 1 ? neighbours.get(0) : null;
-		Long time3 = System.currentTimeMillis();
-		return next;
+		int x = current.getX();
+		int y = current.getY();
+		int count = 0;
+		// neighbours other than last
+		for (int bits = island.getNeighbourDirections(x, y); bits != 0; bits &= bits - 1) {
+			int i = Integer.numberOfTrailingZeros(bits);
+			if (x + PixelIsland.NEIGHBOUR_DX[i] != last.getX() || y + PixelIsland.NEIGHBOUR_DY[i] != last.getY()) {
+				next = island.getNeighbour(x, y, i);
+				count++;
+			}
+		}
+		return count == 1 ? next : null;
 	}
 
 	public PixelNodeList getNodeList() {
@@ -2,10 +2,10 @@ package org.xmlcml.image.pixel;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -55,6 +55,14 @@ public class PixelIsland implements Iterable<Pixel> {
 		THINNED,
 	}
 	public static final int NEIGHBOUR8 = -1;
+
+	// neighbour mask bits, in the order of Pixel.calculateNeighbourCoordList(true)
+	static final int[] NEIGHBOUR_DX = { 1, -1,  1, -1,  0,  0,  1, -1};
+	static final int[] NEIGHBOUR_DY = { 0,  0,  1,  1,  1, -1, -1, -1};
+	// bit index of the reverse direction
+	static final int[] NEIGHBOUR_OPPOSITE = {1, 0, 7, 6, 5, 4, 3, 2};
+	static final int ORTHOGONAL_MASK = 0x33;
+	static final int DIAGONAL_MASK = 0xcc;
 	
 	private static final String DEFAULT_OUTPUT_DIRECTORY_FILENAME = "target/island/";
 	private static final String DEFAULT_INTERNAL_RING_NAME = "internalRings";
@@ -72,7 +80,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	private Int2Range int2range;
 	private Real2Range real2range;
 	private Int2 leftmostCoord;
-	Map<Int2, Pixel> pixelByCoordMap; // find pixel or null
+	PixelCoordMap pixelByCoordMap; // find pixel or null
 	private PixelList terminalPixels;
 
 	private String pixelColor = "red";
@@ -87,6 +95,13 @@ public class PixelIsland implements Iterable<Pixel> {
 	private String id;
 
 	private PixelRingList internalPixelRings;
+	private PixelContour outerContour;
+	private List<PixelContour> innerContours;
+	// size when the contours were traced
+	private int contourSize;
+	// coordinates (PixelCoordMap.pack()) of pixels removed since the last relabel()
+	private long[] removedCoords;
+	private int removedCount;
 
 	// plotting stuff
 	private PixelPlotter pixelPlotter;
@@ -103,7 +118,17 @@ public class PixelIsland implements Iterable<Pixel> {
 	
 	
 	public PixelIsland() {
-		ensurePixelList();
+		this(true);
+	}
+
+	/** for subclasses which create the pixelList on demand.
+	 * 
+	 * @param createPixelList if false pixelList is left null until ensurePixelList()
+	 */
+	PixelIsland(boolean createPixelList) {
+		if (createPixelList) {
+			ensurePixelList();
+		}
 		setDefaults();
 	}
 
@@ -136,7 +161,12 @@ public class PixelIsland implements Iterable<Pixel> {
 		return cloneIsland;
 	}
 
-	private void ensurePixelList() {
+	/** creates pixelList if null.
+	 * 
+	 * all access to pixelList goes through this (or getPixelList()) so that
+	 * subclasses can create the pixels lazily.
+	 */
+	void ensurePixelList() {
 		if (pixelList == null) {
 			this.pixelList = new PixelList();
 		}
@@ -222,7 +252,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	void ensurePopulatedMapAndRanges() {
 		ensurePixelByCoordMap();
 		if (pixelByCoordMap.size() == 0) {
-			createMapAndRanges(pixelList);
+			createMapAndRanges(getPixelList());
 		}
 	}
 
@@ -236,7 +266,7 @@ public class PixelIsland implements Iterable<Pixel> {
 		ensureReal2Range();
 		ensurePixelByCoordMap();
 		Int2 int2 = pixel.getInt2();
-		pixelByCoordMap.put(int2, pixel);
+		pixelByCoordMap.put(pixel);
 		int2range.add(int2);
 		real2range.add(new Real2(int2));
 		if (leftmostCoord == null || leftmostCoord.getX() < int2.getX()) {
@@ -268,17 +298,224 @@ public class PixelIsland implements Iterable<Pixel> {
 		return pixel;
 	}
 	
-	public Map<Int2, Pixel> getPixelByCoordMap() {
+	/** pixel at (x,y) without creating Int2.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return null if not in island
+	 */
+	public Pixel get(int x, int y) {
+		ensurePopulatedMapAndRanges();
+		return pixelByCoordMap.get(x, y);
+	}
+
+	public boolean contains(int x, int y) {
+		return get(x, y) != null;
+	}
+
+	public PixelCoordMap getPixelByCoordMap() {
 		ensurePixelByCoordMap();
 		return pixelByCoordMap;
 	}
 
 	private void ensurePixelByCoordMap() {
 		if (pixelByCoordMap == null) {
-			pixelByCoordMap = new HashMap<Int2, Pixel>();
+			pixelByCoordMap = new PixelCoordMap(pixelList == null ? 0 : pixelList.size());
 		}
 	}
 
+	/** 8-neighbour mask of pixel.
+	 * 
+	 * bit i is set if there is a pixel at (x + NEIGHBOUR_DX[i], y + NEIGHBOUR_DY[i]).
+	 * Diagonal bits are always computed; getNeighbourFilter() removes them if
+	 * diagonals are not allowed.
+	 * 
+	 * The mask is computed once and kept in pixelByCoordMap; it is updated when pixels are
+	 * removed through remove(Pixel). Pixels not in the map are computed every time.
+	 * 
+	 * @param pixel
+	 * @return
+	 */
+	int getOrCreateNeighbourMask(Pixel pixel) {
+		return getOrCreateNeighbourMask(pixel.getX(), pixel.getY());
+	}
+
+	/** as getOrCreateNeighbourMask(Pixel) for the pixel at (x,y).
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	int getOrCreateNeighbourMask(int x, int y) {
+		ensurePopulatedMapAndRanges();
+		int mask = pixelByCoordMap.getMask(x, y);
+		if (mask < 0) {
+			mask = computeNeighbourMask(x, y);
+			pixelByCoordMap.setMask(x, y, mask);
+		}
+		return mask;
+	}
+
+	/** discards any stored mask and computes a new one.
+	 * 
+	 * @param pixel
+	 * @return
+	 */
+	int recomputeNeighbourMask(Pixel pixel) {
+		ensurePopulatedMapAndRanges();
+		int x = pixel.getX();
+		int y = pixel.getY();
+		int mask = computeNeighbourMask(x, y);
+		pixelByCoordMap.setMask(x, y, mask);
+		return mask;
+	}
+
+	private int computeNeighbourMask(int x, int y) {
+		int mask = 0;
+		for (int i = 0; i < 8; i++) {
+			if (pixelByCoordMap.containsKey(x + NEIGHBOUR_DX[i], y + NEIGHBOUR_DY[i])) {
+				mask |= 1 << i;
+			}
+		}
+		return mask;
+	}
+
+	void clearNeighbourMask(Pixel pixel) {
+		if (pixelByCoordMap != null) {
+			pixelByCoordMap.removeMask(pixel.getX(), pixel.getY());
+		}
+	}
+
+	/** removes pixel from the stored masks of all its neighbours.
+	 * 
+	 * @param pixel
+	 */
+	void removeFromNeighbourMasks(Pixel pixel) {
+		ensurePixelByCoordMap();
+		int x = pixel.getX();
+		int y = pixel.getY();
+		for (int i = 0; i < 8; i++) {
+			pixelByCoordMap.clearMaskBits(x + NEIGHBOUR_DX[i], y + NEIGHBOUR_DY[i], 1 << NEIGHBOUR_OPPOSITE[i]);
+		}
+	}
+
+	/** stops two adjacent pixels being treated as neighbours.
+	 * 
+	 * both pixels remain in the island.
+	 * 
+	 * @param pixel0
+	 * @param pixel1
+	 */
+	void removeNeighbourLink(Pixel pixel0, Pixel pixel1) {
+		int dx = pixel1.getX() - pixel0.getX();
+		int dy = pixel1.getY() - pixel0.getY();
+		for (int i = 0; i < 8; i++) {
+			if (NEIGHBOUR_DX[i] == dx && NEIGHBOUR_DY[i] == dy) {
+				getOrCreateNeighbourMask(pixel0);
+				getOrCreateNeighbourMask(pixel1);
+				pixelByCoordMap.clearMaskBits(pixel0.getX(), pixel0.getY(), 1 << i);
+				pixelByCoordMap.clearMaskBits(pixel1.getX(), pixel1.getY(), 1 << NEIGHBOUR_OPPOSITE[i]);
+				break;
+			}
+		}
+	}
+
+	/** mask of directions allowed by getDiagonal().
+	 * 
+	 * @return
+	 */
+	int getNeighbourFilter() {
+		return allowDiagonal ? 0xff : ORTHOGONAL_MASK;
+	}
+
+	/** pixels for set bits of mask, in bit order.
+	 * 
+	 * @param pixel
+	 * @param mask
+	 * @return
+	 */
+	PixelList createNeighbourList(Pixel pixel, int mask) {
+		PixelList neighbourList = new PixelList();
+		int x = pixel.getX();
+		int y = pixel.getY();
+		for (int i = 0; mask != 0; i++, mask >>>= 1) {
+			if ((mask & 1) != 0) {
+				Pixel neighbour = pixelByCoordMap.get(x + NEIGHBOUR_DX[i], y + NEIGHBOUR_DY[i]);
+				if (neighbour != null) {
+					neighbourList.add(neighbour);
+				}
+			}
+		}
+		return neighbourList;
+	}
+
+	/** directions of the neighbours which getOrCreateNeighbours() would return.
+	 * 
+	 * bits as getOrCreateNeighbourMask(), restricted by getNeighbourFilter(). Pixels
+	 * only leave the map through remove(Pixel), which clears them from the masks of
+	 * their neighbours, so the mask is not checked against the map again.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	int getNeighbourDirections(int x, int y) {
+		return getOrCreateNeighbourMask(x, y) & getNeighbourFilter();
+	}
+
+	/** visits the neighbours of the pixel at (x,y) without creating a PixelList.
+	 * 
+	 * same neighbours in the same order as getOrCreateNeighbours().
+	 * 
+	 * @param x
+	 * @param y
+	 * @param consumer receives the coordinates of each neighbour
+	 */
+	public void forEachNeighbour(int x, int y, IntIntConsumer consumer) {
+		for (int bits = getNeighbourDirections(x, y); bits != 0; bits &= bits - 1) {
+			int i = Integer.numberOfTrailingZeros(bits);
+			consumer.accept(x + NEIGHBOUR_DX[i], y + NEIGHBOUR_DY[i]);
+		}
+	}
+
+	/** number of neighbours of the pixel at (x,y) without creating a PixelList.
+	 * 
+	 * with both flags true this is getOrCreateNeighbours().size().
+	 * 
+	 * @param x
+	 * @param y
+	 * @param orthogonal count orthogonal neighbours
+	 * @param diagonal count diagonal neighbours (if getDiagonal())
+	 * @return
+	 */
+	public int neighbourCount(int x, int y, boolean orthogonal, boolean diagonal) {
+		int directions = (orthogonal ? ORTHOGONAL_MASK : 0) | (diagonal ? DIAGONAL_MASK : 0);
+		return Integer.bitCount(getNeighbourDirections(x, y) & directions);
+	}
+
+	/** neighbour of (x,y) in direction i (see NEIGHBOUR_DX).
+	 * 
+	 * @param x
+	 * @param y
+	 * @param i
+	 * @return null if none
+	 */
+	Pixel getNeighbour(int x, int y, int i) {
+		return pixelByCoordMap.get(x + NEIGHBOUR_DX[i], y + NEIGHBOUR_DY[i]);
+	}
+
+	public int getNeighbourCount(Pixel pixel) {
+		return neighbourCount(pixel.getX(), pixel.getY(), true, true);
+	}
+
+	public int getOrthogonalNeighbourCount(Pixel pixel) {
+		return neighbourCount(pixel.getX(), pixel.getY(), true, false);
+	}
+
+	public int getDiagonalNeighbourCount(Pixel pixel) {
+		return neighbourCount(pixel.getX(), pixel.getY(), false, true);
+	}
+
 	public PixelList getPixelList() {
 		ensurePixelList();
 		return pixelList;
@@ -291,7 +528,7 @@ public class PixelIsland implements Iterable<Pixel> {
 
 	public PixelList getPixelsWithNeighbourCount(int neighbourCount) {
 		PixelList pixels = new PixelList();
-		for (Pixel pixel : pixelList) {
+		for (Pixel pixel : getPixelList()) {
 			int nCount = getNeighbourCount(pixel);
 			if (neighbourCount == nCount) {
 				pixels.add(pixel);
@@ -300,10 +537,6 @@ public class PixelIsland implements Iterable<Pixel> {
 		return pixels;
 	}
 
-	private int getNeighbourCount(Pixel pixel) {
-		return pixel.getOrCreateNeighbours(this).size();
-	}
-
 	public void setDiagonal(boolean diagonal) {
 		this.allowDiagonal = diagonal;
 	}
@@ -316,17 +549,137 @@ public class PixelIsland implements Iterable<Pixel> {
 	 * @param pixel
 	 */
 	public void remove(Pixel pixel) {
-		if (pixelList.remove(pixel)) {
+		if (getPixelList().remove(pixel)) {
 			//Leaves int2range, real2range and leftmostCoord dirty
 			int2range = null;
 			real2range = null;
 			leftmostCoord = null;
-			Int2 coord = pixel.getInt2();
-			pixelByCoordMap.remove(coord);
+			ensurePixelByCoordMap();
+			pixelByCoordMap.remove(pixel.getX(), pixel.getY());
 			pixel.removeFromNeighbourNeighbourList(this);
-			pixel.clearNeighbours();
-			
+			logRemoved(pixel);
+		}
+	}
+
+	private void logRemoved(Pixel pixel) {
+		if (removedCoords == null) {
+			removedCoords = new long[16];
+		} else if (removedCount == removedCoords.length) {
+			removedCoords = Arrays.copyOf(removedCoords, removedCount * 2);
 		}
+		removedCoords[removedCount++] = PixelCoordMap.pack(pixel.getX(), pixel.getY());
+	}
+
+	/** have pixels been removed since the last relabel()?
+	 * 
+	 * @return
+	 */
+	public boolean hasRemovedPixels() {
+		return removedCount > 0;
+	}
+
+	/** checks whether removing pixels has split the island.
+	 * 
+	 * only the neighbours of the pixels removed since the last call are examined: if a
+	 * search (using getDiagonal()) from one of them reaches all the others the island is
+	 * still connected. Otherwise the pixels are labelled into pieces, which take the
+	 * same Pixel objects in the same order; this island is then obsolete and should be
+	 * replaced by them (as by PixelIslandList.relabelEditedIslands()).
+	 * 
+	 * assumes the island was connected when last relabelled (or created).
+	 * 
+	 * @return pieces in order of their first pixel in getPixelList(); null if not split
+	 */
+	public List<PixelIsland> relabel() {
+		if (removedCount == 0) {
+			return null;
+		}
+		ensurePopulatedMapAndRanges();
+		PixelList seeds = new PixelList();
+		int filter = getNeighbourFilter();
+		for (int i = 0; i < removedCount; i++) {
+			int x = PixelCoordMap.unpackX(removedCoords[i]);
+			int y = PixelCoordMap.unpackY(removedCoords[i]);
+			for (int bits = filter; bits != 0; bits &= bits - 1) {
+				Pixel neighbour = getNeighbour(x, y, Integer.numberOfTrailingZeros(bits));
+				if (neighbour != null) {
+					seeds.add(neighbour);
+				}
+			}
+		}
+		removedCoords = null;
+		removedCount = 0;
+		if (seeds.size() == 0) {
+			return null;
+		}
+		// pieceMap holds visited pixels with the index of their piece
+		PixelCoordMap pieceMap = new PixelCoordMap(size());
+		Pixel[] queue = new Pixel[size()];
+		markPiece(seeds.get(0), 0, pieceMap, queue);
+		boolean split = false;
+		for (Pixel seed : seeds) {
+			if (!pieceMap.containsKey(seed.getX(), seed.getY())) {
+				split = true;
+				break;
+			}
+		}
+		if (!split) {
+			return null;
+		}
+		int pieceCount = 1;
+		for (Pixel pixel : pixelList) {
+			if (!pieceMap.containsKey(pixel.getX(), pixel.getY())) {
+				markPiece(pixel, pieceCount++, pieceMap, queue);
+			}
+		}
+		return createPieces(pieceMap, pieceCount);
+	}
+
+	/** marks the pixels connected to start as piece.
+	 */
+	private void markPiece(Pixel start, int piece, PixelCoordMap pieceMap, Pixel[] queue) {
+		int filter = getNeighbourFilter();
+		int head = 0;
+		int tail = 0;
+		pieceMap.put(start);
+		pieceMap.setListIndex(start.getX(), start.getY(), piece);
+		queue[tail++] = start;
+		while (head < tail) {
+			Pixel pixel = queue[head++];
+			for (int bits = filter; bits != 0; bits &= bits - 1) {
+				Pixel neighbour = getNeighbour(pixel.getX(), pixel.getY(), Integer.numberOfTrailingZeros(bits));
+				if (neighbour != null && !pieceMap.containsKey(neighbour.getX(), neighbour.getY())) {
+					pieceMap.put(neighbour);
+					pieceMap.setListIndex(neighbour.getX(), neighbour.getY(), piece);
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+	}
+
+	/** pieces in order of their first pixel in pixelList.
+	 * 
+	 * the piece numbers in pieceMap are in the order found (the seeded piece first).
+	 */
+	private List<PixelIsland> createPieces(PixelCoordMap pieceMap, int pieceCount) {
+		List<PixelIsland> pieces = new ArrayList<PixelIsland>(pieceCount);
+		PixelIsland[] pieceByNumber = new PixelIsland[pieceCount];
+		for (Pixel pixel : pixelList) {
+			int number = pieceMap.getListIndex(pixel.getX(), pixel.getY());
+			PixelIsland piece = pieceByNumber[number];
+			if (piece == null) {
+				piece = new PixelIsland();
+				piece.allowDiagonal = allowDiagonal;
+				piece.islandList = islandList;
+				piece.pixelColor = pixelColor;
+				pieceByNumber[number] = piece;
+				pieces.add(piece);
+			}
+			piece.addPixelWithoutComputingNeighbours(pixel);
+			pixel.setIsland(piece);
+		}
+		LOG.trace("split into "+pieceCount);
+		return pieces;
 	}
 
 	/**
@@ -343,7 +696,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	 */
 	public PixelSet removeSteps() {
 		PixelSet removed = new PixelSet();
-		for (Pixel pixel : pixelList) {
+		for (Pixel pixel : getPixelList()) {
 			if (removed.contains(pixel)) {
 				continue;
 			}
@@ -373,7 +726,7 @@ public class PixelIsland implements Iterable<Pixel> {
 
 	public SVGG createSVG() {
 		SVGG g = new SVGG();
-		for (Pixel pixel : pixelList) {
+		for (Pixel pixel : getPixelList()) {
 			g.appendChild(pixel.getSVGRect());
 		}
 		return g;
@@ -454,8 +807,8 @@ public class PixelIsland implements Iterable<Pixel> {
 				int y1 = yMin1 + j;
 				int y2 = yMin2 + j;
 				Int2 i2 = new Int2(x1, y1);
-				Pixel pixel1 = pixelByCoordMap.get(i2);
-				Pixel pixel2 = island2.pixelByCoordMap.get(new Int2(x2, y2));
+				Pixel pixel1 = pixelByCoordMap.get(x1, y1);
+				Pixel pixel2 = island2.pixelByCoordMap.get(x2, y2);
 				if (pixel1 != null) {
 					g.appendChild(addRect(i2, "red"));
 				}
@@ -569,8 +922,54 @@ public class PixelIsland implements Iterable<Pixel> {
 		return pixelColor;
 	}
 
+	/** attaches contours traced while labelling (see ContourTracingLabeller).
+	 * 
+	 * the contours are dropped (not updated) when the size of the island changes.
+	 * 
+	 * @param outerContour
+	 * @param innerContours round the holes
+	 */
+	public void setContours(PixelContour outerContour, List<PixelContour> innerContours) {
+		this.outerContour = outerContour;
+		this.innerContours = innerContours;
+		this.contourSize = size();
+	}
+
+	/** outer boundary traced while labelling.
+	 * 
+	 * @return null if not traced or the island has changed since
+	 */
+	public PixelContour getOuterContour() {
+		return hasContours() ? outerContour : null;
+	}
+
+	/** boundaries of the holes traced while labelling.
+	 * 
+	 * @return null if not traced or the island has changed since
+	 */
+	public List<PixelContour> getInnerContours() {
+		return hasContours() ? innerContours : null;
+	}
+
+	private boolean hasContours() {
+		return outerContour != null && contourSize == size();
+	}
+
+	/** finds the holes in the island.
+	 * 
+	 * a lake is a 4-connected set of white pixels which cannot be reached from outside
+	 * the island (the background of an 8-connected island is 4-connected).
+	 * 
+	 * @return lakes in raster order of their first pixel; empty if none
+	 */
 	public List<PixelIsland> findPixelLakes() {
-		throw new RuntimeException("NYI");
+		PixelList interior = new PixelListFloodFill(getPixelList()).createInteriorPixelList();
+		if (interior.size() == 0) {
+			return new ArrayList<PixelIsland>();
+		}
+		PixelListFloodFill lakeFill = new PixelListFloodFill(interior);
+		lakeFill.setDiagonal(false);
+		return lakeFill.getIslandList().getList();
 	}
 	
 	/** finds all pixels exposed to whitespace.
@@ -583,7 +982,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	 */
 	public PixelList createExposedPixelList() {
 		PixelList exposedList = new PixelList();
-		for (Pixel pixel : pixelList) {
+		for (Pixel pixel : getPixelList()) {
 			PixelList neighbours = pixel.getOrCreateNeighbours(this);
 			if (neighbours.size() < 8) {
 				exposedList.add(pixel);
@@ -627,11 +1026,9 @@ public class PixelIsland implements Iterable<Pixel> {
 	 */
 	private void markEdges() {
 		PixelList exposedList = new PixelList();
-		for (Pixel pixel : pixelList) {
+		for (Pixel pixel : getPixelList()) {
 			pixel.setValue(NEIGHBOUR8);
-			PixelList neighbours = pixel.getOrCreateNeighbours(this);
-			int size = neighbours.size();
-			if (size < 8) {
+			if (neighbourCount(pixel.getX(), pixel.getY(), true, true) < 8) {
 				exposedList.add(pixel);
 			}
 		}
@@ -647,7 +1044,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	 */
 	public PixelList getPixelsWithValue(int v) {
 		PixelList valueList = new PixelList();
-		for (Pixel pixel : pixelList) {
+		for (Pixel pixel : getPixelList()) {
 			if (pixel.getValue() == v) {
 				valueList.add(pixel);
 			}
@@ -667,8 +1064,10 @@ public class PixelIsland implements Iterable<Pixel> {
 			if (start.getValue() != v) {
 				throw new RuntimeException("bad pixel " + start.getValue());
 			}
-			PixelList neighbours = start.getOrCreateNeighbours(this);
-			for (Pixel neighbour : neighbours) {
+			int x = start.getX();
+			int y = start.getY();
+			for (int bits = getNeighbourDirections(x, y); bits != 0; bits &= bits - 1) {
+				Pixel neighbour = getNeighbour(x, y, Integer.numberOfTrailingZeros(bits));
 				if (neighbour.getValue() == NEIGHBOUR8) {
 					neighbour.setValue(v + 1);
 					growList.add(neighbour);
@@ -699,7 +1098,8 @@ public class PixelIsland implements Iterable<Pixel> {
 	}
 
 	public Pixel get(int i) {
-		return pixelList == null || i < 0 || i >= pixelList.size() ? null
+		PixelList pixelList = getPixelList();
+		return i < 0 || i >= pixelList.size() ? null
 				: pixelList.get(i);
 	}
 
@@ -716,7 +1116,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	}
 
 	public Iterator<Pixel> iterator() {
-		return pixelList.iterator();
+		return getPixelList().iterator();
 	}
 
 	/**
@@ -737,7 +1137,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	public SVGG getOrCreateSVGG() {
 		ensurePixelPlotter();
 		if (svgg == null) {
-			svgg = pixelPlotter.plotPixels(pixelList, pixelColor);
+			svgg = pixelPlotter.plotPixels(getPixelList(), pixelColor);
 		}
 		return svgg;
 	}
@@ -773,24 +1173,20 @@ public class PixelIsland implements Iterable<Pixel> {
 	private PixelSet makeCornerSet() {
 		cornerSet = new PixelSet();
 		for (Pixel pixel : this) {
-			PixelList orthogonalNeighbours = pixel
-					.getOrthogonalNeighbours(this);
+			int directions = getNeighbourDirections(pixel.getX(), pixel.getY());
+			int orthogonal = directions & ORTHOGONAL_MASK;
 			// two orthogonal at right angles?
-			if (orthogonalNeighbours.size() == 2) {
-				Pixel orthNeigh0 = orthogonalNeighbours.get(0);
-				Pixel orthNeigh1 = orthogonalNeighbours.get(1);
-				// corner?
-				if (orthNeigh0.isDiagonalNeighbour(orthNeigh1)) {
-					PixelList diagonalNeighbours = pixel
-							.getDiagonalNeighbours(this);
+			if (Integer.bitCount(orthogonal) == 2) {
+				int orth0 = Integer.numberOfTrailingZeros(orthogonal);
+				int orth1 = Integer.numberOfTrailingZeros(orthogonal & (orthogonal - 1));
+				// corner? (not opposite each other)
+				if (NEIGHBOUR_OPPOSITE[orth0] != orth1) {
 					// is this a diagonal Y-junction?
 					boolean add = true;
-					for (Pixel diagonalNeighbour : diagonalNeighbours) {
-						if (diagonalNeighbour.isKnightsMove(orthNeigh0)
-								&& diagonalNeighbour.isKnightsMove(orthNeigh1)) {
-							LOG.trace("skipped diagonal Y Junction: "
-									+ diagonalNeighbour + "/" + pixel + "/"
-									+ orthNeigh0 + "//" + orthNeigh1);
+					for (int bits = directions & DIAGONAL_MASK; bits != 0; bits &= bits - 1) {
+						int diag = Integer.numberOfTrailingZeros(bits);
+						if (isKnightsMove(diag, orth0) && isKnightsMove(diag, orth1)) {
+							LOG.trace("skipped diagonal Y Junction at: " + pixel);
 							add = false;
 							break; // Y-junction
 						}
@@ -804,6 +1200,18 @@ public class PixelIsland implements Iterable<Pixel> {
 		return cornerSet;
 	}
 
+	/** are the neighbours in directions i and j a knight's move apart?
+	 * 
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	private static boolean isKnightsMove(int i, int j) {
+		int dx = Math.abs(NEIGHBOUR_DX[i] - NEIGHBOUR_DX[j]);
+		int dy = Math.abs(NEIGHBOUR_DY[i] - NEIGHBOUR_DY[j]);
+		return dx + dy == 3 && Math.abs(dx - dy) == 1;
+	}
+
 	/**
 	 * removes all corners not next to each other.
 	 * 
@@ -857,7 +1265,7 @@ public class PixelIsland implements Iterable<Pixel> {
 	 */
 	public PixelList getNucleusCentrePixelList() {
 		PixelList pixels = new PixelList();
-		for (Pixel pixel : pixelList) {
+		for (Pixel pixel : getPixelList()) {
 			int neighbourCount = getNeighbourCount(pixel);
 			if (neighbourCount != 2) {
 				pixels.add(pixel);
@@ -906,10 +1314,12 @@ public class PixelIsland implements Iterable<Pixel> {
 		if (coord != null) {
 			filledList = new PixelList();
 			ensurePixelByCoordMap();
-			addPixel(filledList, pixelByCoordMap.get(coord.subtract(new Int2(1,0))));
-			addPixel(filledList, pixelByCoordMap.get(coord.subtract(new Int2(0,1))));
-			addPixel(filledList, pixelByCoordMap.get(coord.plus(new Int2(1,0))));
-			addPixel(filledList, pixelByCoordMap.get(coord.plus(new Int2(0,1))));
+			int x = coord.getX();
+			int y = coord.getY();
+			addPixel(filledList, pixelByCoordMap.get(x - 1, y));
+			addPixel(filledList, pixelByCoordMap.get(x, y - 1));
+			addPixel(filledList, pixelByCoordMap.get(x + 1, y));
+			addPixel(filledList, pixelByCoordMap.get(x, y + 1));
 
 		}
 		if (filledList.size() > 0) {
@@ -940,10 +1350,10 @@ public class PixelIsland implements Iterable<Pixel> {
 			IntRange yRange = box.getYRange();
 			int ymin = yRange.getMin();
 			int ymax = yRange.getMax();
-			Map<Int2, Pixel> pixelByCoordMap = getPixelByCoordMap();
+			PixelCoordMap pixelByCoordMap = getPixelByCoordMap();
 			for (int i = xmin; i <= xmax; i++) {
 				for (int j = ymin; j <= ymax; j++) {
-					Pixel pixel = pixelByCoordMap.get(new Int2(i, j));
+					Pixel pixel = pixelByCoordMap.get(i, j);
 					if (pixel == null) {
 						emptyPixelList.add(new Pixel(i, j));
 					}
@@ -964,8 +1374,10 @@ public class PixelIsland implements Iterable<Pixel> {
 	}
 
 	public void recomputeNeighbours() {
+		ensurePopulatedMapAndRanges();
+		pixelByCoordMap.clearMasks();
 		for (Pixel pixel : this) {
-			pixel.recomputeNeighbours(this);
+			recomputeNeighbourMask(pixel);
 		}
 	}
 
@@ -0,0 +1,13 @@
+package org.xmlcml.image.pixel;
+
+/** receives islands as they are created.
+ *
+ * used by StreamingIslandLabeller.
+ *
+ * @author pm286
+ *
+ */
+public interface PixelIslandConsumer {
+
+	void accept(PixelIsland island);
+}
@@ -4,10 +4,14 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Int2;
@@ -52,6 +56,17 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 	private boolean diagonal;
 	private List<PixelGraph> graphList;
 	private List<PixelList> outlineList;
+	// labels of the fill which created the islands (optional); islandByLabel[k] has label k
+	// (null once removed) and labelByIsland is the inverse
+	private PixelLabelRaster labelRaster;
+	private PixelIsland[] islandByLabel;
+	private Map<PixelIsland, Integer> labelByIsland;
+	// position in list of islandByLabel[k], -1 if not in list; checked on use
+	private int[] indexByLabel;
+	// pieces of labelled islands split by relabelEditedIslands(), by label
+	private Map<Integer, List<PixelIsland>> piecesByLabel;
+	// statistics of the fill which created the islands (optional), by label
+	private PixelIslandStats stats;
 
 	public PixelIslandList() {
 		list = new ArrayList<PixelIsland>();
@@ -184,7 +199,18 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 		return islandList;
 	}
 
+	/** pixel at coord.
+	 * 
+	 * O(1) if a label raster has been set, else searches every island.
+	 * 
+	 * @param coord
+	 * @return null if no island contains coord
+	 */
 	public Pixel getPixelByCoord(Int2 coord) {
+		if (labelRaster != null) {
+			PixelIsland island = getIslandAt(coord.getX(), coord.getY());
+			return island == null ? null : island.get(coord.getX(), coord.getY());
+		}
 		Pixel pixel = null;
 		for (PixelIsland island : this) {
 			Pixel pixel1 = island.getPixelByCoord(coord);
@@ -206,8 +232,17 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 		}
 	}
 
+	/** island containing pixel (or a pixel with the same coordinates).
+	 * 
+	 * O(1) if a label raster has been set, else searches every island.
+	 * 
+	 * @param pixel
+	 * @return null if none
+	 */
 	public PixelIsland getIslandByPixel(Pixel pixel) {
-		// ensureIslandByPixelMap();
+		if (labelRaster != null) {
+			return getIslandAt(pixel.getX(), pixel.getY());
+		}
 		for (PixelIsland island : this) {
 			if (island.contains(pixel)) {
 				return island;
@@ -229,6 +264,10 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 		}
 	}
 
+	public boolean getDiagonal() {
+		return diagonal;
+	}
+
 	public PixelIslandList smallerThan(Real2 box) {
 		List<PixelIsland> newList = new ArrayList<PixelIsland>();
 		for (PixelIsland island : list) {
@@ -378,7 +417,7 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 	public Real2Range getBoundingBox() {
 		Real2Range boundingBox = new Real2Range();
 		for (PixelIsland island : list) {
-			boundingBox.plusEquals(island.getBoundingBox());
+			boundingBox.plusEquals(getBoundingBox(island));
 		}
 		return boundingBox;
 	}
@@ -507,24 +546,76 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 	 * 
 	 */
 	public void doSuperThinning() {
-		List<PixelIsland> newIslandList = new ArrayList<PixelIsland>();
 		for (PixelIsland island : this) {
-			PixelIsland newIsland = new PixelIsland(island.getPixelList());
-			newIsland.setDiagonal(island.getDiagonal());
-			newIsland.doSuperThinning();
-			newIslandList.add(newIsland);
+			island.recomputeNeighbours();
+			island.doSuperThinning();
 		}
-		this.list = newIslandList;
+		relabelEditedIslands();
 	}
 
 	private void createCleanIslandList() {
-		List<PixelIsland> newIslandList = new ArrayList<PixelIsland>();
 		for (PixelIsland island : this) {
-			PixelIsland newIsland = new PixelIsland(island.getPixelList());
-			newIsland.islandList = this;
-			newIsland.setDiagonal(diagonal);
-			newIslandList.add(newIsland);
-			this.list = newIslandList;
+			island.islandList = this;
+			island.setDiagonal(diagonal);
+			island.recomputeNeighbours();
+		}
+		relabelEditedIslands();
+	}
+
+	/** replaces islands split by removing pixels with their pieces.
+	 * 
+	 * only islands with pixels removed since they were last relabelled are examined (see
+	 * PixelIsland.relabel()). The pieces take the place of the island in the list and keep
+	 * its label; getIslandAt() finds them, but getIslandByLabel() no longer returns an
+	 * island for the label and getStats() does not describe them.
+	 * 
+	 * @return number of islands split
+	 */
+	public int relabelEditedIslands() {
+		List<PixelIsland> newList = null;
+		int split = 0;
+		for (int i = 0; i < list.size(); i++) {
+			PixelIsland island = list.get(i);
+			List<PixelIsland> pieces = island.hasRemovedPixels() ? island.relabel() : null;
+			if (pieces == null) {
+				if (newList != null) {
+					newList.add(island);
+				}
+			} else {
+				if (newList == null) {
+					newList = new ArrayList<PixelIsland>(list.subList(0, i));
+				}
+				newList.addAll(pieces);
+				replaceLabel(island, pieces);
+				split++;
+			}
+		}
+		if (newList != null) {
+			LOG.trace("split islands: "+split);
+			list = newList;
+			indexByLabel = null;
+		}
+		return split;
+	}
+
+	private void replaceLabel(PixelIsland island, List<PixelIsland> pieces) {
+		int label = getLabel(island);
+		if (label == 0) {
+			return;
+		}
+		removeLabel(island);
+		labelByIsland.remove(island);
+		if (piecesByLabel == null) {
+			piecesByLabel = new HashMap<Integer, List<PixelIsland>>();
+		}
+		List<PixelIsland> labelPieces = piecesByLabel.get(label);
+		if (labelPieces == null) {
+			labelPieces = new ArrayList<PixelIsland>();
+			piecesByLabel.put(label, labelPieces);
+		}
+		labelPieces.addAll(pieces);
+		for (PixelIsland piece : pieces) {
+			labelByIsland.put(piece, label);
 		}
 	}
 
@@ -706,14 +797,258 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 		return sb.toString();
 	}
 
+	/** removes islands whose bounding box is less than minimumIslandSize.
+	 * 
+	 * uses the statistics from the fill where they are still current.
+	 * 
+	 * @param minimumIslandSize
+	 */
 	public void removeIslandsLessThan(Real2Range minimumIslandSize) {
-		for (int i = list.size() - 1; i >= 0; i--) {
+		int kept = 0;
+		for (int i = 0; i < list.size(); i++) {
 			PixelIsland island = list.get(i);
-			Real2Range bbox = island.getBoundingBox();
-			if (bbox.isLessThan(minimumIslandSize)) {
-				list.remove(island);
+			if (getBoundingBox(island).isLessThan(minimumIslandSize)) {
+				removeLabel(island);
+			} else {
+				list.set(kept++, island);
+			}
+		}
+		list.subList(kept, list.size()).clear();
+		indexByLabel = null;
+	}
+
+	/** keeps only the islands at indexes, in order; the others lose their labels.
+	 * 
+	 * @param indexes increasing
+	 */
+	void keepIslands(int[] indexes) {
+		int size = list.size();
+		int next = 0;
+		for (int i = 0; i < size; i++) {
+			if (next < indexes.length && indexes[next] == i) {
+				list.set(next++, list.get(i));
+			} else {
+				removeLabel(list.get(i));
+			}
+		}
+		list.subList(indexes.length, size).clear();
+		indexByLabel = null;
+	}
+
+	/** keeps the labels of the fill which created the islands for O(1) lookup.
+	 * 
+	 * island k - 1 of the list must be the island with label k, as from FloodFill. The
+	 * islands may then be sorted or removed; islands added later are not labelled, and
+	 * pixels added to an island (e.g. filled holes) are not found.
+	 * 
+	 * @param labelRaster indexed raster; null to drop the labels
+	 */
+	public void setLabelRaster(PixelLabelRaster labelRaster) {
+		this.labelRaster = labelRaster;
+		indexByLabel = null;
+		if (labelRaster != null) {
+			labelIslands(labelRaster.getLabelCount());
+		}
+	}
+
+	public PixelLabelRaster getLabelRaster() {
+		return labelRaster;
+	}
+
+	/** keeps the statistics accumulated by the fill which created the islands.
+	 * 
+	 * island k - 1 of the list must be the island with label k, as from FloodFill.
+	 * Bounding boxes for removeIslandsLessThan() and getBoundingBox() are then taken from
+	 * stats for islands whose size has not changed since the fill.
+	 * 
+	 * @param stats null to drop the statistics
+	 */
+	public void setStats(PixelIslandStats stats) {
+		this.stats = stats;
+		if (stats != null) {
+			labelIslands(stats.getLabelCount());
+		}
+	}
+
+	public PixelIslandStats getStats() {
+		return stats;
+	}
+
+	/** island k - 1 has label k unless setIslandLabels() has been called.
+	 * 
+	 * @param labelCount
+	 */
+	private void labelIslands(int labelCount) {
+		if (islandByLabel != null) {
+			if (islandByLabel.length != labelCount + 1) {
+				throw new RuntimeException("labels ("+labelCount+") do not match island labels ("+(islandByLabel.length - 1)+")");
 			}
-			
+			return;
+		}
+		if (labelCount != list.size()) {
+			throw new RuntimeException("labels ("+labelCount+") do not match islands ("+list.size()+")");
+		}
+		int[] labels = new int[labelCount];
+		for (int i = 0; i < labelCount; i++) {
+			labels[i] = i + 1;
+		}
+		setIslandLabels(labels, labelCount);
+	}
+
+	/** labels of the islands in the fill which created them.
+	 * 
+	 * needed before setLabelRaster() or setStats() if not every label became an island
+	 * (e.g. FloodFill.setIslandFilter()).
+	 * 
+	 * @param labels label of each island in the list
+	 * @param labelCount number of labels in the fill
+	 */
+	public void setIslandLabels(int[] labels, int labelCount) {
+		if (labels.length != list.size()) {
+			throw new RuntimeException("labels ("+labels.length+") do not match islands ("+list.size()+")");
+		}
+		islandByLabel = new PixelIsland[labelCount + 1];
+		labelByIsland = new IdentityHashMap<PixelIsland, Integer>(labels.length);
+		piecesByLabel = null;
+		for (int i = 0; i < labels.length; i++) {
+			islandByLabel[labels[i]] = list.get(i);
+			labelByIsland.put(list.get(i), labels[i]);
+		}
+		indexByLabel = null;
+	}
+
+	/** label of island in the fill which created this list.
+	 * 
+	 * the same label is used in getLabelRaster() and getStats(). The pieces of an island
+	 * split by relabelEditedIslands() keep its label.
+	 * 
+	 * @param island
+	 * @return 0 if the list has no labels or island was not labelled
+	 */
+	public int getLabel(PixelIsland island) {
+		Integer label = labelByIsland == null ? null : labelByIsland.get(island);
+		return label == null ? 0 : label;
+	}
+
+	/** island with label in the fill which created this list.
+	 * 
+	 * @param label
+	 * @return null if no labels, or island not created or since removed or split
+	 */
+	public PixelIsland getIslandByLabel(int label) {
+		return (islandByLabel == null || label <= 0 || label >= islandByLabel.length) ? null : islandByLabel[label];
+	}
+
+	/** label of island if getStats() still describes it.
+	 * 
+	 * islands are only thinned or trimmed after the fill, so an unchanged size means
+	 * unchanged pixels.
+	 * 
+	 * @param island
+	 * @return 0 if not
+	 */
+	private int getStatsLabel(PixelIsland island) {
+		int label = stats == null ? 0 : getLabel(island);
+		return (label > 0 && stats.getArea(label) == island.size()) ? label : 0;
+	}
+
+	private Real2Range getBoundingBox(PixelIsland island) {
+		int label = getStatsLabel(island);
+		return label > 0 ? stats.getBoundingBox(label) : island.getBoundingBox();
+	}
+
+	/** index in this list of the island covering (x,y).
+	 * 
+	 * O(1) if a label raster has been set (after the list is reordered the first call
+	 * reindexes it), else searches every island.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return -1 if none
+	 */
+	public int getIslandIndexAt(int x, int y) {
+		if (labelRaster == null) {
+			for (int i = 0; i < list.size(); i++) {
+				if (list.get(i).contains(x, y)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int label = labelRaster.getLabel(x, y);
+		if (label == 0) {
+			return -1;
+		}
+		if (islandByLabel[label] == null) {
+			return getPieceIndexAt(label, x, y);
+		}
+		if (indexByLabel == null || !isIndexed(label)) {
+			indexLabels();
+		}
+		int index = indexByLabel[label];
+		return (index >= 0 && list.get(index).contains(x, y)) ? index : -1;
+	}
+
+	/** island covering (x,y); see getIslandIndexAt().
+	 * 
+	 * @param x
+	 * @param y
+	 * @return null if none
+	 */
+	public PixelIsland getIslandAt(int x, int y) {
+		int index = getIslandIndexAt(x, y);
+		return index < 0 ? null : list.get(index);
+	}
+
+	/** searches the list for the piece of a split island covering (x,y).
+	 */
+	private int getPieceIndexAt(int label, int x, int y) {
+		List<PixelIsland> pieces = piecesByLabel == null ? null : piecesByLabel.get(label);
+		if (pieces == null) {
+			return -1;
+		}
+		for (PixelIsland piece : pieces) {
+			if (piece.contains(x, y)) {
+				for (int i = 0; i < list.size(); i++) {
+					if (list.get(i) == piece) {
+						return i;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	private boolean isIndexed(int label) {
+		int index = indexByLabel[label];
+		return index < 0 || (index < list.size() && list.get(index) == islandByLabel[label]);
+	}
+
+	private void indexLabels() {
+		indexByLabel = new int[islandByLabel.length];
+		Arrays.fill(indexByLabel, -1);
+		for (int i = 0; i < list.size(); i++) {
+			int label = getLabel(list.get(i));
+			if (label > 0 && islandByLabel[label] == list.get(i)) {
+				indexByLabel[label] = i;
+			}
+		}
+		for (int label = 1; label < islandByLabel.length; label++) {
+			if (indexByLabel[label] < 0) {
+				// no longer in list
+				islandByLabel[label] = null;
+			}
+		}
+	}
+
+	private void removeLabel(PixelIsland island) {
+		int label = getLabel(island);
+		if (label > 0 && islandByLabel[label] == island) {
+			islandByLabel[label] = null;
+		}
+		List<PixelIsland> pieces = (label == 0 || piecesByLabel == null) ? null : piecesByLabel.get(label);
+		if (pieces != null) {
+			pieces.remove(island);
 		}
 	}
 
@@ -724,6 +1059,23 @@ public class PixelIslandList implements Iterable<PixelIsland> {
 		return outlineList;
 	}
 
+	/** outer contour of each island traced while labelling (FloodFill.setContours()).
+	 * 
+	 * made afresh on each call, in list order; islands without a contour are skipped.
+	 * 
+	 * @return
+	 */
+	public List<PixelList> createContourOutlineList() {
+		List<PixelList> contourList = new ArrayList<PixelList>();
+		for (PixelIsland island : list) {
+			PixelContour contour = island.getOuterContour();
+			if (contour != null) {
+				contourList.add(contour.createPixelList(island));
+			}
+		}
+		return contourList;
+	}
+
 	public void addOutline(PixelList outline) {
 		getOrCreateOutlineList();
 		outlineList.add(outline);
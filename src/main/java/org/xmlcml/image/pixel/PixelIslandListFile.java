@@ -0,0 +1,391 @@
+package org.xmlcml.image.pixel;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.euclid.IntRange;
+
+/** binary file holding a PixelIslandList.
+ *
+ * saves the result of flood fill, thinning and superthinning so that later steps
+ * can be rerun without recomputing it. The file is read through a MappedByteBuffer;
+ * an index at the end gives each island's offset, size and bounding box so single
+ * islands can be read (or skipped on size) without decoding the others.
+ *
+ * Format (version 1, big-endian):
+ * <pre>
+ * header:  int MAGIC, int version, int flags (1 = diagonal), int islandCount, long indexOffset
+ * island:  byte kind (0 = pixels, 1 = runs), byte diagonal, id, varint count, data
+ *          id is varint (0 = null, else UTF-8 length + 1) followed by the bytes
+ *          pixels: for each pixel zigzag varint dx, dy from the previous pixel
+ *                  (the first from the bounding box minimum); list order is kept
+ *          runs:   for each run varint dy from previous run (first from ymin),
+ *                  varint xStart - xmin, varint length - 1
+ * index:   for each island long offset, int pixelCount, int xmin, ymin, xmax, ymax
+ * </pre>
+ * RunLengthPixelIslands which have not created their pixels are written as runs and
+ * read back as RunLengthPixelIslands; all other islands are written as pixels.
+ *
+ * @author pm286
+ *
+ */
+public class PixelIslandListFile {
+
+	private final static Logger LOG = Logger.getLogger(PixelIslandListFile.class);
+
+	public static final int MAGIC = 0x50494c46; // "PILF"
+	public static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 24;
+	private static final int INDEX_ENTRY_BYTES = 28;
+	private static final int DIAGONAL_FLAG = 1;
+	private static final byte PIXELS = 0;
+	private static final byte RUNS = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File file;
+	private ByteBuffer buffer;
+	private int islandCount;
+	private boolean diagonal;
+	private int indexOffset;
+
+	/** maps file for reading.
+	 *
+	 * @param file written by write()
+	 */
+	public PixelIslandListFile(File file) {
+		this.file = file;
+		RandomAccessFile randomAccessFile = null;
+		try {
+			randomAccessFile = new RandomAccessFile(file, "r");
+			FileChannel channel = randomAccessFile.getChannel();
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer = mapped;
+		} catch (IOException e) {
+			throw new RuntimeException("cannot map pixel island file: "+file, e);
+		} finally {
+			closeQuietly(randomAccessFile);
+		}
+		readHeader();
+	}
+
+	private void readHeader() {
+		if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new RuntimeException("not a pixel island file: "+file);
+		}
+		int version = buffer.getInt(4);
+		if (version != VERSION) {
+			throw new RuntimeException("unsupported pixel island file version "+version+": "+file);
+		}
+		diagonal = (buffer.getInt(8) & DIAGONAL_FLAG) != 0;
+		islandCount = buffer.getInt(12);
+		long offset = buffer.getLong(16);
+		if (islandCount < 0 || offset < HEADER_BYTES ||
+				offset + (long) islandCount * INDEX_ENTRY_BYTES > buffer.limit()) {
+			throw new RuntimeException("corrupt pixel island file: "+file);
+		}
+		indexOffset = (int) offset;
+	}
+
+	/** writes islands to file.
+	 *
+	 * @param islandList
+	 * @param file
+	 */
+	public static void write(PixelIslandList islandList, File file) {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		CountingOutputStream counter = null;
+		try {
+			counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			DataOutputStream out = new DataOutputStream(counter);
+			int n = islandList.size();
+			boolean diagonal = islandList.getDiagonal();
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(diagonal ? DIAGONAL_FLAG : 0);
+			out.writeInt(n);
+			// index offset is not known yet; file is patched at the end
+			out.writeLong(0L);
+			long[] offsets = new long[n];
+			for (int i = 0; i < n; i++) {
+				offsets[i] = counter.count;
+				writeIsland(out, islandList.get(i));
+			}
+			long indexOffset = counter.count;
+			for (int i = 0; i < n; i++) {
+				PixelIsland island = islandList.get(i);
+				out.writeLong(offsets[i]);
+				out.writeInt(island.size());
+				int[] box = getBox(island);
+				for (int value : box) {
+					out.writeInt(value);
+				}
+			}
+			out.close();
+			counter = null;
+			patchIndexOffset(file, indexOffset);
+		} catch (IOException e) {
+			throw new RuntimeException("cannot write pixel island file: "+file, e);
+		} finally {
+			closeQuietly(counter);
+		}
+	}
+
+	private static void patchIndexOffset(File file, long indexOffset) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.seek(16);
+			randomAccessFile.writeLong(indexOffset);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/** xmin, ymin, xmax, ymax; all 0 for an empty island.
+	 *
+	 * @param island
+	 * @return
+	 */
+	private static int[] getBox(PixelIsland island) {
+		if (island.size() == 0) {
+			return new int[4];
+		}
+		Int2Range box = island.getIntBoundingBox();
+		return new int[] {
+			box.getXRange().getMin(), box.getYRange().getMin(),
+			box.getXRange().getMax(), box.getYRange().getMax()};
+	}
+
+	private static void writeIsland(DataOutputStream out, PixelIsland island) throws IOException {
+		int[] box = getBox(island);
+		boolean runs = island instanceof RunLengthPixelIsland && !((RunLengthPixelIsland) island).isMaterialized();
+		out.writeByte(runs ? RUNS : PIXELS);
+		out.writeByte(island.getDiagonal() ? 1 : 0);
+		String id = island.getId();
+		if (id == null) {
+			writeVarint(out, 0);
+		} else {
+			byte[] bytes = id.getBytes(UTF8);
+			writeVarint(out, bytes.length + 1);
+			out.write(bytes);
+		}
+		if (runs) {
+			RunLengthPixelIsland runIsland = (RunLengthPixelIsland) island;
+			int count = runIsland.getRunCount();
+			writeVarint(out, count);
+			int lastY = box[1];
+			for (int i = 0; i < count; i++) {
+				int[] run = runIsland.getRun(i);
+				writeVarint(out, run[0] - lastY);
+				writeVarint(out, run[1] - box[0]);
+				writeVarint(out, run[2] - run[1]);
+				lastY = run[0];
+			}
+		} else {
+			PixelList pixelList = island.getPixelList();
+			writeVarint(out, pixelList.size());
+			int lastX = box[0];
+			int lastY = box[1];
+			for (Pixel pixel : pixelList) {
+				int x = pixel.getX();
+				int y = pixel.getY();
+				writeVarint(out, zigzag(x - lastX));
+				writeVarint(out, zigzag(y - lastY));
+				lastX = x;
+				lastY = y;
+			}
+		}
+	}
+
+	/** reads all islands from file.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static PixelIslandList read(File file) {
+		return new PixelIslandListFile(file).getIslandList();
+	}
+
+	public int size() {
+		return islandCount;
+	}
+
+	public boolean getDiagonal() {
+		return diagonal;
+	}
+
+	/** number of pixels in island i (from the index).
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int getPixelCount(int i) {
+		return buffer.getInt(getIndexEntry(i) + 8);
+	}
+
+	/** bounding box of island i (from the index).
+	 *
+	 * @param i
+	 * @return null for an empty island
+	 */
+	public Int2Range getIntBoundingBox(int i) {
+		if (getPixelCount(i) == 0) {
+			return null;
+		}
+		int entry = getIndexEntry(i);
+		return new Int2Range(
+				new IntRange(buffer.getInt(entry + 12), buffer.getInt(entry + 20)),
+				new IntRange(buffer.getInt(entry + 16), buffer.getInt(entry + 24)));
+	}
+
+	private int getIndexEntry(int i) {
+		if (i < 0 || i >= islandCount) {
+			throw new RuntimeException("island index out of range: "+i+" ("+islandCount+")");
+		}
+		return indexOffset + i * INDEX_ENTRY_BYTES;
+	}
+
+	/** reads all islands.
+	 *
+	 * @return
+	 */
+	public PixelIslandList getIslandList() {
+		PixelIslandList islandList = new PixelIslandList();
+		// before adding so that each island keeps its own flag
+		islandList.setDiagonal(diagonal);
+		for (int i = 0; i < islandCount; i++) {
+			islandList.add(getIsland(i));
+		}
+		LOG.trace("read "+islandCount+" islands from "+file);
+		return islandList;
+	}
+
+	/** reads island i.
+	 *
+	 * @param i
+	 * @return new island (not in any list)
+	 */
+	public PixelIsland getIsland(int i) {
+		int entry = getIndexEntry(i);
+		ByteBuffer in = buffer.duplicate();
+		in.position((int) buffer.getLong(entry));
+		int xmin = buffer.getInt(entry + 12);
+		int ymin = buffer.getInt(entry + 16);
+		byte kind = in.get();
+		boolean islandDiagonal = in.get() != 0;
+		String id = null;
+		int idLength = readVarint(in);
+		if (idLength > 0) {
+			byte[] bytes = new byte[idLength - 1];
+			in.get(bytes);
+			id = new String(bytes, UTF8);
+		}
+		int count = readVarint(in);
+		PixelIsland island;
+		if (kind == RUNS) {
+			RunLengthPixelIsland runIsland = new RunLengthPixelIsland();
+			int y = ymin;
+			for (int r = 0; r < count; r++) {
+				y += readVarint(in);
+				int xStart = xmin + readVarint(in);
+				int xEnd = xStart + readVarint(in);
+				runIsland.addRun(y, xStart, xEnd);
+			}
+			island = runIsland;
+		} else if (kind == PIXELS) {
+			island = new PixelIsland();
+			int x = xmin;
+			int y = ymin;
+			for (int p = 0; p < count; p++) {
+				x += unzigzag(readVarint(in));
+				y += unzigzag(readVarint(in));
+				Pixel pixel = new Pixel(x, y);
+				pixel.setIsland(island);
+				island.addPixelWithoutComputingNeighbours(pixel);
+			}
+		} else {
+			throw new RuntimeException("bad island kind "+kind+" in "+file);
+		}
+		island.setDiagonal(islandDiagonal);
+		island.setId(id);
+		return island;
+	}
+
+	static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	static void writeVarint(DataOutputStream out, int n) throws IOException {
+		while ((n & ~0x7f) != 0) {
+			out.writeByte((n & 0x7f) | 0x80);
+			n >>>= 7;
+		}
+		out.writeByte(n);
+	}
+
+	static int readVarint(ByteBuffer in) {
+		int n = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.get();
+			n |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return n;
+			}
+		}
+		throw new RuntimeException("bad varint");
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				LOG.warn("cannot close: "+e);
+			}
+		}
+	}
+
+	/** counts bytes so island offsets are known while writing.
+	 *
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		long count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package org.xmlcml.image.pixel;
+
+import java.util.Arrays;
+
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.euclid.IntRange;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+
+/** per-label statistics accumulated while labelling.
+ *
+ * For each label k (1 &lt;= k &lt;= labelCount) holds the area, integer bounding box,
+ * coordinate sums (centroid), second-order sums (moments) and perimeter of its pixels,
+ * in primitive arrays indexed by label. The perimeter is the number of pixel sides
+ * (4-neighbours) that are white or outside the image.
+ *
+ * Filled by ConnectedComponentLabeller and kept by PixelLabelRaster and PixelIslandList
+ * so that islands can be filtered and sorted without visiting their pixels.
+ *
+ * @author pm286
+ *
+ */
+public class PixelIslandStats {
+
+	private int labelCount;
+	private int[] area;
+	private int[] xmin;
+	private int[] xmax;
+	private int[] ymin;
+	private int[] ymax;
+	private int[] perimeter;
+	private long[] sumX;
+	private long[] sumY;
+	private long[] sumXX;
+	private long[] sumYY;
+	private long[] sumXY;
+
+	/** empty table for labels up to labelCount.
+	 *
+	 * @param labelCount
+	 */
+	public PixelIslandStats(int labelCount) {
+		this.labelCount = labelCount;
+		createArrays(labelCount + 1);
+	}
+
+	private void createArrays(int capacity) {
+		area = new int[capacity];
+		xmin = new int[capacity];
+		xmax = new int[capacity];
+		ymin = new int[capacity];
+		ymax = new int[capacity];
+		perimeter = new int[capacity];
+		sumX = new long[capacity];
+		sumY = new long[capacity];
+		sumXX = new long[capacity];
+		sumYY = new long[capacity];
+		sumXY = new long[capacity];
+	}
+
+	public int getLabelCount() {
+		return labelCount;
+	}
+
+	/** makes room for label (and sets labelCount to at least label).
+	 *
+	 * @param label
+	 */
+	void ensureLabel(int label) {
+		if (label >= area.length) {
+			int capacity = Math.max(label + 1, area.length * 2);
+			area = Arrays.copyOf(area, capacity);
+			xmin = Arrays.copyOf(xmin, capacity);
+			xmax = Arrays.copyOf(xmax, capacity);
+			ymin = Arrays.copyOf(ymin, capacity);
+			ymax = Arrays.copyOf(ymax, capacity);
+			perimeter = Arrays.copyOf(perimeter, capacity);
+			sumX = Arrays.copyOf(sumX, capacity);
+			sumY = Arrays.copyOf(sumY, capacity);
+			sumXX = Arrays.copyOf(sumXX, capacity);
+			sumYY = Arrays.copyOf(sumYY, capacity);
+			sumXY = Arrays.copyOf(sumXY, capacity);
+		}
+		labelCount = Math.max(labelCount, label);
+	}
+
+	/** adds pixel (x,y) to label.
+	 *
+	 * @param label must have room (see ensureLabel())
+	 * @param x
+	 * @param y
+	 * @param edges sides of the pixel on the perimeter (0-4)
+	 */
+	void addPixel(int label, int x, int y, int edges) {
+		if (area[label] == 0) {
+			xmin[label] = xmax[label] = x;
+			ymin[label] = ymax[label] = y;
+		} else {
+			if (x < xmin[label]) {
+				xmin[label] = x;
+			} else if (x > xmax[label]) {
+				xmax[label] = x;
+			}
+			if (y < ymin[label]) {
+				ymin[label] = y;
+			} else if (y > ymax[label]) {
+				ymax[label] = y;
+			}
+		}
+		area[label]++;
+		perimeter[label] += edges;
+		sumX[label] += x;
+		sumY[label] += y;
+		sumXX[label] += (long) x * x;
+		sumYY[label] += (long) y * y;
+		sumXY[label] += (long) x * y;
+	}
+
+	/** adds the statistics of fromLabel in stats to label.
+	 *
+	 * @param label must have room (see ensureLabel())
+	 * @param stats
+	 * @param fromLabel
+	 */
+	void add(int label, PixelIslandStats stats, int fromLabel) {
+		if (stats.area[fromLabel] == 0) {
+			return;
+		}
+		if (area[label] == 0) {
+			xmin[label] = stats.xmin[fromLabel];
+			xmax[label] = stats.xmax[fromLabel];
+			ymin[label] = stats.ymin[fromLabel];
+			ymax[label] = stats.ymax[fromLabel];
+		} else {
+			xmin[label] = Math.min(xmin[label], stats.xmin[fromLabel]);
+			xmax[label] = Math.max(xmax[label], stats.xmax[fromLabel]);
+			ymin[label] = Math.min(ymin[label], stats.ymin[fromLabel]);
+			ymax[label] = Math.max(ymax[label], stats.ymax[fromLabel]);
+		}
+		area[label] += stats.area[fromLabel];
+		perimeter[label] += stats.perimeter[fromLabel];
+		sumX[label] += stats.sumX[fromLabel];
+		sumY[label] += stats.sumY[fromLabel];
+		sumXX[label] += stats.sumXX[fromLabel];
+		sumYY[label] += stats.sumYY[fromLabel];
+		sumXY[label] += stats.sumXY[fromLabel];
+	}
+
+	/** number of pixels.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public int getArea(int label) {
+		return area[label];
+	}
+
+	/** pixel sides that are white or outside the image.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public int getPerimeter(int label) {
+		return perimeter[label];
+	}
+
+	/** same as PixelIsland.getIntBoundingBox() of the island with label.
+	 *
+	 * @param label
+	 * @return null if no pixels
+	 */
+	public Int2Range getIntBoundingBox(int label) {
+		return area[label] == 0 ? null :
+			new Int2Range(new IntRange(xmin[label], xmax[label]), new IntRange(ymin[label], ymax[label]));
+	}
+
+	/** same as PixelIsland.getBoundingBox() of the island with label.
+	 *
+	 * @param label
+	 * @return empty if no pixels
+	 */
+	public Real2Range getBoundingBox(int label) {
+		return area[label] == 0 ? new Real2Range() :
+			new Real2Range(new RealRange(xmin[label], xmax[label]), new RealRange(ymin[label], ymax[label]));
+	}
+
+	public int getWidth(int label) {
+		return area[label] == 0 ? 0 : xmax[label] - xmin[label] + 1;
+	}
+
+	public int getHeight(int label) {
+		return area[label] == 0 ? 0 : ymax[label] - ymin[label] + 1;
+	}
+
+	/** mean of the pixel coordinates.
+	 *
+	 * @param label
+	 * @return null if no pixels
+	 */
+	public Real2 getCentroid(int label) {
+		return area[label] == 0 ? null :
+			new Real2((double) sumX[label] / area[label], (double) sumY[label] / area[label]);
+	}
+
+	/** central second moment mu20 / area (variance of x).
+	 *
+	 * @param label
+	 * @return
+	 */
+	public double getMomentXX(int label) {
+		double mean = (double) sumX[label] / area[label];
+		return (double) sumXX[label] / area[label] - mean * mean;
+	}
+
+	/** central second moment mu02 / area (variance of y).
+	 *
+	 * @param label
+	 * @return
+	 */
+	public double getMomentYY(int label) {
+		double mean = (double) sumY[label] / area[label];
+		return (double) sumYY[label] / area[label] - mean * mean;
+	}
+
+	/** central second moment mu11 / area (covariance of x and y).
+	 *
+	 * @param label
+	 * @return
+	 */
+	public double getMomentXY(int label) {
+		return (double) sumXY[label] / area[label] -
+			((double) sumX[label] / area[label]) * ((double) sumY[label] / area[label]);
+	}
+
+	public String toString() {
+		return "stats: " + labelCount + " labels";
+	}
+}
@@ -0,0 +1,303 @@
+package org.xmlcml.image.pixel;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/** containment tree of the islands and holes of an image.
+ *
+ * The outer background (hole 0) contains the top-level islands; each island contains
+ * its holes and each hole the islands inside it (e.g. an atom label inside a ring, or
+ * text inside a box). Islands are 8-connected and holes 4-connected; both are numbered
+ * by label as in IslandTopologyLabeller, and island labels are those of FloodFill.
+ *
+ * Parents and depths are held in arrays indexed by label so nesting queries take
+ * O(depth). If the PixelIslandList made from the same labels is attached (as by
+ * FloodFill.setTopology()) islands can be used instead of labels.
+ *
+ * @author pm286
+ *
+ */
+public class PixelIslandTree {
+
+	private final static Logger LOG = Logger.getLogger(PixelIslandTree.class);
+
+	private PixelLabelRaster islandRaster;
+	private PixelLabelRaster holeRaster;
+	private int islandCount;
+	private int holeCount;
+	private int[] islandHole;
+	private int[] holeIsland;
+	private int[] holeArea;
+	private int[] depth;
+	// children of island k are holes[holeStarts[k] ... holeStarts[k + 1] - 1]
+	private int[] holeStarts;
+	private int[] holes;
+	// children of hole k (0 = outer background) are islands[islandStarts[k] ... islandStarts[k + 1] - 1]
+	private int[] islandStarts;
+	private int[] islands;
+	private PixelIslandList islandList;
+
+	/** tree from the labelling.
+	 *
+	 * @param islandRaster island labels
+	 * @param holeRaster hole labels (0 for black pixels and the outer background)
+	 * @param islandHole hole containing each island (0 = outer)
+	 * @param holeIsland island containing each hole
+	 * @param holeArea pixels in each hole
+	 */
+	PixelIslandTree(PixelLabelRaster islandRaster, PixelLabelRaster holeRaster,
+			int[] islandHole, int[] holeIsland, int[] holeArea) {
+		this.islandRaster = islandRaster;
+		this.holeRaster = holeRaster;
+		this.islandHole = islandHole;
+		this.holeIsland = holeIsland;
+		this.holeArea = holeArea;
+		islandCount = islandHole.length - 1;
+		holeCount = holeIsland.length - 1;
+		createDepths();
+		createChildren();
+	}
+
+	/** parents come before children in label order (their first pixel is earlier).
+	 */
+	private void createDepths() {
+		depth = new int[islandCount + 1];
+		for (int island = 1; island <= islandCount; island++) {
+			int parent = getEnclosingIsland(island);
+			depth[island] = parent == 0 ? 0 : depth[parent] + 1;
+		}
+	}
+
+	private void createChildren() {
+		holeStarts = new int[islandCount + 2];
+		for (int hole = 1; hole <= holeCount; hole++) {
+			holeStarts[holeIsland[hole] + 1]++;
+		}
+		for (int island = 1; island <= islandCount + 1; island++) {
+			holeStarts[island] += holeStarts[island - 1];
+		}
+		holes = new int[holeCount];
+		int[] nextHole = Arrays.copyOf(holeStarts, islandCount + 1);
+		for (int hole = 1; hole <= holeCount; hole++) {
+			holes[nextHole[holeIsland[hole]]++] = hole;
+		}
+		islandStarts = new int[holeCount + 2];
+		for (int island = 1; island <= islandCount; island++) {
+			islandStarts[islandHole[island] + 1]++;
+		}
+		for (int hole = 1; hole <= holeCount + 1; hole++) {
+			islandStarts[hole] += islandStarts[hole - 1];
+		}
+		islands = new int[islandCount];
+		int[] nextIsland = Arrays.copyOf(islandStarts, holeCount + 1);
+		for (int island = 1; island <= islandCount; island++) {
+			islands[nextIsland[islandHole[island]]++] = island;
+		}
+	}
+
+	public int getIslandCount() {
+		return islandCount;
+	}
+
+	public int getHoleCount() {
+		return holeCount;
+	}
+
+	/** island labels; the same as FloodFill's.
+	 *
+	 * @return
+	 */
+	public PixelLabelRaster getIslandLabelRaster() {
+		return islandRaster;
+	}
+
+	/** hole labels; 0 for black pixels and the outer background.
+	 *
+	 * @return
+	 */
+	public PixelLabelRaster getHoleLabelRaster() {
+		return holeRaster;
+	}
+
+	/** island at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return 0 if white
+	 */
+	public int getIslandLabel(int x, int y) {
+		return islandRaster.getLabel(x, y);
+	}
+
+	/** hole at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return 0 if black or outer background
+	 */
+	public int getHoleLabel(int x, int y) {
+		return holeRaster.getLabel(x, y);
+	}
+
+	/** hole containing island.
+	 *
+	 * @param island
+	 * @return 0 if in the outer background
+	 */
+	public int getParentHole(int island) {
+		return islandHole[island];
+	}
+
+	/** island containing hole.
+	 *
+	 * @param hole
+	 * @return
+	 */
+	public int getParentIsland(int hole) {
+		return holeIsland[hole];
+	}
+
+	/** island whose hole contains island.
+	 *
+	 * @param island
+	 * @return 0 if a top-level island
+	 */
+	public int getEnclosingIsland(int island) {
+		int hole = islandHole[island];
+		return hole == 0 ? 0 : holeIsland[hole];
+	}
+
+	/** number of islands enclosing island.
+	 *
+	 * @param island
+	 * @return 0 if a top-level island
+	 */
+	public int getDepth(int island) {
+		return depth[island];
+	}
+
+	/** is island inside a hole of outer (at any depth)?
+	 *
+	 * @param island
+	 * @param outer
+	 * @return
+	 */
+	public boolean isInside(int island, int outer) {
+		if (depth[island] <= depth[outer]) {
+			return false;
+		}
+		while (depth[island] > depth[outer]) {
+			island = getEnclosingIsland(island);
+		}
+		return island == outer;
+	}
+
+	/** holes of island.
+	 *
+	 * @param island
+	 * @return increasing; empty if none
+	 */
+	public int[] getHoles(int island) {
+		return Arrays.copyOfRange(holes, holeStarts[island], holeStarts[island + 1]);
+	}
+
+	public int getHoleCount(int island) {
+		return holeStarts[island + 1] - holeStarts[island];
+	}
+
+	/** islands directly inside hole.
+	 *
+	 * @param hole 0 for the top-level islands
+	 * @return increasing; empty if none
+	 */
+	public int[] getIslands(int hole) {
+		return Arrays.copyOfRange(islands, islandStarts[hole], islandStarts[hole + 1]);
+	}
+
+	/** islands directly inside any hole of island.
+	 *
+	 * @param island
+	 * @return in order of hole, then island
+	 */
+	public int[] getNestedIslands(int island) {
+		int count = 0;
+		for (int i = holeStarts[island]; i < holeStarts[island + 1]; i++) {
+			count += islandStarts[holes[i] + 1] - islandStarts[holes[i]];
+		}
+		int[] nested = new int[count];
+		count = 0;
+		for (int i = holeStarts[island]; i < holeStarts[island + 1]; i++) {
+			int hole = holes[i];
+			int length = islandStarts[hole + 1] - islandStarts[hole];
+			System.arraycopy(islands, islandStarts[hole], nested, count, length);
+			count += length;
+		}
+		return nested;
+	}
+
+	/** pixels in hole.
+	 *
+	 * @param hole
+	 * @return
+	 */
+	public int getHoleArea(int hole) {
+		return holeArea[hole];
+	}
+
+	/** islands made from the same labels, to map between islands and labels.
+	 *
+	 * @param islandList labelled as by FloodFill (see PixelIslandList.getLabel())
+	 */
+	public void setIslandList(PixelIslandList islandList) {
+		this.islandList = islandList;
+	}
+
+	public PixelIslandList getIslandList() {
+		return islandList;
+	}
+
+	/** label of island.
+	 *
+	 * @param island
+	 * @return 0 if no island list or island not labelled
+	 */
+	public int getLabel(PixelIsland island) {
+		return islandList == null ? 0 : islandList.getLabel(island);
+	}
+
+	/** island with label.
+	 *
+	 * @param label
+	 * @return null if no island list or the island was not created (e.g. filtered)
+	 */
+	public PixelIsland getIsland(int label) {
+		return (islandList == null || label == 0) ? null : islandList.getIslandByLabel(label);
+	}
+
+	/** island whose hole contains island.
+	 *
+	 * @param island
+	 * @return null if top-level or unknown
+	 */
+	public PixelIsland getEnclosingIsland(PixelIsland island) {
+		int label = getLabel(island);
+		return label == 0 ? null : getIsland(getEnclosingIsland(label));
+	}
+
+	/** is island inside a hole of outer (at any depth)?
+	 *
+	 * @param island
+	 * @param outer
+	 * @return false if either is unknown
+	 */
+	public boolean isInside(PixelIsland island, PixelIsland outer) {
+		int label = getLabel(island);
+		int outerLabel = getLabel(outer);
+		return label > 0 && outerLabel > 0 && isInside(label, outerLabel);
+	}
+
+	public String toString() {
+		return "islands: " + islandCount + "; holes: " + holeCount;
+	}
+}
@@ -0,0 +1,218 @@
+package org.xmlcml.image.pixel;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.euclid.IntRange;
+
+/** label raster for the islands of one image.
+ *
+ * labels[y * width + x] is 0 for background and k (1 &lt;= k &lt;= labelCount) for a pixel
+ * in island k. The pixels of each label are held as raster offsets (y * width + x) in one
+ * shared int array, grouped by label and in raster order within each label, so an island
+ * is a slice of that array and costs 4 bytes a pixel with no Pixel objects.
+ *
+ * Labels are added with setLabel() and the raster is then closed with index(), after
+ * which it must not be changed; LabelledPixelIsland reads it.
+ *
+ * @author pm286
+ *
+ */
+public class PixelLabelRaster {
+
+	private final static Logger LOG = Logger.getLogger(PixelLabelRaster.class);
+
+	private int width;
+	private int height;
+	private int[] labels;
+	private int labelCount;
+	// offsets of label k are offsets[starts[k - 1]] ... offsets[starts[k] - 1]
+	private int[] starts;
+	private int[] offsets;
+	private int[] xmin;
+	private int[] xmax;
+	private int[] ymin;
+	private int[] ymax;
+	private PixelIslandStats stats;
+
+	public PixelLabelRaster(int width, int height) {
+		this(width, height, null, 0);
+	}
+
+	/** wraps labels already assigned (e.g. by ConnectedComponentLabeller).
+	 *
+	 * @param width
+	 * @param height
+	 * @param labels width * height labels; if null all 0
+	 * @param labelCount largest label
+	 */
+	PixelLabelRaster(int width, int height, int[] labels, int labelCount) {
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new RuntimeException("image too large for label raster: "+width+" x "+height);
+		}
+		this.width = width;
+		this.height = height;
+		this.labels = labels == null ? new int[width * height] : labels;
+		this.labelCount = labelCount;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** label at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return 0 if background or outside raster
+	 */
+	public int getLabel(int x, int y) {
+		return (x < 0 || y < 0 || x >= width || y >= height) ? 0 : labels[y * width + x];
+	}
+
+	/** sets label; labels must run from 1 without gaps.
+	 *
+	 * @param x
+	 * @param y
+	 * @param label
+	 */
+	public void setLabel(int x, int y, int label) {
+		if (offsets != null) {
+			throw new RuntimeException("label raster has been indexed");
+		}
+		labels[y * width + x] = label;
+		labelCount = Math.max(labelCount, label);
+	}
+
+	public int getLabelCount() {
+		return labelCount;
+	}
+
+	/** statistics of each label gathered while labelling.
+	 *
+	 * @return null unless created by ConnectedComponentLabeller
+	 */
+	public PixelIslandStats getStats() {
+		return stats;
+	}
+
+	void setStats(PixelIslandStats stats) {
+		this.stats = stats;
+	}
+
+	/** marks (x,y) as visited by negating its label.
+	 *
+	 * used while walking the pixels of one label; each label can be walked on a
+	 * different thread. Indexing is not affected.
+	 *
+	 * @param x
+	 * @param y
+	 * @param label
+	 * @return true if (x,y) had label and was not yet marked
+	 */
+	boolean mark(int x, int y, int label) {
+		if (x < 0 || y < 0 || x >= width || y >= height || labels[y * width + x] != label) {
+			return false;
+		}
+		labels[y * width + x] = -label;
+		return true;
+	}
+
+	/** restores a label negated by mark().
+	 *
+	 * @param offset y * width + x
+	 */
+	void unmark(int offset) {
+		labels[offset] = Math.abs(labels[offset]);
+	}
+
+	/** groups pixel offsets by label and records bounding boxes.
+	 *
+	 * counting sort over the raster, so offsets of each label are in raster order.
+	 */
+	public void index() {
+		if (offsets != null) {
+			return;
+		}
+		starts = new int[labelCount + 1];
+		for (int label : labels) {
+			if (label != 0) {
+				starts[label]++;
+			}
+		}
+		for (int k = 1; k <= labelCount; k++) {
+			starts[k] += starts[k - 1];
+		}
+		offsets = new int[starts[labelCount]];
+		int[] next = Arrays.copyOf(starts, labelCount);
+		xmin = new int[labelCount + 1];
+		xmax = new int[labelCount + 1];
+		ymin = new int[labelCount + 1];
+		ymax = new int[labelCount + 1];
+		Arrays.fill(xmin, Integer.MAX_VALUE);
+		Arrays.fill(xmax, Integer.MIN_VALUE);
+		Arrays.fill(ymin, Integer.MAX_VALUE);
+		Arrays.fill(ymax, Integer.MIN_VALUE);
+		int offset = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, offset++) {
+				int label = labels[offset];
+				if (label != 0) {
+					offsets[next[label - 1]++] = offset;
+					xmin[label] = Math.min(xmin[label], x);
+					xmax[label] = Math.max(xmax[label], x);
+					ymin[label] = Math.min(ymin[label], y);
+					ymax[label] = Math.max(ymax[label], y);
+				}
+			}
+		}
+		LOG.trace("indexed "+labelCount+" labels, "+offsets.length+" pixels");
+	}
+
+	private void checkIndexed() {
+		if (offsets == null) {
+			throw new RuntimeException("label raster has not been indexed");
+		}
+	}
+
+	/** number of pixels with label.
+	 *
+	 * @param label
+	 * @return
+	 */
+	public int getSize(int label) {
+		checkIndexed();
+		return starts[label] - starts[label - 1];
+	}
+
+	/** raster offset (y * width + x) of i'th pixel of label.
+	 *
+	 * @param label
+	 * @param i
+	 * @return
+	 */
+	public int getOffset(int label, int i) {
+		checkIndexed();
+		return offsets[starts[label - 1] + i];
+	}
+
+	/** bounding box of label.
+	 *
+	 * @param label
+	 * @return null if no pixels
+	 */
+	public Int2Range getIntBoundingBox(int label) {
+		checkIndexed();
+		return getSize(label) == 0 ? null :
+			new Int2Range(new IntRange(xmin[label], xmax[label]), new IntRange(ymin[label], ymax[label]));
+	}
+
+	public String toString() {
+		return "labels: " + labelCount + "; " + width + " x " + height;
+	}
+}
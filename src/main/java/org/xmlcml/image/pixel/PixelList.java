@@ -5,10 +5,9 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +25,16 @@ import org.xmlcml.image.pixel.PixelComparator.ComparatorType;
  * Container for a list of pixels. 
  * Can have additional attributes such as colour or value.
  * 
+ * remove(pixel) is O(1). The list position of each pixel is kept in the coordinate
+ * map; in the default ordered mode a removed pixel leaves a gap which is closed
+ * (keeping insertion order) before the list is next read by position or iterated.
+ * setOrdered(false) instead moves the last pixel into the gap, for callers which
+ * do not need the order. If the list holds two pixels with the same coordinates
+ * (or pixels without coordinates) remove() searches the list as before.
+ * 
+ * iterator() is fail-fast as the ArrayList's: a remove() other than through the
+ * iterator throws ConcurrentModificationException at its next next().
+ * 
  * @author pm286
  */
 public class PixelList implements Iterable<Pixel> {
@@ -41,7 +50,16 @@ public class PixelList implements Iterable<Pixel> {
 	private List<Pixel> list;
 	private Real2Array points;
 	private PixelIsland island;
-	private Map<Int2, Pixel> pixelByCoordinateMap;
+	private PixelCoordMap pixelByCoordinateMap;
+	// removed pixels left as null in list until compact() (ordered mode)
+	private int removedCount;
+	// list positions held in pixelByCoordinateMap are up to date
+	private boolean indexed;
+	// pixelByCoordinateMap does not mirror list (duplicate coordinates or null pixels)
+	private boolean unmapped;
+	private boolean ordered = true;
+	// ordered remove() does not change the ArrayList's modCount
+	private int removals;
 
 	Int2Range bbox;
 	
@@ -73,15 +91,89 @@ public class PixelList implements Iterable<Pixel> {
 		return pixelByCoordinateMap.get(coord);
 	}
 
+	/** pixel at (x,y) without creating Int2.
+	 * 
+	 * not to be confused with get(int) which indexes the list.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return null if absent
+	 */
+	public Pixel get(int x, int y) {
+		ensurePixelByCoordinateMap();
+		return pixelByCoordinateMap.get(x, y);
+	}
+
+	public boolean contains(int x, int y) {
+		return list != null && get(x, y) != null;
+	}
+
 	private void ensurePixelByCoordinateMap() {
 		if (pixelByCoordinateMap == null) {
-			pixelByCoordinateMap = new HashMap<Int2, Pixel>();
+			pixelByCoordinateMap = new PixelCoordMap(list == null ? 0 : list.size());
 			for (Pixel pixel : this) {
 				if (pixel == null) {
 					throw new RuntimeException("null pixel");
 				}
-				pixelByCoordinateMap.put(pixel.getInt2(), pixel);
+				if (pixelByCoordinateMap.put(pixel) != null) {
+					unmapped = true;
+				}
+			}
+		}
+	}
+
+	/** does the list keep insertion order when pixels are removed?
+	 * 
+	 * @return true by default
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/** if false remove() moves the last pixel into the gap left by the removed one.
+	 * 
+	 * faster and no compaction, but the order of the list changes. 
+	 * 
+	 * @param ordered
+	 */
+	public void setOrdered(boolean ordered) {
+		if (!ordered) {
+			compact();
+		}
+		this.ordered = ordered;
+	}
+
+	/** closes gaps left by removed pixels.
+	 * 
+	 */
+	private void compact() {
+		if (removedCount > 0) {
+			int j = 0;
+			for (int i = 0; i < list.size(); i++) {
+				Pixel pixel = list.get(i);
+				if (pixel != null) {
+					list.set(j++, pixel);
+				}
 			}
+			list.subList(j, list.size()).clear();
+			removedCount = 0;
+			indexed = false;
+		}
+	}
+
+	/** stores the list position of every pixel in pixelByCoordinateMap.
+	 * 
+	 */
+	private void ensureIndexed() {
+		if (!indexed) {
+			pixelByCoordinateMap.clearListIndexes();
+			for (int i = 0; i < list.size(); i++) {
+				Pixel pixel = list.get(i);
+				if (pixel != null) {
+					pixelByCoordinateMap.setListIndex(pixel.getX(), pixel.getY(), i);
+				}
+			}
+			indexed = true;
 		}
 	}
 
@@ -113,15 +205,51 @@ public class PixelList implements Iterable<Pixel> {
 	}
 	
 	public Iterator<Pixel> iterator() {
-		return list.iterator();
+		compact();
+		final Iterator<Pixel> iterator = list.iterator();
+		return new Iterator<Pixel>() {
+			private int expectedRemovals = removals;
+			private Pixel last;
+
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			public Pixel next() {
+				if (removals != expectedRemovals) {
+					throw new ConcurrentModificationException();
+				}
+				last = iterator.next();
+				return last;
+			}
+
+			public void remove() {
+				if (removals != expectedRemovals) {
+					throw new ConcurrentModificationException();
+				}
+				iterator.remove();
+				if (pixelByCoordinateMap != null && last != null && last.point != null && !unmapped) {
+					pixelByCoordinateMap.remove(last.getX(), last.getY());
+				}
+				indexed = false;
+			}
+		};
 	}
 	
 	public Pixel get(int i) {
-		return (list == null || i < 0 || i >= list.size()) ? null : list.get(i);
+		if (list == null) {
+			return null;
+		}
+		compact();
+		return (i < 0 || i >= list.size()) ? null : list.get(i);
 	}
 	
 	public Pixel last() {
-		return (list == null || list.size() == 0 ) ? null : list.get(list.size() - 1);
+		if (size() == 0) {
+			return null;
+		}
+		compact();
+		return list.get(list.size() - 1);
 	}
 	
 	public void addFromSameIsland(Pixel pixel) {
@@ -137,14 +265,25 @@ public class PixelList implements Iterable<Pixel> {
 		if (check) {
 			checkFromSameIsland(pixel);
 		}
+		if (pixel == null || pixel.point == null) {
+			// gaps and null pixels could not be told apart
+			compact();
+		}
 		list.add(pixel);
 		addToMap(pixel);
+		if (indexed && !unmapped) {
+			pixelByCoordinateMap.setListIndex(pixel.getX(), pixel.getY(), list.size() - 1);
+		}
 	}
 
 	private void addToMap(Pixel pixel) {
 		ensurePixelByCoordinateMap();
-		if (pixel != null && pixel.getInt2() != null) {
-			this.pixelByCoordinateMap.put(pixel.getInt2(), pixel);
+		if (pixel != null && pixel.point != null) {
+			if (this.pixelByCoordinateMap.put(pixel) != null) {
+				unmapped = true;
+			}
+		} else {
+			unmapped = true;
 		}
 	}
 
@@ -157,12 +296,22 @@ public class PixelList implements Iterable<Pixel> {
 		}
 	}
 	
+	/** the underlying list.
+	 * 
+	 * callers may reorder it, so list positions are recalculated on the next remove().
+	 * 
+	 * @return
+	 */
 	public List<Pixel> getList() {
+		if (list != null) {
+			compact();
+			indexed = false;
+		}
 		return list;
 	}
 
 	public int size() {
-		return list == null ? 0 : list.size();
+		return list == null ? 0 : list.size() - removedCount;
 	}
 
 	public void addAllFromSameIsland(PixelList pixelList) {
@@ -180,16 +329,52 @@ public class PixelList implements Iterable<Pixel> {
 	}
 
 	public boolean contains(Pixel pixel) {
-		return list != null && pixelByCoordinateMap.get(pixel.getInt2()) != null;
+		return list != null && pixel.point != null && contains(pixel.getX(), pixel.getY());
 	}
 
+	/** removes pixel with same coordinates as pixel.
+	 * 
+	 * O(1) unless the list holds duplicate coordinates.
+	 * 
+	 * @param pixel
+	 * @return false if not found
+	 */
 	public boolean remove(Pixel pixel) {
-		if (list != null) {
-			ensurePixelByCoordinateMap();
-			pixelByCoordinateMap.remove(pixel.getInt2());
+		if (list == null) {
+			return false;
+		}
+		ensurePixelByCoordinateMap();
+		int x = pixel.getX();
+		int y = pixel.getY();
+		if (unmapped) {
+			compact();
+			pixelByCoordinateMap.remove(x, y);
+			indexed = false;
 			return list.remove(pixel);
 		}
-		return false;
+		ensureIndexed();
+		int i = pixelByCoordinateMap.getListIndex(x, y);
+		if (i < 0) {
+			return false;
+		}
+		pixelByCoordinateMap.remove(x, y);
+		removals++;
+		if (ordered) {
+			list.set(i, null);
+			removedCount++;
+			// keeps the gaps to at most half the list
+			if (removedCount > list.size() >> 1) {
+				compact();
+			}
+		} else {
+			int last = list.size() - 1;
+			Pixel moved = list.remove(last);
+			if (i != last) {
+				list.set(i, moved);
+				pixelByCoordinateMap.setListIndex(moved.getX(), moved.getY(), i);
+			}
+		}
+		return true;
 	}
 
 	public PixelList getPixelsTouching(PixelList list1) {
@@ -202,7 +387,7 @@ public class PixelList implements Iterable<Pixel> {
 			if (this.island != null && list1 != null && this.island.equals(list1.getIsland())) {
 				if (list1.size() > 0) {
 					int value = list1.get(0).getValue();
-					for (Pixel pixel : list) {
+					for (Pixel pixel : this) {
 						PixelList neighbours = pixel.getOrCreateNeighbours(island);
 						for (Pixel neighbour : neighbours) {
 							if (neighbour.getValue() == value && !used.contains(neighbour)) {
@@ -265,16 +450,16 @@ public class PixelList implements Iterable<Pixel> {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		if (list.size() == 0) sb.append(START_STRING);
+		if (size() == 0) sb.append(START_STRING);
 		for (Pixel pixel : this) {
 			sb.append(String.valueOf(pixel));
 		}
-		if (list.size() == 0) sb.append(END_STRING);
+		if (size() == 0) sb.append(END_STRING);
 		return sb.toString();
 	}
 
 	public void reverse() {
-		Collections.reverse(list);
+		Collections.reverse(getList());
 	}
 
 	/** create PixelList from all pixels with given value.
@@ -325,7 +510,7 @@ public class PixelList implements Iterable<Pixel> {
 
 	public Real2Array getReal2Array() {
 		points = new Real2Array();
-		for (Pixel pixel : list) {
+		for (Pixel pixel : this) {
 			Real2 point = new Real2(pixel.getInt2());
 			points.add(point);
 		}
@@ -373,7 +558,15 @@ public class PixelList implements Iterable<Pixel> {
 	 * @return -1 if not found 
 	 */
 	public int indexOf(Pixel pixel) {
-		return list == null ? -1 : list.indexOf(pixel);
+		if (list == null) {
+			return -1;
+		}
+		compact();
+		if (!unmapped && pixel != null && pixel.point != null) {
+			ensureIndexed();
+			return pixelByCoordinateMap.getListIndex(pixel.getX(), pixel.getY());
+		}
+		return list.indexOf(pixel);
 	}
 
 	public Pixel getOther(Pixel pixel) {
@@ -395,7 +588,7 @@ public class PixelList implements Iterable<Pixel> {
 	 */
 	public boolean hasSameCoords(int xy) {
 		if (size() > 1) {
-			int coord0 = getCoordinate(list.get(0), xy);
+			int coord0 = getCoordinate(get(0), xy);
 			for (Pixel pixel : this) {
 				int coord = getCoordinate(pixel, xy);
 				if (coord != coord0) return false;
@@ -415,7 +608,7 @@ public class PixelList implements Iterable<Pixel> {
 	 */
 	public Int2Range getIntBoundingBox() {
 		Int2Range box = null;
-		if (list != null && list.size() > 0) {
+		if (size() > 0) {
 			box = new Int2Range();
 			for (Pixel pixel : this) {
 				box.add(pixel.getInt2());
@@ -426,7 +619,9 @@ public class PixelList implements Iterable<Pixel> {
 
 	public void addAll(PixelSet set) {
 		ensureList();
-		this.list.addAll(set);
+		for (Pixel pixel : set) {
+			add(pixel);
+		}
 	}
 
 	public PixelIsland getPixelIsland() {
@@ -435,12 +630,13 @@ public class PixelList implements Iterable<Pixel> {
 
 	public void add(int i, Pixel pixel) {
 		ensureList();
-		this.list.add(i, pixel);
+		getList().add(i, pixel);
+		addToMap(pixel);
 	}
 
 	public Pixel penultimate() {
 		ensureList();
-		return list.size() <= 1 ? null : list.get(list.size() - 2); 
+		return size() <= 1 ? null : get(size() - 2); 
 	}
 
 	/** creates from list of coords.
@@ -514,7 +710,7 @@ public class PixelList implements Iterable<Pixel> {
 	 * 
 	 */
 	public void sortYX() {
-		Collections.sort(list, new PixelComparator(ComparatorType.TOP, ComparatorType.LEFT));
+		Collections.sort(getList(), new PixelComparator(ComparatorType.TOP, ComparatorType.LEFT));
 	}
 
 	/** find all neighbours not in current set.
@@ -640,7 +836,7 @@ public class PixelList implements Iterable<Pixel> {
 		this.sortYX();
 		int xmin = Integer.MAX_VALUE;
 		int xmax = Integer.MIN_VALUE;
-		for (Pixel pixel : list) {
+		for (Pixel pixel : this) {
 			int x = pixel.getInt2().getX();
 			// Eastern
 			if (x > xmax) {
@@ -653,18 +849,18 @@ public class PixelList implements Iterable<Pixel> {
 				xmin = x;
 			}
 		}
-		extremeList.add(list.get(0));
+		extremeList.add(get(0));
 		extremeList.add(eastPixel);
-		extremeList.add(list.get(list.size() - 1)); // last
+		extremeList.add(last());
 		extremeList.add(westPixel);
 		return extremeList;
 	}
 
 	private void removeAll(List<Pixel> smallList) {
 		ensurePixelByCoordinateMap();
-		list.removeAll(smallList);
+		getList().removeAll(smallList);
 		for (Pixel pixel : smallList) {
-			pixelByCoordinateMap.remove(pixel.getInt2());
+			pixelByCoordinateMap.remove(pixel.getX(), pixel.getY());
 		}
 	}
 
@@ -1,76 +1,252 @@
 package org.xmlcml.image.pixel;
 
 import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.log4j.Logger;
-import org.xmlcml.euclid.Int2Range;
-import org.xmlcml.euclid.IntMatrix;
+import org.xmlcml.image.BinaryRaster;
 
 /** used for filling a PixelList exterior and interior.
- * 
+ *
+ * The pixels are copied into a BinaryRaster of their bounding box with a white border
+ * of 1 pixel, so isBlack() does not look up the list. The interior (holes) is found by
+ * filling the exterior from the border a scanline at a time (4-connected, as the white
+ * background of 8-connected islands) and taking what is neither filled nor in the list.
+ *
  * @author pm286
  *
  */
 public class PixelListFloodFill extends FloodFill {
 
 	private final static Logger LOG = Logger.getLogger(PixelListFloodFill.class);
-	
+
 	private PixelList pixelList;
 	private int xMin;
 	private int yMin;
-	private boolean inverted;
+	private BinaryRaster listRaster;
+	private BinaryRaster interiorRaster;
 
 	public PixelListFloodFill(PixelList pixelList) {
 		super(0, 0);
 		this.pixelList = pixelList;
 		setUp();
 	}
-	
+
 	/** writes a white boundary round each edge to help floodfill.
-	 * 
-	 * @param pixelList TODO
+	 *
 	 * @return
 	 */
 	private void setUp() {
-		Int2Range int2bBox = pixelList.getIntBoundingBox();
-		try {
-			xMin = int2bBox.getXRange().getMin() - 1;
-			yMin = int2bBox.getYRange().getMin() - 1;
-			// the 1 is the fencepost; 2 is for the new borders
-			width = int2bBox.getXRange().getRange() + 1 + 2;
-			height = int2bBox.getYRange().getRange() + 1 + 2;
-		} catch (NullPointerException e) {
-			
+		if (pixelList == null || pixelList.size() == 0) {
+			return;
 		}
+		int xMax = Integer.MIN_VALUE;
+		int yMax = Integer.MIN_VALUE;
+		xMin = Integer.MAX_VALUE;
+		yMin = Integer.MAX_VALUE;
+		for (Pixel pixel : pixelList) {
+			xMin = Math.min(xMin, pixel.getX());
+			xMax = Math.max(xMax, pixel.getX());
+			yMin = Math.min(yMin, pixel.getY());
+			yMax = Math.max(yMax, pixel.getY());
+		}
+		xMin--;
+		yMin--;
+		// xMin and yMin include the near border; 1 is the fencepost and 1 the far border
+		width = xMax - xMin + 1 + 1;
+		height = yMax - yMin + 1 + 1;
 	}
-	
+
+	/** the pixels of the list, offset by (xMin, yMin).
+	 *
+	 * @return
+	 */
+	private BinaryRaster ensureListRaster() {
+		if (listRaster == null) {
+			listRaster = new BinaryRaster(width, height);
+			if (width > 0) {
+				for (Pixel pixel : pixelList) {
+					listRaster.set(pixel.getX() - xMin, pixel.getY() - yMin);
+				}
+			}
+		}
+		return listRaster;
+	}
+
 	protected boolean isBlack(int posX, int posY) {
-		boolean inList = pixelList.contains(new Pixel(posX + xMin, posY + yMin));
-		return (inverted ? !inList : inList);
+		return ensureListRaster().get(posX, posY);
+	}
+
+	@Override
+	protected BinaryRaster getBinaryRaster() {
+		return ensureListRaster();
 	}
 
+	/** pixels not in the list and not reachable from outside the list.
+	 *
+	 * pixels are in column order (x, then y).
+	 *
+	 * @return
+	 */
 	public PixelList createInteriorPixelList() {
-		inverted = true;
-		boolean oldDiagonal = diagonal;
-		diagonal = false;
-		painted = new boolean[height][width];
-		addNextUnpaintedBlack(0, 0);
+		BinaryRaster interior = ensureInteriorRaster();
 		PixelList filledList = new PixelList();
 		for (int i = 0; i < width; i++) {
 			for (int j = 0; j < height; j++) {
-				Pixel pixel = new Pixel(i + xMin, j + yMin);
-				if (!painted[j][i] && !pixelList.contains(pixel)) {
-					filledList.add(pixel);
+				if (interior.get(i, j)) {
+					filledList.add(new Pixel(i + xMin, j + yMin));
 				}
 			}
 		}
-		diagonal = oldDiagonal;
 		return filledList;
 	}
-	
+
+	/** interior as horizontal runs.
+	 *
+	 * @return (y, xStart, xEnd) for each run, in row order; empty if no interior
+	 */
+	public int[] createInteriorRuns() {
+		BinaryRaster interior = ensureInteriorRaster();
+		int[] runs = new int[3 * 8];
+		int count = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = interior.nextSetBit(0, y); x >= 0; x = interior.nextSetBit(x + 1, y)) {
+				int xStart = x;
+				while (interior.get(x + 1, y)) {
+					x++;
+				}
+				if (count == runs.length) {
+					runs = Arrays.copyOf(runs, runs.length * 2);
+				}
+				runs[count++] = y + yMin;
+				runs[count++] = xStart + xMin;
+				runs[count++] = x + xMin;
+			}
+		}
+		return Arrays.copyOf(runs, count);
+	}
+
+	/** interior of the bounding box with the border; pixel (x, y) is at (x - xMin, y - yMin).
+	 *
+	 * @return
+	 */
+	public BinaryRaster getInteriorRaster() {
+		return ensureInteriorRaster();
+	}
+
+	public int getXMin() {
+		return xMin;
+	}
+
+	public int getYMin() {
+		return yMin;
+	}
+
+	private BinaryRaster ensureInteriorRaster() {
+		if (interiorRaster == null) {
+			BinaryRaster list = ensureListRaster();
+			BinaryRaster exterior = new BinaryRaster(width, height);
+			if (width > 0) {
+				fillExterior(list, exterior);
+			}
+			interiorRaster = new BinaryRaster(width, height);
+			int words = list.getWordsPerRow();
+			long lastMask = list.getLastWordMask();
+			for (int y = 0; y < height; y++) {
+				for (int w = 0; w < words; w++) {
+					long word = ~(list.getWord(y, w) | exterior.getWord(y, w));
+					if (w == words - 1) {
+						word &= lastMask;
+					}
+					interiorRaster.setWord(y, w, word);
+				}
+			}
+		}
+		return interiorRaster;
+	}
+
+	/** scanline fill of the white pixels 4-connected to (0, 0), which is always white.
+	 *
+	 * each white run is painted at once and the rows above and below are searched for
+	 * runs not yet painted.
+	 *
+	 * @param list black pixels
+	 * @param exterior painted
+	 */
+	private void fillExterior(BinaryRaster list, BinaryRaster exterior) {
+		// (y << 32 | x) seeds
+		long[] stack = new long[64];
+		int top = 0;
+		stack[top++] = 0L;
+		while (top > 0) {
+			long seed = stack[--top];
+			int y = (int) (seed >>> 32);
+			int x = (int) seed;
+			if (exterior.get(x, y) || list.get(x, y)) {
+				continue;
+			}
+			int xStart = x;
+			while (xStart > 0 && !list.get(xStart - 1, y) && !exterior.get(xStart - 1, y)) {
+				xStart--;
+			}
+			int xEnd = x;
+			while (xEnd < width - 1 && !list.get(xEnd + 1, y) && !exterior.get(xEnd + 1, y)) {
+				xEnd++;
+			}
+			for (int xx = xStart; xx <= xEnd; xx++) {
+				exterior.set(xx, y);
+			}
+			for (int yy = y - 1; yy <= y + 1; yy += 2) {
+				if (yy < 0 || yy >= height) {
+					continue;
+				}
+				boolean inRun = false;
+				for (int xx = xStart; xx <= xEnd; xx++) {
+					boolean white = !list.get(xx, yy) && !exterior.get(xx, yy);
+					if (white && !inRun) {
+						if (top == stack.length) {
+							stack = Arrays.copyOf(stack, stack.length * 2);
+						}
+						stack[top++] = ((long) yy << 32) | xx;
+					}
+					inRun = white;
+				}
+			}
+		}
+	}
+
+	/** interior pixels of each island.
+	 *
+	 * @param islandList
+	 * @return one (possibly empty) PixelList for each island, in list order
+	 */
+	public static List<PixelList> createInteriorPixelLists(PixelIslandList islandList) {
+		List<PixelList> interiorList = new ArrayList<PixelList>(islandList.size());
+		for (PixelIsland island : islandList) {
+			interiorList.add(new PixelListFloodFill(island.getPixelList()).createInteriorPixelList());
+		}
+		LOG.trace("filled "+interiorList.size()+" islands");
+		return interiorList;
+	}
+
+	/** interior runs of each island.
+	 *
+	 * @param islandList
+	 * @return (y, xStart, xEnd) runs for each island, in list order
+	 */
+	public static List<int[]> createInteriorRuns(PixelIslandList islandList) {
+		List<int[]> runsList = new ArrayList<int[]>(islandList.size());
+		for (PixelIsland island : islandList) {
+			runsList.add(new PixelListFloodFill(island.getPixelList()).createInteriorRuns());
+		}
+		return runsList;
+	}
+
 	@Override
 	protected Pixel getPixelFromPoint(Point p) {
 		return new Pixel(p.x + xMin, p.y + yMin);
 	}
 
-}
\ No newline at end of file
+}
@@ -150,10 +150,10 @@ public class PixelNucleusFactory {
 		if (allNucleusList == null) {
 			allNucleusList = new PixelNucleusList();
 			LOG.trace(this.hashCode() + "; NucleusList pixelList:"
-					+ island.pixelList.size());
-			for (Pixel pixel : island.pixelList) {
+					+ island.getPixelList().size());
+			for (Pixel pixel : island.getPixelList()) {
 				boolean added = false;
-				if (pixel.getOrCreateNeighbours(island).size() != 2) {
+				if (pixel.getNeighbourCount(island) != 2) {
 					for (PixelNucleus nucleus : allNucleusList) {
 						if (nucleus.canTouch(pixel)) {
 							nucleus.add(pixel);
@@ -179,7 +179,7 @@ public class PixelNucleusFactory {
 	public PixelNucleusList getOrCreateNucleusList() {
 		if (allNucleusList == null) {
 			allNucleusList = new PixelNucleusList();
-			unusedPixelSet = new PixelSet(island.pixelList);
+			unusedPixelSet = new PixelSet(island.getPixelList());
 			makeDotAndTerminalNuclei();
 			makeNonTerminalNuclei();
 			makeCyclicNuclei();
@@ -195,8 +195,8 @@ public class PixelNucleusFactory {
 			if (!unusedPixelSet.contains(pixel)) {
 				continue;
 			}
-			PixelList neighbours = pixel.getOrCreateNeighbours(island);
-			if (neighbours.size() > 2) {
+			int neighbourCount = island.neighbourCount(pixel.getX(), pixel.getY(), true, true);
+			if (neighbourCount > 2) {
 				unusedPixelSet.remove(pixel);
 				PixelNucleus nucleus = makeNucleusFromSeed(pixel, island);
 				if (nucleus != null) {
@@ -204,7 +204,7 @@ public class PixelNucleusFactory {
 					PixelList nucleusPixelList = nucleus.getPixelList();
 					unusedPixelSet.removeAll(nucleusPixelList);
 				}
-			} else if (neighbours.size() == 2 || neighbours.size() == 0) {
+			} else if (neighbourCount == 2 || neighbourCount == 0) {
 				// skip these
 			} else {
 				throw new RuntimeException("Should have processed this: "
@@ -350,7 +350,7 @@ public class PixelNucleusFactory {
 	public PixelList get1ConnectedPixelList() {
 		PixelList terminals = new PixelList();
 		for (Pixel pixel : island.getPixelList()) {
-			if (pixel.getOrCreateNeighbours(island).size() == 1) {
+			if (pixel.getNeighbourCount(island) == 1) {
 				terminals.add(pixel);
 			}
 		}
@@ -399,7 +399,7 @@ public class PixelNucleusFactory {
 	private void addNeighboursWith3orMoreNeighbours(PixelIsland island,
 			PixelSet seedSet, PixelSet used, PixelList neighbours) {
 		for (Pixel neighbour : neighbours) {
-			if (neighbour.getOrCreateNeighbours(island).size() > 2) {
+			if (neighbour.getNeighbourCount(island) > 2) {
 				if (!used.contains(neighbour)) {
 					seedSet.add(neighbour);
 					LOG.trace("added " + neighbour + " to " + seedSet);
@@ -810,13 +810,13 @@ public class PixelNucleusFactory {
 		PixelNucleus newNucleus = null;
 		Pixel centrePixel;
 		centrePixel = pixelList.get(0);
-		PixelList orthNeighbours = centrePixel.getOrthogonalNeighbours(island);
-		PixelList diagNeighbours = centrePixel.getDiagonalNeighbours(island);
-		if (orthNeighbours.size() + diagNeighbours.size() == 0) {
+		int orthCount = centrePixel.getOrthogonalNeighbourCount(island);
+		int diagCount = centrePixel.getDiagonalNeighbourCount(island);
+		if (orthCount + diagCount == 0) {
 			newNucleus = new DotNucleus(centrePixel, pixelList, island);
 			LOG.trace("made DOT");
 
-		} else if (orthNeighbours.size() + diagNeighbours.size() == 1) {
+		} else if (orthCount + diagCount == 1) {
 			newNucleus = new TerminalNucleus(centrePixel, pixelList, island);
 			LOG.trace("made TERMINAL");
 
@@ -824,14 +824,14 @@ public class PixelNucleusFactory {
 			newNucleus = new ThreeWayNucleus(centrePixel, pixelList, island);
 			LOG.trace("made NICKED_T");
 
-		} else if (diagNeighbours.size() == 3) {
+		} else if (diagCount == 3) {
 			newNucleus = new ThreeWayNucleus(centrePixel, pixelList, island);
 			LOG.trace("made TILTED_T");
-		} else if (diagNeighbours.size() == 4) {
+		} else if (diagCount == 4) {
 			newNucleus = new CrossNucleus(centrePixel, pixelList, island);
 			LOG.trace("made CROSS");
-		} else if ((diagNeighbours.size() == 1 && orthNeighbours.size() == 2)
-				|| (diagNeighbours.size() == 2 && orthNeighbours.size() == 1)
+		} else if ((diagCount == 1 && orthCount == 2)
+				|| (diagCount == 2 && orthCount == 1)
 				&& centrePixel.createNeighbourNeighbourList(island).size() == 4) {
 			// this is probably a terminal node with two single pixel stubs (due
 			// to bad thinning)
@@ -849,12 +849,12 @@ public class PixelNucleusFactory {
 		PixelNucleus newNucleus = null;
 		Pixel centrePixel;
 		centrePixel = pixelList.get(0);
-		if (centrePixel.getOrthogonalNeighbours(island).size()
-				+ centrePixel.getDiagonalNeighbours(island).size() == 0) {
+		if (centrePixel.getOrthogonalNeighbourCount(island)
+				+ centrePixel.getDiagonalNeighbourCount(island) == 0) {
 			LOG.trace("2 pixel zero neighbour");
 
-		} else if (centrePixel.getOrthogonalNeighbours(island).size()
-				+ centrePixel.getDiagonalNeighbours(island).size() == 1) {
+		} else if (centrePixel.getOrthogonalNeighbourCount(island)
+				+ centrePixel.getDiagonalNeighbourCount(island) == 1) {
 			LOG.trace("2 pixel single neighbour");
 
 		} else {
@@ -887,12 +887,8 @@ public class PixelNucleusFactory {
 	 */
 	private boolean isNickedT(Pixel centrePixel, PixelIsland island) {
 		if (centrePixel != null) {
-			PixelList diagonalNeighbours = centrePixel
-					.getDiagonalNeighbours(island);
-			PixelList orthogonalNeighbours = centrePixel
-					.getOrthogonalNeighbours(island);
-			if (diagonalNeighbours.size() == 2
-					&& orthogonalNeighbours.size() == 1) {
+			if (centrePixel.getDiagonalNeighbourCount(island) == 2
+					&& centrePixel.getOrthogonalNeighbourCount(island) == 1) {
 				return true;
 			}
 		}
@@ -902,7 +898,7 @@ public class PixelNucleusFactory {
 	private boolean isFilledT(Pixel centrePixel, PixelList pixelList, PixelIsland pixelIsland) {
 		for (Pixel pixel : pixelList) {
 			// find pixel with 3 orthogonal neighbours (assume only one?)
-			if (pixel.getOrthogonalNeighbours(island).size() == 3) {
+			if (pixel.getOrthogonalNeighbourCount(island) == 3) {
 				if (centrePixel != null) {
 					// there are 2 or more, error
 					LOG.trace("Not a filled TJunction " + this);
@@ -10,6 +10,15 @@ import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.graphics.svg.SVGPolygon;
 import org.xmlcml.image.pixel.IntLine.ChangeDirection;
 
+/** outlines of a PixelList as polygons.
+ * 
+ * the perimeter is traced one pixel edge at a time unless the outliner is made from a
+ * PixelIsland whose contours were traced while labelling (FloodFill.setContours()),
+ * in which case those are used.
+ * 
+ * @author pm286
+ *
+ */
 public class PixelOutliner {
 
 	private static Logger LOG = Logger.getLogger(PixelOutliner.class);
@@ -24,11 +33,25 @@ public class PixelOutliner {
 	private List<SVGPolygon> polygonList;
 	private boolean failedConverge;
 	private int minPolySize = 20;
+	private PixelIsland island;
 
 	public PixelOutliner(PixelList pixelList) {
 		this.pixelList = pixelList;
 	}
 
+	/** outliner for island.
+	 * 
+	 * if the island has no contours its pixels are copied (tracing removes them).
+	 * 
+	 * @param island
+	 */
+	public PixelOutliner(PixelIsland island) {
+		this.island = island;
+		if (island.getOuterContour() == null) {
+			this.pixelList = new PixelList(island.getPixelList());
+		}
+	}
+
 	public void setMaxIter(int maxIter) {
 		this.maxIter = maxIter;
 	}
@@ -42,6 +65,13 @@ public class PixelOutliner {
 	 */
 	public List<SVGPolygon> createOutline() {
 		polygonList = new ArrayList<SVGPolygon>();
+		if (island != null && island.getOuterContour() != null) {
+			addContourPolygon(island.getOuterContour());
+			for (PixelContour contour : island.getInnerContours()) {
+				addContourPolygon(contour);
+			}
+			return polygonList;
+		}
 		while (pixelList.size() > 0) {
 			PixelList extremes = pixelList.findExtremePixels();
 			Pixel startPixel = extremes.get(0);
@@ -66,6 +96,13 @@ public class PixelOutliner {
 		return polygonList;
 	}
 
+	private void addContourPolygon(PixelContour contour) {
+		SVGPolygon polygon = contour.createPolygon();
+		if (polygon.size() > minPolySize) {
+			polygonList.add(polygon);
+		}
+	}
+
 	public List<SVGPolygon> getPolygonList() {
 		return polygonList;
 	}
@@ -159,8 +196,17 @@ public class PixelOutliner {
 		return nextLine;
 	}
 
+	/** polygon of the last perimeter traced.
+	 * 
+	 * the outer contour if the island has contours.
+	 * 
+	 * @return
+	 */
 	public SVGPolygon getSVGPolygon() {
 		// createOutline();
+		if (lineList == null && island != null && island.getOuterContour() != null) {
+			return island.getOuterContour().createPolygon();
+		}
 		Real2Array r2a = new Real2Array();
 		for (IntLine line : lineList) {
 			Real2 midPoint = line.getMidPoint();
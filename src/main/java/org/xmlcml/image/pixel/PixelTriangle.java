@@ -121,8 +121,7 @@ public class PixelTriangle {
 		getDiagonal();
 		Pixel pixel0 = diagonal.get(0);
 		Pixel pixel1 = diagonal.get(1);
-		pixel0.getOrCreateNeighbours(island).remove(pixel1);
-		pixel1.getOrCreateNeighbours(island).remove(pixel0);
+		island.removeNeighbourLink(pixel0, pixel1);
 	}
 	
 	public String toString() {
@@ -0,0 +1,295 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.euclid.IntRange;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.image.ImagePixelAccessor;
+
+/** PixelIsland held as horizontal runs of pixels.
+ *
+ * Thick islands (filled bars, gel bands, solid markers) need one Pixel object per pixel
+ * in PixelIsland. Here each row is a sorted list of runs (y, xStart, xEnd) at 12 bytes a
+ * run, so size(), getBoundingBox(), contains(), fitsWithin() and createImage() need no
+ * Pixels at all; getPixelsWithNeighbourCount() creates only the pixels it returns.
+ *
+ * Any other use of the pixels (getPixelList(), iterator(), get(x, y), remove(), ...)
+ * creates all of them once, in raster order, and the island then behaves exactly as a
+ * PixelIsland. Pixels already returned by getPixelsWithNeighbourCount() are reused.
+ *
+ * Runs must be added in raster order (increasing y, then increasing x) and must not
+ * touch or overlap; FloodFill.setRunLength(true) creates islands this way.
+ *
+ * @author pm286
+ *
+ */
+public class RunLengthPixelIsland extends PixelIsland {
+
+	private final static Logger LOG = Logger.getLogger(RunLengthPixelIsland.class);
+
+	private static final int RUN_INTS = 3;
+
+	// y, xStart, xEnd (inclusive) for each run
+	private int[] runs;
+	private int runCount;
+	private int pixelCount;
+	private int xMin;
+	private int xMax;
+	private int yMin;
+	private int yMax;
+	// pixels created before the whole list was materialized
+	private PixelCoordMap createdPixels;
+
+	public RunLengthPixelIsland() {
+		super(false);
+		runs = new int[RUN_INTS * 4];
+	}
+
+	/** appends run of pixels from xStart to xEnd inclusive in row y.
+	 *
+	 * @param y must not be less than the previous run's y
+	 * @param xStart must be beyond the end of the previous run in the same row (with a gap)
+	 * @param xEnd not less than xStart
+	 */
+	public void addRun(int y, int xStart, int xEnd) {
+		if (isMaterialized()) {
+			throw new RuntimeException("cannot add runs after pixels have been created");
+		}
+		if (xEnd < xStart) {
+			throw new RuntimeException("bad run: "+xStart+" - "+xEnd);
+		}
+		if (runCount > 0) {
+			int last = (runCount - 1) * RUN_INTS;
+			int lastY = runs[last];
+			if (y < lastY || (y == lastY && xStart <= runs[last + 2] + 1)) {
+				throw new RuntimeException("run not in raster order: ("+xStart+"-"+xEnd+", "+y+")");
+			}
+		}
+		if ((runCount + 1) * RUN_INTS > runs.length) {
+			runs = Arrays.copyOf(runs, runs.length * 2);
+		}
+		int i = runCount * RUN_INTS;
+		runs[i] = y;
+		runs[i + 1] = xStart;
+		runs[i + 2] = xEnd;
+		if (runCount == 0) {
+			xMin = xStart;
+			xMax = xEnd;
+			yMin = y;
+		} else {
+			xMin = Math.min(xMin, xStart);
+			xMax = Math.max(xMax, xEnd);
+		}
+		yMax = y;
+		runCount++;
+		pixelCount += xEnd - xStart + 1;
+	}
+
+	public int getRunCount() {
+		return runCount;
+	}
+
+	/** run as {y, xStart, xEnd}.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int[] getRun(int i) {
+		int j = i * RUN_INTS;
+		return new int[] {runs[j], runs[j + 1], runs[j + 2]};
+	}
+
+	/** have the Pixels been created?
+	 *
+	 * if so the island is an ordinary PixelIsland and the runs are no longer used.
+	 *
+	 * @return
+	 */
+	public boolean isMaterialized() {
+		return pixelList != null;
+	}
+
+	/** creates a Pixel for every pixel in the runs.
+	 *
+	 */
+	@Override
+	void ensurePixelList() {
+		if (pixelList == null) {
+			LOG.trace("materializing "+pixelCount+" pixels from "+runCount+" runs");
+			PixelList list = new PixelList();
+			for (int r = 0; r < runCount; r++) {
+				int i = r * RUN_INTS;
+				int y = runs[i];
+				for (int x = runs[i + 1]; x <= runs[i + 2]; x++) {
+					list.add(getOrCreatePixel(x, y));
+				}
+			}
+			createdPixels = null;
+			runs = null;
+			runCount = 0;
+			pixelList = list;
+		}
+	}
+
+	private Pixel getOrCreatePixel(int x, int y) {
+		Pixel pixel = createdPixels == null ? null : createdPixels.get(x, y);
+		if (pixel == null) {
+			pixel = new Pixel(x, y);
+			pixel.setIsland(this);
+		}
+		return pixel;
+	}
+
+	@Override
+	public int size() {
+		return isMaterialized() ? super.size() : pixelCount;
+	}
+
+	@Override
+	public Int2Range getIntBoundingBox() {
+		if (isMaterialized()) {
+			return super.getIntBoundingBox();
+		}
+		return runCount == 0 ? new Int2Range() :
+			new Int2Range(new IntRange(xMin, xMax), new IntRange(yMin, yMax));
+	}
+
+	@Override
+	public Real2Range getBoundingBox() {
+		if (isMaterialized()) {
+			return super.getBoundingBox();
+		}
+		return runCount == 0 ? new Real2Range() :
+			new Real2Range(new RealRange(xMin, xMax), new RealRange(yMin, yMax));
+	}
+
+	@Override
+	public boolean contains(int x, int y) {
+		return isMaterialized() ? super.contains(x, y) : findRun(x, y) >= 0;
+	}
+
+	/** index of run containing (x,y).
+	 *
+	 * binary search on (y, xStart).
+	 *
+	 * @param x
+	 * @param y
+	 * @return -1 if none
+	 */
+	private int findRun(int x, int y) {
+		if (runCount == 0 || y < yMin || y > yMax || x < xMin || x > xMax) {
+			return -1;
+		}
+		// last run with (runY, xStart) <= (y, x)
+		int lo = 0;
+		int hi = runCount - 1;
+		int found = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int i = mid * RUN_INTS;
+			int runY = runs[i];
+			if (runY < y || (runY == y && runs[i + 1] <= x)) {
+				found = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		if (found >= 0) {
+			int i = found * RUN_INTS;
+			if (runs[i] == y && x <= runs[i + 2]) {
+				return found;
+			}
+		}
+		return -1;
+	}
+
+	/** pixels with the given number of neighbours (respecting getDiagonal()).
+	 *
+	 * if not materialized only the returned pixels are created.
+	 *
+	 * @param neighbourCount
+	 * @return
+	 */
+	@Override
+	public PixelList getPixelsWithNeighbourCount(int neighbourCount) {
+		if (isMaterialized()) {
+			return super.getPixelsWithNeighbourCount(neighbourCount);
+		}
+		PixelList pixels = new PixelList();
+		int filter = getNeighbourFilter();
+		for (int r = 0; r < runCount; r++) {
+			int i = r * RUN_INTS;
+			int y = runs[i];
+			int xStart = runs[i + 1];
+			int xEnd = runs[i + 2];
+			for (int x = xStart; x <= xEnd; x++) {
+				int mask = 0;
+				for (int k = 0; k < 8; k++) {
+					int dy = NEIGHBOUR_DY[k];
+					int xx = x + NEIGHBOUR_DX[k];
+					boolean present = (dy == 0) ? (xx >= xStart && xx <= xEnd) : findRun(xx, y + dy) >= 0;
+					if (present) {
+						mask |= 1 << k;
+					}
+				}
+				if (Integer.bitCount(mask & filter) == neighbourCount) {
+					Pixel pixel = getOrCreatePixel(x, y);
+					ensureCreatedPixels();
+					createdPixels.put(pixel);
+					pixels.add(pixel);
+				}
+			}
+		}
+		return pixels;
+	}
+
+	private void ensureCreatedPixels() {
+		if (createdPixels == null) {
+			createdPixels = new PixelCoordMap();
+		}
+	}
+
+	/** image of bounding box with island pixels black (0) and others white.
+	 *
+	 * same as PixelIsland.createImage().
+	 */
+	@Override
+	public BufferedImage createImage(int imageType) {
+		if (isMaterialized()) {
+			return super.createImage(imageType);
+		}
+		if (runCount == 0) {
+			LOG.trace("zero pixel image");
+			return null;
+		}
+		int w = xMax - xMin + 1;
+		int h = yMax - yMin + 1;
+		BufferedImage image = new BufferedImage(w, h, imageType);
+		ImagePixelAccessor accessor = new ImagePixelAccessor(image);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				accessor.setRGB(x, y, 0xffffff);
+			}
+		}
+		for (int r = 0; r < runCount; r++) {
+			int i = r * RUN_INTS;
+			int y = runs[i] - yMin;
+			for (int x = runs[i + 1]; x <= runs[i + 2]; x++) {
+				accessor.setRGB(x - xMin, y, 0);
+			}
+		}
+		return image;
+	}
+
+	public String toString() {
+		if (isMaterialized()) {
+			return super.toString();
+		}
+		return "pixels " + pixelCount + "; runs " + runCount;
+	}
+}
@@ -0,0 +1,442 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.image.BinaryRaster;
+
+/** labels an image one row at a time and emits each island as soon as it is closed.
+ *
+ * Only the components of the previous row and the components still open (touched by
+ * the previous row) are held, so memory depends on the width of the image and the
+ * islands being built, not on its height. An island is closed when no pixel of the
+ * current row touches it; it is then passed to the consumer with its pixels in the
+ * same order as FloodFill gives them. Islands are emitted in the order in which they
+ * close; sorted by their first pixel they are the islands of FloodFill.getIslandList().
+ *
+ * An IslandSizeFilter (setIslandFilter()) is applied to the size and bounding box of the
+ * runs of each island as it closes, so no Pixels are created for rejected islands.
+ *
+ * Rows are added with addRows() or addRow() and finish() emits the islands still
+ * open. label(File, ...) reads an image file a strip of rows at a time with an
+ * ImageReader source region.
+ *
+ * @author pm286
+ *
+ */
+public class StreamingIslandLabeller {
+
+	private final static Logger LOG = Logger.getLogger(StreamingIslandLabeller.class);
+
+	/** pixels read from the image file at once. */
+	public static final int DEFAULT_STRIP_PIXELS = 1 << 22;
+
+	private boolean diagonal;
+	private int width;
+	private PixelIslandConsumer consumer;
+	private IslandSizeFilter islandFilter;
+	private int y;
+	// root (or former root) component of each pixel in the previous and current rows
+	private Component[] previousRow;
+	private Component[] currentRow;
+	private List<Component> openComponents;
+	// open components and those created in the current row
+	private List<Component> candidates;
+	private int islandCount;
+
+	/** pixels of one island as runs; components joined in a row form a tree.
+	 */
+	private static class Component {
+
+		private Component parent = this;
+		// (y, xStart, xEnd) for each run
+		private int[] runs = new int[3 * 4];
+		private int runCount;
+		private int lastY;
+		private int keptY = -1;
+
+		private Component find() {
+			Component root = this;
+			while (root.parent != root) {
+				root.parent = root.parent.parent;
+				root = root.parent;
+			}
+			return root;
+		}
+
+		private void addRun(int y, int xStart, int xEnd) {
+			if (3 * runCount == runs.length) {
+				runs = Arrays.copyOf(runs, runs.length * 2);
+			}
+			runs[3 * runCount] = y;
+			runs[3 * runCount + 1] = xStart;
+			runs[3 * runCount + 2] = xEnd;
+			runCount++;
+			lastY = y;
+		}
+
+		/** joins the trees of this and component; the root with more runs is kept.
+		 *
+		 * @param component
+		 * @return new root
+		 */
+		private Component union(Component component) {
+			Component root = find();
+			Component root1 = component.find();
+			if (root == root1) {
+				return root;
+			}
+			if (root.runCount < root1.runCount) {
+				Component temp = root;
+				root = root1;
+				root1 = temp;
+			}
+			root1.parent = root;
+			if (3 * (root.runCount + root1.runCount) > root.runs.length) {
+				root.runs = Arrays.copyOf(root.runs, 3 * (root.runCount + root1.runCount));
+			}
+			System.arraycopy(root1.runs, 0, root.runs, 3 * root.runCount, 3 * root1.runCount);
+			root.runCount += root1.runCount;
+			root.lastY = Math.max(root.lastY, root1.lastY);
+			root1.runs = null;
+			return root;
+		}
+	}
+
+	/** labeller with 8-connectivity if diagonal else 4-connectivity.
+	 *
+	 * @param diagonal
+	 */
+	public StreamingIslandLabeller(boolean diagonal) {
+		this.diagonal = diagonal;
+	}
+
+	public boolean getDiagonal() {
+		return diagonal;
+	}
+
+	/** only emit islands which pass filter.accept().
+	 *
+	 * maximumCount is not applied (islands are emitted before all are known).
+	 *
+	 * @param filter null for all islands
+	 */
+	public void setIslandFilter(IslandSizeFilter filter) {
+		this.islandFilter = filter;
+	}
+
+	public IslandSizeFilter getIslandFilter() {
+		return islandFilter;
+	}
+
+	/** starts an image.
+	 *
+	 * @param width
+	 * @param consumer receives each island when it is closed
+	 */
+	public void start(int width, PixelIslandConsumer consumer) {
+		this.width = width;
+		this.consumer = consumer;
+		y = 0;
+		previousRow = new Component[width];
+		currentRow = new Component[width];
+		openComponents = new ArrayList<Component>();
+		islandCount = 0;
+	}
+
+	/** adds every row of strip as the next rows of the image.
+	 *
+	 * @param strip as wide as the image
+	 */
+	public void addRows(BinaryRaster strip) {
+		for (int row = 0; row < strip.getHeight(); row++) {
+			addRow(strip, row);
+		}
+	}
+
+	/** adds row of raster as the next row of the image and emits the islands it closes.
+	 *
+	 * @param raster as wide as the image
+	 * @param row
+	 */
+	public void addRow(BinaryRaster raster, int row) {
+		if (previousRow == null) {
+			throw new RuntimeException("start() not called");
+		}
+		if (raster.getWidth() != width) {
+			throw new RuntimeException("row width "+raster.getWidth()+" != "+width);
+		}
+		candidates = openComponents;
+		openComponents = new ArrayList<Component>();
+		Arrays.fill(currentRow, null);
+		for (int x = raster.nextSetBit(0, row); x >= 0; x = raster.nextSetBit(x + 1, row)) {
+			int xStart = x;
+			while (x < width - 1 && raster.get(x + 1, row)) {
+				x++;
+			}
+			addRun(xStart, x);
+		}
+		closeComponents(candidates);
+		candidates = null;
+		Component[] temp = previousRow;
+		previousRow = currentRow;
+		currentRow = temp;
+		y++;
+	}
+
+	/** adds run to the component(s) it touches in the previous row, or to a new one.
+	 *
+	 * @param xStart
+	 * @param xEnd
+	 */
+	private void addRun(int xStart, int xEnd) {
+		Component root = null;
+		int xmin = diagonal ? Math.max(0, xStart - 1) : xStart;
+		int xmax = diagonal ? Math.min(width - 1, xEnd + 1) : xEnd;
+		Component last = null;
+		for (int x = xmin; x <= xmax; x++) {
+			Component component = previousRow[x];
+			if (component != null && component != last) {
+				root = (root == null) ? component.find() : root.union(component);
+				last = component;
+			}
+		}
+		if (root == null) {
+			root = new Component();
+			candidates.add(root);
+		}
+		root.addRun(y, xStart, xEnd);
+		for (int x = xStart; x <= xEnd; x++) {
+			currentRow[x] = root;
+		}
+	}
+
+	/** emits candidates which got no pixels in this row and keeps the others open.
+	 *
+	 * @param candidates
+	 */
+	private void closeComponents(List<Component> candidates) {
+		for (Component component : candidates) {
+			if (component.parent != component || component.keptY == y) {
+				continue;
+			}
+			if (component.lastY < y) {
+				emit(component);
+			} else {
+				component.keptY = y;
+				openComponents.add(component);
+			}
+		}
+	}
+
+	/** emits the islands still open.
+	 *
+	 * @return number of islands emitted since start() (those passing any filter)
+	 */
+	public int finish() {
+		List<Component> open = openComponents;
+		openComponents = new ArrayList<Component>();
+		closeComponents(open);
+		openComponents = null;
+		previousRow = null;
+		currentRow = null;
+		LOG.trace("islands: "+islandCount);
+		return islandCount;
+	}
+
+	private void emit(Component component) {
+		if (islandFilter != null && !accept(component)) {
+			return;
+		}
+		islandCount++;
+		consumer.accept(createIsland(component));
+	}
+
+	/** does the island pass islandFilter?
+	 *
+	 * size and bounding box are taken from the runs.
+	 *
+	 * @param component
+	 * @return
+	 */
+	private boolean accept(Component component) {
+		int[] runs = component.runs;
+		int size = 0;
+		int xMin = Integer.MAX_VALUE;
+		int xMax = Integer.MIN_VALUE;
+		int yMin = Integer.MAX_VALUE;
+		int yMax = Integer.MIN_VALUE;
+		for (int r = 0; r < component.runCount; r++) {
+			size += runs[3 * r + 2] - runs[3 * r + 1] + 1;
+			yMin = Math.min(yMin, runs[3 * r]);
+			yMax = Math.max(yMax, runs[3 * r]);
+			xMin = Math.min(xMin, runs[3 * r + 1]);
+			xMax = Math.max(xMax, runs[3 * r + 2]);
+		}
+		return islandFilter.accept(size, new Real2Range(new RealRange(xMin, xMax), new RealRange(yMin, yMax)));
+	}
+
+	/** pixel of an island at (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	protected Pixel createPixel(int x, int y) {
+		return new Pixel(x, y);
+	}
+
+	/** island with the pixels in the order of FloodFill (breadth first from the first pixel).
+	 *
+	 * @param component
+	 * @return
+	 */
+	private PixelIsland createIsland(Component component) {
+		int[] runs = component.runs;
+		int size = 0;
+		int first = 0;
+		int xMin = Integer.MAX_VALUE;
+		int xMax = Integer.MIN_VALUE;
+		int yMin = Integer.MAX_VALUE;
+		int yMax = Integer.MIN_VALUE;
+		for (int r = 0; r < component.runCount; r++) {
+			size += runs[3 * r + 2] - runs[3 * r + 1] + 1;
+			if (runs[3 * r] < runs[3 * first] ||
+					(runs[3 * r] == runs[3 * first] && runs[3 * r + 1] < runs[3 * first + 1])) {
+				first = r;
+			}
+			yMin = Math.min(yMin, runs[3 * r]);
+			yMax = Math.max(yMax, runs[3 * r]);
+			xMin = Math.min(xMin, runs[3 * r + 1]);
+			xMax = Math.max(xMax, runs[3 * r + 2]);
+		}
+		// pixels not yet queued, in the bounding box
+		BinaryRaster unqueued = new BinaryRaster(xMax - xMin + 1, yMax - yMin + 1);
+		for (int r = 0; r < component.runCount; r++) {
+			for (int x = runs[3 * r + 1]; x <= runs[3 * r + 2]; x++) {
+				unqueued.set(x - xMin, runs[3 * r] - yMin);
+			}
+		}
+		PixelIsland island = new PixelIsland();
+		// (y << 32 | x) in the bounding box
+		long[] queue = new long[size];
+		queue[0] = ((long) (runs[3 * first] - yMin) << 32) | (runs[3 * first + 1] - xMin);
+		unqueued.clear(runs[3 * first + 1] - xMin, runs[3 * first] - yMin);
+		int tail = 1;
+		int directions = diagonal ? 8 : 4;
+		for (int head = 0; head < tail; head++) {
+			int x = (int) queue[head];
+			int y = (int) (queue[head] >> 32);
+			Pixel pixel = createPixel(x + xMin, y + yMin);
+			pixel.setIsland(island);
+			island.addPixelWithoutComputingNeighbours(pixel);
+			for (int k = 0; k < directions; k++) {
+				int xx = x + FloodFill.FILL_DX[k];
+				int yy = y + FloodFill.FILL_DY[k];
+				if (unqueued.get(xx, yy)) {
+					unqueued.clear(xx, yy);
+					queue[tail++] = ((long) yy << 32) | xx;
+				}
+			}
+		}
+		island.setDiagonal(true);
+		return island;
+	}
+
+	/** labels an image file read a strip at a time.
+	 *
+	 * pixels are black as in ImageFloodFill (brightness below threshold).
+	 *
+	 * @param imageFile
+	 * @param threshold
+	 * @param consumer receives each island when it is closed
+	 * @return number of islands
+	 */
+	public int label(File imageFile, int threshold, PixelIslandConsumer consumer) {
+		return label(imageFile, threshold, DEFAULT_STRIP_PIXELS, consumer);
+	}
+
+	/** labels an image file read a strip at a time.
+	 *
+	 * each strip is read with a source region. Readers which cannot go straight to a
+	 * row (ImageReader.isRandomAccessEasy() false, e.g. PNG) decode the image from the
+	 * top again for every strip, so reading takes time proportional to
+	 * height * height / stripHeight; use a larger stripPixels for tall images in such
+	 * formats.
+	 *
+	 * @param imageFile
+	 * @param threshold
+	 * @param stripPixels approximate pixels read at once
+	 * @param consumer
+	 * @return number of islands
+	 */
+	public int label(File imageFile, int threshold, int stripPixels, PixelIslandConsumer consumer) {
+		ImageInputStream stream = null;
+		ImageReader reader = null;
+		try {
+			stream = ImageIO.createImageInputStream(imageFile);
+			if (stream == null) {
+				throw new RuntimeException("cannot read image file: "+imageFile);
+			}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {
+				throw new RuntimeException("no image reader for: "+imageFile);
+			}
+			reader = readers.next();
+			reader.setInput(stream);
+			int imageWidth = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			int stripHeight = Math.max(1, stripPixels / Math.max(1, imageWidth));
+			if (height > stripHeight && !reader.isRandomAccessEasy(0)) {
+				LOG.debug("each of "+((height + stripHeight - 1) / stripHeight)+" strips is decoded from the top: "+imageFile);
+			}
+			start(imageWidth, consumer);
+			for (int y0 = 0; y0 < height; y0 += stripHeight) {
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(new Rectangle(0, y0, imageWidth, Math.min(stripHeight, height - y0)));
+				BufferedImage strip = reader.read(0, param);
+				addRows(ImageFloodFill.createBinaryRaster(strip, threshold));
+			}
+			return finish();
+		} catch (IOException e) {
+			throw new RuntimeException("cannot read image file: "+imageFile, e);
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					LOG.warn("cannot close: "+e);
+				}
+			}
+		}
+	}
+
+	/** labels a raster a row at a time (e.g. a TiledBinaryRaster).
+	 *
+	 * @param raster
+	 * @param consumer
+	 * @return number of islands
+	 */
+	public int label(BinaryRaster raster, PixelIslandConsumer consumer) {
+		start(raster.getWidth(), consumer);
+		addRows(raster);
+		return finish();
+	}
+}
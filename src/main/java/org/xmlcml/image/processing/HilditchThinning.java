@@ -25,15 +25,15 @@ public class HilditchThinning extends Thinning {
         boolean hasChange;
         do {
             hasChange = false;
-            for (int iy = 1; iy + 1 < binary.length; iy++) {
-                for (int jx = 1; jx + 1 < binary[iy].length; jx++) {
+            for (int iy = 1; iy + 1 < binary.getHeight(); iy++) {
+                for (int jx = 1; jx + 1 < binary.getWidth(); jx++) {
                     a = getSumCyclicChanges(iy, jx);
                     b = getNeighbourSum(iy, jx);
                     if (getBinary(iy, jx)==1 && 2 <= b && b <= 6 && a == 1
                         && ((getBinary(iy - 1, jx) * getBinary(iy, jx + 1) * getBinary(iy, jx - 1) == 0) || (getSumCyclicChanges(iy - 1, jx) != 1))
                         && ((getBinary(iy - 1, jx) * getBinary(iy, jx + 1) * getBinary(iy + 1, jx) == 0) || (getSumCyclicChanges(iy, jx + 1) != 1)))
                     {
-                        binary[iy][jx] = 0;
+                        binary.clear(jx, iy);
                         hasChange = true;
                     }
                 }
@@ -1,12 +1,13 @@
 package org.xmlcml.image.processing;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 
+import org.xmlcml.image.BinaryRaster;
+
 public abstract class Thinning {
 
 	protected BufferedImage image;
-	protected int[][] binary;
+	protected BinaryRaster binary;
 	
 	public Thinning(BufferedImage image) {
     	createBinary(image);
@@ -20,29 +21,36 @@ public abstract class Thinning {
 	    binary = copyImageToBinary(image);
 	}
 	
+	/** sets binary from int[y][x] array (1 = black).
+	 * 
+	 * @param b
+	 */
 	public void setBinary(int[][] b) {
 		if (b != null && b[0] != null) {
-			int ly = b.length;
-			int lx = b[0].length;
-			this.binary = new int[ly][lx];
-			for (int y = 0; y < ly; y++) {
-		       for (int x = 0; x < lx; x++) {
-		    	   binary[y][x] = b[y][x];
-		       }
-			}
+			this.binary = BinaryRaster.createFromBinary(b);
 		}
 	}
 	
-	public int[][] getBinary() {
+	/** sets binary directly (not copied).
+	 * 
+	 * @param raster
+	 */
+	public void setBinary(BinaryRaster raster) {
+		this.binary = raster;
+	}
+	
+	public BinaryRaster getBinary() {
 		return binary;
 	}
 	
+	/** pixel value.
+	 * 
+	 * @param y
+	 * @param x
+	 * @return 0 or 1; 0 if outside image
+	 */
 	public int getBinary(int y, int x) {
-		try {
-			return binary[y][x];
-		} catch (IndexOutOfBoundsException e) {
-			return 0;
-		}
+		return binary.getBit(x, y);
 	}
 	
 	public BufferedImage getThinnedImage() {
@@ -50,37 +58,12 @@ public abstract class Thinning {
 		return image;
 	}
 	
-	public static int[][] copyImageToBinary(BufferedImage image) {
-		int[][] imageData = new int[image.getHeight()][image.getWidth()];
-		for (int y = 0; y < imageData.length; y++) {
-	       for (int x = 0; x < imageData[y].length; x++) {
-	
-	           if (image.getRGB(x, y) == Color.BLACK.getRGB()) {
-	               imageData[y][x] = 1;
-	           } else {
-	               imageData[y][x] = 0;
-	
-	           }
-	       }
-	   }
-		return imageData;
+	public static BinaryRaster copyImageToBinary(BufferedImage image) {
+		return BinaryRaster.createFromBlackPixels(image);
 	}
 	
-	public static void copyBinaryToImage(BufferedImage image, int[][] imageData) {
-		for (int y = 0; y < imageData.length; y++) {
-	
-	           for (int x = 0; x < imageData[y].length; x++) {
-	
-	               if (imageData[y][x] == 1) {
-	                   image.setRGB(x, y, Color.BLACK.getRGB());
-	
-	               } else {
-	                   image.setRGB(x, y, Color.WHITE.getRGB());
-	               }
-	
-	
-	           }
-	       }
+	public static void copyBinaryToImage(BufferedImage image, BinaryRaster raster) {
+		raster.writeToImage(image);
 	}
 
 	/** creates a thinned array 
@@ -9,6 +9,8 @@ import java.util.LinkedList;
 import java.util.List;
 
 import javax.imageio.ImageIO;
+
+import org.xmlcml.image.BinaryRaster;
  
 /**
  *
@@ -17,13 +19,12 @@ import javax.imageio.ImageIO;
 public class ThinningService {
  
     private BufferedImage image;
-	private int[][] binaryImage;
+	private BinaryRaster binaryImage;
 	private boolean hasChange;
 
 	public ThinningService(BufferedImage image) {
     	this.image = image;
-	    binaryImage = new int[image.getHeight()][image.getWidth()];
-    	copyImageToBinary(image, binaryImage);
+	    binaryImage = BinaryRaster.createFromBlackPixels(image);
     }
 	
 
@@ -31,20 +32,20 @@ public class ThinningService {
 		// TODO Auto-generated constructor stub
 	}
 
-	public int[][] doThinning(/*int[][] binaryImage*/) {
+	public BinaryRaster doThinning(/*int[][] binaryImage*/) {
         int a, b;
  
         List<Point> pointsToChange = new LinkedList<Point>();
         do {
  
             hasChange = false;
-            for (int y = 1; y + 1 < binaryImage.length; y++) {
-                for (int x = 1; x + 1 < binaryImage[y].length; x++) {
+            for (int y = 1; y + 1 < binaryImage.getHeight(); y++) {
+                for (int x = 1; x + 1 < binaryImage.getWidth(); x++) {
                     a = getA(binaryImage, y, x);
                     b = getB(binaryImage, y, x);
-                    if ( binaryImage[y][x]==1 && 2 <= b && b <= 6 && a == 1
-                            && (binaryImage[y - 1][x] * binaryImage[y][x + 1] * binaryImage[y + 1][x] == 0)
-                            && (binaryImage[y][x + 1] * binaryImage[y + 1][x] * binaryImage[y][x - 1] == 0)) {
+                    if ( binaryImage.get(x, y) && 2 <= b && b <= 6 && a == 1
+                            && (getP(binaryImage, y - 1, x) * getP(binaryImage, y, x + 1) * getP(binaryImage, y + 1, x) == 0)
+                            && (getP(binaryImage, y, x + 1) * getP(binaryImage, y + 1, x) * getP(binaryImage, y, x - 1) == 0)) {
                         pointsToChange.add(new Point(x, y));
                         //binaryImage[y][x] = 0;
                         hasChange = true;
@@ -53,18 +54,18 @@ public class ThinningService {
             }
  
             for (Point point : pointsToChange) {
-                binaryImage[point.getY()][point.getX()] = 0;
+                binaryImage.clear(point.getX(), point.getY());
             }
  
             pointsToChange.clear();
  
-            for (int y = 1; y + 1 < binaryImage.length; y++) {
-                for (int x = 1; x + 1 < binaryImage[y].length; x++) {
+            for (int y = 1; y + 1 < binaryImage.getHeight(); y++) {
+                for (int x = 1; x + 1 < binaryImage.getWidth(); x++) {
                     a = getA(binaryImage, y, x);
                     b = getB(binaryImage, y, x);
-                    if ( binaryImage[y][x]==1 && 2 <= b && b <= 6 && a == 1
-                            && (binaryImage[y - 1][x] * binaryImage[y][x + 1] * binaryImage[y][x - 1] == 0)
-                            && (binaryImage[y - 1][x] * binaryImage[y + 1][x] * binaryImage[y][x - 1] == 0)) {
+                    if ( binaryImage.get(x, y) && 2 <= b && b <= 6 && a == 1
+                            && (getP(binaryImage, y - 1, x) * getP(binaryImage, y, x + 1) * getP(binaryImage, y, x - 1) == 0)
+                            && (getP(binaryImage, y - 1, x) * getP(binaryImage, y + 1, x) * getP(binaryImage, y, x - 1) == 0)) {
                         pointsToChange.add(new Point(x, y));
  
                         hasChange = true;
@@ -73,7 +74,7 @@ public class ThinningService {
             }
  
             for (Point point : pointsToChange) {
-                binaryImage[point.getY()][point.getX()] = 0;
+                binaryImage.clear(point.getX(), point.getY());
             }
  
             pointsToChange.clear();
@@ -109,50 +110,62 @@ public class ThinningService {
         }
     };
  
-    private int getA(int[][] binaryImage, int y, int x) {
+    private int getP(BinaryRaster binaryImage, int y, int x) {
+        return binaryImage.getBit(x, y);
+    }
+ 
+    private int getA(BinaryRaster binaryImage, int y, int x) {
  
         int count = 0;
+        int p2 = getP(binaryImage, y - 1, x);
+        int p3 = getP(binaryImage, y - 1, x + 1);
+        int p4 = getP(binaryImage, y, x + 1);
+        int p5 = getP(binaryImage, y + 1, x + 1);
+        int p6 = getP(binaryImage, y + 1, x);
+        int p7 = getP(binaryImage, y + 1, x - 1);
+        int p8 = getP(binaryImage, y, x - 1);
+        int p9 = getP(binaryImage, y - 1, x - 1);
         //p2 p3
-        if (binaryImage[y - 1][x] == 0 && binaryImage[y - 1][x + 1] == 1) {
+        if (p2 == 0 && p3 == 1) {
             count++;
         }
         //p3 p4
-        if (binaryImage[y - 1][x + 1] == 0 && binaryImage[y][x + 1] == 1) {
+        if (p3 == 0 && p4 == 1) {
             count++;
         }
         //p4 p5
-        if (binaryImage[y][x + 1] == 0 && binaryImage[y + 1][x + 1] == 1) {
+        if (p4 == 0 && p5 == 1) {
             count++;
         }
         //p5 p6
-        if (binaryImage[y + 1][x + 1] == 0 && binaryImage[y + 1][x] == 1) {
+        if (p5 == 0 && p6 == 1) {
             count++;
         }
         //p6 p7
-        if (binaryImage[y + 1][x] == 0 && binaryImage[y + 1][x - 1] == 1) {
+        if (p6 == 0 && p7 == 1) {
             count++;
         }
         //p7 p8
-        if (binaryImage[y + 1][x - 1] == 0 && binaryImage[y][x - 1] == 1) {
+        if (p7 == 0 && p8 == 1) {
             count++;
         }
         //p8 p9
-        if (binaryImage[y][x - 1] == 0 && binaryImage[y - 1][x - 1] == 1) {
+        if (p8 == 0 && p9 == 1) {
             count++;
         }
         //p9 p2
-        if (binaryImage[y - 1][x - 1] == 0 && binaryImage[y - 1][x] == 1) {
+        if (p9 == 0 && p2 == 1) {
             count++;
         }
  
         return count;
     }
  
-    private int getB(int[][] binaryImage, int y, int x) {
+    private int getB(BinaryRaster binaryImage, int y, int x) {
  
-        return binaryImage[y - 1][x] + binaryImage[y - 1][x + 1] + binaryImage[y][x + 1]
-                + binaryImage[y + 1][x + 1] + binaryImage[y + 1][x] + binaryImage[y + 1][x - 1]
-                + binaryImage[y][x - 1] + binaryImage[y - 1][x - 1];
+        return getP(binaryImage, y - 1, x) + getP(binaryImage, y - 1, x + 1) + getP(binaryImage, y, x + 1)
+                + getP(binaryImage, y + 1, x + 1) + getP(binaryImage, y + 1, x) + getP(binaryImage, y + 1, x - 1)
+                + getP(binaryImage, y, x - 1) + getP(binaryImage, y - 1, x - 1);
     }
     
 
@@ -200,44 +213,13 @@ public class ThinningService {
 
    }
    
-	private void copyImageToBinary(BufferedImage image, int[][] imageData) {
-		for (int y = 0; y < imageData.length; y++) {
-           for (int x = 0; x < imageData[y].length; x++) {
-
-               if (image.getRGB(x, y) == Color.BLACK.getRGB()) {
-                   imageData[y][x] = 1;
-               } else {
-                   imageData[y][x] = 0;
-
-               }
-           }
-       }
-	}
-	
-	private void copyBinaryToImage(BufferedImage image, int[][] imageData) {
-		for (int y = 0; y < imageData.length; y++) {
-
-	           for (int x = 0; x < imageData[y].length; x++) {
-
-	               if (imageData[y][x] == 1) {
-	                   image.setRGB(x, y, Color.BLACK.getRGB());
-
-	               } else {
-	                   image.setRGB(x, y, Color.WHITE.getRGB());
-	               }
-
-
-	           }
-	       }
-	}
-
-	public int[][] getBinaryImage() {
+	public BinaryRaster getBinaryImage() {
 		return binaryImage;
 	}
 
 
 	public BufferedImage getThinnedImage() {
-	    copyBinaryToImage(image, binaryImage);
+	    binaryImage.writeToImage(image);
 		return image;
 	}
 
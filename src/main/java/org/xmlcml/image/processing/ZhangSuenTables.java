@@ -0,0 +1,119 @@
+package org.xmlcml.image.processing;
+
+import org.xmlcml.image.BinaryRaster;
+
+/** deletion tables for Zhang-Suen thinning.
+ *
+ * The 8 neighbours of a pixel are encoded as a byte in the order used by
+ * Thinning.getSumCyclicChanges(): bit 0 p2 (north), then clockwise p3 (north-east),
+ * p4 (east), p5 (south-east), p6 (south), p7 (south-west), p8 (west), bit 7 p9
+ * (north-west). All the Zhang-Suen conditions depend only on this code, so each
+ * subiteration is decided by one lookup.
+ *
+ * An isolated 2x2 square would vanish, so ZhangSuenThinning keeps its top-left
+ * pixel. That needs the pixels beyond the 8 neighbours; PATHOLOGICAL flags the only
+ * code for which they must be checked (see isPathological()).
+ *
+ * @author pm286
+ *
+ */
+final class ZhangSuenTables {
+
+	static final int N = 1;
+	static final int NE = 1 << 1;
+	static final int E = 1 << 2;
+	static final int SE = 1 << 3;
+	static final int S = 1 << 4;
+	static final int SW = 1 << 5;
+	static final int W = 1 << 6;
+	static final int NW = 1 << 7;
+
+	/** deletable in the first (right-bottom) subiteration, by neighbour code. */
+	static final boolean[] DELETE_RIGHT_BOTTOM = new boolean[256];
+	/** deletable in the second (left-top) subiteration, by neighbour code. */
+	static final boolean[] DELETE_LEFT_TOP = new boolean[256];
+	/** codes of the top-left pixel of a 2x2 square; see isPathological(). */
+	static final boolean[] PATHOLOGICAL = new boolean[256];
+
+	static {
+		for (int code = 0; code < 256; code++) {
+			boolean contrast = isContrast(code);
+			DELETE_RIGHT_BOTTOM[code] = contrast
+					&& !hasAll(code, N | E | S) && !hasAll(code, E | S | W);
+			DELETE_LEFT_TOP[code] = contrast
+					&& !hasAll(code, N | E | W) && !hasAll(code, N | S | W);
+		}
+		PATHOLOGICAL[E | SE | S] = true;
+	}
+
+	private ZhangSuenTables() {
+	}
+
+	/** 3 to 6 black neighbours and exactly one white-to-black change round them.
+	 */
+	private static boolean isContrast(int code) {
+		int sum = Integer.bitCount(code);
+		return 3 <= sum && sum <= 6 && getCyclicChanges(code) == 1;
+	}
+
+	/** as Thinning.getSumCyclicChanges() for a neighbour code.
+	 *
+	 * @param code
+	 * @return
+	 */
+	static int getCyclicChanges(int code) {
+		int rotated = ((code >>> 1) | (code << 7)) & 0xff;
+		return Integer.bitCount(~code & rotated & 0xff);
+	}
+
+	private static boolean hasAll(int code, int bits) {
+		return (code & bits) == bits;
+	}
+
+	/** neighbour code of (x,y); pixels outside the raster are white.
+	 *
+	 * @param binary
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	static int getNeighbourCode(BinaryRaster binary, int x, int y) {
+		return binary.getBit(x, y - 1)
+				| binary.getBit(x + 1, y - 1) << 1
+				| binary.getBit(x + 1, y) << 2
+				| binary.getBit(x + 1, y + 1) << 3
+				| binary.getBit(x, y + 1) << 4
+				| binary.getBit(x - 1, y + 1) << 5
+				| binary.getBit(x - 1, y) << 6
+				| binary.getBit(x - 1, y - 1) << 7;
+	}
+
+	/** is (x,y) the top-left pixel of an isolated 2x2 square?
+	 *
+	 * code has already matched PATHOLOGICAL; the rest of the 4x4 window (the column
+	 * x + 2 and the row y + 2) must be white.
+	 *
+	 * @param binary
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	static boolean isPathological(BinaryRaster binary, int x, int y) {
+		return (binary.getBit(x + 2, y - 1) | binary.getBit(x + 2, y) | binary.getBit(x + 2, y + 1)
+				| binary.getBit(x + 2, y + 2) | binary.getBit(x + 1, y + 2) | binary.getBit(x, y + 2)
+				| binary.getBit(x - 1, y + 2)) == 0;
+	}
+
+	/** should black pixel (x,y) be deleted?
+	 *
+	 * @param binary
+	 * @param x
+	 * @param y
+	 * @param table DELETE_RIGHT_BOTTOM or DELETE_LEFT_TOP
+	 * @return
+	 */
+	static boolean isDeletable(BinaryRaster binary, int x, int y, boolean[] table) {
+		int code = getNeighbourCode(binary, x, y);
+		return table[code] && !(PATHOLOGICAL[code] && isPathological(binary, x, y));
+	}
+}
@@ -3,24 +3,31 @@ package org.xmlcml.image.processing;
 	 
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.xmlcml.euclid.Int2;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.TiledBinaryRaster;
  
 /**
+ * Each subiteration deletes the black pixels whose neighbourhood matches
+ * ZhangSuenTables, looked up from the 8 neighbours as a byte. An isolated
+ * 2x2 square is reduced to its top-left pixel rather than deleted.
  *
  * @author nayef
  */
 public class ZhangSuenThinning extends Thinning {
  
-    private static final String LEFT_TOP = "lt";
-	private static final String RIGHT_BOTTOM = "rb";
-	
-	private Set<Int2> blackPixels = new HashSet<Int2>();
+	/** bands are not made thinner than this. */
+	public static final int MIN_BAND_HEIGHT = 32;
+
+	private int parallelism = 1;
 
 	public ZhangSuenThinning(BufferedImage image) {
     	super(image);
@@ -31,131 +38,278 @@ public class ZhangSuenThinning extends Thinning {
 		super();
 	}
 
+	/** threads used to thin the image.
+	 * 
+	 * the image is cut into one horizontal band per thread. Each subiteration tests all
+	 * bands (reading the rows next to them) and then deletes, with a Phaser barrier
+	 * between, so the result does not depend on the parallelism. A TiledBinaryRaster
+	 * is thinned on the calling thread.
+	 * 
+	 * @param parallelism default 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new RuntimeException("parallelism must be at least 1: "+parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
 	@Override
 	public void doThinning() {
-    	boolean hasChange = false;
-        blackPixels.clear();
-        hasChange = iterateOverPoints(RIGHT_BOTTOM, true);
-        hasChange |= iterateOverPoints(LEFT_TOP, true);
-        while (hasChange) {
- 
-            hasChange = false;
-            hasChange = iterateOverPoints(RIGHT_BOTTOM, false);
-            hasChange |= iterateOverPoints(LEFT_TOP, false);
-        }
-    }
+		int bandCount = Math.min(parallelism, binary.getHeight() / MIN_BAND_HEIGHT);
+		if (bandCount <= 1 || binary instanceof TiledBinaryRaster) {
+			thinFrontier();
+		} else {
+			doThinning(bandCount);
+		}
+	}
 
+	/** thins on the calling thread, testing only pixels near the last deletions.
+	 * 
+	 * the first iteration tests every black pixel. After that a pixel can only become
+	 * deletable if a pixel in its window (x - 1 ... x + 2, y - 1 ... y + 2, which
+	 * includes the 2x2 square check) has been deleted since it was last tested with the
+	 * same table, i.e. in one of the two previous subiterations; only those pixels are
+	 * tested, so the work follows the deletions rather than the black pixels.
+	 */
+	private void thinFrontier() {
+		boolean[][] tables = {ZhangSuenTables.DELETE_RIGHT_BOTTOM, ZhangSuenTables.DELETE_LEFT_TOP};
+		Band band = new Band(0, binary.getHeight());
+		Frontier frontier = new Frontier();
+		try {
+			boolean hasChange = false;
+			for (boolean[] table : tables) {
+				hasChange |= band.test(table);
+				band.delete();
+				frontier.addDeleted(band);
+			}
+			while (hasChange) {
+				hasChange = false;
+				for (boolean[] table : tables) {
+					hasChange |= band.test(table, frontier);
+					band.delete();
+					frontier.addDeleted(band);
+				}
+			}
+		} finally {
+			frontier.close();
+		}
+	}
 
-	private boolean iterateOverPoints(String trbl, boolean all) {
-		List<Int2> pointsToChange = new ArrayList<Int2>();
-		if (all) {
-			for (int y = 0; y < binary.length; y++) {
-			    for (int x = 0; x < binary[y].length; x++) {
-			        processPoint(trbl, pointsToChange, y, x);
-			        if (getBinary(y, x) == 1) {
-			        	blackPixels.add(new Int2(x, y));
-			        }
-			    }
+	/** thins the bands in parallel.
+	 * 
+	 * the four phases of an iteration (test and delete for each subiteration) end at a
+	 * barrier; the last band to finish an iteration stops them all if nothing changed.
+	 * 
+	 * @param bandCount
+	 */
+	private void doThinning(int bandCount) {
+		final AtomicBoolean hasChange = new AtomicBoolean(false);
+		final Phaser phaser = new Phaser(bandCount) {
+			protected boolean onAdvance(int phase, int registeredParties) {
+				return phase % 4 == 3 && !hasChange.getAndSet(false);
 			}
-		} else {
-			Iterator<Int2> it = blackPixels.iterator();
-			while (it.hasNext()) {
-				Int2 pixel = it.next();
-		        boolean changed = processPoint(trbl, pointsToChange, pixel.getY(), pixel.getX());
-		        if (changed) {
-		        	it.remove();
-		        }
+		};
+		List<Callable<Object>> callables = new ArrayList<Callable<Object>>();
+		int height = binary.getHeight();
+		for (int i = 0; i < bandCount; i++) {
+			final Band band = new Band((int) ((long) height * i / bandCount), (int) ((long) height * (i + 1) / bandCount));
+			callables.add(new Callable<Object>() {
+				public Object call() {
+					try {
+						band.thin(phaser, hasChange);
+					} catch (RuntimeException e) {
+						phaser.forceTermination();
+						throw e;
+					}
+					return null;
+				}
+			});
+		}
+		ForkJoinPool pool = new ForkJoinPool(bandCount);
+		try {
+			for (Future<Object> future : pool.invokeAll(callables)) {
+				future.get();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("thinning interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("cannot thin band", e.getCause());
+		} finally {
+			pool.shutdown();
 		}
-		boolean hasChange = (pointsToChange.size() > 0);
-		resetChangedPointsToZeroAndClearList(pointsToChange);
-		return hasChange;
 	}
 
+	/** rows top ... bottom - 1 and the pixels to delete from them.
+	 */
+	private class Band {
 
-	private boolean processPoint(String trbl, List<Int2> pointsToChange, int y, int x) {
-		int sumCyclicChanges = getSumCyclicChanges(y, x);
-		int neighbourSum = getNeighbourSum(y, x);
-		boolean neighbourContrast = getNeighbourContrast(y, x, sumCyclicChanges, neighbourSum);
-		boolean triangles = false;
-		if (LEFT_TOP.equals(trbl)) {
-			triangles = leftTopTriangles(y, x);
-		} else if (RIGHT_BOTTOM.equals(trbl)) {
-			triangles = rightBottomTriangles(y, x);
-		}
-		if (neighbourContrast && triangles) {
-		    boolean pathologicalCaseCheck = checkForPathologicalCase(y, x);
-		    if (!pathologicalCaseCheck) {
-		    	Int2 coord = new Int2(x, y);
-		        pointsToChange.add(coord);
-		        return true;
-		    }
-		}
-		return false;
-	}
+		private int top;
+		private int bottom;
+		// x, y of the pixels to delete at the end of a subiteration
+		private int[] pointsToChange = new int[256];
+		private int changeCount;
 
-	private boolean checkForPathologicalCase(int y, int x) {
-		try {
-			if (getBinary(y + 1, x) == 0) {
-				return false;
-			} else if (getBinary(y, x + 1) == 0) {
-				return false;
-			} else if (getBinary(y + 1, x + 1) == 0) {
-				return false;
-			} else if (getBinary(y + 2, x) == 1) {
-				return false;
-			} else if (getBinary(y + 2, x + 1) == 1) {
-				return false;
-			} else if (getBinary(y + 2, x + 2) == 1) {
-				return false;
-			} else if (getBinary(y + 1, x + 2) == 1) {
-				return false;
-			} else if (getBinary(y, x + 2) == 1) {
-				return false;
-			} else if (getBinary(y - 1, x - 1) == 1) {
-				return false;
-			} else if (getBinary(y - 1, x) == 1) {
-				return false;
-			} else if (getBinary(y - 1, x + 1) == 1) {
-				return false;
-			} else if (getBinary(y - 1, x + 2) == 1) {
-				return false;
-			} else if (getBinary(y, x - 1) == 1) {
-				return false;
-			} else if (getBinary(y + 1, x - 1) == 1) {
-				return false;
-			} else if (getBinary(y + 2, x - 1) == 1) {
-				return false;
+		Band(int top, int bottom) {
+			this.top = top;
+			this.bottom = bottom;
+		}
+
+		/** finds the pixels to delete in one subiteration.
+		 * 
+		 * @param table
+		 * @return true if any
+		 */
+		boolean test(boolean[] table) {
+			changeCount = 0;
+			for (int y = top; y < bottom; y++) {
+				for (int x = binary.nextSetBit(0, y); x >= 0; x = binary.nextSetBit(x + 1, y)) {
+					if (ZhangSuenTables.isDeletable(binary, x, y, table)) {
+						addPointToChange(x, y);
+					}
+				}
 			}
-			return true;
-		} catch (ArrayIndexOutOfBoundsException e) {
-			return false;
+			return changeCount > 0;
 		}
-	}
 
-	private boolean getNeighbourContrast(int y, int x, int sumCyclicChanges,
-			int neighbourSum) {
-		boolean neighbourFunction = getBinary(y, x)==1 && 3 <= neighbourSum && neighbourSum <= 6 && sumCyclicChanges == 1;
-		return neighbourFunction;
-	}
+		/** as test(table) for the pixels in frontier only.
+		 * 
+		 * @param table
+		 * @param frontier
+		 * @return true if any
+		 */
+		boolean test(boolean[] table, Frontier frontier) {
+			changeCount = 0;
+			int count = frontier.collect();
+			int[] candidates = frontier.candidates;
+			for (int i = 0; i < count; i += 2) {
+				if (ZhangSuenTables.isDeletable(binary, candidates[i], candidates[i + 1], table)) {
+					addPointToChange(candidates[i], candidates[i + 1]);
+				}
+			}
+			frontier.release();
+			return changeCount > 0;
+		}
 
-	private boolean leftTopTriangles(int y, int x) {
-		return (getBinary(y - 1, x) * getBinary(y, x + 1) * getBinary(y, x - 1) == 0)
-		    && (getBinary(y - 1, x) * getBinary(y + 1, x) * getBinary(y, x - 1) == 0);
-	}
+		private void addPointToChange(int x, int y) {
+			if (changeCount == pointsToChange.length) {
+				pointsToChange = Arrays.copyOf(pointsToChange, changeCount * 2);
+			}
+			pointsToChange[changeCount++] = x;
+			pointsToChange[changeCount++] = y;
+		}
 
+		void delete() {
+			for (int i = 0; i < changeCount; i += 2) {
+				binary.clear(pointsToChange[i], pointsToChange[i + 1]);
+			}
+		}
 
-	private boolean rightBottomTriangles(int y, int x) {
-		return (getBinary(y - 1, x) * getBinary(y, x + 1) * getBinary(y + 1, x) == 0)
-		    && (getBinary(y, x + 1) * getBinary(y + 1, x) * getBinary(y, x - 1) == 0);
+		void thin(Phaser phaser, AtomicBoolean hasChange) {
+			while (true) {
+				if (test(ZhangSuenTables.DELETE_RIGHT_BOTTOM)) {
+					hasChange.set(true);
+				}
+				phaser.arriveAndAwaitAdvance();
+				delete();
+				phaser.arriveAndAwaitAdvance();
+				if (test(ZhangSuenTables.DELETE_LEFT_TOP)) {
+					hasChange.set(true);
+				}
+				phaser.arriveAndAwaitAdvance();
+				delete();
+				if (phaser.arriveAndAwaitAdvance() < 0) {
+					return;
+				}
+			}
+		}
 	}
 
-	private void resetChangedPointsToZeroAndClearList(List<Int2> pointsToChange) {
-		for (Int2 point : pointsToChange) {
-		    binary[point.getY()][point.getX()] = 0;
+	/** pixels deleted in the last two subiterations and the black pixels near them.
+	 */
+	private class Frontier {
+
+		// x, y of pixels deleted in the subiteration before last, and in the last
+		private int[] older = new int[256];
+		private int olderCount;
+		private int[] newer = new int[256];
+		private int newerCount;
+		// x, y of pixels to test; queued marks them so each is added once
+		private int[] candidates = new int[256];
+		private int candidateCount;
+		// same storage as binary, so a tiled page is not copied to the heap
+		private BinaryRaster queued = binary.createBlank();
+
+		/** takes the deletions from band (leaving band an empty list).
+		 */
+		void addDeleted(Band band) {
+			int[] spare = older;
+			older = newer;
+			olderCount = newerCount;
+			newer = band.pointsToChange;
+			newerCount = band.changeCount;
+			band.pointsToChange = spare;
+			band.changeCount = 0;
+		}
+
+		/** finds the black pixels whose window holds a recent deletion.
+		 * 
+		 * @return length of candidates used (2 per pixel)
+		 */
+		int collect() {
+			candidateCount = 0;
+			addWindows(older, olderCount);
+			addWindows(newer, newerCount);
+			return candidateCount;
+		}
+
+		private void addWindows(int[] deleted, int count) {
+			int width = binary.getWidth();
+			int height = binary.getHeight();
+			for (int i = 0; i < count; i += 2) {
+				int x = deleted[i];
+				int y = deleted[i + 1];
+				for (int yy = Math.max(0, y - 2); yy <= Math.min(height - 1, y + 1); yy++) {
+					for (int xx = Math.max(0, x - 2); xx <= Math.min(width - 1, x + 1); xx++) {
+						if (binary.get(xx, yy) && !queued.get(xx, yy)) {
+							queued.set(xx, yy);
+							addCandidate(xx, yy);
+						}
+					}
+				}
+			}
+		}
+
+		private void addCandidate(int x, int y) {
+			if (candidateCount == candidates.length) {
+				candidates = Arrays.copyOf(candidates, candidateCount * 2);
+			}
+			candidates[candidateCount++] = x;
+			candidates[candidateCount++] = y;
+		}
+
+		/** clears the marks of the last candidates.
+		 */
+		void release() {
+			for (int i = 0; i < candidateCount; i += 2) {
+				queued.clear(candidates[i], candidates[i + 1]);
+			}
+			candidateCount = 0;
+		}
+
+		/** releases queued (e.g. the scratch file of a tiled raster).
+		 */
+		void close() {
+			if (queued instanceof TiledBinaryRaster) {
+				((TiledBinaryRaster) queued).close();
+			}
+			queued = null;
 		}
-        pointsToChange.clear();
 	}
- 
 
 }
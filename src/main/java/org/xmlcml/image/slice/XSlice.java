@@ -9,6 +9,8 @@ import org.xmlcml.euclid.IntRange;
 import org.xmlcml.euclid.Real2;
 import org.xmlcml.graphics.svg.SVGG;
 import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.ImagePixelAccessor;
 
 /** ordered ranges of contigous pixes at given X value of image.
  * 
@@ -112,6 +114,16 @@ public class XSlice {
 	}
 	
 	public static XSlice getBinarySlice(BufferedImage image, int x) {
+		return getBinarySlice(new ImagePixelAccessor(image), x);
+	}
+
+	/** as getBinarySlice(BufferedImage, int) but reuses accessor across slices.
+	 * 
+	 * @param image
+	 * @param x
+	 * @return
+	 */
+	public static XSlice getBinarySlice(ImagePixelAccessor image, int x) {
 		int current = 0;
 		XSlice slice = new XSlice(x);
 		int rangeYMin = -1;
@@ -142,6 +154,55 @@ public class XSlice {
 		return slice;
 	}
 
+	/** slice from packed binary image.
+	 * 
+	 * every pixel not set in raster is white.
+	 * 
+	 * @param raster
+	 * @param x
+	 * @return
+	 */
+	public static XSlice getBinarySlice(BinaryRaster raster, int x) {
+		return getBinarySlice(raster, null, x);
+	}
+
+	/** slice from packed black and white pixels of an image.
+	 * 
+	 * as getBinarySlice(BufferedImage, int), avoiding repeated getRGB() down each column.
+	 * Pixels in neither raster (e.g. grey) leave the current run as it is, so a run
+	 * continues through them; they are not reported.
+	 * 
+	 * @param black
+	 * @param white if null, all pixels not in black
+	 * @param x
+	 * @return
+	 */
+	public static XSlice getBinarySlice(BinaryRaster black, BinaryRaster white, int x) {
+		int current = 0;
+		XSlice slice = new XSlice(x);
+		int rangeYMin = -1;
+		int y = 0;
+		yminTotal = -1;
+		ymaxTotal = -1;
+		for (; y < black.getHeight(); y++) {
+			if (black.get(x, y)) {
+				if (current == 0) {
+					rangeYMin = y;
+					if (yminTotal == -1) {
+						yminTotal = rangeYMin;
+					}
+				}
+				current = 1;
+				ymaxTotal = y;
+			} else if (white == null || white.get(x, y)) {
+				slice.addClosedRange(current, rangeYMin, y);
+				current = 0;
+			}
+		}
+		slice.addClosedRange(current, rangeYMin, y - 1);
+		return slice;
+	}
+
 	private void addClosedRange(int current, int ymin, int y) {
 		if (current == 1) {
 			this.addRange(new IntRange(ymin, y));
@@ -0,0 +1,140 @@
+package org.xmlcml.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.processing.Thinning;
+import org.xmlcml.image.processing.ZhangSuenThinning;
+import org.xmlcml.image.slice.XSlice;
+
+public class BinaryRasterTest {
+	private static final Logger LOG = Logger.getLogger(BinaryRasterTest.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	@Test
+	public void testSetGet() {
+		BinaryRaster raster = new BinaryRaster(130, 3);
+		Assert.assertEquals("words", 3, raster.getWordsPerRow());
+		raster.set(0, 0);
+		raster.set(63, 1);
+		raster.set(64, 1);
+		raster.set(129, 2);
+		Assert.assertTrue(raster.get(0, 0));
+		Assert.assertTrue(raster.get(63, 1));
+		Assert.assertTrue(raster.get(64, 1));
+		Assert.assertTrue(raster.get(129, 2));
+		Assert.assertFalse(raster.get(62, 1));
+		Assert.assertFalse(raster.get(65, 1));
+		Assert.assertEquals("black", 4, raster.cardinality());
+		raster.clear(63, 1);
+		Assert.assertFalse(raster.get(63, 1));
+		Assert.assertEquals("black", 3, raster.cardinality());
+	}
+
+	@Test
+	public void testOutside() {
+		BinaryRaster raster = new BinaryRaster(10, 10);
+		raster.set(0, 0);
+		Assert.assertFalse(raster.get(-1, 0));
+		Assert.assertFalse(raster.get(10, 0));
+		Assert.assertEquals(0, raster.getBit(0, -1));
+		Assert.assertEquals(0, raster.getBit(0, 10));
+		Assert.assertEquals(0L, raster.getWord(-1, 0));
+	}
+
+	@Test
+	public void testNextSetBit() {
+		BinaryRaster raster = new BinaryRaster(200, 2);
+		raster.set(5, 1);
+		raster.set(70, 1);
+		raster.set(199, 1);
+		Assert.assertEquals(-1, raster.nextSetBit(0, 0));
+		Assert.assertTrue(raster.isRowEmpty(0));
+		Assert.assertFalse(raster.isRowEmpty(1));
+		Assert.assertEquals(5, raster.nextSetBit(0, 1));
+		Assert.assertEquals(70, raster.nextSetBit(6, 1));
+		Assert.assertEquals(199, raster.nextSetBit(71, 1));
+		Assert.assertEquals(-1, raster.nextSetBit(200, 1));
+	}
+
+	@Test
+	public void testSetWordMasksWidth() {
+		BinaryRaster raster = new BinaryRaster(70, 1);
+		raster.setWord(0, 1, -1L);
+		Assert.assertEquals("only 6 valid bits", 6, raster.cardinality());
+		Assert.assertEquals(0x3fL, raster.getWord(0, 1));
+	}
+
+	@Test
+	public void testBinaryRoundTrip() {
+		int[][] binary = {
+				{0, 1, 0},
+				{1, 1, 1},
+				{0, 1, 0},
+		};
+		BinaryRaster raster = BinaryRaster.createFromBinary(binary);
+		Assert.assertEquals(3, raster.getWidth());
+		Assert.assertEquals(3, raster.getHeight());
+		Assert.assertEquals(5, raster.cardinality());
+		int[][] binary1 = raster.createBinary();
+		for (int y = 0; y < 3; y++) {
+			for (int x = 0; x < 3; x++) {
+				Assert.assertEquals("("+x+","+y+")", binary[y][x], binary1[y][x]);
+			}
+		}
+		Assert.assertEquals(raster, new BinaryRaster(raster));
+	}
+
+	@Test
+	public void testImageRoundTrip() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		BinaryRaster raster = BinaryRaster.createFromBlackPixels(image);
+		Assert.assertEquals(image.getWidth(), raster.getWidth());
+		Assert.assertEquals(image.getHeight(), raster.getHeight());
+		BufferedImage image1 = new BufferedImage(raster.getWidth(), raster.getHeight(), BufferedImage.TYPE_INT_RGB);
+		raster.writeToImage(image1);
+		Assert.assertEquals(raster, BinaryRaster.createFromBlackPixels(image1));
+	}
+
+	@Test
+	public void testThinning() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		BinaryRaster raster = BinaryRaster.createFromBlackPixels(image);
+		Thinning thinning = new ZhangSuenThinning();
+		thinning.setBinary(new BinaryRaster(raster));
+		thinning.doThinning();
+		BinaryRaster thinned = thinning.getBinary();
+		Assert.assertTrue("thinned", thinned.cardinality() < raster.cardinality());
+		for (int y = 0; y < raster.getHeight(); y++) {
+			for (int x = 0; x < raster.getWidth(); x++) {
+				if (thinned.get(x, y)) {
+					Assert.assertTrue("subset", raster.get(x, y));
+				}
+			}
+		}
+	}
+
+	/** runs continue through grey pixels as in getBinarySlice(BufferedImage, int).
+	 */
+	@Test
+	public void testXSliceGrey() {
+		int[] column = {0xffffffff, 0xff000000, 0xff808080, 0xff000000, 0xffffffff, 0xff808080, 0xff000000};
+		BufferedImage image = new BufferedImage(1, column.length, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < column.length; y++) {
+			image.setRGB(0, y, column[y]);
+		}
+		XSlice expected = XSlice.getBinarySlice(image, 0);
+		XSlice slice = XSlice.getBinarySlice(BinaryRaster.createFromBlackPixels(image),
+				BinaryRaster.createFromPixels(image, 0xffffffff), 0);
+		Assert.assertEquals(2, slice.size());
+		Assert.assertEquals(expected.toString(), slice.toString());
+	}
+}
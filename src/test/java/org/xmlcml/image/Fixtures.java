@@ -1,6 +1,7 @@
 package org.xmlcml.image;
 
 import java.awt.Point;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.Arrays;
 
@@ -334,5 +335,56 @@ public class Fixtures {
 		return island;
 	}
 
+	/** raster from rows of '#' (black) and '.' (white).
+	 * 
+	 * @param rows
+	 * @return
+	 */
+	public static BinaryRaster createBinaryRaster(String[] rows) {
+		int width = 0;
+		for (String row : rows) {
+			width = Math.max(width, row.length());
+		}
+		BinaryRaster raster = new BinaryRaster(width, rows.length);
+		for (int y = 0; y < rows.length; y++) {
+			for (int x = 0; x < rows[y].length(); x++) {
+				if (rows[y].charAt(x) == '#') {
+					raster.set(x, y);
+				}
+			}
+		}
+		return raster;
+	}
+
+	/** black and white image from rows of '#' (black) and '.' (white).
+	 * 
+	 * @param rows
+	 * @return
+	 */
+	public static BufferedImage createImage(String[] rows) {
+		BinaryRaster raster = createBinaryRaster(rows);
+		BufferedImage image = new BufferedImage(raster.getWidth(), raster.getHeight(), BufferedImage.TYPE_INT_RGB);
+		raster.writeToImage(image);
+		return image;
+	}
+
+	/** black pixels of rows of '#' (black) and '.' (white), in raster order.
+	 * 
+	 * @param rows
+	 * @param x0 x of the first column
+	 * @param y0 y of the first row
+	 * @return
+	 */
+	public static PixelList createPixelList(String[] rows, int x0, int y0) {
+		BinaryRaster raster = createBinaryRaster(rows);
+		PixelList pixelList = new PixelList();
+		for (int y = 0; y < raster.getHeight(); y++) {
+			for (int x = raster.nextSetBit(0, y); x >= 0; x = raster.nextSetBit(x + 1, y)) {
+				pixelList.add(new Pixel(x0 + x, y0 + y));
+			}
+		}
+		return pixelList;
+	}
+
 	
 }
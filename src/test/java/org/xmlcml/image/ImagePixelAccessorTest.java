@@ -0,0 +1,91 @@
+package org.xmlcml.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.euclid.IntRange;
+
+public class ImagePixelAccessorTest {
+
+	private static final int[] TYPES = {
+		BufferedImage.TYPE_INT_RGB,
+		BufferedImage.TYPE_INT_ARGB,
+		BufferedImage.TYPE_BYTE_GRAY,
+		BufferedImage.TYPE_BYTE_BINARY,
+		BufferedImage.TYPE_3BYTE_BGR,
+	};
+
+	@Test
+	public void testFast() {
+		Assert.assertTrue(new ImagePixelAccessor(new BufferedImage(3, 3, BufferedImage.TYPE_INT_RGB)).isFast());
+		Assert.assertTrue(new ImagePixelAccessor(new BufferedImage(3, 3, BufferedImage.TYPE_BYTE_BINARY)).isFast());
+		Assert.assertFalse(new ImagePixelAccessor(new BufferedImage(3, 3, BufferedImage.TYPE_3BYTE_BGR)).isFast());
+	}
+
+	@Test
+	/** every read and write must match getRGB() and setRGB().
+	 *
+	 */
+	public void testSameAsGetSetRGB() {
+		for (int type : TYPES) {
+			checkSameAsGetSetRGB(new BufferedImage(71, 13, type), new BufferedImage(71, 13, type));
+		}
+	}
+
+	@Test
+	public void testSubimage() {
+		for (int type : TYPES) {
+			BufferedImage image = new BufferedImage(71, 13, type).getSubimage(9, 3, 50, 7);
+			BufferedImage image1 = new BufferedImage(71, 13, type).getSubimage(9, 3, 50, 7);
+			checkSameAsGetSetRGB(image, image1);
+		}
+	}
+
+	@Test
+	public void testTwoBitPacked() {
+		byte[] levels = {0, (byte) 85, (byte) 170, (byte) 255};
+		IndexColorModel colorModel = new IndexColorModel(2, 4, levels, levels, levels);
+		BufferedImage image = new BufferedImage(37, 5, BufferedImage.TYPE_BYTE_BINARY, colorModel);
+		BufferedImage image1 = new BufferedImage(37, 5, BufferedImage.TYPE_BYTE_BINARY, colorModel);
+		checkSameAsGetSetRGB(image, image1);
+	}
+
+	private void checkSameAsGetSetRGB(BufferedImage image, BufferedImage image1) {
+		Random random = new Random(17);
+		ImagePixelAccessor accessor = new ImagePixelAccessor(image);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				int rgb = random.nextInt();
+				accessor.setRGB(x, y, rgb);
+				image1.setRGB(x, y, rgb);
+			}
+		}
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				Assert.assertEquals("type "+image.getType()+" ("+x+","+y+")", image1.getRGB(x, y), accessor.getRGB(x, y));
+				Assert.assertEquals("type "+image.getType()+" ("+x+","+y+")", image1.getRGB(x, y), image.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testClipSubImage() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_THINNED_PNG);
+		Int2Range box = new Int2Range(new IntRange(20, 80), new IntRange(50, 135));
+		BufferedImage subImage = ImageUtil.clipSubImage(image, box);
+		Assert.assertEquals(60, subImage.getWidth());
+		Assert.assertEquals(85, subImage.getHeight());
+		for (int y = 0; y < subImage.getHeight(); y++) {
+			for (int x = 0; x < subImage.getWidth(); x++) {
+				Assert.assertEquals(image.getRGB(x + 20, y + 50), subImage.getRGB(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package org.xmlcml.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.colour.ColorUtilities;
+import org.xmlcml.image.pixel.ImageFloodFill;
+import org.xmlcml.image.pixel.PixelIslandList;
+import org.xmlcml.image.processing.Thinning;
+import org.xmlcml.image.processing.ZhangSuenThinning;
+
+public class TiledBinaryRasterTest {
+
+	@Test
+	public void testSetGet() {
+		TiledBinaryRaster raster = new TiledBinaryRaster(300, 200, 64, null);
+		try {
+			Assert.assertEquals("white", 0, raster.cardinality());
+			raster.set(0, 0);
+			raster.set(63, 64);
+			raster.set(64, 64);
+			raster.set(299, 199);
+			Assert.assertTrue(raster.get(63, 64));
+			Assert.assertTrue(raster.get(64, 64));
+			Assert.assertFalse(raster.get(65, 64));
+			Assert.assertFalse(raster.get(-1, 0));
+			Assert.assertFalse(raster.get(300, 199));
+			Assert.assertEquals(0, raster.getBit(0, 200));
+			Assert.assertEquals(4, raster.cardinality());
+			raster.clear(63, 64);
+			Assert.assertFalse(raster.get(63, 64));
+			Assert.assertEquals(64, raster.nextSetBit(0, 64));
+			Assert.assertEquals(299, raster.nextSetBit(1, 199));
+			Assert.assertTrue(raster.isRowEmpty(1));
+			raster.setWord(0, raster.getWordsPerRow() - 1, -1L);
+			Assert.assertEquals("300 = 4 * 64 + 44", 44, Long.bitCount(raster.getWord(0, raster.getWordsPerRow() - 1)));
+			raster.clearAll();
+			Assert.assertEquals(0, raster.cardinality());
+		} finally {
+			raster.close();
+		}
+	}
+
+	@Test
+	/** random edits must give the same pixels as the in-memory raster.
+	 *
+	 * few mapped bands so that bands are dropped and remapped.
+	 */
+	public void testAgainstBinaryRaster() {
+		int width = 333;
+		int height = 517;
+		BinaryRaster expected = new BinaryRaster(width, height);
+		TiledBinaryRaster raster = new TiledBinaryRaster(width, height, 64, null);
+		raster.setMaxMappedBands(2);
+		try {
+			Random random = new Random(3);
+			for (int i = 0; i < 50000; i++) {
+				int x = random.nextInt(width);
+				int y = random.nextInt(height);
+				boolean black = random.nextInt(3) != 0;
+				expected.set(x, y, black);
+				raster.set(x, y, black);
+			}
+			Assert.assertEquals(2, raster.getMappedBandCount());
+			Assert.assertEquals(expected, raster);
+			Assert.assertEquals(raster, expected);
+			Assert.assertEquals(expected.hashCode(), raster.hashCode());
+			Assert.assertEquals(expected.cardinality(), raster.cardinality());
+			for (int y = 0; y < height; y++) {
+				Assert.assertEquals(expected.nextSetBit(100, y), raster.nextSetBit(100, y));
+			}
+			Assert.assertEquals("copy in memory", expected, new BinaryRaster(raster));
+		} finally {
+			raster.close();
+		}
+	}
+
+	@Test
+	public void testThinningSameAsBinaryRaster() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		BinaryRaster raster = BinaryRaster.createFromBlackPixels(image);
+		TiledBinaryRaster tiled = new TiledBinaryRaster(raster.getWidth(), raster.getHeight(), 64, null);
+		try {
+			tiled.setBlackPixels(image, 0);
+			Assert.assertEquals(raster, tiled);
+			Thinning thinning = new ZhangSuenThinning();
+			thinning.setBinary(raster);
+			thinning.doThinning();
+			Thinning tiledThinning = new ZhangSuenThinning();
+			tiledThinning.setBinary(tiled);
+			tiledThinning.doThinning();
+			Assert.assertEquals("thinned", raster, tiled);
+
+			PixelIslandList islands = new ImageFloodFill(raster).getIslandList();
+			PixelIslandList tiledIslands = new ImageFloodFill(tiled).getIslandList();
+			Assert.assertEquals("islands", islands.size(), tiledIslands.size());
+			for (int i = 0; i < islands.size(); i++) {
+				Assert.assertEquals("island "+i, islands.get(i).size(), tiledIslands.get(i).size());
+			}
+		} finally {
+			tiled.close();
+		}
+	}
+
+	@Test
+	/** strip-wise binarization must match binarizing the whole image.
+	 *
+	 */
+	public void testReadImageFile() throws IOException {
+		File file = Fixtures.MALTORYZINE_PNG;
+		BufferedImage image = ImageIO.read(file);
+		ColorUtilities.convertTransparentToWhite(image);
+		BinaryRaster expected = BinaryRaster.createFromBlackPixels(ImageUtil.boofCVBinarization(image, 129));
+		// strips of 64 rows
+		TiledBinaryRaster raster = TiledBinaryRaster.readImageFile(file, true, 129, 64, 1);
+		try {
+			Assert.assertTrue("several strips", raster.getHeight() > 64);
+			Assert.assertEquals(expected, raster);
+		} finally {
+			raster.close();
+		}
+		Assert.assertFalse("temporary file deleted", raster.getScratchFile().exists());
+	}
+
+	/** the painted mask of a fill is a scratch file beside the raster's; it must be deleted.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testFloodFillDeletesPaintedFile() throws IOException {
+		File dir = new File("target/tiled/painted");
+		dir.mkdirs();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		TiledBinaryRaster raster = new TiledBinaryRaster(image.getWidth(), image.getHeight(), 64, new File(dir, "raster.tiles"));
+		try {
+			raster.setBlackPixels(image, 0);
+			ImageFloodFill floodFill = new ImageFloodFill(raster);
+			floodFill.setDiagonal(true);
+			floodFill.setRunLength(true);
+			Assert.assertTrue(floodFill.getIslandList().size() > 0);
+			Assert.assertEquals("painted file deleted", 1, dir.listFiles().length);
+		} finally {
+			raster.close();
+		}
+	}
+
+	/** thinning marks its candidates in a scratch file beside the raster's and deletes it.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testThinningDeletesScratchFile() throws IOException {
+		File dir = new File("target/tiled/thinning");
+		dir.mkdirs();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		TiledBinaryRaster raster = new TiledBinaryRaster(image.getWidth(), image.getHeight(), 64, new File(dir, "raster.tiles"));
+		try {
+			raster.setBlackPixels(image, 0);
+			Thinning thinning = new ZhangSuenThinning();
+			thinning.setBinary(raster);
+			thinning.doThinning();
+			Assert.assertEquals("scratch file deleted", 1, dir.listFiles().length);
+		} finally {
+			raster.close();
+		}
+	}
+
+	@Test
+	public void testProcessLargeImageFile() throws IOException {
+		ImageProcessor imageProcessor = ImageProcessor.createDefaultProcessor();
+		imageProcessor.setDebug(false);
+		imageProcessor.processImageFile(Fixtures.MALTORYZINE_PNG);
+		PixelIslandList islands = imageProcessor.getOrCreatePixelIslandList();
+		BinaryRaster expected = BinaryRaster.createFromBlackPixels(imageProcessor.getThinnedImage());
+
+		ImageProcessor largeProcessor = ImageProcessor.createDefaultProcessor();
+		largeProcessor.setDebug(false);
+		TiledBinaryRaster raster = (TiledBinaryRaster) largeProcessor.processLargeImageFile(Fixtures.MALTORYZINE_PNG);
+		try {
+			Assert.assertEquals("thinned", expected, raster);
+			PixelIslandList largeIslands = largeProcessor.getOrCreatePixelIslandList();
+			Assert.assertEquals("islands", islands.size(), largeIslands.size());
+		} finally {
+			raster.close();
+		}
+	}
+}
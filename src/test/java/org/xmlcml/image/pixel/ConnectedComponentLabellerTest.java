@@ -0,0 +1,236 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+import org.xmlcml.image.TiledBinaryRaster;
+
+public class ConnectedComponentLabellerTest {
+
+	private final static int[][] BINARY = {
+		{0, 1, 0, 0, 1},
+		{1, 0, 0, 1, 1},
+		{0, 0, 0, 0, 0},
+		{1, 1, 0, 1, 0},
+		{0, 1, 1, 1, 0},
+	};
+
+	@Test
+	public void testDiagonal() {
+		PixelLabelRaster labels = new ConnectedComponentLabeller(true).label(BinaryRaster.createFromBinary(BINARY));
+		Assert.assertEquals(3, labels.getLabelCount());
+		Assert.assertEquals(1, labels.getLabel(1, 0));
+		Assert.assertEquals("diagonal", 1, labels.getLabel(0, 1));
+		Assert.assertEquals(2, labels.getLabel(4, 0));
+		Assert.assertEquals(2, labels.getLabel(3, 1));
+		Assert.assertEquals(3, labels.getLabel(0, 3));
+		Assert.assertEquals("U shape", 3, labels.getLabel(3, 3));
+		Assert.assertEquals(0, labels.getLabel(2, 2));
+	}
+
+	@Test
+	public void testOrthogonal() {
+		PixelLabelRaster labels = new ConnectedComponentLabeller(false).label(BinaryRaster.createFromBinary(BINARY));
+		Assert.assertEquals(4, labels.getLabelCount());
+		Assert.assertEquals(1, labels.getLabel(1, 0));
+		Assert.assertEquals(2, labels.getLabel(4, 0));
+		Assert.assertEquals("not diagonal", 3, labels.getLabel(0, 1));
+		Assert.assertEquals(4, labels.getLabel(1, 4));
+		Assert.assertEquals("U shape", 4, labels.getLabel(3, 3));
+	}
+
+	@Test
+	public void testEmpty() {
+		PixelLabelRaster labels = new ConnectedComponentLabeller(true).label(new BinaryRaster(70, 3));
+		Assert.assertEquals(0, labels.getLabelCount());
+	}
+
+	@Test
+	/** islands from labels must have the same pixels in the same order as the queue fill.
+	 *
+	 */
+	public void testSameAsQueueFill() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		for (boolean diagonal : new boolean[] {true, false}) {
+			FloodFill floodFill = new ImageFloodFill(image);
+			floodFill.setDiagonal(diagonal);
+			PixelIslandList islands = floodFill.getIslandList();
+			Assert.assertNotNull(floodFill.getLabelRaster());
+			FloodFill queueFill = new ImageFloodFill(image) {
+				public void fill() {
+					getBinaryRaster();
+					painted = createPaintedRaster();
+					for (int i = 0; i < height; i++) {
+						for (int j = 0; j < width; j++) {
+							addNextUnpaintedBlack(i, j);
+						}
+					}
+				}
+			};
+			queueFill.setDiagonal(diagonal);
+			PixelIslandList queueIslands = queueFill.getIslandList();
+			Assert.assertEquals("islands", queueIslands.size(), islands.size());
+			for (int i = 0; i < islands.size(); i++) {
+				PixelList expected = queueIslands.get(i).getPixelList();
+				PixelList found = islands.get(i).getPixelList();
+				String msg = "island "+i+" diagonal "+diagonal;
+				Assert.assertEquals(msg, expected.size(), found.size());
+				for (int j = 0; j < expected.size(); j++) {
+					Assert.assertEquals(msg, expected.get(j).getInt2(), found.get(j).getInt2());
+					Assert.assertSame(msg, islands.get(i), found.get(j).getIsland());
+				}
+			}
+		}
+	}
+
+	@Test
+	/** bands labelled in parallel and joined at the seams must give the sequential labels.
+	 *
+	 */
+	public void testParallel() {
+		BinaryRaster raster = createRandomRaster(300, 1000, 0.55, 1);
+		// a long vertical line crossing every seam, first met at the bottom
+		for (int y = 0; y < 1000; y++) {
+			raster.set(299, y);
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (boolean diagonal : new boolean[] {true, false}) {
+				PixelLabelRaster expected = new ConnectedComponentLabeller(diagonal).label(raster);
+				PixelLabelRaster found = new ConnectedComponentLabeller(diagonal).label(raster, pool);
+				Assert.assertEquals(expected.getLabelCount(), found.getLabelCount());
+				for (int y = 0; y < raster.getHeight(); y++) {
+					for (int x = 0; x < raster.getWidth(); x++) {
+						Assert.assertEquals(x+","+y, expected.getLabel(x, y), found.getLabel(x, y));
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelFloodFill() {
+		BinaryRaster raster = createRandomRaster(200, 600, 0.4, 2);
+		FloodFill floodFill = new ImageFloodFill(raster);
+		floodFill.setDiagonal(true);
+		PixelIslandList islands = floodFill.getIslandList();
+		FloodFill parallelFill = new ImageFloodFill(raster);
+		parallelFill.setDiagonal(true);
+		parallelFill.setParallelism(4);
+		PixelIslandList parallelIslands = parallelFill.getIslandList();
+		Assert.assertEquals("islands", islands.size(), parallelIslands.size());
+		for (int i = 0; i < islands.size(); i++) {
+			PixelList expected = islands.get(i).getPixelList();
+			PixelList found = parallelIslands.get(i).getPixelList();
+			Assert.assertEquals("island "+i, expected.size(), found.size());
+			for (int j = 0; j < expected.size(); j++) {
+				Assert.assertEquals("island "+i, expected.get(j).getInt2(), found.get(j).getInt2());
+			}
+		}
+		Assert.assertEquals(islands.size(), parallelFill.getLabelRaster().getLabelCount());
+		Assert.assertEquals("labels restored", islands.get(0).size(), parallelFill.getLabelRaster().getSize(1));
+		Pixel pixel = islands.get(0).getPixelList().get(0);
+		Assert.assertEquals(1, parallelFill.getLabelRaster().getLabel(pixel.getInt2().getX(), pixel.getInt2().getY()));
+	}
+
+	/** an image too large to label whole is labelled a row at a time with the same islands.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testLargeImageSameAsQueueFill() throws IOException {
+		BinaryRaster small = ImageFloodFill.createBinaryRaster(ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG), 128);
+		int width = 2048;
+		final BinaryRaster raster = new BinaryRaster(width, (int) (FloodFill.MAX_LABELLED_PIXELS / width) + 1);
+		for (int y = 0; y < small.getHeight(); y++) {
+			for (int x = small.nextSetBit(0, y); x >= 0; x = small.nextSetBit(x + 1, y)) {
+				raster.set(x + width - small.getWidth(), y + raster.getHeight() - small.getHeight());
+			}
+		}
+		for (boolean diagonal : new boolean[] {true, false}) {
+			FloodFill floodFill = new ImageFloodFill(raster);
+			floodFill.setDiagonal(diagonal);
+			PixelIslandList islands = floodFill.getIslandList();
+			Assert.assertNull("not labelled whole", floodFill.getLabelRaster());
+			FloodFill queueFill = new ImageFloodFill(raster) {
+				public void fill() {
+					painted = createPaintedRaster();
+					for (int i = 0; i < height; i++) {
+						for (int j = 0; j < width; j++) {
+							addNextUnpaintedBlack(i, j);
+						}
+					}
+				}
+			};
+			queueFill.setDiagonal(diagonal);
+			PixelIslandList queueIslands = queueFill.getIslandList();
+			Assert.assertEquals("islands", queueIslands.size(), islands.size());
+			for (int i = 0; i < islands.size(); i++) {
+				PixelList expected = queueIslands.get(i).getPixelList();
+				PixelList found = islands.get(i).getPixelList();
+				String msg = "island "+i+" diagonal "+diagonal;
+				Assert.assertEquals(msg, expected.size(), found.size());
+				for (int j = 0; j < expected.size(); j++) {
+					Assert.assertEquals(msg, expected.get(j).getInt2(), found.get(j).getInt2());
+					Assert.assertSame(msg, islands.get(i), found.get(j).getIsland());
+				}
+			}
+		}
+	}
+
+	/** a large tiled raster is not labelled just because parallelism is set.
+	 */
+	@Test
+	public void testParallelTiledFloodFill() {
+		int width = 2048;
+		int height = (int) (FloodFill.MAX_LABELLED_PIXELS / width) + 1;
+		BinaryRaster blobs = createRandomRaster(200, 100, 0.4, 3);
+		BinaryRaster raster = new BinaryRaster(width, height);
+		TiledBinaryRaster tiled = new TiledBinaryRaster(width, height, 256, null);
+		try {
+			for (int y = 0; y < blobs.getHeight(); y++) {
+				for (int x = blobs.nextSetBit(0, y); x >= 0; x = blobs.nextSetBit(x + 1, y)) {
+					raster.set(x, y + height - blobs.getHeight());
+					tiled.set(x, y + height - blobs.getHeight());
+				}
+			}
+			FloodFill floodFill = new ImageFloodFill(raster);
+			floodFill.setDiagonal(true);
+			PixelIslandList islands = floodFill.getIslandList();
+			FloodFill tiledFill = new ImageFloodFill(tiled);
+			tiledFill.setDiagonal(true);
+			tiledFill.setParallelism(4);
+			PixelIslandList tiledIslands = tiledFill.getIslandList();
+			Assert.assertNull("not labelled", tiledFill.getLabelRaster());
+			Assert.assertEquals("islands", islands.size(), tiledIslands.size());
+			for (int i = 0; i < islands.size(); i++) {
+				Assert.assertEquals("island "+i, islands.get(i).size(), tiledIslands.get(i).size());
+			}
+		} finally {
+			tiled.close();
+		}
+	}
+
+	private static BinaryRaster createRandomRaster(int width, int height, double density, long seed) {
+		Random random = new Random(seed);
+		BinaryRaster raster = new BinaryRaster(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (random.nextDouble() < density) {
+					raster.set(x, y);
+				}
+			}
+		}
+		return raster;
+	}
+}
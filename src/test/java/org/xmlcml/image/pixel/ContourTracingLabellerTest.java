@@ -0,0 +1,103 @@
+package org.xmlcml.image.pixel;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.graphics.svg.SVGPolygon;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+
+public class ContourTracingLabellerTest {
+
+	@Test
+	public void testRing() {
+		BinaryRaster raster = Fixtures.createBinaryRaster(new String[] {
+			".....",
+			".###.",
+			".#.#.",
+			".###.",
+			"....#",
+		});
+		ContourTracingLabeller labeller = new ContourTracingLabeller();
+		PixelLabelRaster labels = labeller.label(raster);
+		Assert.assertEquals(1, labels.getLabelCount());
+		Assert.assertEquals(0, labels.getLabel(2, 2));
+		Assert.assertEquals(1, labels.getLabel(4, 4));
+		Assert.assertEquals("outer(1,1)0022154466", labeller.getOuterContour(1).toString());
+		List<PixelContour> inner = labeller.getInnerContours(1);
+		Assert.assertEquals(1, inner.size());
+		Assert.assertEquals("inner(2,1)3175", inner.get(0).toString());
+		Assert.assertArrayEquals(new int[] {2, 1, 2, 3}, inner.get(0).getXArray());
+		Assert.assertArrayEquals(new int[] {1, 2, 3, 2}, inner.get(0).getYArray());
+		Assert.assertEquals(9, labels.getStats().getArea(1));
+	}
+
+	@Test
+	public void testIsolatedPixel() {
+		ContourTracingLabeller labeller = new ContourTracingLabeller();
+		labeller.label(Fixtures.createBinaryRaster(new String[] {"#.", ".."}));
+		PixelContour contour = labeller.getOuterContour(1);
+		Assert.assertEquals(1, contour.size());
+		Assert.assertEquals(0, contour.getChainCode().length);
+	}
+
+	/** labels and statistics are those of ConnectedComponentLabeller; one inner
+	 * contour for each hole.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testSameAsLabeller() throws IOException {
+		BinaryRaster raster = ImageFloodFill.createBinaryRaster(ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG), 128);
+		PixelLabelRaster expected = new ConnectedComponentLabeller(true).label(raster);
+		ContourTracingLabeller labeller = new ContourTracingLabeller();
+		PixelLabelRaster labels = labeller.label(raster);
+		Assert.assertEquals(expected.getLabelCount(), labels.getLabelCount());
+		for (int y = 0; y < raster.getHeight(); y++) {
+			for (int x = 0; x < raster.getWidth(); x++) {
+				Assert.assertEquals(expected.getLabel(x, y), labels.getLabel(x, y));
+			}
+		}
+		PixelIslandTree tree = new IslandTopologyLabeller().label(raster);
+		for (int label = 1; label <= labels.getLabelCount(); label++) {
+			Assert.assertEquals(expected.getStats().getArea(label), labels.getStats().getArea(label));
+			Assert.assertEquals(expected.getStats().getPerimeter(label), labels.getStats().getPerimeter(label));
+			Assert.assertEquals(tree.getHoleCount(label), labeller.getInnerContours(label).size());
+			PixelContour contour = labeller.getOuterContour(label);
+			int[] xs = contour.getXArray();
+			int[] ys = contour.getYArray();
+			for (int i = 0; i < xs.length; i++) {
+				Assert.assertEquals(label, labels.getLabel(xs[i], ys[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testFloodFillContours() throws IOException {
+		FloodFill floodFill = new ImageFloodFill(ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG));
+		floodFill.setDiagonal(true);
+		floodFill.setContours(true);
+		PixelIslandList islands = floodFill.getIslandList();
+		List<PixelList> outlines = islands.createContourOutlineList();
+		Assert.assertEquals(0, islands.getOrCreateOutlineList().size());
+		Assert.assertEquals(islands.size(), outlines.size());
+		for (int i = 0; i < islands.size(); i++) {
+			PixelIsland island = islands.get(i);
+			Assert.assertNotNull(island.getOuterContour());
+			for (Pixel pixel : outlines.get(i)) {
+				Assert.assertSame(pixel, island.getPixelList().get(pixel.getX(), pixel.getY()));
+			}
+			PixelOutliner outliner = new PixelOutliner(island);
+			outliner.setMinPolySize(-1);
+			List<SVGPolygon> polygons = outliner.createOutline();
+			Assert.assertEquals(1 + island.getInnerContours().size(), polygons.size());
+		}
+		PixelIsland island = islands.get(0);
+		island.remove(island.getPixelList().get(0));
+		Assert.assertNull("changed", island.getOuterContour());
+	}
+}
@@ -0,0 +1,124 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+
+public class IslandSizeFilterTest {
+
+	@Test
+	public void testAccept() {
+		IslandSizeFilter filter = new IslandSizeFilter().setMinimumSize(2).setMaximumSize(10);
+		Real2Range box = new Real2Range(new RealRange(0, 3), new RealRange(0, 3));
+		Assert.assertFalse(filter.accept(1, box));
+		Assert.assertTrue(filter.accept(2, box));
+		Assert.assertTrue(filter.accept(10, box));
+		Assert.assertFalse(filter.accept(11, box));
+	}
+
+	/** filtering the labels must give the islands that filtering the full list gives.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSameAsFilteredList() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_THINNED_PNG);
+		IslandSizeFilter filter = new IslandSizeFilter().setMinimumSize(5).setMaximumCount(4);
+
+		FloodFill floodFill = new ImageFloodFill(image);
+		PixelIslandList all = floodFill.getIslandList();
+		List<PixelIsland> expected = new ArrayList<PixelIsland>();
+		for (PixelIsland island : all) {
+			if (island.size() >= 5) {
+				expected.add(island);
+			}
+		}
+		Assert.assertTrue(expected.size() > 4);
+		PixelIslandList expectedList = new PixelIslandList(expected);
+		new IslandSizeFilter().setMaximumCount(4).filter(expectedList);
+		Assert.assertEquals(4, expectedList.size());
+
+		FloodFill filterFill = new ImageFloodFill(image);
+		filterFill.setIslandFilter(filter);
+		filterFill.setRetainLabels(true);
+		PixelIslandList found = filterFill.getIslandList();
+		assertSameIslands(expectedList, found);
+		for (PixelIsland island : all) {
+			Pixel pixel = island.getPixelList().get(0);
+			int index = found.getIslandIndexAt(pixel.getX(), pixel.getY());
+			if (index >= 0) {
+				Assert.assertEquals(island.size(), found.get(index).size());
+				Assert.assertEquals(island.size(), found.getStats().getArea(found.getLabel(found.get(index))));
+			} else {
+				Assert.assertNull(found.getIslandByPixel(pixel));
+			}
+		}
+
+		FloodFill runFill = new ImageFloodFill(image);
+		runFill.setRunLength(true);
+		runFill.setIslandFilter(filter);
+		assertSameIslands(expectedList, runFill.getIslandList());
+	}
+
+	/** an image too large to label is filled island by island; rejected islands get no Pixels.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testLargeImage() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_THINNED_PNG);
+		IslandSizeFilter filter = new IslandSizeFilter().setMinimumSize(5).setMaximumCount(4);
+		PixelIslandList all = new ImageFloodFill(image).getIslandList();
+		List<PixelIsland> expected = new ArrayList<PixelIsland>();
+		int acceptedPixels = 0;
+		for (PixelIsland island : all) {
+			if (island.size() >= 5) {
+				expected.add(island);
+				acceptedPixels += island.size();
+			}
+		}
+		Assert.assertTrue("specks", expected.size() < all.size());
+		PixelIslandList expectedList = new PixelIslandList(expected);
+		new IslandSizeFilter().setMaximumCount(4).filter(expectedList);
+
+		int width = 2048;
+		BinaryRaster small = ImageFloodFill.createBinaryRaster(image, 128);
+		BinaryRaster raster = new BinaryRaster(width, (int) (FloodFill.MAX_LABELLED_PIXELS / width) + 1);
+		for (int y = 0; y < small.getHeight(); y++) {
+			for (int x = small.nextSetBit(0, y); x >= 0; x = small.nextSetBit(x + 1, y)) {
+				raster.set(x, y);
+			}
+		}
+		final int[] created = new int[1];
+		FloodFill floodFill = new ImageFloodFill(raster) {
+			@Override
+			protected Pixel getPixelFromPoint(Point p) {
+				created[0]++;
+				return super.getPixelFromPoint(p);
+			}
+		};
+		floodFill.setIslandFilter(filter);
+		assertSameIslands(expectedList, floodFill.getIslandList());
+		Assert.assertNull(floodFill.getLabelRaster());
+		Assert.assertEquals(acceptedPixels, created[0]);
+	}
+
+	private static void assertSameIslands(PixelIslandList expected, PixelIslandList found) {
+		Assert.assertEquals(expected.size(), found.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).size(), found.get(i).size());
+			Assert.assertEquals(expected.get(i).getIntBoundingBox(), found.get(i).getIntBoundingBox());
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+import org.xmlcml.image.processing.Thinning;
+import org.xmlcml.image.processing.ZhangSuenThinning;
+
+public class IslandThinningTest {
+
+	/** same raster and islands as thinning the page and flood-filling it.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testSameAsZhangSuen() throws IOException {
+		File[] files = {
+			Fixtures.MALTORYZINE_BINARY_PNG,
+			Fixtures.MOLECULE_20131119_BINARY_PNG,
+			Fixtures.HELVETICA_BOLD_PNG,
+			Fixtures.PHYLO_14811_2_PNG,
+		};
+		for (File file : files) {
+			BufferedImage image = ImageIO.read(file);
+			Thinning expected = new ZhangSuenThinning(image);
+			expected.doThinning();
+			FloodFill floodFill = new ImageFloodFill(expected.getBinary());
+			floodFill.setDiagonal(true);
+			PixelIslandList expectedIslands = floodFill.getIslandList();
+			for (int parallelism = 1; parallelism <= 3; parallelism += 2) {
+				IslandThinning thinning = new IslandThinning();
+				thinning.setParallelism(parallelism);
+				thinning.createBinary(image);
+				thinning.doThinning();
+				Assert.assertEquals(file.getName(), expected.getBinary(), thinning.getBinary());
+				PixelIslandList islands = thinning.getIslandList();
+				Assert.assertEquals(file.getName(), expectedIslands.size(), islands.size());
+				for (int i = 0; i < islands.size(); i++) {
+					PixelList expectedPixels = expectedIslands.get(i).getPixelList();
+					PixelList pixels = islands.get(i).getPixelList();
+					Assert.assertEquals(file.getName()+"/"+i, expectedPixels.size(), pixels.size());
+					for (int j = 0; j < pixels.size(); j++) {
+						Assert.assertEquals(expectedPixels.get(j).getInt2(), pixels.get(j).getInt2());
+					}
+				}
+			}
+		}
+	}
+
+	/** statistics and labels as from the fill of the thinned raster; kept after filtering.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testLabels() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		IslandThinning thinning = new IslandThinning();
+		thinning.setRetainLabels(true);
+		thinning.createBinary(image);
+		thinning.doThinning();
+		FloodFill floodFill = new ImageFloodFill(new BinaryRaster(thinning.getBinary()));
+		floodFill.setDiagonal(true);
+		PixelIslandStats expected = floodFill.getIslandList().getStats();
+		PixelIslandList islands = thinning.getIslandList();
+		PixelIslandStats stats = islands.getStats();
+		Assert.assertEquals(expected.getLabelCount(), stats.getLabelCount());
+		for (int label = 1; label <= stats.getLabelCount(); label++) {
+			Assert.assertEquals(expected.getArea(label), stats.getArea(label));
+			Assert.assertEquals(expected.getPerimeter(label), stats.getPerimeter(label));
+			Assert.assertEquals(expected.getIntBoundingBox(label), stats.getIntBoundingBox(label));
+		}
+		Assert.assertTrue(stats.getLabelCount() > 3);
+		new IslandSizeFilter().setMaximumCount(3).filter(islands);
+		Assert.assertEquals(3, islands.size());
+		for (int i = 0; i < islands.size(); i++) {
+			Pixel pixel = islands.get(i).getPixelList().get(0);
+			Assert.assertSame(islands.get(i), islands.getIslandAt(pixel.getX(), pixel.getY()));
+			Assert.assertSame(islands.get(i), islands.getIslandByLabel(islands.getLabel(islands.get(i))));
+		}
+	}
+
+	/** the small island is not thinned.
+	 */
+	@Test
+	public void testThinningFilter() {
+		int[][] b = new int[12][20];
+		for (int y = 1; y < 11; y++) {
+			for (int x = 1; x < 5; x++) {
+				b[y][x] = 1;
+			}
+		}
+		for (int y = 7; y < 10; y++) {
+			for (int x = 10; x < 13; x++) {
+				b[y][x] = 1;
+			}
+		}
+		IslandThinning thinning = new IslandThinning();
+		thinning.setBinary(b);
+		thinning.setThinningFilter(new IslandSizeFilter().setMinimumSize(20));
+		thinning.doThinning();
+		BinaryRaster binary = thinning.getBinary();
+		Assert.assertEquals(2, thinning.getIslandList().size());
+		Assert.assertEquals(9, thinning.getIslandList().get(1).size());
+		Assert.assertTrue(binary.get(10, 7));
+		Assert.assertTrue(thinning.getIslandList().get(0).size() < 40);
+		Assert.assertEquals(thinning.getIslandList().get(0).size() + 9, binary.cardinality());
+	}
+}
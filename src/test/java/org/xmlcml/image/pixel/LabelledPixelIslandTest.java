@@ -0,0 +1,119 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.image.Fixtures;
+import org.xmlcml.image.ImageProcessor;
+
+public class LabelledPixelIslandTest {
+
+	@Test
+	public void testLabelRaster() {
+		PixelLabelRaster raster = new PixelLabelRaster(5, 4);
+		raster.setLabel(3, 1, 1);
+		raster.setLabel(1, 1, 1);
+		raster.setLabel(4, 3, 2);
+		raster.index();
+		Assert.assertEquals(2, raster.getLabelCount());
+		Assert.assertEquals(2, raster.getSize(1));
+		Assert.assertEquals("raster order", 1 * 5 + 1, raster.getOffset(1, 0));
+		Assert.assertEquals(1 * 5 + 3, raster.getOffset(1, 1));
+		Assert.assertEquals("((1,3),(1,1))", raster.getIntBoundingBox(1).toString());
+		Assert.assertEquals(0, raster.getLabel(-1, 0));
+		Assert.assertEquals(2, raster.getLabel(4, 3));
+		try {
+			raster.setLabel(0, 0, 1);
+			Assert.fail("indexed");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+	@Test
+	/** labelled islands must have the same pixels and read-side properties as the pixel islands.
+	 *
+	 */
+	public void testSameAsFloodFill() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		for (boolean diagonal : new boolean[] {true, false}) {
+			FloodFill floodFill = new ImageFloodFill(image);
+			floodFill.setDiagonal(diagonal);
+			PixelIslandList islands = floodFill.getIslandList();
+			FloodFill labelFill = new ImageFloodFill(image);
+			labelFill.setDiagonal(diagonal);
+			labelFill.setLabelled(true);
+			PixelIslandList labelIslands = labelFill.getIslandList();
+			Assert.assertEquals("islands", islands.size(), labelIslands.size());
+			Assert.assertEquals(islands.size(), labelFill.getLabelRaster().getLabelCount());
+			for (int i = 0; i < islands.size(); i++) {
+				PixelIsland island = islands.get(i);
+				LabelledPixelIsland labelIsland = (LabelledPixelIsland) labelIslands.get(i);
+				String msg = "island "+i+" diagonal "+diagonal;
+				Assert.assertEquals(msg, i + 1, labelIsland.getLabel());
+				Assert.assertEquals(msg, island.size(), labelIsland.size());
+				Assert.assertEquals(msg, island.getIntBoundingBox(), labelIsland.getIntBoundingBox());
+				Assert.assertEquals(msg, island.getBoundingBox().toString(), labelIsland.getBoundingBox().toString());
+				for (int n = 0; n <= 8; n++) {
+					PixelList expected = island.getPixelsWithNeighbourCount(n);
+					PixelList found = labelIsland.getPixelsWithNeighbourCount(n);
+					Assert.assertEquals(msg+" neighbours "+n, expected.size(), found.size());
+					for (Pixel pixel : found) {
+						Assert.assertTrue(msg, expected.contains(pixel.getX(), pixel.getY()));
+					}
+				}
+				BufferedImage expectedImage = island.createImage();
+				BufferedImage foundImage = labelIsland.createImage();
+				for (int y = 0; y < expectedImage.getHeight(); y++) {
+					for (int x = 0; x < expectedImage.getWidth(); x++) {
+						Assert.assertEquals(msg, expectedImage.getRGB(x, y), foundImage.getRGB(x, y));
+					}
+				}
+				Int2Range box = island.getIntBoundingBox();
+				for (int y = box.getYRange().getMin() - 1; y <= box.getYRange().getMax() + 1; y++) {
+					for (int x = box.getXRange().getMin() - 1; x <= box.getXRange().getMax() + 1; x++) {
+						Assert.assertEquals(msg, island.contains(x, y), labelIsland.contains(x, y));
+					}
+				}
+				Assert.assertFalse(msg, labelIsland.isMaterialized());
+				Pixel first = labelIsland.get(box.getXRange().getMin(), box.getYRange().getMin());
+				for (Pixel pixel : labelIsland.getPixelsWithNeighbourCount(1)) {
+					Assert.assertSame("pixel reused", pixel, labelIsland.get(pixel.getX(), pixel.getY()));
+				}
+				Assert.assertFalse(msg, labelIsland.isMaterialized());
+				PixelList pixelList = labelIsland.getPixelList();
+				Assert.assertTrue(msg, labelIsland.isMaterialized());
+				Assert.assertEquals(msg, island.size(), pixelList.size());
+				for (Pixel pixel : island) {
+					Assert.assertTrue(msg, pixelList.contains(pixel));
+				}
+				if (first != null) {
+					Assert.assertSame("pixel reused", first, labelIsland.get(first.getX(), first.getY()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMainProcessor() {
+		ImageProcessor imageProcessor = ImageProcessor.createDefaultProcessor();
+		imageProcessor.setDebug(false);
+		imageProcessor.processImageFile(Fixtures.MALTORYZINE_PNG);
+		PixelIslandList islands = imageProcessor.getOrCreatePixelIslandList();
+
+		ImageProcessor labelProcessor = ImageProcessor.createDefaultProcessor();
+		labelProcessor.setDebug(false);
+		labelProcessor.processImageFile(Fixtures.MALTORYZINE_PNG);
+		labelProcessor.getPixelProcessor().setLabelledIslands(true);
+		PixelIslandList labelIslands = labelProcessor.getOrCreatePixelIslandList();
+		Assert.assertEquals("islands", islands.size(), labelIslands.size());
+		for (int i = 0; i < islands.size(); i++) {
+			Assert.assertEquals("island "+i, islands.get(i).size(), labelIslands.get(i).size());
+		}
+	}
+}
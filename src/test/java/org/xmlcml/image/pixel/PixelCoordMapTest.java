@@ -0,0 +1,101 @@
+package org.xmlcml.image.pixel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Int2;
+
+public class PixelCoordMapTest {
+
+	@Test
+	public void testPack() {
+		long key = PixelCoordMap.pack(-3, 7);
+		Assert.assertEquals(-3, PixelCoordMap.unpackX(key));
+		Assert.assertEquals(7, PixelCoordMap.unpackY(key));
+		key = PixelCoordMap.pack(5, -1);
+		Assert.assertEquals(5, PixelCoordMap.unpackX(key));
+		Assert.assertEquals(-1, PixelCoordMap.unpackY(key));
+	}
+
+	@Test
+	public void testPutGetRemove() {
+		PixelCoordMap map = new PixelCoordMap();
+		Pixel p1 = new Pixel(1, 2);
+		Pixel p2 = new Pixel(2, 1);
+		Assert.assertNull(map.put(p1));
+		Assert.assertNull(map.put(p2));
+		Assert.assertEquals(2, map.size());
+		Assert.assertSame(p1, map.get(1, 2));
+		Assert.assertSame(p2, map.get(new Int2(2, 1)));
+		Assert.assertNull(map.get(2, 2));
+		Pixel p3 = new Pixel(1, 2);
+		Assert.assertSame("replaced", p1, map.put(p3));
+		Assert.assertEquals(2, map.size());
+		Assert.assertSame(p3, map.remove(1, 2));
+		Assert.assertNull(map.remove(1, 2));
+		Assert.assertFalse(map.containsKey(1, 2));
+		Assert.assertTrue(map.containsKey(2, 1));
+		Assert.assertEquals(1, map.size());
+	}
+
+	@Test
+	/** compare with HashMap through growth and many removals.
+	 *
+	 */
+	public void testAgainstHashMap() {
+		Random random = new Random(42);
+		PixelCoordMap map = new PixelCoordMap();
+		Map<Int2, Pixel> hashMap = new HashMap<Int2, Pixel>();
+		for (int i = 0; i < 20000; i++) {
+			int x = random.nextInt(100) - 10;
+			int y = random.nextInt(100) - 10;
+			if (random.nextInt(3) == 0) {
+				Assert.assertSame(hashMap.remove(new Int2(x, y)), map.remove(x, y));
+			} else {
+				Pixel pixel = new Pixel(x, y);
+				Assert.assertSame(hashMap.put(new Int2(x, y), pixel), map.put(pixel));
+			}
+			Assert.assertEquals(hashMap.size(), map.size());
+		}
+		for (int x = -10; x < 90; x++) {
+			for (int y = -10; y < 90; y++) {
+				Assert.assertSame("("+x+","+y+")", hashMap.get(new Int2(x, y)), map.get(x, y));
+			}
+		}
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertNull(map.get(0, 0));
+	}
+
+	@Test
+	public void testPixelListLookup() {
+		PixelList list = new PixelList();
+		list.add(new Pixel(3, 4));
+		list.add(new Pixel(4, 4));
+		Assert.assertTrue(list.contains(3, 4));
+		Assert.assertFalse(list.contains(4, 3));
+		Assert.assertEquals(new Int2(4, 4), list.get(4, 4).getInt2());
+		list.remove(list.get(4, 4));
+		Assert.assertFalse(list.contains(4, 4));
+		Assert.assertEquals(1, list.size());
+	}
+
+	@Test
+	public void testPixelIslandLookup() {
+		PixelList list = new PixelList();
+		list.add(new Pixel(0, 0));
+		list.add(new Pixel(1, 0));
+		list.add(new Pixel(1, 1));
+		PixelIsland island = PixelIsland.createSeparateIslandWithClonedPixels(list, true);
+		Assert.assertTrue(island.contains(1, 1));
+		Assert.assertFalse(island.contains(0, 1));
+		Pixel pixel = island.get(1, 0);
+		Assert.assertEquals("neighbours", 2, pixel.getOrCreateNeighbours(island).size());
+		island.remove(pixel);
+		Assert.assertFalse(island.contains(1, 0));
+		Assert.assertNull(island.getPixelByCoord(new Int2(1, 0)));
+	}
+}
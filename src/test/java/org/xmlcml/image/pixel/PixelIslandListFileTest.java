@@ -0,0 +1,115 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.Fixtures;
+import org.xmlcml.image.ImageProcessor;
+
+public class PixelIslandListFileTest {
+
+	private static final File TARGET_DIR = new File("target/pixelIslandListFile");
+
+	@Test
+	public void testVarint() throws IOException {
+		int[] values = {0, 1, -1, 63, -64, 64, 127, 128, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		for (int value : values) {
+			PixelIslandListFile.writeVarint(out, PixelIslandListFile.zigzag(value));
+		}
+		out.close();
+		ByteBuffer in = ByteBuffer.wrap(baos.toByteArray());
+		for (int value : values) {
+			Assert.assertEquals(value, PixelIslandListFile.unzigzag(PixelIslandListFile.readVarint(in)));
+		}
+		Assert.assertEquals("small values in 1 byte", 1, PixelIslandListFile.zigzag(-1));
+	}
+
+	@Test
+	/** superthinned islands must come back with the same pixels in the same order.
+	 *
+	 */
+	public void testRoundTripSuperThinned() {
+		ImageProcessor imageProcessor = ImageProcessor.createDefaultProcessor();
+		imageProcessor.setDebug(false);
+		imageProcessor.processImageFile(Fixtures.MALTORYZINE_PNG);
+		PixelIslandList islands = imageProcessor.getOrCreatePixelIslandList();
+		for (int i = 0; i < islands.size(); i++) {
+			islands.get(i).setId("i"+i);
+		}
+		File file = new File(TARGET_DIR, "maltoryzine.pil");
+		MainPixelProcessor mainProcessor = imageProcessor.getPixelProcessor();
+		mainProcessor.writePixelIslandList(file);
+
+		PixelIslandListFile islandFile = new PixelIslandListFile(file);
+		Assert.assertEquals(islands.size(), islandFile.size());
+		Assert.assertEquals(islands.getDiagonal(), islandFile.getDiagonal());
+		for (int i = 0; i < islands.size(); i++) {
+			Assert.assertEquals(islands.get(i).size(), islandFile.getPixelCount(i));
+			Assert.assertEquals(islands.get(i).getIntBoundingBox(), islandFile.getIntBoundingBox(i));
+		}
+		PixelIslandList islands1 = mainProcessor.readPixelIslandList(file);
+		Assert.assertSame(islands1, mainProcessor.getOrCreatePixelIslandList());
+		Assert.assertEquals(islands.size(), islands1.size());
+		for (int i = 0; i < islands.size(); i++) {
+			PixelIsland island = islands.get(i);
+			PixelIsland island1 = islands1.get(i);
+			Assert.assertEquals("i"+i, island1.getId());
+			Assert.assertEquals(island.getDiagonal(), island1.getDiagonal());
+			Assert.assertEquals(island.size(), island1.size());
+			for (int j = 0; j < island.size(); j++) {
+				Assert.assertEquals("island "+i+" pixel "+j, island.get(j).getInt2(), island1.get(j).getInt2());
+			}
+			// the graph of the original island also depends on state left by superthinning
+			PixelIsland copy = PixelIsland.createSeparateIslandWithClonedPixels(island.getPixelList(), island.getDiagonal());
+			Assert.assertEquals("graph", copy.getOrCreateGraph().toString(), island1.getOrCreateGraph().toString());
+		}
+		Assert.assertTrue("compact", file.length() < 4 * islands.getPixelList().size());
+	}
+
+	@Test
+	public void testRunLengthIslands() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		FloodFill floodFill = new ImageFloodFill(image);
+		floodFill.setDiagonal(true);
+		floodFill.setRunLength(true);
+		PixelIslandList islands = floodFill.getIslandList();
+		File file = new File(TARGET_DIR, "runs.pil");
+		PixelIslandListFile.write(islands, file);
+		PixelIslandListFile islandFile = new PixelIslandListFile(file);
+		for (int i = islands.size() - 1; i >= 0; i--) {
+			RunLengthPixelIsland island = (RunLengthPixelIsland) islands.get(i);
+			RunLengthPixelIsland island1 = (RunLengthPixelIsland) islandFile.getIsland(i);
+			Assert.assertEquals(island.getRunCount(), island1.getRunCount());
+			for (int r = 0; r < island.getRunCount(); r++) {
+				Assert.assertArrayEquals(island.getRun(r), island1.getRun(r));
+			}
+			Assert.assertFalse(island1.isMaterialized());
+		}
+	}
+
+	@Test
+	public void testBadFile() throws IOException {
+		File file = new File(TARGET_DIR, "bad.pil");
+		TARGET_DIR.mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[30]);
+		out.close();
+		try {
+			new PixelIslandListFile(file);
+			Assert.fail("bad magic");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("not a pixel island file"));
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Int2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.image.Fixtures;
+
+public class PixelIslandListTest {
+
+	/** lookups through the label raster must agree with searching the islands.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testLabelLookup() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_THINNED_PNG);
+		FloodFill floodFill = new ImageFloodFill(image);
+		floodFill.setRetainLabels(true);
+		PixelIslandList islands = floodFill.getIslandList();
+		Assert.assertNotNull(islands.getLabelRaster());
+		Assert.assertTrue("islands", islands.size() > 20);
+		assertLookups(islands, image);
+
+		int size = islands.size();
+		islands.removeIslandsLessThan(new Real2Range(new RealRange(0, image.getWidth() / 2), new RealRange(0, image.getHeight())));
+		Assert.assertTrue("removed", islands.size() < size);
+		Assert.assertTrue("kept", islands.size() > 0);
+		assertLookups(islands, image);
+
+		islands.sortBySizeDescending();
+		assertLookups(islands, image);
+	}
+
+	@Test
+	public void testNoLabels() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		FloodFill floodFill = new ImageFloodFill(image);
+		PixelIslandList islands = floodFill.getIslandList();
+		Assert.assertNull(islands.getLabelRaster());
+		PixelIsland island = islands.get(2);
+		Pixel pixel = island.getPixelList().get(0);
+		Assert.assertEquals(2, islands.getIslandIndexAt(pixel.getX(), pixel.getY()));
+		Assert.assertSame(island, islands.getIslandByPixel(pixel));
+		Assert.assertEquals(-1, islands.getIslandIndexAt(-1, 0));
+	}
+
+	/** removing pixels splits an island only when the edits are relabelled.
+	 */
+	@Test
+	public void testRelabelEditedIslands() {
+		BufferedImage image = Fixtures.createImage(new String[] {
+			".........",
+			".#######.",
+			".........",
+			".#.......",
+		});
+		FloodFill floodFill = new ImageFloodFill(image);
+		floodFill.setRetainLabels(true);
+		PixelIslandList islands = floodFill.getIslandList();
+		Assert.assertEquals(2, islands.size());
+		PixelIsland bar = islands.get(0);
+		bar.remove(bar.get(7, 1));
+		Assert.assertTrue(bar.hasRemovedPixels());
+		Assert.assertEquals(0, islands.relabelEditedIslands());
+		Assert.assertFalse(bar.hasRemovedPixels());
+		Assert.assertSame(bar, islands.get(0));
+
+		bar.remove(bar.get(4, 1));
+		Assert.assertEquals(2, islands.size());
+		Assert.assertEquals(1, islands.relabelEditedIslands());
+		Assert.assertEquals(3, islands.size());
+		PixelIsland left = islands.getIslandAt(2, 1);
+		PixelIsland right = islands.getIslandAt(5, 1);
+		Assert.assertNotSame(left, right);
+		Assert.assertSame(islands.get(2), islands.getIslandAt(1, 3));
+		Assert.assertEquals(3, left.size());
+		Assert.assertEquals(2, right.size());
+		Assert.assertSame(left, left.get(1, 1).getIsland());
+		Assert.assertSame(right, right.get(6, 1).getIsland());
+		Assert.assertEquals(1, islands.getLabel(left));
+		Assert.assertEquals(1, islands.getLabel(right));
+		Assert.assertNull(islands.getIslandByLabel(1));
+		Assert.assertEquals(-1, islands.getIslandIndexAt(4, 1));
+		assertLookups(islands, image);
+	}
+
+	/** a diagonal step keeps an island whole if diagonals are allowed.
+	 */
+	@Test
+	public void testRelabelDiagonal() {
+		BufferedImage image = Fixtures.createImage(new String[] {
+			"###.",
+			"...#",
+		});
+		FloodFill floodFill = new ImageFloodFill(image);
+		floodFill.setDiagonal(true);
+		PixelIslandList islands = floodFill.getIslandList();
+		Assert.assertEquals(1, islands.size());
+		PixelIsland island = islands.get(0);
+		island.remove(island.get(0, 0));
+		Assert.assertNull(island.relabel());
+		island.remove(island.get(2, 0));
+		List<PixelIsland> pieces = island.relabel();
+		Assert.assertEquals(2, pieces.size());
+		Assert.assertEquals(1, pieces.get(0).size());
+		Assert.assertEquals(1, pieces.get(1).size());
+		Pixel pixel = island.getPixelList().get(0);
+		Assert.assertSame(pieces.get(0), pixel.getIsland());
+		Assert.assertTrue(pieces.get(1).getDiagonal());
+	}
+
+	/** pieces are in order of their first pixel, whichever piece the search started in.
+	 */
+	@Test
+	public void testRelabelPieceOrder() {
+		PixelList pixelList = new PixelList();
+		for (int x : new int[] {6, 7, 8, 4, 0, 1, 2, 3, 5}) {
+			pixelList.add(new Pixel(x, 0));
+		}
+		PixelIsland island = PixelIsland.createSeparateIslandWithClonedPixels(pixelList, false);
+		// the search starts next to (3,0), in the left or middle piece
+		island.remove(island.get(3, 0));
+		island.remove(island.get(5, 0));
+		List<PixelIsland> pieces = island.relabel();
+		Assert.assertEquals(3, pieces.size());
+		Assert.assertEquals(6, pieces.get(0).getPixelList().get(0).getX());
+		Assert.assertEquals(4, pieces.get(1).getPixelList().get(0).getX());
+		Assert.assertEquals(0, pieces.get(2).getPixelList().get(0).getX());
+		Assert.assertEquals(3, pieces.get(2).size());
+	}
+
+	private static void assertLookups(PixelIslandList islands, BufferedImage image) {
+		PixelIslandList unlabelled = new PixelIslandList(islands.getList());
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				int index = islands.getIslandIndexAt(x, y);
+				Assert.assertEquals(x+","+y, unlabelled.getIslandIndexAt(x, y), index);
+				Int2 coord = new Int2(x, y);
+				Pixel pixel = islands.getPixelByCoord(coord);
+				Assert.assertSame(x+","+y, unlabelled.getPixelByCoord(coord), pixel);
+				if (pixel != null) {
+					Assert.assertSame(islands.get(index), islands.getIslandByPixel(pixel));
+					Assert.assertSame(islands.get(index), islands.getIslandByPixel(new Pixel(x, y)));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+
+public class PixelIslandStatsTest {
+
+	@Test
+	public void testSmallIslands() {
+		BinaryRaster raster = BinaryRaster.createFromBinary(new int[][] {
+			{1, 0, 0, 1, 1},
+			{0, 0, 0, 1, 1},
+			{0, 1, 0, 0, 0},
+			{0, 1, 1, 1, 0},
+		});
+		PixelIslandStats stats = new ConnectedComponentLabeller(false).label(raster).getStats();
+		Assert.assertEquals(3, stats.getLabelCount());
+		Assert.assertEquals(1, stats.getArea(1));
+		Assert.assertEquals(4, stats.getPerimeter(1));
+		Assert.assertEquals(4, stats.getArea(2));
+		Assert.assertEquals("square", 8, stats.getPerimeter(2));
+		Assert.assertEquals("((3,4),(0,1))", stats.getIntBoundingBox(2).toString());
+		Assert.assertEquals(3.5, stats.getCentroid(2).getX(), 0.0001);
+		Assert.assertEquals(0.5, stats.getCentroid(2).getY(), 0.0001);
+		Assert.assertEquals(0.25, stats.getMomentXX(2), 0.0001);
+		Assert.assertEquals(0.0, stats.getMomentXY(2), 0.0001);
+		Assert.assertEquals(4, stats.getArea(3));
+		Assert.assertEquals("L shape", 10, stats.getPerimeter(3));
+		Assert.assertEquals(3, stats.getWidth(3));
+		Assert.assertEquals(2, stats.getHeight(3));
+	}
+
+	@Test
+	/** statistics must agree with the islands' pixels, sequential or in bands.
+	 *
+	 */
+	public void testSameAsIslands() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_THINNED_PNG);
+		FloodFill floodFill = new ImageFloodFill(image);
+		floodFill.setDiagonal(true);
+		PixelIslandList islands = floodFill.getIslandList();
+		PixelIslandStats stats = islands.getStats();
+		Assert.assertNotNull(stats);
+		Assert.assertEquals(islands.size(), stats.getLabelCount());
+		for (int i = 0; i < islands.size(); i++) {
+			PixelIsland island = islands.get(i);
+			int label = islands.getLabel(island);
+			Assert.assertEquals(i + 1, label);
+			Assert.assertEquals(island.size(), stats.getArea(label));
+			Assert.assertEquals(island.getIntBoundingBox(), stats.getIntBoundingBox(label));
+			Assert.assertEquals(island.getBoundingBox().toString(), stats.getBoundingBox(label).toString());
+			double sumX = 0;
+			double sumY = 0;
+			for (Pixel pixel : island) {
+				sumX += pixel.getX();
+				sumY += pixel.getY();
+			}
+			Assert.assertEquals(sumX / island.size(), stats.getCentroid(label).getX(), 0.000001);
+			Assert.assertEquals(sumY / island.size(), stats.getCentroid(label).getY(), 0.000001);
+		}
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			BinaryRaster raster = ImageFloodFill.createBinaryRaster(image, 128);
+			PixelIslandStats stats1 = new ConnectedComponentLabeller(true).label(raster, pool).getStats();
+			for (int label = 1; label <= stats.getLabelCount(); label++) {
+				Assert.assertEquals(stats.getArea(label), stats1.getArea(label));
+				Assert.assertEquals(stats.getPerimeter(label), stats1.getPerimeter(label));
+				Assert.assertEquals(stats.getMomentXY(label), stats1.getMomentXY(label), 0.0);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testRemoveIslandsUsesStats() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_THINNED_PNG);
+		FloodFill floodFill = new ImageFloodFill(image);
+		PixelIslandList islands = floodFill.getIslandList();
+		PixelIslandList unlabelled = new PixelIslandList(new ArrayList<PixelIsland>(islands.getList()));
+		Assert.assertEquals(unlabelled.getBoundingBox().toString(), islands.getBoundingBox().toString());
+		Real2Range box = new Real2Range(new RealRange(0, 10), new RealRange(0, 10));
+		islands.removeIslandsLessThan(box);
+		unlabelled.removeIslandsLessThan(box);
+		Assert.assertEquals(unlabelled.getList(), islands.getList());
+	}
+}
@@ -1063,6 +1063,34 @@ public class PixelIslandTest {
 		}
 	}
 
+	@Test
+	/** visitor and counts must agree with the neighbour lists.
+	 * 
+	 */
+	public void testForEachNeighbour() throws IOException {
+		for (boolean diagonal : new boolean[] {true, false}) {
+			FloodFill floodFill = new ImageFloodFill(ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG));
+			floodFill.setDiagonal(diagonal);
+			PixelIsland island = floodFill.getIslandList().get(0);
+			for (Pixel pixel : island) {
+				PixelList neighbours = pixel.getOrCreateNeighbours(island);
+				final PixelList visited = new PixelList();
+				final PixelIsland island0 = island;
+				island.forEachNeighbour(pixel.getX(), pixel.getY(), new IntIntConsumer() {
+					public void accept(int x, int y) {
+						visited.add(island0.get(x, y));
+					}
+				});
+				Assert.assertEquals(neighbours.toString(), visited.toString());
+				Assert.assertEquals(neighbours.size(), island.neighbourCount(pixel.getX(), pixel.getY(), true, true));
+				Assert.assertEquals(pixel.getOrthogonalNeighbours(island).size(),
+						island.neighbourCount(pixel.getX(), pixel.getY(), true, false));
+				Assert.assertEquals(pixel.getDiagonalNeighbours(island).size(),
+						island.neighbourCount(pixel.getX(), pixel.getY(), false, true));
+			}
+		}
+	}
+
 	private PixelIsland createFirstPixelIsland(File file) throws IOException {
 		MainPixelProcessor pixelProcessor = new MainPixelProcessor(ImageIO.read(file));
 		return pixelProcessor.getOrCreatePixelIslandList().get(0);
@@ -0,0 +1,120 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+
+public class PixelIslandTreeTest {
+
+	/** box containing a ring (with a hole) and a dot; a square outside the box.
+	 */
+	private static final String[] NESTED = {
+		"#########...",
+		"#.......#.##",
+		"#.###...#.##",
+		"#.#.#.#.#...",
+		"#.###...#...",
+		"#.......#...",
+		"#########...",
+	};
+
+	@Test
+	public void testNested() {
+		PixelIslandTree tree = new IslandTopologyLabeller().label(Fixtures.createBinaryRaster(NESTED));
+		Assert.assertEquals(4, tree.getIslandCount());
+		Assert.assertEquals(2, tree.getHoleCount());
+		// islands: 1 box, 2 square, 3 ring, 4 dot; holes: 1 box, 2 ring
+		Assert.assertEquals(1, tree.getIslandLabel(0, 0));
+		Assert.assertEquals(2, tree.getIslandLabel(10, 1));
+		Assert.assertEquals(3, tree.getIslandLabel(2, 2));
+		Assert.assertEquals(4, tree.getIslandLabel(6, 3));
+		Assert.assertEquals(1, tree.getHoleLabel(1, 1));
+		Assert.assertEquals(2, tree.getHoleLabel(3, 3));
+		Assert.assertEquals(0, tree.getHoleLabel(9, 3));
+
+		Assert.assertEquals(0, tree.getParentHole(1));
+		Assert.assertEquals(0, tree.getParentHole(2));
+		Assert.assertEquals(1, tree.getParentHole(3));
+		Assert.assertEquals(1, tree.getParentHole(4));
+		Assert.assertEquals(1, tree.getParentIsland(1));
+		Assert.assertEquals(3, tree.getParentIsland(2));
+		Assert.assertEquals(1, tree.getEnclosingIsland(4));
+		Assert.assertEquals(0, tree.getEnclosingIsland(2));
+		Assert.assertEquals(0, tree.getDepth(1));
+		Assert.assertEquals(1, tree.getDepth(3));
+
+		Assert.assertTrue(tree.isInside(3, 1));
+		Assert.assertTrue(tree.isInside(4, 1));
+		Assert.assertFalse(tree.isInside(4, 3));
+		Assert.assertFalse(tree.isInside(1, 3));
+		Assert.assertFalse(tree.isInside(3, 2));
+
+		Assert.assertArrayEquals(new int[] {1, 2}, tree.getIslands(0));
+		Assert.assertArrayEquals(new int[] {3, 4}, tree.getIslands(1));
+		Assert.assertArrayEquals(new int[0], tree.getIslands(2));
+		Assert.assertArrayEquals(new int[] {1}, tree.getHoles(1));
+		Assert.assertArrayEquals(new int[0], tree.getHoles(2));
+		Assert.assertArrayEquals(new int[] {2}, tree.getHoles(3));
+		Assert.assertArrayEquals(new int[] {3, 4}, tree.getNestedIslands(1));
+		Assert.assertEquals(25, tree.getHoleArea(1));
+		Assert.assertEquals(1, tree.getHoleArea(2));
+	}
+
+	/** islands are 8-connected so a diagonal step still closes a hole.
+	 */
+	@Test
+	public void testDiagonalRing() {
+		PixelIslandTree tree = new IslandTopologyLabeller().label(Fixtures.createBinaryRaster(new String[] {
+			".#.",
+			"#.#",
+			".#.",
+		}));
+		Assert.assertEquals(1, tree.getIslandCount());
+		Assert.assertEquals(1, tree.getHoleCount());
+		Assert.assertEquals(1, tree.getHoleLabel(1, 1));
+		Assert.assertEquals(0, tree.getHoleLabel(0, 0));
+	}
+
+	/** islands are those of the ordinary fill and their holes are their lakes.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testFloodFillTopology() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		FloodFill floodFill = new ImageFloodFill(image);
+		floodFill.setDiagonal(true);
+		PixelIslandList expected = floodFill.getIslandList();
+
+		FloodFill topologyFill = new ImageFloodFill(image);
+		topologyFill.setDiagonal(true);
+		topologyFill.setTopology(true);
+		PixelIslandList islands = topologyFill.getIslandList();
+		PixelIslandTree tree = topologyFill.getIslandTree();
+		Assert.assertNotNull(tree);
+		Assert.assertEquals(expected.size(), islands.size());
+		Assert.assertEquals(islands.size(), tree.getIslandCount());
+		int holes = 0;
+		for (int i = 0; i < islands.size(); i++) {
+			PixelIsland island = islands.get(i);
+			Assert.assertEquals(expected.get(i).getPixelList().toString(), island.getPixelList().toString());
+			int label = tree.getLabel(island);
+			Assert.assertEquals(i + 1, label);
+			Assert.assertSame(island, tree.getIsland(label));
+			Assert.assertEquals(island.findPixelLakes().size(), tree.getHoleCount(label));
+			holes += tree.getHoleCount(label);
+			PixelIsland enclosing = tree.getEnclosingIsland(island);
+			if (enclosing != null) {
+				Assert.assertTrue(tree.isInside(island, enclosing));
+			}
+		}
+		Assert.assertEquals(tree.getHoleCount(), holes);
+		Assert.assertTrue("rings", holes > 0);
+	}
+}
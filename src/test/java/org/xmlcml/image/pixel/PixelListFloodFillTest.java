@@ -1,6 +1,10 @@
 package org.xmlcml.image.pixel;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -10,6 +14,7 @@ import org.xmlcml.euclid.Int2;
 import org.xmlcml.euclid.Int2Range;
 import org.xmlcml.graphics.svg.SVGG;
 import org.xmlcml.graphics.svg.SVGSVG;
+import org.xmlcml.image.Fixtures;
 
 public class PixelListFloodFillTest {
 
@@ -91,4 +96,87 @@ public class PixelListFloodFillTest {
 		SVGSVG.wrapAndWriteAsSVG(g, new File("target/islandFlood/fill.svg"));
 	}
 
+	@Test
+	public void testInteriorWithTwoHoles() {
+		PixelList pixelList = Fixtures.createPixelList(new String[] {
+				"######",
+				"#..#.#",
+				"#..###",
+				"######",
+		}, 10, 20);
+		PixelListFloodFill fill = new PixelListFloodFill(pixelList);
+		PixelList interior = fill.createInteriorPixelList();
+		Assert.assertEquals("(11,21)(11,22)(12,21)(12,22)(14,21)", interior.toString());
+		int[] runs = fill.createInteriorRuns();
+		Assert.assertArrayEquals(new int[] {21, 11, 12, 21, 14, 14, 22, 11, 12}, runs);
+	}
+
+	/** white pixels only diagonally connected to the outside are interior.
+	 */
+	@Test
+	public void testInteriorFourConnected() {
+		PixelList pixelList = Fixtures.createPixelList(new String[] {
+				".#.",
+				"#.#",
+				".#.",
+		}, 0, 0);
+		Assert.assertEquals("(1,1)", new PixelListFloodFill(pixelList).createInteriorPixelList().toString());
+		pixelList = Fixtures.createPixelList(new String[] {
+				"###",
+				"#.#",
+				"#..",
+		}, 0, 0);
+		Assert.assertEquals(0, new PixelListFloodFill(pixelList).createInteriorPixelList().size());
+		Assert.assertEquals(0, new PixelListFloodFill(new PixelList()).createInteriorPixelList().size());
+	}
+
+	@Test
+	public void testFindPixelLakes() {
+		PixelList pixelList = Fixtures.createPixelList(new String[] {
+				"######",
+				"#..#.#",
+				"#..###",
+				"######",
+		}, 10, 20);
+		PixelIsland island = new PixelIsland(pixelList);
+		List<PixelIsland> lakes = island.findPixelLakes();
+		Assert.assertEquals(2, lakes.size());
+		Assert.assertEquals(4, lakes.get(0).size());
+		Assert.assertEquals(1, lakes.get(1).size());
+		Assert.assertEquals("(14,21)", lakes.get(1).getPixelList().toString());
+	}
+
+	/** the batch fill agrees with the runs and with the lakes of each island.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testInteriorPixelLists() throws IOException {
+		PixelIslandList islands = new ImageFloodFill(ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG)).getIslandList();
+		List<PixelList> interiors = PixelListFloodFill.createInteriorPixelLists(islands);
+		List<int[]> runsList = PixelListFloodFill.createInteriorRuns(islands);
+		Assert.assertEquals(islands.size(), interiors.size());
+		int total = 0;
+		for (int i = 0; i < islands.size(); i++) {
+			PixelList interior = interiors.get(i);
+			int[] runs = runsList.get(i);
+			int runPixels = 0;
+			for (int r = 0; r < runs.length; r += 3) {
+				runPixels += runs[r + 2] - runs[r + 1] + 1;
+				Assert.assertTrue(interior.contains(runs[r + 1], runs[r]));
+			}
+			Assert.assertEquals(interior.size(), runPixels);
+			int lakePixels = 0;
+			for (PixelIsland lake : islands.get(i).findPixelLakes()) {
+				lakePixels += lake.size();
+			}
+			Assert.assertEquals(interior.size(), lakePixels);
+			for (Pixel pixel : interior) {
+				Assert.assertFalse(islands.get(i).contains(pixel.getX(), pixel.getY()));
+			}
+			total += interior.size();
+		}
+		Assert.assertTrue("rings", total > 0);
+	}
+
 }
@@ -1,6 +1,8 @@
 package org.xmlcml.image.pixel;
 
 import java.io.File;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 
 import org.apache.log4j.Logger;
 import org.junit.Assert;
@@ -149,5 +151,110 @@ public class PixelListTest {
 		outliner.createOutline();
 	}
 
+	@Test
+	public void testRemoveKeepsOrder() {
+		PixelList pixelList = CREATE_TEST_ISLAND();
+		Assert.assertTrue(pixelList.remove(new Pixel(2, 11)));
+		Assert.assertTrue(pixelList.remove(new Pixel(4, 12)));
+		Assert.assertFalse("already removed", pixelList.remove(new Pixel(4, 12)));
+		Assert.assertFalse("absent", pixelList.remove(new Pixel(9, 9)));
+		Assert.assertEquals(14, pixelList.size());
+		Assert.assertFalse(pixelList.contains(2, 11));
+		Assert.assertEquals("(1,11)", pixelList.get(0).toString());
+		Assert.assertEquals("(4,11)", pixelList.get(1).toString());
+		Assert.assertEquals(5, pixelList.indexOf(new Pixel(1, 13)));
+		Assert.assertEquals("(5,16)", pixelList.last().toString());
+		pixelList.add(new Pixel(7, 7));
+		Assert.assertTrue(pixelList.remove(new Pixel(1, 11)));
+		Assert.assertEquals("(4,11)(5,11)(1,12)(2,12)(1,13)(3,13)(5,13)(1,14)(5,14)(2,15)(3,15)(4,15)(5,16)(7,7)",
+				pixelList.toString());
+	}
+
+	@Test
+	public void testRemoveUnordered() {
+		PixelList pixelList = CREATE_TEST_ISLAND();
+		pixelList.setOrdered(false);
+		Assert.assertTrue(pixelList.remove(new Pixel(1, 11)));
+		Assert.assertEquals("last moved into gap", "(5,16)", pixelList.get(0).toString());
+		Assert.assertEquals(15, pixelList.size());
+		while (pixelList.size() > 0) {
+			Pixel pixel = pixelList.get(pixelList.size() / 2);
+			Assert.assertTrue(pixelList.remove(pixel));
+			Assert.assertFalse(pixelList.contains(pixel));
+			Assert.assertEquals(-1, pixelList.indexOf(pixel));
+		}
+		Assert.assertNull(pixelList.last());
+	}
+
+	@Test
+	public void testRemoveAfterReorder() {
+		PixelList pixelList = CREATE_TEST_ISLAND();
+		pixelList.remove(new Pixel(1, 11));
+		pixelList.reverse();
+		Assert.assertTrue(pixelList.remove(new Pixel(5, 16)));
+		Assert.assertEquals("(4,15)", pixelList.get(0).toString());
+		pixelList.sortYX();
+		Assert.assertTrue(pixelList.remove(new Pixel(2, 11)));
+		Assert.assertEquals("(4,11)", pixelList.get(0).toString());
+		Assert.assertEquals(13, pixelList.size());
+	}
+
+	@Test
+	public void testRemoveDuplicates() {
+		PixelList pixelList = new PixelList();
+		pixelList.add(new Pixel(1, 1));
+		pixelList.add(new Pixel(2, 1));
+		pixelList.add(new Pixel(1, 1));
+		int count = 0;
+		while (pixelList.remove(new Pixel(1, 1))) {
+			count++;
+		}
+		Assert.assertEquals(2, count);
+		Assert.assertEquals("(2,1)", pixelList.toString());
+	}
+
+	@Test
+	/** removal from a large list must not search the list.
+	 * 
+	 */
+	public void testRemoveLarge() {
+		PixelList pixelList = new PixelList();
+		int n = 400;
+		for (int y = 0; y < n; y++) {
+			for (int x = 0; x < n; x++) {
+				pixelList.add(new Pixel(x, y));
+			}
+		}
+		for (int y = 0; y < n; y++) {
+			for (int x = 0; x < n; x += 2) {
+				Assert.assertTrue(pixelList.remove(new Pixel(x, y)));
+			}
+		}
+		Assert.assertEquals(n * n / 2, pixelList.size());
+		Assert.assertEquals("(1,0)", pixelList.get(0).toString());
+		Assert.assertEquals("(3,0)", pixelList.get(1).toString());
+	}
+
+	@Test
+	public void testRemoveWhileIterating() {
+		PixelList pixelList = CREATE_TEST_ISLAND();
+		try {
+			for (Pixel pixel : pixelList) {
+				pixelList.remove(pixel);
+			}
+			Assert.fail("should throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+		Assert.assertEquals(15, pixelList.size());
+		Iterator<Pixel> iterator = pixelList.iterator();
+		iterator.next();
+		iterator.remove();
+		Assert.assertEquals(14, pixelList.size());
+		Assert.assertFalse(pixelList.contains(2, 11));
+		Assert.assertTrue(pixelList.remove(new Pixel(4, 11)));
+		Assert.assertEquals("(5,11)", pixelList.get(0).toString());
+	}
+
 
 }
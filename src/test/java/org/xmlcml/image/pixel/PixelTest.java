@@ -51,4 +51,42 @@ public class PixelTest {
 		Assert.assertTrue(pixel[1].isKnightsMove(pixel[2], pixel[4]));
 		Assert.assertTrue(pixel[1].isKnightsMove(pixel[3], pixel[4]));
 	}
+
+	@Test
+	public void testNeighbourOrder() {
+		PixelList neighbours = pixel[3].getOrCreateNeighbours(island);
+		Assert.assertEquals("[(2,1), (0,1), (1,0), (2,0), (0,0)]", String.valueOf(neighbours.getList()));
+		Assert.assertEquals(5, pixel[3].getNeighbourCount(island));
+		Assert.assertEquals(3, pixel[3].getOrthogonalNeighbourCount(island));
+		Assert.assertEquals(2, pixel[3].getDiagonalNeighbourCount(island));
+		Assert.assertEquals(3, pixel[3].getOrthogonalNeighbours(island).size());
+		Assert.assertEquals(2, pixel[3].getDiagonalNeighbours(island).size());
+		island.setDiagonal(false);
+		Assert.assertEquals(3, pixel[3].getNeighbourCount(island));
+		Assert.assertEquals(0, pixel[3].getDiagonalNeighbours(island).size());
+	}
+
+	@Test
+	public void testRemoveUpdatesNeighbours() {
+		Assert.assertEquals(3, pixel[0].getNeighbourCount(island));
+		Assert.assertEquals(5, pixel[3].getNeighbourCount(island));
+		island.remove(pixel[1]);
+		Assert.assertEquals(2, pixel[0].getNeighbourCount(island));
+		Assert.assertEquals(4, pixel[3].getNeighbourCount(island));
+		Assert.assertFalse(pixel[3].getOrCreateNeighbours(island).contains(pixel[1]));
+		for (Pixel p : island.getPixelList()) {
+			Assert.assertEquals(island.neighbourCount(p.getX(), p.getY(), true, true), p.getNeighbourCount(island));
+			Assert.assertEquals(island.neighbourCount(p.getX(), p.getY(), false, true), p.getDiagonalNeighbourCount(island));
+		}
+	}
+
+	@Test
+	public void testRemoveNeighbourLink() {
+		island.removeNeighbourLink(pixel[1], pixel[2]);
+		Assert.assertEquals(2, pixel[1].getNeighbourCount(island));
+		Assert.assertEquals(4, pixel[2].getNeighbourCount(island));
+		Assert.assertFalse(pixel[2].getOrCreateNeighbours(island).contains(pixel[1]));
+		island.recomputeNeighbours();
+		Assert.assertEquals(3, pixel[1].getNeighbourCount(island));
+	}
 }
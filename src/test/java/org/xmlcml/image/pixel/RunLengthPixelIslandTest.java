@@ -0,0 +1,114 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Int2Range;
+import org.xmlcml.euclid.IntRange;
+import org.xmlcml.image.Fixtures;
+
+public class RunLengthPixelIslandTest {
+
+	@Test
+	public void testRuns() {
+		RunLengthPixelIsland island = new RunLengthPixelIsland();
+		island.addRun(2, 3, 6);
+		island.addRun(2, 8, 8);
+		island.addRun(3, 1, 4);
+		Assert.assertEquals(9, island.size());
+		Assert.assertEquals(3, island.getRunCount());
+		Int2Range box = island.getIntBoundingBox();
+		Assert.assertEquals(new IntRange(1, 8), box.getXRange());
+		Assert.assertEquals(new IntRange(2, 3), box.getYRange());
+		Assert.assertTrue(island.contains(3, 2));
+		Assert.assertTrue(island.contains(8, 2));
+		Assert.assertFalse(island.contains(7, 2));
+		Assert.assertFalse(island.contains(5, 3));
+		Assert.assertFalse("no pixels yet", island.isMaterialized());
+		Assert.assertEquals(9, island.getPixelList().size());
+		Assert.assertTrue(island.isMaterialized());
+		Assert.assertTrue(island.contains(8, 2));
+		Assert.assertEquals(9, island.size());
+	}
+
+	@Test
+	public void testRasterOrder() {
+		RunLengthPixelIsland island = new RunLengthPixelIsland();
+		island.addRun(2, 3, 6);
+		try {
+			island.addRun(2, 7, 9);
+			Assert.fail("touching runs");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		try {
+			island.addRun(1, 0, 1);
+			Assert.fail("row out of order");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+	@Test
+	/** run-length islands must have the same read-side properties as the pixel islands.
+	 *
+	 */
+	public void testSameAsFloodFill() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		for (boolean diagonal : new boolean[] {true, false}) {
+			FloodFill floodFill = new ImageFloodFill(image);
+			floodFill.setDiagonal(diagonal);
+			PixelIslandList islands = floodFill.getIslandList();
+			FloodFill runFill = new ImageFloodFill(image);
+			runFill.setDiagonal(diagonal);
+			runFill.setRunLength(true);
+			PixelIslandList runIslands = runFill.getIslandList();
+			Assert.assertEquals("islands", islands.size(), runIslands.size());
+			for (int i = 0; i < islands.size(); i++) {
+				PixelIsland island = islands.get(i);
+				RunLengthPixelIsland runIsland = (RunLengthPixelIsland) runIslands.get(i);
+				String msg = "island "+i+" diagonal "+diagonal;
+				Assert.assertEquals(msg, island.size(), runIsland.size());
+				Assert.assertTrue(msg, runIsland.getRunCount() < island.size());
+				Assert.assertEquals(msg, island.getIntBoundingBox(), runIsland.getIntBoundingBox());
+				Assert.assertEquals(msg, island.getBoundingBox().toString(), runIsland.getBoundingBox().toString());
+				for (int n = 0; n <= 8; n++) {
+					PixelList expected = island.getPixelsWithNeighbourCount(n);
+					PixelList found = runIsland.getPixelsWithNeighbourCount(n);
+					Assert.assertEquals(msg+" neighbours "+n, expected.size(), found.size());
+					for (Pixel pixel : found) {
+						Assert.assertTrue(msg, expected.contains(pixel.getX(), pixel.getY()));
+					}
+				}
+				checkSameImage(msg, island.createImage(), runIsland.createImage());
+				Assert.assertFalse(msg, runIsland.isMaterialized());
+				Int2Range box = island.getIntBoundingBox();
+				for (int y = box.getYRange().getMin() - 1; y <= box.getYRange().getMax() + 1; y++) {
+					for (int x = box.getXRange().getMin() - 1; x <= box.getXRange().getMax() + 1; x++) {
+						Assert.assertEquals(msg, island.contains(x, y), runIsland.contains(x, y));
+					}
+				}
+				PixelList terminals = runIsland.getPixelsWithNeighbourCount(1);
+				for (Pixel pixel : terminals) {
+					Assert.assertSame("pixel reused", pixel, runIsland.get(pixel.getX(), pixel.getY()));
+				}
+				Assert.assertEquals(msg, island.size(), runIsland.getPixelList().size());
+				Assert.assertTrue(msg, runIsland.isMaterialized());
+			}
+		}
+	}
+
+	private void checkSameImage(String msg, BufferedImage image, BufferedImage image1) {
+		Assert.assertEquals(msg, image.getWidth(), image1.getWidth());
+		Assert.assertEquals(msg, image.getHeight(), image1.getHeight());
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				Assert.assertEquals(msg, image.getRGB(x, y), image1.getRGB(x, y));
+			}
+		}
+	}
+}
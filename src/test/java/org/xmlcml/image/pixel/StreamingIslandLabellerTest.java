@@ -0,0 +1,127 @@
+package org.xmlcml.image.pixel;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+
+public class StreamingIslandLabellerTest {
+
+	private static class IslandCollector implements PixelIslandConsumer {
+		private List<PixelIsland> islands = new ArrayList<PixelIsland>();
+		public void accept(PixelIsland island) {
+			islands.add(island);
+		}
+	}
+
+	@Test
+	public void testEmitWhenClosed() {
+		BinaryRaster raster = BinaryRaster.createFromBinary(new int[][] {
+			{1, 0, 1, 0, 0},
+			{1, 0, 1, 0, 1},
+			{1, 1, 1, 0, 0},
+			{0, 0, 0, 0, 1},
+		});
+		IslandCollector collector = new IslandCollector();
+		StreamingIslandLabeller labeller = new StreamingIslandLabeller(false);
+		labeller.start(5, collector);
+		labeller.addRow(raster, 0);
+		labeller.addRow(raster, 1);
+		Assert.assertEquals(0, collector.islands.size());
+		labeller.addRow(raster, 2);
+		Assert.assertEquals("closed", 1, collector.islands.size());
+		Assert.assertEquals(1, collector.islands.get(0).size());
+		labeller.addRow(raster, 3);
+		Assert.assertEquals("closed", 2, collector.islands.size());
+		Assert.assertEquals("U shape", 7, collector.islands.get(1).size());
+		Assert.assertEquals(3, labeller.finish());
+		Assert.assertEquals(3, collector.islands.size());
+		Assert.assertEquals(4, collector.islands.get(2).getPixelList().get(0).getX());
+		Assert.assertEquals(3, collector.islands.get(2).getPixelList().get(0).getY());
+	}
+
+	@Test
+	public void testDiagonal() {
+		BinaryRaster raster = BinaryRaster.createFromBinary(new int[][] {
+			{1, 0, 0},
+			{0, 1, 0},
+			{0, 0, 1},
+		});
+		IslandCollector collector = new IslandCollector();
+		Assert.assertEquals(1, new StreamingIslandLabeller(true).label(raster, collector));
+		Assert.assertEquals(3, collector.islands.get(0).size());
+		Assert.assertEquals(3, new StreamingIslandLabeller(false).label(raster, new IslandCollector()));
+	}
+
+	@Test
+	/** streamed islands, sorted, must be those of the flood fill with pixels in the same order.
+	 *
+	 */
+	public void testSameAsFloodFill() throws IOException {
+		BufferedImage image = ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG);
+		for (boolean diagonal : new boolean[] {true, false}) {
+			FloodFill floodFill = new ImageFloodFill(image);
+			floodFill.setDiagonal(diagonal);
+			PixelIslandList expected = floodFill.getIslandList();
+			FloodFill streamingFill = new ImageFloodFill(Fixtures.MALTORYZINE_BINARY_PNG, 128);
+			streamingFill.setDiagonal(diagonal);
+			PixelIslandList found = streamingFill.getIslandList();
+			Assert.assertEquals("islands", expected.size(), found.size());
+			for (int i = 0; i < expected.size(); i++) {
+				PixelList expectedPixels = expected.get(i).getPixelList();
+				PixelList foundPixels = found.get(i).getPixelList();
+				String msg = "island "+i+" diagonal "+diagonal;
+				Assert.assertEquals(msg, expectedPixels.size(), foundPixels.size());
+				for (int j = 0; j < expectedPixels.size(); j++) {
+					Assert.assertEquals(msg, expectedPixels.get(j).getInt2(), foundPixels.get(j).getInt2());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFilter() throws IOException {
+		IslandSizeFilter filter = new IslandSizeFilter().setMinimumSize(20).setMaximumCount(5);
+		FloodFill floodFill = new ImageFloodFill(ImageIO.read(Fixtures.MALTORYZINE_BINARY_PNG));
+		floodFill.setDiagonal(true);
+		floodFill.setIslandFilter(filter);
+		PixelIslandList expected = floodFill.getIslandList();
+		FloodFill streamingFill = new ImageFloodFill(Fixtures.MALTORYZINE_BINARY_PNG, 128);
+		streamingFill.setDiagonal(true);
+		streamingFill.setIslandFilter(filter);
+		PixelIslandList found = streamingFill.getIslandList();
+		Assert.assertEquals(5, found.size());
+		Assert.assertEquals(expected.size(), found.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getPixelList().get(0).getInt2(), found.get(i).getPixelList().get(0).getInt2());
+		}
+		FloodFill labelledFill = new ImageFloodFill(Fixtures.MALTORYZINE_BINARY_PNG, 128);
+		labelledFill.setLabelled(true);
+		try {
+			labelledFill.getIslandList();
+			Assert.fail("labelled fill of a file");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testStrips() {
+		IslandCollector collector = new IslandCollector();
+		int count = new StreamingIslandLabeller(true).label(Fixtures.MALTORYZINE_BINARY_PNG, 128, 1000, collector);
+		IslandCollector collector1 = new IslandCollector();
+		int count1 = new StreamingIslandLabeller(true).label(Fixtures.MALTORYZINE_BINARY_PNG, 128, collector1);
+		Assert.assertEquals(count1, count);
+		Assert.assertEquals(count, collector.islands.size());
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals(collector1.islands.get(i).size(), collector.islands.get(i).size());
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.xmlcml.image.processing;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.image.BinaryRaster;
+import org.xmlcml.image.Fixtures;
+
+public class BitParallelThinningTest {
+
+	@Test
+	public void testSameAsZhangSuen() throws IOException {
+		File[] files = {
+			Fixtures.MALTORYZINE_BINARY_PNG,
+			Fixtures.MALTORYZINE_PNG,
+			Fixtures.MOLECULE_20131119_BINARY_PNG,
+			Fixtures.HELVETICA_BOLD_PNG,
+			Fixtures.PHYLO_14811_2_PNG,
+		};
+		for (File file : files) {
+			BufferedImage image = ImageIO.read(file);
+			Thinning expected = new ZhangSuenThinning(image);
+			expected.doThinning();
+			Thinning thinning = new BitParallelThinning(image);
+			thinning.doThinning();
+			Assert.assertEquals(file.getName(), expected.getBinary(), thinning.getBinary());
+		}
+	}
+
+	/** blobs crossing the word boundaries and the image edges.
+	 */
+	@Test
+	public void testWordBoundaries() {
+		Random random = new Random(17);
+		int[] widths = {1, 3, 63, 64, 65, 130};
+		for (int width : widths) {
+			for (int trial = 0; trial < 5; trial++) {
+				int[][] b = new int[40][width];
+				for (int k = 0; k < 12; k++) {
+					int x0 = random.nextInt(width);
+					int y0 = random.nextInt(40);
+					int w = 1 + random.nextInt(9);
+					int h = 1 + random.nextInt(9);
+					for (int y = y0; y < Math.min(40, y0 + h); y++) {
+						for (int x = x0; x < Math.min(width, x0 + w); x++) {
+							b[y][x] = random.nextInt(10) == 0 ? 0 : 1;
+						}
+					}
+				}
+				Thinning expected = new ZhangSuenThinning();
+				expected.setBinary(b);
+				expected.doThinning();
+				Thinning thinning = new BitParallelThinning();
+				thinning.setBinary(b);
+				thinning.doThinning();
+				Assert.assertEquals(width+"/"+trial, expected.getBinary(), thinning.getBinary());
+			}
+		}
+	}
+
+	@Test
+	public void testSquare() {
+		Thinning thinning = new BitParallelThinning();
+		thinning.setBinary(new int[][] {
+			{0, 0, 0, 0},
+			{0, 1, 1, 0},
+			{0, 1, 1, 0},
+			{0, 0, 0, 0},
+		});
+		thinning.doThinning();
+		BinaryRaster binary = thinning.getBinary();
+		Assert.assertEquals(1, binary.cardinality());
+		Assert.assertTrue(binary.get(1, 1));
+	}
+}
@@ -3,6 +3,8 @@ package org.xmlcml.image.processing;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 
@@ -24,6 +26,187 @@ public class ZhangSuenThinningTest {
 	       Assert.assertTrue(thinnedPng.exists());
 	}
 
+	/** the table lookups give the same result as testing each pixel.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSameAsPixelTests() throws IOException {
+		File[] files = {
+			Fixtures.MALTORYZINE_BINARY_PNG,
+			Fixtures.MALTORYZINE_PNG,
+			Fixtures.MOLECULE_20131119_BINARY_PNG,
+			Fixtures.HELVETICA_BOLD_PNG,
+			Fixtures.PHYLO_14811_2_PNG,
+		};
+		for (File file : files) {
+			BufferedImage image = ImageIO.read(file);
+			Thinning thinning = new ZhangSuenThinning(image);
+			thinning.doThinning();
+			Thinning reference = new ReferenceThinning(image);
+			reference.doThinning();
+			Assert.assertEquals(file.getName(), reference.getBinary(), thinning.getBinary());
+		}
+	}
+
+	/** thick shapes need many iterations, after the first only near the deletions.
+	 */
+	@Test
+	public void testThickShapes() {
+		int[][] b = new int[120][150];
+		for (int y = 0; y < 120; y++) {
+			for (int x = 0; x < 150; x++) {
+				boolean disc = (x - 40) * (x - 40) + (y - 50) * (y - 50) < 35 * 35;
+				boolean bar = x > 80 && x < 140 && (y / 15) % 2 == 0;
+				b[y][x] = disc || bar ? 1 : 0;
+			}
+		}
+		ZhangSuenThinning thinning = new ZhangSuenThinning();
+		thinning.setBinary(b);
+		thinning.doThinning();
+		ReferenceThinning reference = new ReferenceThinning(null);
+		reference.setBinary(b);
+		reference.doThinning();
+		Assert.assertEquals(reference.getBinary(), thinning.getBinary());
+	}
+
+	/** every neighbour code against the pixel tests in Thinning.
+	 */
+	@Test
+	public void testTables() {
+		for (int code = 0; code < 256; code++) {
+			int[][] b = new int[3][3];
+			b[1][1] = 1;
+			int[] dx = {0, 1, 1, 1, 0, -1, -1, -1};
+			int[] dy = {-1, -1, 0, 1, 1, 1, 0, -1};
+			for (int i = 0; i < 8; i++) {
+				b[1 + dy[i]][1 + dx[i]] = (code >> i) & 1;
+			}
+			ReferenceThinning reference = new ReferenceThinning(null);
+			reference.setBinary(b);
+			Assert.assertEquals(code, ZhangSuenTables.getNeighbourCode(reference.getBinary(), 1, 1));
+			Assert.assertEquals(reference.getSumCyclicChanges(1, 1), ZhangSuenTables.getCyclicChanges(code));
+			Assert.assertEquals(""+code, reference.isDeletable(1, 1, true), ZhangSuenTables.DELETE_RIGHT_BOTTOM[code]);
+			Assert.assertEquals(""+code, reference.isDeletable(1, 1, false), ZhangSuenTables.DELETE_LEFT_TOP[code]);
+		}
+	}
+
+	/** an isolated 2x2 square keeps its top-left pixel.
+	 */
+	@Test
+	public void testSquare() {
+		ZhangSuenThinning thinning = new ZhangSuenThinning();
+		thinning.setBinary(new int[][] {
+			{0, 0, 0, 0},
+			{0, 1, 1, 0},
+			{0, 1, 1, 0},
+			{0, 0, 0, 0},
+		});
+		thinning.doThinning();
+		Assert.assertEquals(1, thinning.getBinary().cardinality());
+		Assert.assertTrue(thinning.getBinary().get(1, 1));
+	}
+
+	/** bands thinned in parallel give the same result.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testParallel() throws IOException {
+		File[] files = {
+			Fixtures.MALTORYZINE_BINARY_PNG,
+			Fixtures.PHYLO_14811_2_PNG,
+		};
+		for (File file : files) {
+			BufferedImage image = ImageIO.read(file);
+			Thinning expected = new ZhangSuenThinning(image);
+			expected.doThinning();
+			for (int parallelism = 2; parallelism <= 5; parallelism++) {
+				ZhangSuenThinning thinning = new ZhangSuenThinning(image);
+				thinning.setParallelism(parallelism);
+				thinning.doThinning();
+				Assert.assertEquals(file.getName()+"/"+parallelism, expected.getBinary(), thinning.getBinary());
+			}
+		}
+		// thick strokes crossing the band boundaries
+		int[][] b = new int[300][200];
+		for (int y = 0; y < 300; y++) {
+			for (int x = 0; x < 200; x++) {
+				b[y][x] = (x / 20 + y / 25) % 3 == 0 || (x + y) % 40 < 9 ? 1 : 0;
+			}
+		}
+		ZhangSuenThinning sequential = new ZhangSuenThinning();
+		sequential.setBinary(b);
+		sequential.doThinning();
+		ZhangSuenThinning parallel = new ZhangSuenThinning();
+		parallel.setBinary(b);
+		parallel.setParallelism(7);
+		parallel.doThinning();
+		Assert.assertEquals(sequential.getBinary(), parallel.getBinary());
+	}
+
+	/** Zhang-Suen testing the conditions pixel by pixel.
+	 */
+	private static class ReferenceThinning extends Thinning {
+
+		ReferenceThinning(BufferedImage image) {
+			if (image != null) {
+				createBinary(image);
+			}
+		}
+
+		@Override
+		public void doThinning() {
+			boolean hasChange = true;
+			while (hasChange) {
+				hasChange = subiterate(true);
+				hasChange |= subiterate(false);
+			}
+		}
+
+		private boolean subiterate(boolean rightBottom) {
+			List<int[]> deleted = new ArrayList<int[]>();
+			for (int y = 0; y < binary.getHeight(); y++) {
+				for (int x = 0; x < binary.getWidth(); x++) {
+					if (isDeletable(y, x, rightBottom) && !isPathological(y, x)) {
+						deleted.add(new int[] {x, y});
+					}
+				}
+			}
+			for (int[] xy : deleted) {
+				binary.clear(xy[0], xy[1]);
+			}
+			return deleted.size() > 0;
+		}
+
+		boolean isDeletable(int y, int x, boolean rightBottom) {
+			int a = getSumCyclicChanges(y, x);
+			int b = getNeighbourSum(y, x);
+			if (getBinary(y, x) != 1 || b < 3 || b > 6 || a != 1) {
+				return false;
+			}
+			return rightBottom ?
+				getBinary(y - 1, x) * getBinary(y, x + 1) * getBinary(y + 1, x) == 0 &&
+				getBinary(y, x + 1) * getBinary(y + 1, x) * getBinary(y, x - 1) == 0 :
+				getBinary(y - 1, x) * getBinary(y, x + 1) * getBinary(y, x - 1) == 0 &&
+				getBinary(y - 1, x) * getBinary(y + 1, x) * getBinary(y, x - 1) == 0;
+		}
+
+		/** isolated 2x2 square with (x,y) top left.
+		 */
+		private boolean isPathological(int y, int x) {
+			for (int yy = y - 1; yy <= y + 2; yy++) {
+				for (int xx = x - 1; xx <= x + 2; xx++) {
+					boolean inSquare = yy >= y && yy <= y + 1 && xx >= x && xx <= x + 1;
+					if (getBinary(yy, xx) != (inSquare ? 1 : 0)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
 	// ==========================================================================
 	
 }